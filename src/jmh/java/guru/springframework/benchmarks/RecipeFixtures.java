@@ -0,0 +1,65 @@
+package guru.springframework.benchmarks;
+
+import guru.springframework.domain.Category;
+import guru.springframework.domain.Difficulty;
+import guru.springframework.domain.ImageMetadata;
+import guru.springframework.domain.Ingredient;
+import guru.springframework.domain.Notes;
+import guru.springframework.domain.Recipe;
+import guru.springframework.domain.UnitOfMeasure;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * Builds recipes shaped like real ones for the benchmarks.
+ */
+public final class RecipeFixtures {
+
+    private RecipeFixtures() {
+    }
+
+    public static Recipe recipe(int ingredients) {
+        Recipe recipe = new Recipe();
+        recipe.setId("5d4b1a2f9c1e4a0001a1b2c3");
+        recipe.setDescription("Perfect Guacamole");
+        recipe.setPrepTime(10);
+        recipe.setCookTime(0);
+        recipe.setServings(4);
+        recipe.setSource("Simply Recipes");
+        recipe.setUrl("http://www.simplyrecipes.com/recipes/perfect_guacamole/");
+        recipe.setDifficulty(Difficulty.EASY);
+        recipe.setDirections("1 Cut avocado, remove flesh. 2 Mash with a fork. 3 Add salt, lime juice and the rest. 4 Cover and chill.");
+
+        Notes notes = new Notes();
+        notes.setRecipeNotes("Be careful handling chiles if using. Wash your hands thoroughly after handling.");
+        recipe.setNotes(notes);
+
+        UnitOfMeasure[] uoms = new UnitOfMeasure[4];
+        String[] uomNames = {"Teaspoon", "Tablespoon", "Cup", "Pinch"};
+        for (int i = 0; i < uoms.length; i++) {
+            uoms[i] = new UnitOfMeasure();
+            uoms[i].setId("uom" + i);
+            uoms[i].setDescription(uomNames[i]);
+        }
+        for (int i = 0; i < ingredients; i++) {
+            Ingredient ingredient = new Ingredient("ingredient number " + i, BigDecimal.valueOf(i, 1), uoms[i % uoms.length]);
+            ingredient.setId("ingredient-" + i);
+            recipe.getIngredients().add(ingredient);
+        }
+
+        for (String name : new String[]{"American", "Mexican"}) {
+            Category category = new Category();
+            category.setId(name.toLowerCase());
+            category.setDescription(name);
+            recipe.getCategories().add(category);
+        }
+
+        ImageMetadata imageMetadata = new ImageMetadata("5d4b1a2f9c1e4a0001a1b2c4", "image/jpeg", 250_000, new Date(),
+                "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08");
+        imageMetadata.getVariants().put("thumb", new ImageMetadata("5d4b1a2f9c1e4a0001a1b2c5", "image/jpeg", 8_000,
+                new Date(), "60303ae22b998861bce3b28f33eec1be758a213c86c93c076dbe9f558c11c752"));
+        recipe.setImageMetadata(imageMetadata);
+        return recipe;
+    }
+}
@@ -0,0 +1,60 @@
+package guru.springframework.converters;
+
+import guru.springframework.benchmarks.RecipeFixtures;
+import guru.springframework.commands.RecipeCommand;
+import guru.springframework.domain.Recipe;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recipe to command conversion and back. The converters and sources are shared by all benchmark threads, the
+ * way singleton beans are shared by request threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecipeConverterBenchmark {
+
+    @Param({"5", "50", "500"})
+    int ingredients;
+
+    private RecipeToRecipeCommand recipeToRecipeCommand;
+    private RecipeCommandToRecipe recipeCommandToRecipe;
+    private Recipe recipe;
+    private RecipeCommand recipeCommand;
+
+    @Setup
+    public void setUp() {
+        recipeToRecipeCommand = new RecipeToRecipeCommand(new CategoryToCategoryCommand(),
+                new IngredientToIngredientCommand(new UnitOfMeasureToUnitOfMeasureCommand()), new NotesToNotesCommand());
+        recipeCommandToRecipe = new RecipeCommandToRecipe(new CategoryCommandToCategory(),
+                new IngredientCommandToIngredient(new UnitOfMeasureCommandToUnitOfMeasure()), new NotesCommandToNotes());
+
+        recipe = RecipeFixtures.recipe(ingredients);
+        recipeCommand = recipeToRecipeCommand.convert(recipe);
+    }
+
+    @Benchmark
+    public RecipeCommand recipeToCommand() {
+        return recipeToRecipeCommand.convert(recipe);
+    }
+
+    @Benchmark
+    public Recipe commandToRecipe() {
+        return recipeCommandToRecipe.convert(recipeCommand);
+    }
+}
@@ -0,0 +1,58 @@
+package guru.springframework.migrations;
+
+import guru.springframework.images.ContentHash;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unboxing of legacy {@code Byte[]} images, as read back from Mongo, and hashing of the result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmbeddedImageBenchmark {
+
+    @Param({"10000", "250000", "1000000"})
+    int imageSize;
+
+    private List<Integer> legacyImage;
+    private byte[] image;
+
+    @Setup
+    public void setUp() {
+        image = new byte[imageSize];
+        new Random(42).nextBytes(image);
+
+        legacyImage = new ArrayList<>(imageSize);
+        for (byte b : image) {
+            legacyImage.add((int) b);
+        }
+    }
+
+    @Benchmark
+    public byte[] unboxLegacyImage() {
+        return EmbeddedImageMigration.toBytes(legacyImage);
+    }
+
+    @Benchmark
+    public String contentHash() {
+        return ContentHash.of(image);
+    }
+}
@@ -0,0 +1,83 @@
+package guru.springframework.search;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of {@link RecipeSearchIndex#search} for the first page of two and three word queries, sampled so the
+ * report includes percentiles. Recipes are 60 words drawn from a skewed 20 000 word vocabulary, so common words
+ * have long postings like they do in real recipe text.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = "-Xmx6g")
+public class RecipeSearchBenchmark {
+
+    private static final int VOCABULARY = 20_000;
+    private static final int WORDS_PER_RECIPE = 60;
+    private static final int QUERIES = 1024;
+
+    @Param({"100000", "1000000"})
+    public int recipes;
+
+    private RecipeSearchIndex index;
+    private List<List<String>> queries;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        index = new RecipeSearchIndex();
+        for (int i = 0; i < recipes; i++) {
+            List<String> tokens = new ArrayList<>(WORDS_PER_RECIPE);
+            for (int word = 0; word < WORDS_PER_RECIPE; word++) {
+                tokens.add(word(random));
+            }
+            index.update("recipe-" + i, 0L, tokens);
+        }
+
+        queries = new ArrayList<>(QUERIES);
+        for (int i = 0; i < QUERIES; i++) {
+            List<String> query = new ArrayList<>();
+            for (int word = 0; word < 2 + i % 2; word++) {
+                query.add(word(random));
+            }
+            queries.add(query);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class QueryCursor {
+        private int next;
+    }
+
+    @Benchmark
+    public SearchResult search(QueryCursor cursor) {
+        List<String> query = queries.get(cursor.next++ & (QUERIES - 1));
+        return index.search(query, 0, 20);
+    }
+
+    /**
+     * Word ranks roughly follow Zipf's law: cubing a uniform value favours low ranks.
+     */
+    private static String word(Random random) {
+        double uniform = random.nextDouble();
+        return "w" + (int) (uniform * uniform * uniform * VOCABULARY);
+    }
+}
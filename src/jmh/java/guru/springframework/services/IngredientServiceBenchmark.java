@@ -0,0 +1,107 @@
+package guru.springframework.services;
+
+import guru.springframework.benchmarks.RecipeFixtures;
+import guru.springframework.cache.ReferenceDataCache;
+import guru.springframework.cache.RenderedPageCache;
+import guru.springframework.commands.IngredientCommand;
+import guru.springframework.commands.UnitOfMeasureCommand;
+import guru.springframework.concurrency.OptimisticRetry;
+import guru.springframework.converters.IngredientCommandToIngredient;
+import guru.springframework.converters.IngredientToIngredientCommand;
+import guru.springframework.converters.UnitOfMeasureCommandToUnitOfMeasure;
+import guru.springframework.converters.UnitOfMeasureToUnitOfMeasureCommand;
+import guru.springframework.domain.Ingredient;
+import guru.springframework.domain.Recipe;
+import guru.springframework.domain.UnitOfMeasure;
+import guru.springframework.repositories.RecipeRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.unit.DataSize;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * {@link IngredientServiceImpl#saveIngredientCommand} updating the last ingredient of a recipe. The repository is a
+ * mock that replaces the ingredient in place and moves the recipe to the next version, as Mongo does; it is stub
+ * only, so it keeps no record of the calls. The search index and page cache are the real ones, so reindexing the
+ * recipe is measured with it. Each thread works on its own recipe.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IngredientServiceBenchmark {
+
+    @Param({"5", "50", "500"})
+    private int ingredients;
+
+    private IngredientService ingredientService;
+    private IngredientCommand command;
+
+    @Setup
+    public void setUp() {
+        Recipe recipe = RecipeFixtures.recipe(ingredients);
+        recipe.setVersion(0L);
+        RecipeRepository recipeRepository = mock(RecipeRepository.class, withSettings().stubOnly());
+        when(recipeRepository.findVersionById(recipe.getId())).thenReturn(Optional.of(recipe));
+        when(recipeRepository.findSearchableFieldsById(recipe.getId())).thenReturn(Optional.of(recipe));
+        when(recipeRepository.updateIngredient(any(), anyLong(), any())).thenAnswer(invocation -> {
+            Ingredient ingredient = invocation.getArgument(2);
+            recipe.getIngredients().removeIf(existing -> existing.getId().equals(ingredient.getId()));
+            recipe.getIngredients().add(ingredient);
+            recipe.setVersion(recipe.getVersion() + 1);
+            recipe.setLastModified(new Date());
+            return Optional.of(ingredient);
+        });
+
+        RecipeSearchServiceImpl recipeSearchService = new RecipeSearchServiceImpl(recipeRepository);
+        recipeSearchService.index(recipe);
+
+        List<UnitOfMeasure> uoms = recipe.getIngredients().stream().map(Ingredient::getUom).distinct()
+                .collect(Collectors.toList());
+        ReferenceDataCache<UnitOfMeasure> unitOfMeasureCache = new ReferenceDataCache<>("unitOfMeasure",
+                () -> uoms, UnitOfMeasure::getId, UnitOfMeasure::getDescription, 300);
+
+        ingredientService = new IngredientServiceImpl(recipeRepository,
+                new IngredientToIngredientCommand(new UnitOfMeasureToUnitOfMeasureCommand()),
+                new IngredientCommandToIngredient(new UnitOfMeasureCommandToUnitOfMeasure()),
+                unitOfMeasureCache, new OptimisticRetry(3, 0), recipeSearchService,
+                new RenderedPageCache(DataSize.ofMegabytes(1)));
+
+        UnitOfMeasureCommand uomCommand = new UnitOfMeasureCommand();
+        uomCommand.setId(uoms.get(0).getId());
+        command = new IngredientCommand();
+        command.setId("ingredient-" + (ingredients - 1));
+        command.setRecipeId(recipe.getId());
+        command.setDescription("updated ingredient");
+        command.setAmount(BigDecimal.ONE);
+        command.setUom(uomCommand);
+    }
+
+    @Benchmark
+    public IngredientCommand saveIngredientCommand() {
+        return ingredientService.saveIngredientCommand(command);
+    }
+}
@@ -1,275 +1,322 @@
 package guru.springframework.bootstrap;
 
-
-import guru.springframework.domain.*;
-import guru.springframework.repositories.CategoryRepository;
-import guru.springframework.repositories.RecipeRepository;
-import guru.springframework.repositories.UnitOfMeasureRepository;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springframework.cache.ReferenceDataCache;
+import guru.springframework.domain.Category;
+import guru.springframework.domain.Difficulty;
+import guru.springframework.domain.Ingredient;
+import guru.springframework.domain.Notes;
+import guru.springframework.domain.Recipe;
+import guru.springframework.domain.UnitOfMeasure;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.ApplicationListener;
-import org.springframework.context.annotation.Profile;
-import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
 
 /**
- * Created by jt on 6/13/17.
+ * Seeds an empty database with the categories, units of measure and recipes of a JSON resource. The resource is
+ * streamed, so only one batch of recipes is held at a time, and everything is written with bulk inserts.
+ * <p>
+ * A marker document is claimed before seeding starts, so of several nodes starting together on an empty database
+ * only the one inserting it seeds; the others see it and skip. While it exists startup only reads it. If seeding
+ * fails, whatever it inserted is removed again and then the marker, so the next start seeds an empty database. A
+ * database seeded before the marker existed already holds recipes, it is given the marker without being seeded again.
  */
 @Slf4j
 @Component
-public class RecipeBootstrap implements ApplicationListener<ContextRefreshedEvent> {
-
-    private final CategoryRepository categoryRepository;
-    private final RecipeRepository recipeRepository;
-    private final UnitOfMeasureRepository unitOfMeasureRepository;
-
-    public RecipeBootstrap(CategoryRepository categoryRepository, RecipeRepository recipeRepository, UnitOfMeasureRepository unitOfMeasureRepository) {
-        this.categoryRepository = categoryRepository;
-        this.recipeRepository = recipeRepository;
-        this.unitOfMeasureRepository = unitOfMeasureRepository;
+//before the listeners that read recipes once the application is ready, such as the search index
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RecipeBootstrap implements ApplicationListener<ApplicationReadyEvent> {
+
+    static final String MARKER_COLLECTION = "seedVersion";
+    static final String MARKER_ID = "recipes";
+    static final String SEEDING = "seeding";
+    static final String SEEDED = "seeded";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+
+    private final MongoOperations mongoOperations;
+    private final Resource seedResource;
+    private final int batchSize;
+    private final ReferenceDataCache<UnitOfMeasure> unitOfMeasureCache;
+    private final ReferenceDataCache<Category> categoryCache;
+
+    public RecipeBootstrap(MongoOperations mongoOperations,
+                           @Value("${recipe.bootstrap.seed-resource:classpath:seed/recipes.json}") Resource seedResource,
+                           @Value("${recipe.bootstrap.batch-size:500}") int batchSize,
+                           ReferenceDataCache<UnitOfMeasure> unitOfMeasureCache, ReferenceDataCache<Category> categoryCache) {
+        this.mongoOperations = mongoOperations;
+        this.seedResource = seedResource;
+        this.batchSize = batchSize;
+        this.unitOfMeasureCache = unitOfMeasureCache;
+        this.categoryCache = categoryCache;
     }
 
     @Override
-    @Transactional
-    public void onApplicationEvent(ContextRefreshedEvent event) {
-        loadCategories();
-        loadUom();
-        recipeRepository.saveAll(getRecipes());
-        log.debug("Loading Bootstrap Data");
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        seed();
     }
 
-    private void loadCategories() {
-        Category cat1 = new Category();
-        cat1.setDescription("American");
-        categoryRepository.save(cat1);
+    /**
+     * @return {@code false} if the database was seeded already
+     */
+    public boolean seed() {
+        Document marker = mongoOperations.findById(MARKER_ID, Document.class, MARKER_COLLECTION);
+        if (marker != null) {
+            log.debug("Seed data version " + marker.get("version") + " " + marker.get("state", SEEDED) + " already");
+            return false;
+        }
+        if (mongoOperations.exists(new Query(), Recipe.class)) {
+            log.info("Recipes exist already, recording them as seeded");
+            claimMarker(SEEDED);
+            return false;
+        }
+        if (!claimMarker(SEEDING)) {
+            log.info("Another node is seeding the database");
+            return false;
+        }
 
-        Category cat2 = new Category();
-        cat2.setDescription("Italian");
-        categoryRepository.save(cat2);
+        long started = System.nanoTime();
+        SeedCounts counts = new SeedCounts();
+        try (InputStream inputStream = seedResource.getInputStream();
+             JsonParser parser = OBJECT_MAPPER.getFactory().createParser(inputStream)) {
+            load(parser, counts);
+        } catch (IOException e) {
+            UncheckedIOException failure = new UncheckedIOException("Reading seed data from " + seedResource + " failed", e);
+            rollBack(counts, failure);
+            throw failure;
+        } catch (RuntimeException e) {
+            rollBack(counts, e);
+            throw e;
+        }
+        mongoOperations.updateFirst(query(where("_id").is(MARKER_ID)),
+                Update.update("state", SEEDED).set("version", counts.version).set("seededAt", new Date()),
+                MARKER_COLLECTION);
 
-        Category cat3 = new Category();
-        cat3.setDescription("Mexican");
-        categoryRepository.save(cat3);
+        //bulk inserts bypass the save events the caches listen to
+        unitOfMeasureCache.invalidate();
+        categoryCache.invalidate();
 
-        Category cat4 = new Category();
-        cat4.setDescription("Fast Food");
-        categoryRepository.save(cat4);
+        log.info("Seeded " + counts.categories + " categories, " + counts.unitsOfMeasure + " units of measure and "
+                + counts.recipes + " recipes in " + (System.nanoTime() - started) / 1_000_000 + " ms");
+        return true;
     }
 
-    private void loadUom() {
-        UnitOfMeasure uom1 = new UnitOfMeasure();
-        uom1.setDescription("Teaspoon");
-        unitOfMeasureRepository.save(uom1);
-
-        UnitOfMeasure uom2 = new UnitOfMeasure();
-        uom2.setDescription("Tablespoon");
-        unitOfMeasureRepository.save(uom2);
-
-        UnitOfMeasure uom3 = new UnitOfMeasure();
-        uom3.setDescription("Cup");
-        unitOfMeasureRepository.save(uom3);
-
-        UnitOfMeasure uom4 = new UnitOfMeasure();
-        uom4.setDescription("Pinch");
-        unitOfMeasureRepository.save(uom4);
-
-        UnitOfMeasure uom5 = new UnitOfMeasure();
-        uom5.setDescription("Ounce");
-        unitOfMeasureRepository.save(uom5);
-
-        UnitOfMeasure uom6 = new UnitOfMeasure();
-        uom6.setDescription("Each");
-        unitOfMeasureRepository.save(uom6);
-
-        UnitOfMeasure uom7 = new UnitOfMeasure();
-        uom7.setDescription("Pint");
-        unitOfMeasureRepository.save(uom7);
-
-        UnitOfMeasure uom8 = new UnitOfMeasure();
-        uom8.setDescription("Dash");
-        unitOfMeasureRepository.save(uom8);
+    /**
+     * Reads the seed document field by field. Categories and units of measure have to come before the recipes
+     * referring to them.
+     */
+    private void load(JsonParser parser, SeedCounts counts) throws IOException {
+        Map<String, Category> categories = new HashMap<>();
+        Map<String, UnitOfMeasure> unitsOfMeasure = new HashMap<>();
+
+        expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "version":
+                    counts.version = parser.getIntValue();
+                    break;
+                case "categories":
+                    counts.categories = insertAll(readDescriptions(parser, value), Category.class, description -> {
+                        Category category = new Category();
+                        category.setId(new ObjectId().toHexString());
+                        category.setDescription(description);
+                        categories.put(description, category);
+                        return category;
+                    }, Category::getId, counts);
+                    break;
+                case "unitsOfMeasure":
+                    counts.unitsOfMeasure = insertAll(readDescriptions(parser, value), UnitOfMeasure.class, description -> {
+                        UnitOfMeasure unitOfMeasure = new UnitOfMeasure();
+                        unitOfMeasure.setId(new ObjectId().toHexString());
+                        unitOfMeasure.setDescription(description);
+                        unitsOfMeasure.put(description, unitOfMeasure);
+                        return unitOfMeasure;
+                    }, UnitOfMeasure::getId, counts);
+                    break;
+                case "recipes":
+                    counts.recipes = insertRecipes(parser, value, categories, unitsOfMeasure, counts);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
     }
 
-    private List<Recipe> getRecipes() {
-
-        List<Recipe> recipes = new ArrayList<>(2);
-
-        //get UOMs
-        Optional<UnitOfMeasure> eachUomOptional = unitOfMeasureRepository.findByDescription("Each");
-
-        if (!eachUomOptional.isPresent()) {
-            throw new RuntimeException("Expected UOM Not Found");
+    private int insertRecipes(JsonParser parser, JsonToken value, Map<String, Category> categories,
+                              Map<String, UnitOfMeasure> unitsOfMeasure, SeedCounts counts) throws IOException {
+        expect(parser, value, JsonToken.START_ARRAY);
+        int inserted = 0;
+        List<Recipe> batch = new ArrayList<>(batchSize);
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            batch.add(toRecipe(OBJECT_MAPPER.readTree(parser), categories, unitsOfMeasure));
+            if (batch.size() == batchSize) {
+                inserted += insert(batch, Recipe.class, Recipe::getId, counts);
+                batch.clear();
+            }
         }
+        return inserted + insert(batch, Recipe.class, Recipe::getId, counts);
+    }
 
-        Optional<UnitOfMeasure> tableSpoonUomOptional = unitOfMeasureRepository.findByDescription("Tablespoon");
-
-        if (!tableSpoonUomOptional.isPresent()) {
-            throw new RuntimeException("Expected UOM Not Found");
+    private static Recipe toRecipe(JsonNode node, Map<String, Category> categories, Map<String, UnitOfMeasure> unitsOfMeasure) {
+        Recipe recipe = new Recipe();
+        //known before inserting, so a failed seeding can remove it again
+        recipe.setId(new ObjectId().toHexString());
+        //bulk inserts do not initialise the version like a save does
+        recipe.setVersion(0L);
+        recipe.setLastModified(new Date());
+        recipe.setDescription(node.path("description").textValue());
+        recipe.setPrepTime(integerValue(node.path("prepTime")));
+        recipe.setCookTime(integerValue(node.path("cookTime")));
+        recipe.setServings(integerValue(node.path("servings")));
+        recipe.setSource(node.path("source").textValue());
+        recipe.setUrl(node.path("url").textValue());
+        recipe.setDirections(node.path("directions").textValue());
+        if (node.hasNonNull("difficulty")) {
+            recipe.setDifficulty(Difficulty.valueOf(node.get("difficulty").textValue()));
         }
-
-        Optional<UnitOfMeasure> teaSpoonUomOptional = unitOfMeasureRepository.findByDescription("Teaspoon");
-
-        if (!teaSpoonUomOptional.isPresent()) {
-            throw new RuntimeException("Expected UOM Not Found");
+        if (node.hasNonNull("notes")) {
+            Notes notes = new Notes();
+            notes.setRecipeNotes(node.get("notes").textValue());
+            recipe.setNotes(notes);
         }
 
-        Optional<UnitOfMeasure> dashUomOptional = unitOfMeasureRepository.findByDescription("Dash");
-
-        if (!dashUomOptional.isPresent()) {
-            throw new RuntimeException("Expected UOM Not Found");
+        for (JsonNode category : node.path("categories")) {
+            recipe.getCategories().add(reference(categories, category.textValue(), "category", recipe));
         }
-
-        Optional<UnitOfMeasure> pintUomOptional = unitOfMeasureRepository.findByDescription("Pint");
-
-        if (!pintUomOptional.isPresent()) {
-            throw new RuntimeException("Expected UOM Not Found");
+        for (JsonNode ingredient : node.path("ingredients")) {
+            recipe.addIngredient(new Ingredient(ingredient.path("description").textValue(),
+                    ingredient.path("amount").decimalValue(),
+                    reference(unitsOfMeasure, ingredient.path("unitOfMeasure").textValue(), "unit of measure", recipe)));
         }
+        return recipe;
+    }
 
-        Optional<UnitOfMeasure> cupsUomOptional = unitOfMeasureRepository.findByDescription("Cup");
-
-        if (!cupsUomOptional.isPresent()) {
-            throw new RuntimeException("Expected UOM Not Found");
+    private static <T> T reference(Map<String, T> seeded, String description, String type, Recipe recipe) {
+        T reference = seeded.get(description);
+        if (reference == null) {
+            throw new IllegalStateException("Seed recipe " + recipe.getDescription() + " refers to unknown " + type
+                    + ": " + description);
         }
+        return reference;
+    }
 
-        //get optionals
-        UnitOfMeasure eachUom = eachUomOptional.get();
-        UnitOfMeasure tableSpoonUom = tableSpoonUomOptional.get();
-        UnitOfMeasure teapoonUom = tableSpoonUomOptional.get();
-        UnitOfMeasure dashUom = dashUomOptional.get();
-        UnitOfMeasure pintUom = dashUomOptional.get();
-        UnitOfMeasure cupsUom = cupsUomOptional.get();
-
-        //get Categories
-        Optional<Category> americanCategoryOptional = categoryRepository.findByDescription("American");
+    private static Integer integerValue(JsonNode node) {
+        return node.isNumber() ? node.intValue() : null;
+    }
 
-        if (!americanCategoryOptional.isPresent()) {
-            throw new RuntimeException("Expected Category Not Found");
+    private static List<String> readDescriptions(JsonParser parser, JsonToken value) throws IOException {
+        expect(parser, value, JsonToken.START_ARRAY);
+        List<String> descriptions = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.VALUE_STRING) {
+            descriptions.add(parser.getText());
         }
+        return descriptions;
+    }
 
-        Optional<Category> mexicanCategoryOptional = categoryRepository.findByDescription("Mexican");
+    private <T> int insertAll(List<String> descriptions, Class<T> type, Function<String, T> factory,
+                              Function<T, String> id, SeedCounts counts) {
+        List<T> documents = new ArrayList<>(descriptions.size());
+        descriptions.forEach(description -> documents.add(factory.apply(description)));
+        return insert(documents, type, id, counts);
+    }
 
-        if (!mexicanCategoryOptional.isPresent()) {
-            throw new RuntimeException("Expected Category Not Found");
+    private <T> int insert(List<T> documents, Class<T> type, Function<T, String> id, SeedCounts counts) {
+        if (documents.isEmpty()) {
+            return 0;
         }
+        //recorded first, an unordered bulk insert may write some of the documents and still fail
+        List<String> ids = counts.insertedIds.computeIfAbsent(type, key -> new ArrayList<>());
+        documents.forEach(document -> ids.add(id.apply(document)));
+        return mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED, type)
+                .insert(documents)
+                .execute()
+                .getInsertedCount();
+    }
 
-        Category americanCategory = americanCategoryOptional.get();
-        Category mexicanCategory = mexicanCategoryOptional.get();
-
-        //Yummy Guac
-        Recipe guacRecipe = new Recipe();
-        guacRecipe.setDescription("Perfect Guacamole");
-        guacRecipe.setPrepTime(10);
-        guacRecipe.setCookTime(0);
-        guacRecipe.setDifficulty(Difficulty.EASY);
-        guacRecipe.setDirections("1 Cut avocado, remove flesh: Cut the avocados in half. Remove seed. Score the inside of the avocado with a blunt knife and scoop out the flesh with a spoon" +
-                "\n" +
-                "2 Mash with a fork: Using a fork, roughly mash the avocado. (Don't overdo it! The guacamole should be a little chunky.)" +
-                "\n" +
-                "3 Add salt, lime juice, and the rest: Sprinkle with salt and lime (or lemon) juice. The acid in the lime juice will provide some balance to the richness of the avocado and will help delay the avocados from turning brown.\n" +
-                "Add the chopped onion, cilantro, black pepper, and chiles. Chili peppers vary individually in their hotness. So, start with a half of one chili pepper and add to the guacamole to your desired degree of hotness.\n" +
-                "Remember that much of this is done to taste because of the variability in the fresh ingredients. Start with this recipe and adjust to your taste.\n" +
-                "4 Cover with plastic and chill to store: Place plastic wrap on the surface of the guacamole cover it and to prevent air reaching it. (The oxygen in the air causes oxidation which will turn the guacamole brown.) Refrigerate until ready to serve.\n" +
-                "Chilling tomatoes hurts their flavor, so if you want to add chopped tomato to your guacamole, add it just before serving.\n" +
-                "\n" +
-                "\n" +
-                "Read more: http://www.simplyrecipes.com/recipes/perfect_guacamole/#ixzz4jvpiV9Sd");
-
-        Notes guacNotes = new Notes();
-        guacNotes.setRecipeNotes("For a very quick guacamole just take a 1/4 cup of salsa and mix it in with your mashed avocados.\n" +
-                "Feel free to experiment! One classic Mexican guacamole has pomegranate seeds and chunks of peaches in it (a Diana Kennedy favorite). Try guacamole with added pineapple, mango, or strawberries.\n" +
-                "The simplest version of guacamole is just mashed avocados with salt. Don't let the lack of availability of other ingredients stop you from making guacamole.\n" +
-                "To extend a limited supply of avocados, add either sour cream or cottage cheese to your guacamole dip. Purists may be horrified, but so what? It tastes great.\n" +
-                "\n" +
-                "\n" +
-                "Read more: http://www.simplyrecipes.com/recipes/perfect_guacamole/#ixzz4jvoun5ws");
-
-        guacRecipe.setNotes(guacNotes);
-
-        //very redundent - could add helper method, and make this simpler
-        guacRecipe.addIngredient(new Ingredient("ripe avocados", new BigDecimal(2), eachUom));
-        guacRecipe.addIngredient(new Ingredient("Kosher salt", new BigDecimal(".5"), teapoonUom));
-        guacRecipe.addIngredient(new Ingredient("fresh lime juice or lemon juice", new BigDecimal(2), tableSpoonUom));
-        guacRecipe.addIngredient(new Ingredient("minced red onion or thinly sliced green onion", new BigDecimal(2), tableSpoonUom));
-        guacRecipe.addIngredient(new Ingredient("serrano chiles, stems and seeds removed, minced", new BigDecimal(2), eachUom));
-        guacRecipe.addIngredient(new Ingredient("Cilantro", new BigDecimal(2), tableSpoonUom));
-        guacRecipe.addIngredient(new Ingredient("freshly grated black pepper", new BigDecimal(2), dashUom));
-        guacRecipe.addIngredient(new Ingredient("ripe tomato, seeds and pulp removed, chopped", new BigDecimal(".5"), eachUom));
-
-        guacRecipe.getCategories().add(americanCategory);
-        guacRecipe.getCategories().add(mexicanCategory);
-
-        guacRecipe.setUrl("http://www.simplyrecipes.com/recipes/perfect_guacamole/");
-        guacRecipe.setServings(4);
-        guacRecipe.setSource("Simply Recipes");
-
-        //add to return list
-        recipes.add(guacRecipe);
-
-        //Yummy Tacos
-        Recipe tacosRecipe = new Recipe();
-        tacosRecipe.setDescription("Spicy Grilled Chicken Taco");
-        tacosRecipe.setCookTime(9);
-        tacosRecipe.setPrepTime(20);
-        tacosRecipe.setDifficulty(Difficulty.MODERATE);
-
-        tacosRecipe.setDirections("1 Prepare a gas or charcoal grill for medium-high, direct heat.\n" +
-                "2 Make the marinade and coat the chicken: In a large bowl, stir together the chili powder, oregano, cumin, sugar, salt, garlic and orange zest. Stir in the orange juice and olive oil to make a loose paste. Add the chicken to the bowl and toss to coat all over.\n" +
-                "Set aside to marinate while the grill heats and you prepare the rest of the toppings.\n" +
-                "\n" +
-                "\n" +
-                "3 Grill the chicken: Grill the chicken for 3 to 4 minutes per side, or until a thermometer inserted into the thickest part of the meat registers 165F. Transfer to a plate and rest for 5 minutes.\n" +
-                "4 Warm the tortillas: Place each tortilla on the grill or on a hot, dry skillet over medium-high heat. As soon as you see pockets of the air start to puff up in the tortilla, turn it with tongs and heat for a few seconds on the other side.\n" +
-                "Wrap warmed tortillas in a tea towel to keep them warm until serving.\n" +
-                "5 Assemble the tacos: Slice the chicken into strips. On each tortilla, place a small handful of arugula. Top with chicken slices, sliced avocado, radishes, tomatoes, and onion slices. Drizzle with the thinned sour cream. Serve with lime wedges.\n" +
-                "\n" +
-                "\n" +
-                "Read more: http://www.simplyrecipes.com/recipes/spicy_grilled_chicken_tacos/#ixzz4jvtrAnNm");
-
-        Notes tacoNotes = new Notes();
-        tacoNotes.setRecipeNotes("We have a family motto and it is this: Everything goes better in a tortilla.\n" +
-                "Any and every kind of leftover can go inside a warm tortilla, usually with a healthy dose of pickled jalapenos. I can always sniff out a late-night snacker when the aroma of tortillas heating in a hot pan on the stove comes wafting through the house.\n" +
-                "Today’s tacos are more purposeful – a deliberate meal instead of a secretive midnight snack!\n" +
-                "First, I marinate the chicken briefly in a spicy paste of ancho chile powder, oregano, cumin, and sweet orange juice while the grill is heating. You can also use this time to prepare the taco toppings.\n" +
-                "Grill the chicken, then let it rest while you warm the tortillas. Now you are ready to assemble the tacos and dig in. The whole meal comes together in about 30 minutes!\n" +
-                "\n" +
-                "\n" +
-                "Read more: http://www.simplyrecipes.com/recipes/spicy_grilled_chicken_tacos/#ixzz4jvu7Q0MJ");
+    /**
+     * @return {@code false} if another node inserted the marker first
+     */
+    private boolean claimMarker(String state) {
+        try {
+            mongoOperations.insert(new Document("_id", MARKER_ID).append("state", state).append("version", 0)
+                    .append("seededAt", new Date()), MARKER_COLLECTION);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
 
-        tacosRecipe.setNotes(tacoNotes);
+    /**
+     * Removes what a failed seeding inserted and then the marker. If the documents cannot be removed the marker is
+     * kept, so a partly seeded database is neither seeded a second time nor taken for a seeded one.
+     */
+    private void rollBack(SeedCounts counts, Exception failure) {
+        try {
+            counts.insertedIds.forEach((type, ids) -> {
+                for (int from = 0; from < ids.size(); from += batchSize) {
+                    List<String> batch = ids.subList(from, Math.min(ids.size(), from + batchSize));
+                    mongoOperations.remove(query(where("_id").in(batch)), type);
+                }
+            });
+        } catch (RuntimeException e) {
+            failure.addSuppressed(e);
+            log.error("Removing the partly seeded data failed, remove it and the " + MARKER_COLLECTION
+                    + " marker by hand before the next start", e);
+            return;
+        }
+        removeMarker();
+    }
 
-        tacosRecipe.addIngredient(new Ingredient("Ancho Chili Powder", new BigDecimal(2), tableSpoonUom));
-        tacosRecipe.addIngredient(new Ingredient("Dried Oregano", new BigDecimal(1), teapoonUom));
-        tacosRecipe.addIngredient(new Ingredient("Dried Cumin", new BigDecimal(1), teapoonUom));
-        tacosRecipe.addIngredient(new Ingredient("Sugar", new BigDecimal(1), teapoonUom));
-        tacosRecipe.addIngredient(new Ingredient("Salt", new BigDecimal(".5"), teapoonUom));
-        tacosRecipe.addIngredient(new Ingredient("Clove of Garlic, Choppedr", new BigDecimal(1), eachUom));
-        tacosRecipe.addIngredient(new Ingredient("finely grated orange zestr", new BigDecimal(1), tableSpoonUom));
-        tacosRecipe.addIngredient(new Ingredient("fresh-squeezed orange juice", new BigDecimal(3), tableSpoonUom));
-        tacosRecipe.addIngredient(new Ingredient("Olive Oil", new BigDecimal(2), tableSpoonUom));
-        tacosRecipe.addIngredient(new Ingredient("boneless chicken thighs", new BigDecimal(4), tableSpoonUom));
-        tacosRecipe.addIngredient(new Ingredient("small corn tortillasr", new BigDecimal(8), eachUom));
-        tacosRecipe.addIngredient(new Ingredient("packed baby arugula", new BigDecimal(3), cupsUom));
-        tacosRecipe.addIngredient(new Ingredient("medium ripe avocados, slic", new BigDecimal(2), eachUom));
-        tacosRecipe.addIngredient(new Ingredient("radishes, thinly sliced", new BigDecimal(4), eachUom));
-        tacosRecipe.addIngredient(new Ingredient("cherry tomatoes, halved", new BigDecimal(".5"), pintUom));
-        tacosRecipe.addIngredient(new Ingredient("red onion, thinly sliced", new BigDecimal(".25"), eachUom));
-        tacosRecipe.addIngredient(new Ingredient("Roughly chopped cilantro", new BigDecimal(4), eachUom));
-        tacosRecipe.addIngredient(new Ingredient("cup sour cream thinned with 1/4 cup milk", new BigDecimal(4), cupsUom));
-        tacosRecipe.addIngredient(new Ingredient("lime, cut into wedges", new BigDecimal(4), eachUom));
+    private void removeMarker() {
+        mongoOperations.remove(query(where("_id").is(MARKER_ID)), MARKER_COLLECTION);
+    }
 
-        tacosRecipe.getCategories().add(americanCategory);
-        tacosRecipe.getCategories().add(mexicanCategory);
+    private static void expect(JsonParser parser, JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Expected " + expected + " but found " + actual + " at " + parser.getCurrentLocation());
+        }
+    }
 
-        tacosRecipe.setUrl("http://www.simplyrecipes.com/recipes/spicy_grilled_chicken_tacos/");
-        tacosRecipe.setServings(4);
-        tacosRecipe.setSource("Simply Recipes");
+    private static final class SeedCounts {
 
-        recipes.add(tacosRecipe);
-        return recipes;
+        private int version;
+        private int categories;
+        private int unitsOfMeasure;
+        private int recipes;
+        //by type, in insertion order
+        private final Map<Class<?>, List<String>> insertedIds = new LinkedHashMap<>();
     }
 }
@@ -0,0 +1,148 @@
+package guru.springframework.cache;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * In-process cache for small, rarely changing collections such as units of measure. Readers always see a
+ * complete immutable snapshot indexed by id and by description, without taking a lock. A snapshot is replaced
+ * as a whole when it has been invalidated by a write or is older than the TTL.
+ * <p>
+ * Cached entities are shared between all callers and must be treated as read-only.
+ */
+@Slf4j
+public class ReferenceDataCache<T> {
+
+    private final String name;
+    private final Supplier<? extends Iterable<T>> loader;
+    private final Function<T, String> idFunction;
+    private final Function<T, String> descriptionFunction;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+
+    private final AtomicReference<Snapshot<T>> snapshot = new AtomicReference<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public ReferenceDataCache(String name, Supplier<? extends Iterable<T>> loader, Function<T, String> idFunction,
+                              Function<T, String> descriptionFunction, long ttlSeconds) {
+        this(name, loader, idFunction, descriptionFunction, ttlSeconds, System::nanoTime);
+    }
+
+    ReferenceDataCache(String name, Supplier<? extends Iterable<T>> loader, Function<T, String> idFunction,
+                       Function<T, String> descriptionFunction, long ttlSeconds, LongSupplier nanoClock) {
+        this.name = name;
+        this.loader = loader;
+        this.idFunction = idFunction;
+        this.descriptionFunction = descriptionFunction;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.nanoClock = nanoClock;
+    }
+
+    public Optional<T> findById(String id) {
+        return Optional.ofNullable(current().byId.get(id));
+    }
+
+    public Optional<T> findByDescription(String description) {
+        return Optional.ofNullable(current().byDescription.get(description));
+    }
+
+    /**
+     * @return every cached entity, in the order the loader returned them; the list is unmodifiable
+     */
+    public List<T> findAll() {
+        return current().values;
+    }
+
+    /**
+     * Marks the current snapshot stale; the next read loads a fresh one. A load already in flight when this is
+     * called is not trusted either.
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    private Snapshot<T> current() {
+        Snapshot<T> current = snapshot.get();
+        if (isValid(current)) {
+            hits.increment();
+            return current;
+        }
+        misses.increment();
+        return reload();
+    }
+
+    private synchronized Snapshot<T> reload() {
+        //another thread may have reloaded while this one was waiting
+        Snapshot<T> current = snapshot.get();
+        if (isValid(current)) {
+            return current;
+        }
+
+        long loadGeneration = generation.get();
+        Snapshot<T> loaded = new Snapshot<>(loader.get(), idFunction, descriptionFunction, loadGeneration, nanoClock.getAsLong());
+        snapshot.set(loaded);
+        log.debug("Loaded " + loaded.values.size() + " entries into the " + name + " cache");
+        return loaded;
+    }
+
+    private boolean isValid(Snapshot<T> current) {
+        return current != null
+                && current.generation == generation.get()
+                && nanoClock.getAsLong() - current.loadedAt < ttlNanos;
+    }
+
+    private static final class Snapshot<T> {
+
+        private final Map<String, T> byId;
+        private final Map<String, T> byDescription;
+        private final List<T> values;
+        private final long generation;
+        private final long loadedAt;
+
+        Snapshot(Iterable<T> entities, Function<T, String> idFunction, Function<T, String> descriptionFunction,
+                 long generation, long loadedAt) {
+            List<T> values = new ArrayList<>();
+            entities.forEach(values::add);
+
+            Map<String, T> byId = new HashMap<>((int) (values.size() / 0.75f) + 1);
+            Map<String, T> byDescription = new HashMap<>((int) (values.size() / 0.75f) + 1);
+            for (T value : values) {
+                byId.put(idFunction.apply(value), value);
+                byDescription.putIfAbsent(descriptionFunction.apply(value), value);
+            }
+
+            this.byId = Collections.unmodifiableMap(byId);
+            this.byDescription = Collections.unmodifiableMap(byDescription);
+            this.values = Collections.unmodifiableList(values);
+            this.generation = generation;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
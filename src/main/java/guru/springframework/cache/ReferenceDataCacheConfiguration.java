@@ -0,0 +1,31 @@
+package guru.springframework.cache;
+
+import guru.springframework.domain.Category;
+import guru.springframework.domain.UnitOfMeasure;
+import guru.springframework.repositories.CategoryRepository;
+import guru.springframework.repositories.UnitOfMeasureRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ReferenceDataCacheConfiguration {
+
+    private final long ttlSeconds;
+
+    public ReferenceDataCacheConfiguration(@Value("${recipe.reference-data.ttl-seconds:300}") long ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    @Bean
+    public ReferenceDataCache<UnitOfMeasure> unitOfMeasureCache(UnitOfMeasureRepository unitOfMeasureRepository) {
+        return new ReferenceDataCache<>("unitOfMeasure", unitOfMeasureRepository::findAll,
+                UnitOfMeasure::getId, UnitOfMeasure::getDescription, ttlSeconds);
+    }
+
+    @Bean
+    public ReferenceDataCache<Category> categoryCache(CategoryRepository categoryRepository) {
+        return new ReferenceDataCache<>("category", categoryRepository::findAll,
+                Category::getId, Category::getDescription, ttlSeconds);
+    }
+}
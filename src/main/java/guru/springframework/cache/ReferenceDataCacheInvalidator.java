@@ -0,0 +1,46 @@
+package guru.springframework.cache;
+
+import guru.springframework.domain.Category;
+import guru.springframework.domain.UnitOfMeasure;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * Invalidates the reference data caches whenever a unit of measure or category is saved or deleted through
+ * Spring Data.
+ */
+@Component
+public class ReferenceDataCacheInvalidator extends AbstractMongoEventListener<Object> {
+
+    private final ReferenceDataCache<UnitOfMeasure> unitOfMeasureCache;
+    private final ReferenceDataCache<Category> categoryCache;
+
+    public ReferenceDataCacheInvalidator(ReferenceDataCache<UnitOfMeasure> unitOfMeasureCache,
+                                         ReferenceDataCache<Category> categoryCache) {
+        this.unitOfMeasureCache = unitOfMeasureCache;
+        this.categoryCache = categoryCache;
+    }
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<Object> event) {
+        invalidate(event.getSource().getClass());
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<Object> event) {
+        invalidate(event.getType());
+    }
+
+    private void invalidate(Class<?> type) {
+        if (type == null) {
+            return;
+        }
+        if (UnitOfMeasure.class.isAssignableFrom(type)) {
+            unitOfMeasureCache.invalidate();
+        } else if (Category.class.isAssignableFrom(type)) {
+            categoryCache.invalidate();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package guru.springframework.cache;
+
+/**
+ * A page as it was sent to the browser, encoded with the content type's charset.
+ */
+public class RenderedPage {
+
+    private final String contentType;
+    private final byte[] content;
+
+    public RenderedPage(String contentType, byte[] content) {
+        this.contentType = contentType;
+        this.content = content;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return the cached bytes themselves, callers must not modify them
+     */
+    public byte[] getContent() {
+        return content;
+    }
+}
@@ -0,0 +1,148 @@
+package guru.springframework.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Holds the rendered pages of recipes, such as the recipe page and its ingredient list, keyed by recipe id and
+ * version. A page is only served for the version it was rendered from, so pages of recipes changed elsewhere are
+ * never served; the services invalidate a recipe's pages when they change it to free them right away.
+ * <p>
+ * Recipes are evicted least recently used first once the pages exceed {@code recipe.page-cache.max-size}. A size
+ * of 0 disables the cache.
+ */
+@Component
+public class RenderedPageCache {
+
+    //approximate heap taken by the map entry, key and array header of a page
+    static final int PAGE_OVERHEAD = 128;
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, RecipePages> recipes = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public RenderedPageCache(@Value("${recipe.page-cache.max-size:32MB}") DataSize maxSize) {
+        this.maxBytes = maxSize.toBytes();
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    public Optional<RenderedPage> get(String view, String recipeId, long version) {
+        RenderedPage page = null;
+        synchronized (this) {
+            RecipePages pages = recipes.get(recipeId);
+            if (pages != null && pages.version == version) {
+                page = pages.byView.get(view);
+            }
+        }
+        (page != null ? hits : misses).increment();
+        return Optional.ofNullable(page);
+    }
+
+    public synchronized void put(String view, String recipeId, long version, RenderedPage page) {
+        long size = size(page);
+        if (size > maxBytes) {
+            return;
+        }
+
+        RecipePages pages = recipes.get(recipeId);
+        if (pages != null && pages.version != version) {
+            //a page of an older version never becomes current again; one of a newer version was rendered by a
+            //request that started after this one and is kept
+            if (pages.version > version) {
+                return;
+            }
+            remove(recipeId);
+            pages = null;
+        }
+        if (pages == null) {
+            pages = new RecipePages(version);
+            recipes.put(recipeId, pages);
+        }
+
+        RenderedPage previous = pages.byView.put(view, page);
+        bytes += size - (previous != null ? size(previous) : 0);
+        evict();
+    }
+
+    /**
+     * Drops every page of a recipe.
+     */
+    public synchronized void invalidate(String recipeId) {
+        remove(recipeId);
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public double getHitRatio() {
+        long hitCount = getHitCount();
+        long total = hitCount + getMissCount();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the approximate heap taken by the cached pages
+     */
+    public synchronized long getSize() {
+        return bytes;
+    }
+
+    public synchronized int getPageCount() {
+        return recipes.values().stream().mapToInt(pages -> pages.byView.size()).sum();
+    }
+
+    private void remove(String recipeId) {
+        RecipePages pages = recipes.remove(recipeId);
+        if (pages != null) {
+            pages.byView.values().forEach(page -> bytes -= size(page));
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, RecipePages>> eldest = recipes.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            RecipePages pages = eldest.next().getValue();
+            eldest.remove();
+            pages.byView.values().forEach(page -> bytes -= size(page));
+            evictions.add(pages.byView.size());
+        }
+    }
+
+    private static long size(RenderedPage page) {
+        return page.getContent().length + PAGE_OVERHEAD;
+    }
+
+    private static final class RecipePages {
+
+        private final long version;
+        private final Map<String, RenderedPage> byView = new HashMap<>(4);
+
+        RecipePages(long version) {
+            this.version = version;
+        }
+    }
+}
@@ -18,6 +18,7 @@ import java.util.List;
 @NoArgsConstructor
 public class RecipeCommand {
     private String id;
+    private Long version;
 
     @NotBlank
     @Size(min = 3, max = 255)
@@ -41,7 +42,6 @@ public class RecipeCommand {
 
     @NotBlank
     private String directions;
-    private Byte[] image;
     private List<IngredientCommand> ingredients = new ArrayList<>();
     private Difficulty difficulty;
     private NotesCommand notes;
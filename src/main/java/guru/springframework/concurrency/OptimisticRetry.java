@@ -0,0 +1,104 @@
+package guru.springframework.concurrency;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Re-runs an optimistic read-modify-write when it loses a compare-and-swap. Only use it for operations that are
+ * safe to apply again on top of somebody else's change; each attempt must read the version it writes against.
+ * <p>
+ * Attempts are bounded and spaced by an exponential backoff with jitter. Conflicts, retries and operations that
+ * gave up are counted per operation name, to show where edits contend.
+ */
+@Slf4j
+@Component
+public class OptimisticRetry {
+
+    private final int maxAttempts;
+    private final long backoffMillis;
+
+    private final Map<String, LongAdder> conflicts = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> retries = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> exhausted = new ConcurrentHashMap<>();
+
+    public OptimisticRetry(@Value("${recipe.optimistic-retry.max-attempts:3}") int maxAttempts,
+                           @Value("${recipe.optimistic-retry.backoff-millis:20}") long backoffMillis) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMillis = backoffMillis;
+    }
+
+    public <T> T execute(String operation, Supplier<T> attempt) {
+        for (int attemptNumber = 1; ; attemptNumber++) {
+            try {
+                return attempt.get();
+            } catch (OptimisticLockingFailureException e) {
+                increment(conflicts, operation);
+                if (attemptNumber >= maxAttempts) {
+                    increment(exhausted, operation);
+                    log.warn("Giving up on " + operation + " after " + attemptNumber + " conflicting attempts");
+                    throw e;
+                }
+
+                increment(retries, operation);
+                log.debug("Conflict on " + operation + ", attempt " + attemptNumber + " of " + maxAttempts);
+                backoff(attemptNumber, e);
+            }
+        }
+    }
+
+    /**
+     * Counts a conflict on an operation that is not retried, such as a whole form being saved over a newer
+     * version.
+     */
+    public void recordConflict(String operation) {
+        increment(conflicts, operation);
+    }
+
+    public Map<String, Long> getConflictCounts() {
+        return snapshot(conflicts);
+    }
+
+    public Map<String, Long> getRetryCounts() {
+        return snapshot(retries);
+    }
+
+    public Map<String, Long> getExhaustedCounts() {
+        return snapshot(exhausted);
+    }
+
+    private void backoff(int attemptNumber, OptimisticLockingFailureException conflict) {
+        if (backoffMillis <= 0) {
+            return;
+        }
+
+        //exponential, with jitter so competing writers do not retry in lockstep
+        long delay = backoffMillis * (1L << Math.min(attemptNumber - 1, 10));
+        delay += ThreadLocalRandom.current().nextLong(backoffMillis);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw conflict;
+        }
+    }
+
+    private static void increment(Map<String, LongAdder> counters, String operation) {
+        counters.computeIfAbsent(operation, key -> new LongAdder()).increment();
+    }
+
+    private static Map<String, Long> snapshot(Map<String, LongAdder> counters) {
+        Map<String, Long> counts = new HashMap<>();
+        counters.forEach((operation, counter) -> counts.put(operation, counter.sum()));
+        return Collections.unmodifiableMap(counts);
+    }
+}
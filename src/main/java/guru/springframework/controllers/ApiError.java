@@ -0,0 +1,28 @@
+package guru.springframework.controllers;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * JSON body of an error answered by an API controller, with the fields of Spring Boot's default error response.
+ */
+@Getter
+public class ApiError {
+
+    private final int status;
+    private final String error;
+    private final String message;
+
+    public ApiError(HttpStatus status, String message) {
+        this.status = status.value();
+        this.error = status.getReasonPhrase();
+        this.message = message;
+    }
+
+    static ResponseEntity<ApiError> response(HttpStatus status, Exception ex) {
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON_UTF8)
+                .body(new ApiError(status, ex.getMessage()));
+    }
+}
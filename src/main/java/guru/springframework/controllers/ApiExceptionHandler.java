@@ -0,0 +1,47 @@
+package guru.springframework.controllers;
+
+import guru.springframework.exceptions.BadRequestException;
+import guru.springframework.exceptions.ConflictException;
+import guru.springframework.exceptions.PayloadTooLargeException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Answers errors of the API controllers with an {@link ApiError} as JSON instead of the error pages of
+ * {@link ControllerExceptionHandler}, which it takes precedence over.
+ */
+@Slf4j
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RestControllerAdvice(annotations = RestController.class)
+public class ApiExceptionHandler {
+
+    @ExceptionHandler({NumberFormatException.class, BadRequestException.class})
+    public ResponseEntity<ApiError> handleBadRequest(Exception ex) {
+        log.error("Handling bad request exception");
+        log.error(ex.getMessage());
+        return ApiError.response(HttpStatus.BAD_REQUEST, ex);
+    }
+
+    @ExceptionHandler({OptimisticLockingFailureException.class, ConflictException.class})
+    public ResponseEntity<ApiError> handleConflict(Exception ex) {
+        log.error("Handling conflict");
+        log.error(ex.getMessage());
+        return ApiError.response(HttpStatus.CONFLICT, ex);
+    }
+
+    @ExceptionHandler(PayloadTooLargeException.class)
+    public ResponseEntity<ApiError> handlePayloadTooLarge(Exception ex) {
+        log.error("Handling payload too large exception");
+        log.error(ex.getMessage());
+        return ApiError.response(HttpStatus.PAYLOAD_TOO_LARGE, ex);
+    }
+}
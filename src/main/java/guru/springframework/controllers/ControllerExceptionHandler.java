@@ -1,13 +1,19 @@
 package guru.springframework.controllers;
 
+import guru.springframework.exceptions.BadRequestException;
+import guru.springframework.exceptions.PayloadTooLargeException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.servlet.ModelAndView;
 
 @Slf4j
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @ControllerAdvice
 public class ControllerExceptionHandler {
 
@@ -23,4 +29,40 @@ public class ControllerExceptionHandler {
         return modelAndView;
 
     }
+
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler(BadRequestException.class)
+    public ModelAndView handleBadRequest(Exception ex) {
+        log.error("Handling bad request exception");
+        log.error(ex.getMessage());
+
+        ModelAndView modelAndView = new ModelAndView();
+        modelAndView.setViewName("400error");
+        modelAndView.addObject("exception", ex);
+        return modelAndView;
+    }
+
+    @ResponseStatus(HttpStatus.CONFLICT)
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ModelAndView handleConflict(Exception ex) {
+        log.error("Handling optimistic locking failure");
+        log.error(ex.getMessage());
+
+        ModelAndView modelAndView = new ModelAndView();
+        modelAndView.setViewName("409error");
+        modelAndView.addObject("exception", ex);
+        return modelAndView;
+    }
+
+    @ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+    @ExceptionHandler({PayloadTooLargeException.class, MaxUploadSizeExceededException.class})
+    public ModelAndView handlePayloadTooLarge(Exception ex) {
+        log.error("Handling payload too large exception");
+        log.error(ex.getMessage());
+
+        ModelAndView modelAndView = new ModelAndView();
+        modelAndView.setViewName("413error");
+        modelAndView.addObject("exception", ex);
+        return modelAndView;
+    }
 }
@@ -1,9 +1,19 @@
 package guru.springframework.controllers;
 
-import guru.springframework.commands.RecipeCommand;
+import guru.springframework.domain.ImageMetadata;
+import guru.springframework.exceptions.NotFoundException;
+import guru.springframework.images.ImageFileCache;
+import guru.springframework.images.ImageVariant;
+import guru.springframework.jfr.ImageRenderEvent;
 import guru.springframework.services.ImageService;
 import guru.springframework.services.RecipeService;
-import org.apache.tomcat.util.http.fileupload.IOUtils;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -12,19 +22,32 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.multipart.MultipartFile;
 
-import javax.servlet.http.HttpServletResponse;
-import java.io.ByteArrayInputStream;
+import javax.servlet.http.HttpServletRequest;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @Controller
 public class ImageController {
+
+    private static final long IMMUTABLE_MAX_AGE_DAYS = 365;
+
+    //request attributes of Tomcat's sendfile support, see its DefaultServlet
+    static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     private final RecipeService recipeService;
     private final ImageService imageService;
+    private final ImageFileCache imageFileCache;
 
-    public ImageController(RecipeService recipeService, ImageService imageService) {
+    public ImageController(RecipeService recipeService, ImageService imageService, ImageFileCache imageFileCache) {
         this.recipeService = recipeService;
         this.imageService = imageService;
+        this.imageFileCache = imageFileCache;
     }
 
     @GetMapping("/recipe/{id}/image")
@@ -39,19 +62,84 @@ public class ImageController {
         return "redirect:/recipe/" + id + "/show";
     }
 
+    /**
+     * Serves the recipe image, or one of its downscaled variants, with validators taken from its metadata.
+     * Conditional requests are answered with a 304 before any image content is read, and byte ranges are served
+     * as partial content. Links carrying the content hash as {@code v} can be cached indefinitely, since a new
+     * upload produces a new link; a variant that is not generated yet falls back to the original, uncached.
+     */
     @GetMapping("/recipe/{id}/recipeImage")
-    public void renderImageFromDb(@PathVariable String id, HttpServletResponse response) throws IOException {
-        RecipeCommand recipeCommand = recipeService.findCommandById(id);
-
-        if (recipeCommand.getImage() != null) {
-            byte[] bytes = new byte[recipeCommand.getImage().length];
-            int i = 0;
-            for (Byte b : recipeCommand.getImage()) {
-                bytes[i++] = b; //auto unboxing
-            }
-            response.setContentType("image/jpeg");
-            InputStream is = new ByteArrayInputStream(bytes);
-            IOUtils.copy(is, response.getOutputStream());
+    public ResponseEntity<Resource> renderImageFromDb(@PathVariable String id,
+                                                      @RequestParam(value = "size", defaultValue = "full") ImageVariant size,
+                                                      @RequestParam(value = "v", required = false) String version,
+                                                      HttpServletRequest request) throws IOException {
+        return sendfile(imageResponse(imageService, id, size, version), request, imageFileCache);
+    }
+
+    /**
+     * Hands an image served from the file cache to Tomcat, which sends it with {@code FileChannel.transferTo}
+     * after the request is handled, so the content never enters the heap. Conditional, range and HEAD requests
+     * and connectors without sendfile are answered by Spring as usual, and so is a file the cache no longer holds.
+     * The file is leased, so the cache does not delete it before Tomcat has opened it.
+     */
+    static ResponseEntity<Resource> sendfile(ResponseEntity<Resource> response, HttpServletRequest request,
+                                             ImageFileCache imageFileCache) throws IOException {
+        Resource body = response.getBody();
+        if (body == null || !HttpMethod.GET.matches(request.getMethod())
+                || !Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))
+                || request.getHeader(HttpHeaders.RANGE) != null
+                || request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                || request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null
+                || !body.isFile()) {
+            return response;
+        }
+
+        File file = body.getFile();
+        if (!imageFileCache.lease(file)) {
+            return response;
+        }
+        long length = file.length();
+        request.setAttribute(SENDFILE_FILENAME, file.getAbsolutePath());
+        request.setAttribute(SENDFILE_START, 0L);
+        request.setAttribute(SENDFILE_END, length);
+        return ResponseEntity.ok()
+                .headers(response.getHeaders())
+                .contentLength(length)
+                .build();
+    }
+
+    static ResponseEntity<Resource> imageResponse(ImageService imageService, String id, ImageVariant size, String version) {
+        ImageRenderEvent event = new ImageRenderEvent();
+        event.begin();
+        ImageMetadata original = imageService.findImageMetadata(id)
+                .orElseThrow(() -> new NotFoundException("Image Not Found. For recipe ID value: " + id));
+
+        Optional<ImageMetadata> rendition = size.of(original);
+        ImageMetadata imageMetadata = rendition.orElse(original);
+
+        boolean versioned = rendition.isPresent()
+                && original.getContentHash() != null && original.getContentHash().equals(version);
+        CacheControl cacheControl = versioned
+                ? CacheControl.maxAge(IMMUTABLE_MAX_AGE_DAYS, TimeUnit.DAYS).cachePublic()
+                : CacheControl.noCache().cachePublic();
+
+        //files are never modified in place, so the file id is a strong validator for images stored without a hash
+        String eTag = imageMetadata.getContentHash() != null ? imageMetadata.getContentHash() : imageMetadata.getFileId();
+
+        ResponseEntity<Resource> response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(imageMetadata.getContentType()))
+                .eTag(eTag)
+                .lastModified(imageMetadata.getUploadDate().getTime())
+                .cacheControl(cacheControl)
+                .body(imageService.loadCachedImage(imageMetadata));
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.recipeId = id;
+            event.variant = rendition.isPresent() ? size.getName() : ImageVariant.FULL.getName();
+            event.imageBytes = imageMetadata.getLength();
+            event.commit();
         }
+        return response;
     }
 }
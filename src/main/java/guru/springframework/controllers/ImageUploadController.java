@@ -0,0 +1,69 @@
+package guru.springframework.controllers;
+
+import guru.springframework.domain.ImageUpload;
+import guru.springframework.services.ImageUploadService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * Resumable image uploads for clients on unreliable connections: start an upload with the image length, {@code PUT}
+ * the bytes in chunks at their offsets, ask which ranges are still missing after an interruption, and complete it.
+ * Chunks are the raw request body, written to disk as they arrive.
+ */
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RestController
+public class ImageUploadController {
+
+    private final ImageUploadService imageUploadService;
+
+    public ImageUploadController(ImageUploadService imageUploadService) {
+        this.imageUploadService = imageUploadService;
+    }
+
+    @PostMapping("/api/recipes/{recipeId}/image/uploads")
+    public ResponseEntity<ImageUpload> startUpload(@PathVariable String recipeId, @RequestParam long length,
+                                                   @RequestParam(required = false) String filename) {
+        ImageUpload upload = imageUploadService.startUpload(recipeId, filename, length);
+        return ResponseEntity.created(URI.create(location(upload))).body(upload);
+    }
+
+    @PutMapping(value = "/api/recipes/{recipeId}/image/uploads/{uploadId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ImageUpload writeChunk(@PathVariable String recipeId, @PathVariable String uploadId,
+                                  @RequestParam long offset, HttpServletRequest request) throws IOException {
+        return imageUploadService.writeChunk(recipeId, uploadId, offset, request.getInputStream());
+    }
+
+    @GetMapping("/api/recipes/{recipeId}/image/uploads/{uploadId}")
+    public ResponseEntity<ImageUpload> getUpload(@PathVariable String recipeId, @PathVariable String uploadId) {
+        return imageUploadService.findUpload(recipeId, uploadId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/api/recipes/{recipeId}/image/uploads/{uploadId}/complete")
+    public ImageUpload completeUpload(@PathVariable String recipeId, @PathVariable String uploadId) {
+        return imageUploadService.completeUpload(recipeId, uploadId);
+    }
+
+    @DeleteMapping("/api/recipes/{recipeId}/image/uploads/{uploadId}")
+    public ResponseEntity<Void> cancelUpload(@PathVariable String recipeId, @PathVariable String uploadId) {
+        imageUploadService.cancelUpload(recipeId, uploadId);
+        return ResponseEntity.noContent().build();
+    }
+
+    private static String location(ImageUpload upload) {
+        return "/api/recipes/" + upload.getRecipeId() + "/image/uploads/" + upload.getId();
+    }
+}
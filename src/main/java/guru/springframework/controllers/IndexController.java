@@ -1,15 +1,23 @@
 package guru.springframework.controllers;
 
+import guru.springframework.domain.RecipePage;
+import guru.springframework.domain.RecipeSort;
 import guru.springframework.services.RecipeService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 
 @Slf4j
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @Controller
 public class IndexController {
 
+    static final int DEFAULT_PAGE_SIZE = 20;
+    static final int MAX_PAGE_SIZE = 100;
+
     private final RecipeService recipeService;
 
     public IndexController(RecipeService recipeService) {
@@ -17,9 +25,15 @@ public class IndexController {
     }
 
     @RequestMapping({"", "/", "/index"})
-    public String getIndexPage(Model model) {
+    public String getIndexPage(@RequestParam(value = "sort", defaultValue = "DESCRIPTION") RecipeSort sort,
+                               @RequestParam(value = "after", required = false) String after,
+                               @RequestParam(value = "before", required = false) String before,
+                               @RequestParam(value = "size", defaultValue = "" + DEFAULT_PAGE_SIZE) int size,
+                               Model model) {
         log.debug("getting index page");
-        model.addAttribute("recipes", recipeService.getRecipes());
+        RecipePage page = recipeService.listRecipes(sort, after, before, Math.max(1, Math.min(size, MAX_PAGE_SIZE)));
+        model.addAttribute("page", page);
+        model.addAttribute("recipes", page.getRecipes());
         return "index";
     }
 }
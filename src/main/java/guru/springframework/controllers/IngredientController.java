@@ -7,32 +7,41 @@ import guru.springframework.services.IngredientService;
 import guru.springframework.services.RecipeService;
 import guru.springframework.services.UnitOfMeasureService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.servlet.ModelAndView;
 
 @Slf4j
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @Controller
 public class IngredientController {
 
     private final RecipeService recipeService;
     private final IngredientService ingredientService;
     private final UnitOfMeasureService unitOfMeasureService;
+    private final RenderedPages renderedPages;
 
-    public IngredientController(RecipeService recipeService, IngredientService ingredientService, UnitOfMeasureService unitOfMeasureService) {
+    public IngredientController(RecipeService recipeService, IngredientService ingredientService, UnitOfMeasureService unitOfMeasureService,
+                                RenderedPages renderedPages) {
         this.recipeService = recipeService;
         this.ingredientService = ingredientService;
         this.unitOfMeasureService = unitOfMeasureService;
+        this.renderedPages = renderedPages;
     }
 
     @GetMapping("/recipe/{recipeId}/ingredients")
-    public String listIngredients(@PathVariable String recipeId, Model model) {
+    public ModelAndView listIngredients(@PathVariable String recipeId) {
         log.debug("Getting ingredient list for recipe Id: " + recipeId);
-        model.addAttribute("recipe", recipeService.findCommandById(recipeId));
-        return "recipe/ingredient/list";
+        return renderedPages.render("recipe/ingredient/list", recipeId, model -> {
+            RecipeCommand recipe = recipeService.findCommandById(recipeId);
+            model.put("recipe", recipe);
+            return recipe.getVersion();
+        });
     }
 
     @GetMapping("/recipe/{recipeId}/ingredient/{id}/show")
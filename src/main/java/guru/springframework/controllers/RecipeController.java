@@ -1,9 +1,11 @@
 package guru.springframework.controllers;
 
 import guru.springframework.commands.RecipeCommand;
+import guru.springframework.domain.Recipe;
 import guru.springframework.exceptions.NotFoundException;
 import guru.springframework.services.RecipeService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -13,6 +15,7 @@ import org.springframework.web.servlet.ModelAndView;
 
 import javax.validation.Valid;
 
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @Controller
 @Slf4j
 public class RecipeController {
@@ -20,15 +23,20 @@ public class RecipeController {
     private static final String RECIPE_FORM_URL = "recipe/recipeForm";
 
     private final RecipeService recipeService;
+    private final RenderedPages renderedPages;
 
-    public RecipeController(RecipeService recipeService) {
+    public RecipeController(RecipeService recipeService, RenderedPages renderedPages) {
         this.recipeService = recipeService;
+        this.renderedPages = renderedPages;
     }
 
     @GetMapping("/recipe/{id}/show")
-    public String showById(@PathVariable String id, Model model) {
-        model.addAttribute("recipe", recipeService.findById(id));
-        return "recipe/show";
+    public ModelAndView showById(@PathVariable String id) {
+        return renderedPages.render("recipe/show", id, model -> {
+            Recipe recipe = recipeService.findById(id);
+            model.put("recipe", recipe);
+            return recipe.getVersion();
+        });
     }
 
     @GetMapping("/recipe/new")
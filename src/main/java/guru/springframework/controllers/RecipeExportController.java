@@ -0,0 +1,62 @@
+package guru.springframework.controllers;
+
+import guru.springframework.domain.RecipeExportFilter;
+import guru.springframework.imports.RecipeImportFormat;
+import guru.springframework.services.RecipeExportService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Date;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports recipes as NDJSON, written to the response while they are read. The response is gzip encoded for clients
+ * that accept it.
+ */
+@Slf4j
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RestController
+public class RecipeExportController {
+
+    private static final int GZIP_BUFFER_SIZE = 8192;
+
+    private final RecipeExportService recipeExportService;
+
+    public RecipeExportController(RecipeExportService recipeExportService) {
+        this.recipeExportService = recipeExportService;
+    }
+
+    @GetMapping(value = "/api/recipes/export", produces = RecipeImportFormat.NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportRecipes(
+            @RequestParam(value = "category", required = false) String category,
+            @RequestParam(value = "modifiedSince", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date modifiedSince,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        log.debug("exporting recipes, category: " + category + ", modified since: " + modifiedSince);
+        //resolved before the response is committed, so an unknown category is still a 404
+        RecipeExportFilter filter = recipeExportService.filter(category, modifiedSince);
+
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                //a streamed body is not written by a message converter, nothing else sets the content type
+                .contentType(MediaType.parseMediaType(RecipeImportFormat.NDJSON_VALUE))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"recipes.ndjson\"")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (!gzip) {
+            return response.body(outputStream -> recipeExportService.exportRecipes(filter, outputStream));
+        }
+        return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(outputStream -> {
+            GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream, GZIP_BUFFER_SIZE);
+            recipeExportService.exportRecipes(filter, gzipOutputStream);
+            gzipOutputStream.finish();
+        });
+    }
+}
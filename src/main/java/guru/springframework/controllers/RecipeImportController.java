@@ -0,0 +1,73 @@
+package guru.springframework.controllers;
+
+import guru.springframework.domain.RecipeImport;
+import guru.springframework.exceptions.BadRequestException;
+import guru.springframework.imports.RecipeImportFormat;
+import guru.springframework.services.RecipeImportService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Bulk import of recipes as NDJSON or CSV. The upload is the raw request body rather than a multipart file, so it is
+ * read as it arrives instead of being spooled to disk first.
+ */
+@Slf4j
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RestController
+public class RecipeImportController {
+
+    private final RecipeImportService recipeImportService;
+
+    public RecipeImportController(RecipeImportService recipeImportService) {
+        this.recipeImportService = recipeImportService;
+    }
+
+    @PostMapping(value = "/api/recipes/imports", consumes = {RecipeImportFormat.NDJSON_VALUE, RecipeImportFormat.CSV_VALUE})
+    public ResponseEntity<RecipeImport> importRecipes(HttpServletRequest request) throws IOException {
+        MediaType contentType = MediaType.parseMediaType(request.getContentType());
+        Charset charset = contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+        log.debug("importing recipes as " + contentType);
+
+        RecipeImport recipeImport = recipeImportService.importRecipes(RecipeImportFormat.forMediaType(contentType),
+                new InputStreamReader(request.getInputStream(), charset));
+        return ResponseEntity.created(URI.create("/api/recipes/imports/" + recipeImport.getId())).body(recipeImport);
+    }
+
+    @GetMapping("/api/recipes/imports")
+    public List<RecipeImport> getImports() {
+        return recipeImportService.getImports();
+    }
+
+    @GetMapping("/api/recipes/imports/{id}")
+    public ResponseEntity<RecipeImport> getImport(@PathVariable String id) {
+        return recipeImportService.findImport(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Import clients read JSON, so a request that cannot be imported is answered with an {@link ApiError} rather
+     * than the error page of {@link ControllerExceptionHandler}.
+     */
+    @ExceptionHandler(BadRequestException.class)
+    public ResponseEntity<ApiError> handleBadRequest(Exception ex) {
+        log.error("Rejecting recipe import: " + ex.getMessage());
+        return ApiError.response(HttpStatus.BAD_REQUEST, ex);
+    }
+}
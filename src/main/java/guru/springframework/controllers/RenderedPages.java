@@ -0,0 +1,116 @@
+package guru.springframework.controllers;
+
+import guru.springframework.cache.RenderedPage;
+import guru.springframework.cache.RenderedPageCache;
+import guru.springframework.services.RecipeService;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.View;
+import org.springframework.web.servlet.ViewResolver;
+import org.springframework.web.servlet.support.RequestContextUtils;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Serves recipe pages from the {@link RenderedPageCache}. Only the recipe's version is read for a cached page;
+ * otherwise the recipe is loaded and the view rendered as usual, and the output is cached on its way out.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class RenderedPages {
+
+    private final RenderedPageCache renderedPageCache;
+    private final RecipeService recipeService;
+    private final ViewResolver viewResolver;
+
+    public RenderedPages(RenderedPageCache renderedPageCache, RecipeService recipeService,
+                         @Qualifier("thymeleafViewResolver") ViewResolver viewResolver) {
+        this.renderedPageCache = renderedPageCache;
+        this.recipeService = recipeService;
+        this.viewResolver = viewResolver;
+    }
+
+    /**
+     * @param load adds the recipe to the model and returns the version it loaded
+     */
+    public ModelAndView render(String viewName, String recipeId, Function<Map<String, Object>, Long> load) {
+        Map<String, Object> model = new HashMap<>();
+        if (!renderedPageCache.isEnabled()) {
+            load.apply(model);
+            return new ModelAndView(viewName, model);
+        }
+
+        Long version = recipeService.findVersionById(recipeId);
+        if (version != null) {
+            RenderedPage page = renderedPageCache.get(viewName, recipeId, version).orElse(null);
+            if (page != null) {
+                return new ModelAndView(new CachedPageView(page));
+            }
+        }
+
+        //cached under the version actually loaded, which may be newer than the one just read
+        Long loadedVersion = load.apply(model);
+        if (loadedVersion == null) {
+            return new ModelAndView(viewName, model);
+        }
+        return new ModelAndView(new CachingView(viewName, recipeId, loadedVersion), model);
+    }
+
+    private class CachingView implements View {
+
+        private final String viewName;
+        private final String recipeId;
+        private final long version;
+
+        CachingView(String viewName, String recipeId, long version) {
+            this.viewName = viewName;
+            this.recipeId = recipeId;
+            this.version = version;
+        }
+
+        @Override
+        public void render(Map<String, ?> model, HttpServletRequest request, HttpServletResponse response) throws Exception {
+            View view = viewResolver.resolveViewName(viewName, RequestContextUtils.getLocale(request));
+            if (view == null) {
+                throw new IllegalStateException("Could not resolve view " + viewName);
+            }
+
+            ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+            view.render(model, request, wrapper);
+            if (wrapper.getStatus() == HttpStatus.OK.value()) {
+                renderedPageCache.put(viewName, recipeId, version,
+                        new RenderedPage(wrapper.getContentType(), wrapper.getContentAsByteArray()));
+            }
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    private static class CachedPageView implements View {
+
+        private final RenderedPage page;
+
+        CachedPageView(RenderedPage page) {
+            this.page = page;
+        }
+
+        @Override
+        public String getContentType() {
+            return page.getContentType();
+        }
+
+        @Override
+        public void render(Map<String, ?> model, HttpServletRequest request, HttpServletResponse response) throws Exception {
+            response.setContentType(page.getContentType());
+            response.setContentLength(page.getContent().length);
+            response.getOutputStream().write(page.getContent());
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package guru.springframework.controllers;
+
+import guru.springframework.services.RecipeSearchService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import static guru.springframework.controllers.IndexController.DEFAULT_PAGE_SIZE;
+import static guru.springframework.controllers.IndexController.MAX_PAGE_SIZE;
+
+@Slf4j
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@Controller
+public class SearchController {
+
+    private final RecipeSearchService recipeSearchService;
+
+    public SearchController(RecipeSearchService recipeSearchService) {
+        this.recipeSearchService = recipeSearchService;
+    }
+
+    @GetMapping("/recipe/search")
+    public String search(@RequestParam(value = "q", defaultValue = "") String query,
+                         @RequestParam(value = "page", defaultValue = "0") int page,
+                         @RequestParam(value = "size", defaultValue = "" + DEFAULT_PAGE_SIZE) int size,
+                         Model model) {
+        log.debug("searching recipes for: " + query);
+        model.addAttribute("page", recipeSearchService.search(query, Math.max(0, page), Math.max(1, Math.min(size, MAX_PAGE_SIZE))));
+        return "recipe/search";
+    }
+}
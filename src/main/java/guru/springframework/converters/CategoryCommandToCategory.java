@@ -2,14 +2,11 @@ package guru.springframework.converters;
 
 import guru.springframework.commands.CategoryCommand;
 import guru.springframework.domain.Category;
-import lombok.Synchronized;
-import org.springframework.core.convert.converter.Converter;
 import org.springframework.stereotype.Component;
 
 @Component
-public class CategoryCommandToCategory implements Converter<CategoryCommand, Category> {
+public class CategoryCommandToCategory implements CollectionConverter<CategoryCommand, Category> {
 
-    @Synchronized
     @Override
     public Category convert(CategoryCommand source) {
         if (source == null) {
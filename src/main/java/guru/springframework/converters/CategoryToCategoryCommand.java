@@ -2,14 +2,11 @@ package guru.springframework.converters;
 
 import guru.springframework.commands.CategoryCommand;
 import guru.springframework.domain.Category;
-import lombok.Synchronized;
-import org.springframework.core.convert.converter.Converter;
 import org.springframework.stereotype.Component;
 
 @Component
-public class CategoryToCategoryCommand implements Converter<Category, CategoryCommand> {
+public class CategoryToCategoryCommand implements CollectionConverter<Category, CategoryCommand> {
 
-    @Synchronized
     @Override
     public CategoryCommand convert(Category source) {
         if (source == null) {
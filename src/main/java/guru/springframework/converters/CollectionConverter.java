@@ -0,0 +1,46 @@
+package guru.springframework.converters;
+
+import org.springframework.core.convert.converter.Converter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A {@link Converter} that can also convert whole collections. Implementations must be stateless, so a single
+ * instance can be shared by any number of threads without locking.
+ */
+public interface CollectionConverter<S, T> extends Converter<S, T> {
+
+    /**
+     * Converts every element into a list sized for the result up front.
+     */
+    default List<T> convertAll(Collection<? extends S> sources) {
+        if (sources == null || sources.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<T> targets = new ArrayList<>(sources.size());
+        for (S source : sources) {
+            targets.add(convert(source));
+        }
+        return targets;
+    }
+
+    /**
+     * Converts every element into a set sized so it never rehashes while being filled.
+     */
+    default Set<T> convertAllToSet(Collection<? extends S> sources) {
+        if (sources == null || sources.isEmpty()) {
+            return new HashSet<>();
+        }
+
+        Set<T> targets = new HashSet<>((int) (sources.size() / 0.75f) + 1);
+        for (S source : sources) {
+            targets.add(convert(source));
+        }
+        return targets;
+    }
+}
@@ -2,14 +2,11 @@ package guru.springframework.converters;
 
 import guru.springframework.commands.NotesCommand;
 import guru.springframework.domain.Notes;
-import lombok.Synchronized;
-import org.springframework.core.convert.converter.Converter;
 import org.springframework.stereotype.Component;
 
 @Component
-public class NotesCommandToNotes implements Converter<NotesCommand, Notes> {
+public class NotesCommandToNotes implements CollectionConverter<NotesCommand, Notes> {
 
-    @Synchronized
     @Override
     public Notes convert(NotesCommand source) {
         if(source == null) {
@@ -2,14 +2,11 @@ package guru.springframework.converters;
 
 import guru.springframework.commands.NotesCommand;
 import guru.springframework.domain.Notes;
-import lombok.Synchronized;
-import org.springframework.core.convert.converter.Converter;
 import org.springframework.stereotype.Component;
 
 @Component
-public class NotesToNotesCommand implements Converter<Notes, NotesCommand> {
+public class NotesToNotesCommand implements CollectionConverter<Notes, NotesCommand> {
 
-    @Synchronized
     @Override
     public NotesCommand convert(Notes source) {
         if (source == null) {
@@ -1,15 +1,13 @@
 package guru.springframework.converters;
 
-import guru.springframework.commands.CategoryCommand;
-import guru.springframework.commands.IngredientCommand;
 import guru.springframework.commands.RecipeCommand;
 import guru.springframework.domain.Recipe;
-import lombok.Synchronized;
-import org.springframework.core.convert.converter.Converter;
+import guru.springframework.jfr.RecipeConversionEvent;
+import guru.springframework.jfr.RecipeEvents;
 import org.springframework.stereotype.Component;
 
 @Component
-public class RecipeCommandToRecipe implements Converter<RecipeCommand, Recipe> {
+public class RecipeCommandToRecipe implements CollectionConverter<RecipeCommand, Recipe> {
 
     private final CategoryCommandToCategory categoryConverter;
     private final IngredientCommandToIngredient ingredientConverter;
@@ -22,15 +20,17 @@ public class RecipeCommandToRecipe implements Converter<RecipeCommand, Recipe> {
         this.notesConverter = notesConverter;
     }
 
-    @Synchronized
     @Override
     public Recipe convert(RecipeCommand source) {
         if (source == null) {
             return null;
         }
+        RecipeConversionEvent event = new RecipeConversionEvent();
+        event.begin();
 
         final Recipe recipe = new Recipe();
         recipe.setId(source.getId());
+        recipe.setVersion(source.getVersion());
         recipe.setCookTime(source.getCookTime());
         recipe.setPrepTime(source.getPrepTime());
         recipe.setDescription(source.getDescription());
@@ -41,16 +41,15 @@ public class RecipeCommandToRecipe implements Converter<RecipeCommand, Recipe> {
         recipe.setUrl(source.getUrl());
         recipe.setNotes(notesConverter.convert(source.getNotes()));
 
-        if (source.getCategories() != null && source.getCategories().size() > 0) {
-            source.getCategories()
-                    .forEach((CategoryCommand category) -> recipe.getCategories().add(categoryConverter.convert(category)));
-        }
+        recipe.setCategories(categoryConverter.convertAllToSet(source.getCategories()));
+        recipe.setIngredients(ingredientConverter.convertAllToSet(source.getIngredients()));
 
-        if (source.getIngredients() != null && source.getIngredients().size() > 0) {
-            source.getIngredients()
-                    .forEach((IngredientCommand ingredient) -> recipe.getIngredients().add(ingredientConverter.convert(ingredient)));
+        event.end();
+        if (event.shouldCommit()) {
+            event.converter = "RecipeCommandToRecipe";
+            RecipeEvents.describe(event, source);
+            event.commit();
         }
-
         return recipe;
     }
 }
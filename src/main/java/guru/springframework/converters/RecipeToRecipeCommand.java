@@ -1,15 +1,13 @@
 package guru.springframework.converters;
 
 import guru.springframework.commands.RecipeCommand;
-import guru.springframework.domain.Category;
-import guru.springframework.domain.Ingredient;
 import guru.springframework.domain.Recipe;
-import lombok.Synchronized;
-import org.springframework.core.convert.converter.Converter;
+import guru.springframework.jfr.RecipeConversionEvent;
+import guru.springframework.jfr.RecipeEvents;
 import org.springframework.stereotype.Component;
 
 @Component
-public class RecipeToRecipeCommand implements Converter<Recipe, RecipeCommand> {
+public class RecipeToRecipeCommand implements CollectionConverter<Recipe, RecipeCommand> {
 
     private final CategoryToCategoryCommand categoryConverter;
     private final IngredientToIngredientCommand ingredientConverter;
@@ -22,15 +20,17 @@ public class RecipeToRecipeCommand implements Converter<Recipe, RecipeCommand> {
         this.notesConverter = notesConverter;
     }
 
-    @Synchronized
     @Override
     public RecipeCommand convert(Recipe source) {
         if (source == null) {
             return null;
         }
+        RecipeConversionEvent event = new RecipeConversionEvent();
+        event.begin();
 
         final RecipeCommand command = new RecipeCommand();
         command.setId(source.getId());
+        command.setVersion(source.getVersion());
         command.setCookTime(source.getCookTime());
         command.setPrepTime(source.getPrepTime());
         command.setDescription(source.getDescription());
@@ -39,19 +39,17 @@ public class RecipeToRecipeCommand implements Converter<Recipe, RecipeCommand> {
         command.setServings(source.getServings());
         command.setSource(source.getSource());
         command.setUrl(source.getUrl());
-        command.setImage(source.getImage());
         command.setNotes(notesConverter.convert(source.getNotes()));
 
-        if (source.getCategories() != null && source.getCategories().size() > 0) {
-            source.getCategories()
-                    .forEach((Category category) -> command.getCategories().add(categoryConverter.convert(category)));
-        }
+        command.setCategories(categoryConverter.convertAll(source.getCategories()));
+        command.setIngredients(ingredientConverter.convertAll(source.getIngredients()));
 
-        if (source.getIngredients() != null && source.getIngredients().size() > 0) {
-            source.getIngredients()
-                    .forEach((Ingredient ingredient) -> command.getIngredients().add(ingredientConverter.convert(ingredient)));
+        event.end();
+        if (event.shouldCommit()) {
+            event.converter = "RecipeToRecipeCommand";
+            RecipeEvents.describe(event, source);
+            event.commit();
         }
-
         return command;
     }
 }
@@ -0,0 +1,17 @@
+package guru.springframework.converters;
+
+import guru.springframework.images.ImageVariant;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.stereotype.Component;
+
+/**
+ * Binds the lower case {@code size} request parameter of image links to an {@link ImageVariant}.
+ */
+@Component
+public class StringToImageVariant implements Converter<String, ImageVariant> {
+
+    @Override
+    public ImageVariant convert(String source) {
+        return ImageVariant.fromName(source.trim());
+    }
+}
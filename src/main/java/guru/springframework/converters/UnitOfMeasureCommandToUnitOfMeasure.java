@@ -2,14 +2,11 @@ package guru.springframework.converters;
 
 import guru.springframework.commands.UnitOfMeasureCommand;
 import guru.springframework.domain.UnitOfMeasure;
-import lombok.Synchronized;
-import org.springframework.core.convert.converter.Converter;
 import org.springframework.stereotype.Component;
 
 @Component
-public class UnitOfMeasureCommandToUnitOfMeasure implements Converter<UnitOfMeasureCommand, UnitOfMeasure> {
+public class UnitOfMeasureCommandToUnitOfMeasure implements CollectionConverter<UnitOfMeasureCommand, UnitOfMeasure> {
 
-    @Synchronized
     @Override
     public UnitOfMeasure convert(UnitOfMeasureCommand source) {
         if (source == null) {
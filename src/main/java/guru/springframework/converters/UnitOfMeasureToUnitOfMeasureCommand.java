@@ -2,14 +2,11 @@ package guru.springframework.converters;
 
 import guru.springframework.commands.UnitOfMeasureCommand;
 import guru.springframework.domain.UnitOfMeasure;
-import lombok.Synchronized;
-import org.springframework.core.convert.converter.Converter;
 import org.springframework.stereotype.Component;
 
 @Component
-public class UnitOfMeasureToUnitOfMeasureCommand implements Converter<UnitOfMeasure, UnitOfMeasureCommand> {
+public class UnitOfMeasureToUnitOfMeasureCommand implements CollectionConverter<UnitOfMeasure, UnitOfMeasureCommand> {
 
-    @Synchronized
     @Override
     public UnitOfMeasureCommand convert(UnitOfMeasure unitOfMeasure) {
 
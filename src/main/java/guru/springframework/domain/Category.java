@@ -3,6 +3,7 @@ package guru.springframework.domain;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -15,9 +16,11 @@ public class Category {
 
     @Id
     private String id;
+    //looked up by description when recipes are saved
+    @Indexed(background = true)
     private String description;
 
-    @DBRef
+    @DBRef(lazy = true)
     private Set<Recipe> recipes;
 
 }
@@ -0,0 +1,56 @@
+package guru.springframework.domain;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An image stored once in GridFS however many recipes show it, keyed by its content hash. The recipes referring to
+ * it are kept as a set, so adding or removing a reference twice changes nothing; the image is deleted once no
+ * recipe has referred to it for a while.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Document(collection = "imageBlobs")
+public class ImageBlob {
+
+    @Id
+    private String contentHash;
+
+    private String fileId;
+    private String contentType;
+    private long length;
+    private Date uploadDate;
+
+    //shared by every recipe showing the image, see ImageMetadata#getVariants
+    private Map<String, ImageMetadata> variants = new HashMap<>();
+
+    private Set<String> recipeIds = new HashSet<>();
+
+    //when a reference was last removed, unset once it is referred to again
+    @Indexed(sparse = true, background = true)
+    private Date releasedAt;
+
+    public int getReferenceCount() {
+        return recipeIds.size();
+    }
+
+    /**
+     * @return the reference a recipe holds to this image
+     */
+    public ImageMetadata toImageMetadata() {
+        ImageMetadata imageMetadata = new ImageMetadata(fileId, contentType, length, uploadDate, contentHash);
+        imageMetadata.getVariants().putAll(variants);
+        return imageMetadata;
+    }
+}
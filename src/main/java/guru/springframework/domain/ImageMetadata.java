@@ -0,0 +1,36 @@
+package guru.springframework.domain;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reference from a {@link Recipe} to its image, which is stored in GridFS rather than in the recipe document.
+ * Holds everything needed to answer conditional requests without touching the image bytes.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class ImageMetadata {
+
+    private String fileId;
+    private String contentType;
+    private long length;
+    private Date uploadDate;
+    private String contentHash;
+
+    //downscaled renditions keyed by variant name, filled in once they have been generated
+    private Map<String, ImageMetadata> variants = new HashMap<>();
+
+    public ImageMetadata(String fileId, String contentType, long length, Date uploadDate, String contentHash) {
+        this.fileId = fileId;
+        this.contentType = contentType;
+        this.length = length;
+        this.uploadDate = uploadDate;
+        this.contentHash = contentHash;
+    }
+}
@@ -0,0 +1,193 @@
+package guru.springframework.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A resumable image upload sent in chunks. It keeps the byte ranges received so far, so a client that lost its
+ * connection can ask what is missing and only send that again.
+ */
+@Getter
+public class ImageUpload {
+
+    public enum State {
+        UPLOADING, COMPLETING, COMPLETED, FAILED, CANCELLED
+    }
+
+    private final String id;
+    private final String recipeId;
+    private final String filename;
+    private final long length;
+    private final Date started = new Date();
+    private volatile State state = State.UPLOADING;
+    private volatile String failure;
+    @JsonIgnore
+    private volatile long lastActivity = System.currentTimeMillis();
+    //chunks being written to the staged file right now
+    @Getter(AccessLevel.NONE)
+    private int writers;
+
+    //sorted, neither overlapping nor adjacent
+    @Getter(AccessLevel.NONE)
+    private final List<Range> received = new ArrayList<>();
+
+    public ImageUpload(String id, String recipeId, String filename, long length) {
+        this.id = id;
+        this.recipeId = recipeId;
+        this.filename = filename;
+        this.length = length;
+    }
+
+    public synchronized List<Range> getReceived() {
+        return new ArrayList<>(received);
+    }
+
+    public synchronized List<Range> getMissing() {
+        List<Range> missing = new ArrayList<>();
+        long offset = 0;
+        for (Range range : received) {
+            if (range.start > offset) {
+                missing.add(new Range(offset, range.start));
+            }
+            offset = range.end;
+        }
+        if (offset < length) {
+            missing.add(new Range(offset, length));
+        }
+        return missing;
+    }
+
+    public synchronized long getReceivedBytes() {
+        return received.stream().mapToLong(range -> range.end - range.start).sum();
+    }
+
+    @JsonIgnore
+    public synchronized boolean isFullyReceived() {
+        return received.size() == 1 && received.get(0).start == 0 && received.get(0).end == length;
+    }
+
+    /**
+     * Adds the bytes from {@code start} up to, not including, {@code end}. Ranges sent again are merged.
+     */
+    public synchronized void receive(long start, long end) {
+        lastActivity = System.currentTimeMillis();
+        if (start >= end) {
+            return;
+        }
+        Range merged = new Range(start, end);
+        List<Range> ranges = new ArrayList<>(received.size() + 1);
+        for (Range range : received) {
+            if (range.end < merged.start || range.start > merged.end) {
+                ranges.add(range);
+            } else {
+                merged = new Range(Math.min(range.start, merged.start), Math.max(range.end, merged.end));
+            }
+        }
+        ranges.add(merged);
+        ranges.sort((a, b) -> Long.compare(a.start, b.start));
+        received.clear();
+        received.addAll(ranges);
+    }
+
+    /**
+     * @return {@code false} if the upload is not accepting chunks anymore
+     */
+    public synchronized boolean isUploading() {
+        return state == State.UPLOADING;
+    }
+
+    @JsonIgnore
+    public synchronized boolean isWriting() {
+        return writers > 0;
+    }
+
+    /**
+     * Registers a chunk about to be written, which keeps the upload from being completed or cancelled until
+     * {@link #endWrite} is called.
+     *
+     * @return {@code false} if the upload is not accepting chunks anymore
+     */
+    public synchronized boolean beginWrite() {
+        if (state != State.UPLOADING) {
+            return false;
+        }
+        writers++;
+        lastActivity = System.currentTimeMillis();
+        return true;
+    }
+
+    /**
+     * Ends a write started with {@link #beginWrite}, adding the bytes it got to.
+     */
+    public synchronized void endWrite(long start, long end) {
+        writers--;
+        receive(start, end);
+    }
+
+    /**
+     * Stops accepting chunks while the image is stored.
+     *
+     * @return {@code false} if the upload is not complete yet, a chunk is being written or it is completing already
+     */
+    public synchronized boolean beginCompleting() {
+        if (state != State.UPLOADING || writers > 0 || !isFullyReceived()) {
+            return false;
+        }
+        state = State.COMPLETING;
+        return true;
+    }
+
+    /**
+     * Accepts chunks again after storing the image failed for a reason that may pass.
+     */
+    public synchronized void resume() {
+        state = State.UPLOADING;
+        lastActivity = System.currentTimeMillis();
+    }
+
+    /**
+     * Stops accepting chunks for good, before the staged file is deleted.
+     *
+     * @return {@code false} if a chunk is being written or the image is being stored
+     */
+    public synchronized boolean cancel() {
+        if (state == State.COMPLETING || writers > 0) {
+            return false;
+        }
+        if (state == State.UPLOADING) {
+            finish(State.CANCELLED);
+        }
+        return true;
+    }
+
+    public synchronized void complete() {
+        finish(State.COMPLETED);
+    }
+
+    public synchronized void fail(String failure) {
+        this.failure = failure;
+        finish(State.FAILED);
+    }
+
+    private void finish(State state) {
+        this.state = state;
+        this.lastActivity = System.currentTimeMillis();
+    }
+
+    @Getter
+    public static class Range {
+
+        private final long start;
+        private final long end;
+
+        public Range(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
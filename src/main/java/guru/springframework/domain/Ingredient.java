@@ -16,7 +16,7 @@ public class Ingredient {
     private String description;
     private BigDecimal amount;
 
-    @DBRef
+    @DBRef(lazy = true)
     private UnitOfMeasure uom;
 
     public Ingredient() {
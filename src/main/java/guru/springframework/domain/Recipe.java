@@ -3,19 +3,41 @@ package guru.springframework.domain;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
 
 @Getter
 @Setter
 @Document
+@CompoundIndexes({
+        //keyset pagination of the listing by description, see RecipeSort
+        @CompoundIndex(name = "description_id", def = "{'description': 1, '_id': 1}", background = true),
+        //exports filtered by category
+        @CompoundIndex(name = "categories_id", def = "{'categories.$id': 1}", background = true),
+        //variants are recorded on every recipe showing the image, see ImageBlob
+        @CompoundIndex(name = "imageMetadata_contentHash", def = "{'imageMetadata.contentHash': 1}", sparse = true, background = true)
+})
 public class Recipe {
 
     @Id
     private String id;
+
+    //bumped by every write, saves only succeed against the version they were based on
+    @Version
+    private Long version;
+
+    //set by every write of recipe content, missing on recipes last written before it was introduced
+    @Indexed(background = true)
+    private Date lastModified;
+
     private String description;
     private Integer prepTime;
     private Integer cookTime;
@@ -24,11 +46,11 @@ public class Recipe {
     private String url;
     private String directions;
     private Set<Ingredient> ingredients = new HashSet<>();
-    private Byte[] image;
+    private ImageMetadata imageMetadata;
     private Difficulty difficulty;
     private Notes notes;
 
-    @DBRef
+    @DBRef(lazy = true)
     private Set<Category> categories = new HashSet<>();
 
     public void setNotes(Notes notes) {
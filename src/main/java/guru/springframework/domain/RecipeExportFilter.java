@@ -0,0 +1,20 @@
+package guru.springframework.domain;
+
+import lombok.Getter;
+
+import java.util.Date;
+
+/**
+ * Which recipes an export holds, with its category already resolved. {@code null} fields do not filter.
+ */
+@Getter
+public class RecipeExportFilter {
+
+    private final String categoryId;
+    private final Date modifiedSince;
+
+    public RecipeExportFilter(String categoryId, Date modifiedSince) {
+        this.categoryId = categoryId;
+        this.modifiedSince = modifiedSince;
+    }
+}
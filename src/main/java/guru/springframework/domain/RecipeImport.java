@@ -0,0 +1,98 @@
+package guru.springframework.domain;
+
+import guru.springframework.imports.RecipeImportFormat;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress and outcome of a bulk recipe import. The import updates it while it runs, so it can be read at any time.
+ * Only the first {@code maxErrors} rejected records are kept with their reason.
+ */
+@Getter
+public class RecipeImport {
+
+    public enum State {
+        RUNNING, COMPLETED, FAILED
+    }
+
+    private final String id;
+    private final RecipeImportFormat format;
+    private final Date started = new Date();
+    private volatile State state = State.RUNNING;
+    private volatile Date finished;
+    private volatile String failure;
+
+    @Getter(AccessLevel.NONE)
+    private final AtomicLong recordsRead = new AtomicLong();
+    @Getter(AccessLevel.NONE)
+    private final AtomicLong recordsImported = new AtomicLong();
+    @Getter(AccessLevel.NONE)
+    private final AtomicLong recordsRejected = new AtomicLong();
+    @Getter(AccessLevel.NONE)
+    private final int maxErrors;
+    @Getter(AccessLevel.NONE)
+    private final List<RecipeImportError> errors = new ArrayList<>();
+
+    public RecipeImport(String id, RecipeImportFormat format, int maxErrors) {
+        this.id = id;
+        this.format = format;
+        this.maxErrors = maxErrors;
+    }
+
+    public long getRecordsRead() {
+        return recordsRead.get();
+    }
+
+    public long getRecordsImported() {
+        return recordsImported.get();
+    }
+
+    public long getRecordsRejected() {
+        return recordsRejected.get();
+    }
+
+    public synchronized List<RecipeImportError> getErrors() {
+        return new ArrayList<>(errors);
+    }
+
+    /**
+     * @return {@code true} if more records were rejected than {@link #getErrors()} lists
+     */
+    public synchronized boolean isErrorsTruncated() {
+        return recordsRejected.get() > errors.size();
+    }
+
+    public void recordRead() {
+        recordsRead.incrementAndGet();
+    }
+
+    public void imported(int count) {
+        recordsImported.addAndGet(count);
+    }
+
+    public synchronized void reject(long record, String message) {
+        recordsRejected.incrementAndGet();
+        if (errors.size() < maxErrors) {
+            errors.add(new RecipeImportError(record, message));
+        }
+    }
+
+    public void complete() {
+        finish(State.COMPLETED);
+    }
+
+    public void fail(String failure) {
+        this.failure = failure;
+        finish(State.FAILED);
+    }
+
+    private void finish(State state) {
+        this.finished = new Date();
+        this.state = state;
+    }
+}
@@ -0,0 +1,18 @@
+package guru.springframework.domain;
+
+import lombok.Getter;
+
+/**
+ * Why one record of an import was not imported.
+ */
+@Getter
+public class RecipeImportError {
+
+    private final long record;
+    private final String message;
+
+    public RecipeImportError(long record, String message) {
+        this.record = record;
+        this.message = message;
+    }
+}
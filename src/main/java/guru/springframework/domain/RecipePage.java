@@ -0,0 +1,25 @@
+package guru.springframework.domain;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * One page of a keyset paginated recipe listing. The cursors are opaque tokens pointing at the first and last
+ * entry of the page; they are {@code null} when there is no page in that direction.
+ */
+@Getter
+public class RecipePage {
+
+    private final List<RecipeSummary> recipes;
+    private final RecipeSort sort;
+    private final String previousCursor;
+    private final String nextCursor;
+
+    public RecipePage(List<RecipeSummary> recipes, RecipeSort sort, String previousCursor, String nextCursor) {
+        this.recipes = recipes;
+        this.sort = sort;
+        this.previousCursor = previousCursor;
+        this.nextCursor = nextCursor;
+    }
+}
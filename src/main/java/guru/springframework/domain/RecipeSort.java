@@ -0,0 +1,16 @@
+package guru.springframework.domain;
+
+/**
+ * Orders available for recipe listings. Every order ends with the recipe id, so it is total and stable across
+ * pages.
+ */
+public enum RecipeSort {
+    /**
+     * Alphabetically by description.
+     */
+    DESCRIPTION,
+    /**
+     * Most recently created first.
+     */
+    NEWEST
+}
@@ -0,0 +1,24 @@
+package guru.springframework.domain;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Read-only projection of a {@link Recipe} holding just what listings show: no ingredients, notes or category
+ * references are loaded. Only the content hash of the image metadata is populated.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class RecipeSummary {
+
+    private String id;
+    private String description;
+    private ImageMetadata imageMetadata;
+
+    public RecipeSummary(String id, String description) {
+        this.id = id;
+        this.description = description;
+    }
+}
@@ -0,0 +1,32 @@
+package guru.springframework.domain;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * One page of recipe search results, best match first. The total is a lower bound unless {@code totalHitsExact}.
+ * The previous and next page numbers are {@code null} when there is no page in that direction.
+ */
+@Getter
+public class SearchPage {
+
+    private final String query;
+    private final List<RecipeSummary> recipes;
+    private final int page;
+    private final int totalHits;
+    private final boolean totalHitsExact;
+    private final Integer previousPage;
+    private final Integer nextPage;
+
+    public SearchPage(String query, List<RecipeSummary> recipes, int page, int totalHits, boolean totalHitsExact,
+                      Integer previousPage, Integer nextPage) {
+        this.query = query;
+        this.recipes = recipes;
+        this.page = page;
+        this.totalHits = totalHits;
+        this.totalHitsExact = totalHitsExact;
+        this.previousPage = previousPage;
+        this.nextPage = nextPage;
+    }
+}
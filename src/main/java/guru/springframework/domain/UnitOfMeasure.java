@@ -3,6 +3,7 @@ package guru.springframework.domain;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Getter
@@ -12,6 +13,8 @@ public class UnitOfMeasure {
 
     @Id
     private String id;
+    //looked up by description when recipes are saved
+    @Indexed(background = true)
     private String description;
 
 }
@@ -0,0 +1,89 @@
+package guru.springframework.images;
+
+import guru.springframework.domain.ImageBlob;
+import guru.springframework.repositories.ImageBlobRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.gridfs.GridFsOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Deletes the stored images no recipe has referred to for {@code recipe.image.gc.grace-period}, in the background
+ * and a batch at a time with a pause in between, so collecting a large backlog never competes with requests for
+ * Mongo. The grace period covers uploads that are between storing an image and referring to it.
+ * <p>
+ * An image is removed with a single conditional delete first and its files afterwards, so an upload of the same
+ * image racing the collector either keeps it or stores a fresh copy.
+ */
+@Slf4j
+@Component
+public class ImageBlobCollector {
+
+    private final ImageBlobRepository imageBlobRepository;
+    private final GridFsOperations gridFsOperations;
+    private final long gracePeriodMillis;
+    private final int batchSize;
+    private final long pauseMillis;
+
+    public ImageBlobCollector(ImageBlobRepository imageBlobRepository, GridFsOperations gridFsOperations,
+                              @Value("${recipe.image.gc.grace-period:1h}") Duration gracePeriod,
+                              @Value("${recipe.image.gc.batch-size:20}") int batchSize,
+                              @Value("${recipe.image.gc.pause-millis:200}") long pauseMillis) {
+        this.imageBlobRepository = imageBlobRepository;
+        this.gridFsOperations = gridFsOperations;
+        this.gracePeriodMillis = gracePeriod.toMillis();
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+    }
+
+    @Scheduled(initialDelayString = "${recipe.image.gc.interval-millis:3600000}",
+            fixedDelayString = "${recipe.image.gc.interval-millis:3600000}")
+    public void collectInBackground() {
+        try {
+            collect(new Date(System.currentTimeMillis() - gracePeriodMillis));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Image collection interrupted");
+        }
+    }
+
+    /**
+     * @return the number of images deleted
+     */
+    public long collect(Date releasedBefore) throws InterruptedException {
+        long collected = 0;
+        while (true) {
+            List<ImageBlob> batch = imageBlobRepository.findUnreferenced(releasedBefore, batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            for (ImageBlob candidate : batch) {
+                //the removed document also lists variants recorded since the batch was read
+                Optional<ImageBlob> removed = imageBlobRepository.removeUnreferenced(candidate.getContentHash(), releasedBefore);
+                if (removed.isPresent()) {
+                    ImageFiles.delete(gridFsOperations, removed.get().toImageMetadata());
+                    collected++;
+                }
+            }
+
+            if (batch.size() < batchSize) {
+                break;
+            }
+            if (pauseMillis > 0) {
+                Thread.sleep(pauseMillis);
+            }
+        }
+
+        if (collected > 0) {
+            log.info("Deleted " + collected + " images no recipe refers to");
+        }
+        return collected;
+    }
+}
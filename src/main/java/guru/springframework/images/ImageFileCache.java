@@ -0,0 +1,329 @@
+package guru.springframework.images;
+
+import guru.springframework.domain.ImageMetadata;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Node-local copies of stored images on disk, named by their content hash. Content never changes under a hash,
+ * so files are never invalidated, only evicted least recently used first once they exceed
+ * {@code recipe.image.file-cache.max-size}. A size of 0 disables the cache.
+ * <p>
+ * Files are written to a temporary name, forced to disk and renamed, so after a crash a file either holds the
+ * complete image or does not exist; leftover temporary files are removed at startup. Served from a file, an image
+ * can be sent with {@link FileChannel#transferTo} without passing through the heap.
+ */
+@Slf4j
+@Component
+public class ImageFileCache {
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    //far longer than it takes the container to open a file handed to it for sendfile, see lease
+    static final long SENDFILE_LEASE_MILLIS = 30_000;
+
+    private final Path directory;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Long> files = new LinkedHashMap<>(16, 0.75f, true);
+    //expiry of the leases on files handed out for sendfile, by content hash
+    private final Map<String, Long> leases = new HashMap<>();
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ImageFileCache(@Value("${recipe.image.file-cache.directory:${java.io.tmpdir}/recipe-image-cache}") String directory,
+                          @Value("${recipe.image.file-cache.max-size:1GB}") DataSize maxSize) throws IOException {
+        this.directory = Paths.get(directory);
+        this.maxBytes = maxSize.toBytes();
+        if (isEnabled()) {
+            Files.createDirectories(this.directory);
+            load();
+        }
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * Serves an image from its cached file, copying it from {@code source} into the cache on first use. Nothing
+     * is read until the content or the file is asked for. Images without a hash, too large for the cache or
+     * failing to be cached are read from {@code source}.
+     */
+    public Resource resource(ImageMetadata imageMetadata, Resource source) {
+        if (!isEnabled() || imageMetadata.getContentHash() == null || imageMetadata.getLength() > maxBytes) {
+            return source;
+        }
+        return new CachedImageResource(imageMetadata, source);
+    }
+
+    Optional<Path> find(String contentHash) {
+        Path file = directory.resolve(contentHash);
+        synchronized (this) {
+            if (files.get(contentHash) == null) {
+                misses.increment();
+                return Optional.empty();
+            }
+        }
+        //evicted by another thread in the meantime
+        if (!Files.exists(file)) {
+            remove(contentHash);
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(file);
+    }
+
+    /**
+     * Copies an image into the cache. The content has to match its hash, a damaged or mislabelled file is never
+     * served from the cache.
+     */
+    Path fill(String contentHash, Resource source) throws IOException {
+        Path file = directory.resolve(contentHash);
+        Path temporary = Files.createTempFile(directory, contentHash, TEMPORARY_SUFFIX);
+        try {
+            MessageDigest digest = ContentHash.newDigest();
+            long size;
+            try (InputStream inputStream = new DigestInputStream(source.getInputStream(), digest)) {
+                size = Files.copy(inputStream, temporary, StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (!contentHash.equals(ContentHash.toHex(digest))) {
+                throw new IOException("Content of " + source.getDescription() + " does not match its hash " + contentHash);
+            }
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            //a concurrent fill of the same image may have won, its file has the same content
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            add(contentHash, size);
+            return file;
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Keeps a cached file from being deleted until the container has opened it. Tomcat opens a file handed to it for
+     * sendfile by name only after the request is handled and reports nothing back, so the file is kept for
+     * {@link #SENDFILE_LEASE_MILLIS}; once it is open, deleting the file no longer affects the response. Leased
+     * files are passed over by eviction, the cache may exceed its size by them for that long.
+     *
+     * @return {@code false} if the file is not in the cache (any more), it has to be streamed then
+     */
+    public synchronized boolean lease(File file) {
+        String contentHash = file.getName();
+        if (!directory.toAbsolutePath().equals(file.toPath().toAbsolutePath().getParent())
+                || !files.containsKey(contentHash) || !file.exists()) {
+            return false;
+        }
+        leases.put(contentHash, System.currentTimeMillis() + SENDFILE_LEASE_MILLIS);
+        return true;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public synchronized int getFileCount() {
+        return files.size();
+    }
+
+    /**
+     * @return the bytes of all cached files
+     */
+    public synchronized long getSize() {
+        return bytes;
+    }
+
+    private synchronized void add(String contentHash, long size) {
+        Long previous = files.put(contentHash, size);
+        bytes += size - (previous != null ? previous : 0);
+        evict();
+    }
+
+    private synchronized void remove(String contentHash) {
+        Long size = files.remove(contentHash);
+        if (size != null) {
+            bytes -= size;
+        }
+    }
+
+    private void evict() {
+        long now = System.currentTimeMillis();
+        leases.values().removeIf(expiry -> expiry <= now);
+
+        Iterator<Map.Entry<String, Long>> eldest = files.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            if (leases.containsKey(entry.getKey())) {
+                continue;
+            }
+            eldest.remove();
+            bytes -= entry.getValue();
+            evictions.increment();
+            try {
+                //a response already sending the file keeps reading it, the file is only unlinked
+                Files.deleteIfExists(directory.resolve(entry.getKey()));
+            } catch (IOException e) {
+                log.warn("Evicting cached image " + entry.getKey() + " failed", e);
+            }
+        }
+    }
+
+    /**
+     * Picks up the files of an earlier run, least recently modified first, and removes unfinished writes.
+     */
+    private void load() throws IOException {
+        List<Path> cached;
+        try (Stream<Path> paths = Files.list(directory)) {
+            cached = paths.filter(path -> {
+                String name = path.getFileName().toString();
+                if (name.endsWith(TEMPORARY_SUFFIX)) {
+                    deleteQuietly(path);
+                    return false;
+                }
+                return HASH.matcher(name).matches();
+            }).sorted(Comparator.comparing(ImageFileCache::lastModified)).collect(Collectors.toList());
+        }
+
+        synchronized (this) {
+            for (Path path : cached) {
+                long size = Files.size(path);
+                files.put(path.getFileName().toString(), size);
+                bytes += size;
+            }
+            evict();
+        }
+        log.info("Image file cache in " + directory + " holds " + files.size() + " images, " + bytes + " bytes");
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Removing unfinished cache file " + path + " failed", e);
+        }
+    }
+
+    /**
+     * Resolves the cached file on first access; length and modification time come from the metadata, so
+     * answering a conditional request touches neither the cache nor GridFS.
+     */
+    private class CachedImageResource extends AbstractResource {
+
+        private final ImageMetadata imageMetadata;
+        private final Resource source;
+        private Path file;
+        private boolean resolved;
+
+        CachedImageResource(ImageMetadata imageMetadata, Resource source) {
+            this.imageMetadata = imageMetadata;
+            this.source = source;
+        }
+
+        @Override
+        public boolean isFile() {
+            return resolve() != null;
+        }
+
+        @Override
+        public File getFile() throws IOException {
+            Path resolvedFile = resolve();
+            if (resolvedFile == null) {
+                throw new IOException(getDescription() + " is not cached");
+            }
+            return resolvedFile.toFile();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            Path resolvedFile = resolve();
+            return resolvedFile != null ? Files.newInputStream(resolvedFile) : source.getInputStream();
+        }
+
+        @Override
+        public ReadableByteChannel readableChannel() throws IOException {
+            Path resolvedFile = resolve();
+            return resolvedFile != null ? FileChannel.open(resolvedFile, StandardOpenOption.READ) : source.readableChannel();
+        }
+
+        @Override
+        public long contentLength() {
+            return imageMetadata.getLength();
+        }
+
+        @Override
+        public long lastModified() {
+            return imageMetadata.getUploadDate().getTime();
+        }
+
+        @Override
+        public String getDescription() {
+            return "cached image [" + imageMetadata.getContentHash() + "]";
+        }
+
+        private synchronized Path resolve() {
+            if (!resolved) {
+                resolved = true;
+                String contentHash = imageMetadata.getContentHash();
+                file = find(contentHash).orElseGet(() -> {
+                    try {
+                        return fill(contentHash, source);
+                    } catch (IOException e) {
+                        log.warn("Caching image " + contentHash + " failed, serving it from the database", e);
+                        return null;
+                    }
+                });
+            }
+            return file;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package guru.springframework.images;
+
+import guru.springframework.domain.ImageMetadata;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.gridfs.GridFsOperations;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * GridFS housekeeping shared by everything that drops stored images.
+ */
+public final class ImageFiles {
+
+    private ImageFiles() {
+    }
+
+    /**
+     * Deletes an image together with its generated variants. Variants that reuse the original file are skipped.
+     */
+    public static void delete(GridFsOperations gridFsOperations, ImageMetadata imageMetadata) {
+        Set<ObjectId> fileIds = new HashSet<>();
+        fileIds.add(new ObjectId(imageMetadata.getFileId()));
+        imageMetadata.getVariants().values().forEach(variant -> fileIds.add(new ObjectId(variant.getFileId())));
+
+        gridFsOperations.delete(query(where("_id").in(fileIds)));
+    }
+}
@@ -0,0 +1,54 @@
+package guru.springframework.images;
+
+import org.springframework.http.MediaType;
+
+import java.util.Optional;
+
+/**
+ * The image formats accepted for upload, recognised by their leading magic bytes rather than the content type the
+ * client claims. All of them can be read by {@code ImageIO} to generate the variants.
+ */
+public enum ImageFormat {
+
+    JPEG(MediaType.IMAGE_JPEG_VALUE, 0xFF, 0xD8, 0xFF),
+    PNG(MediaType.IMAGE_PNG_VALUE, 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'),
+    GIF(MediaType.IMAGE_GIF_VALUE, 'G', 'I', 'F', '8');
+
+    /**
+     * Enough leading bytes to tell every format apart.
+     */
+    static final int HEADER_LENGTH = 8;
+
+    private final String contentType;
+    private final int[] magic;
+
+    ImageFormat(String contentType, int... magic) {
+        this.contentType = contentType;
+        this.magic = magic;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    static Optional<ImageFormat> detect(byte[] header, int length) {
+        for (ImageFormat format : values()) {
+            if (format.matches(header, length)) {
+                return Optional.of(format);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private boolean matches(byte[] header, int length) {
+        if (length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((header[i] & 0xFF) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
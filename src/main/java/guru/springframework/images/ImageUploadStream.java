@@ -0,0 +1,120 @@
+package guru.springframework.images;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+
+/**
+ * Reads an upload once on its way to storage: the format is checked from the first bytes before anything is
+ * stored, the content is hashed and counted as it passes, and reading fails as soon as it exceeds the size limit,
+ * so an oversized upload is never read to its end.
+ */
+public class ImageUploadStream extends FilterInputStream {
+
+    private final ImageFormat format;
+    private final long maxSize;
+    private final MessageDigest digest = ContentHash.newDigest();
+    private long length;
+
+    private ImageUploadStream(InputStream in, ImageFormat format, long maxSize) {
+        super(in);
+        this.format = format;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Reads the leading bytes to recognise the format; they are read again through the returned stream.
+     *
+     * @throws UnsupportedImageException if the content is not one of the {@link ImageFormat}s
+     */
+    public static ImageUploadStream open(InputStream inputStream, long maxSize) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(inputStream);
+        byte[] header = new byte[ImageFormat.HEADER_LENGTH];
+        in.mark(header.length);
+        int read = 0;
+        for (int count; read < header.length && (count = in.read(header, read, header.length - read)) != -1; ) {
+            read += count;
+        }
+        in.reset();
+
+        int headerLength = read;
+        ImageFormat format = ImageFormat.detect(header, headerLength)
+                .orElseThrow(() -> new UnsupportedImageException("Not a JPEG, PNG or GIF image"));
+        return new ImageUploadStream(in, format, maxSize);
+    }
+
+    public ImageFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * @return the bytes read so far
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * @return the hash of the content read so far, only meaningful once the stream is read to its end
+     */
+    public String getContentHash() {
+        return ContentHash.toHex(digest);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b != -1) {
+            count(1);
+            digest.update((byte) b);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int count = in.read(b, off, len);
+        if (count > 0) {
+            count(count);
+            digest.update(b, off, count);
+        }
+        return count;
+    }
+
+    @Override
+    public long skip(long n) {
+        //every byte has to pass the digest
+        return 0;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void count(int count) throws ImageTooLargeException {
+        length += count;
+        if (length > maxSize) {
+            throw new ImageTooLargeException("Image is larger than " + maxSize + " bytes");
+        }
+    }
+
+    /**
+     * An {@link IOException}, so storage that reads the stream aborts and removes what it wrote so far.
+     */
+    public static class ImageTooLargeException extends IOException {
+
+        public ImageTooLargeException(String message) {
+            super(message);
+        }
+    }
+
+    public static class UnsupportedImageException extends IOException {
+
+        public UnsupportedImageException(String message) {
+            super(message);
+        }
+    }
+}
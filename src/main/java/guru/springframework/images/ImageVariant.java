@@ -0,0 +1,54 @@
+package guru.springframework.images;
+
+import guru.springframework.domain.ImageMetadata;
+
+import java.util.Optional;
+
+/**
+ * The fixed set of renditions served for a recipe image. Every variant except {@link #FULL} is a downscaled,
+ * recompressed JPEG whose longest side is at most {@link #getMaxDimension()} pixels.
+ */
+public enum ImageVariant {
+    THUMB("thumb", 160),
+    MEDIUM("medium", 640),
+    FULL("full", 0);
+
+    private final String name;
+    private final int maxDimension;
+
+    ImageVariant(String name, int maxDimension) {
+        this.name = name;
+        this.maxDimension = maxDimension;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxDimension() {
+        return maxDimension;
+    }
+
+    /**
+     * @return the stored rendition of the given original image, or an empty optional if it has not been
+     * generated yet
+     */
+    public Optional<ImageMetadata> of(ImageMetadata original) {
+        if (this == FULL) {
+            return Optional.of(original);
+        }
+        return Optional.ofNullable(original.getVariants().get(name));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the name does not denote a variant
+     */
+    public static ImageVariant fromName(String name) {
+        for (ImageVariant variant : values()) {
+            if (variant.name.equalsIgnoreCase(name)) {
+                return variant;
+            }
+        }
+        throw new IllegalArgumentException("Unknown image size: " + name);
+    }
+}
@@ -0,0 +1,238 @@
+package guru.springframework.images;
+
+import guru.springframework.domain.ImageMetadata;
+import guru.springframework.metrics.ImageMetrics;
+import guru.springframework.repositories.ImageBlobRepository;
+import guru.springframework.repositories.RecipeRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.data.mongodb.gridfs.GridFsOperations;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Generates the downscaled {@link ImageVariant}s of an uploaded recipe image with ImageIO. Work runs on a small
+ * fixed pool with a bounded queue; when the queue is full the request is dropped and the image keeps being
+ * served at full size.
+ */
+@Slf4j
+@Component
+public class ImageVariantGenerator implements DisposableBean {
+
+    private final GridFsOperations gridFsOperations;
+    private final RecipeRepository recipeRepository;
+    private final ImageBlobRepository imageBlobRepository;
+    private final float jpegQuality;
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolExecutor executor;
+
+    public ImageVariantGenerator(GridFsOperations gridFsOperations, RecipeRepository recipeRepository,
+                                 ImageBlobRepository imageBlobRepository, MeterRegistry meterRegistry,
+                                 @Value("${recipe.image.variants.threads:2}") int threads,
+                                 @Value("${recipe.image.variants.queue-capacity:100}") int queueCapacity,
+                                 @Value("${recipe.image.variants.jpeg-quality:0.8}") float jpegQuality) {
+        this.gridFsOperations = gridFsOperations;
+        this.recipeRepository = recipeRepository;
+        this.imageBlobRepository = imageBlobRepository;
+        this.jpegQuality = jpegQuality;
+        this.meterRegistry = meterRegistry;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "image-variants-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Schedules generation of every variant of a freshly stored image. The variants are stored once with the
+     * {@link guru.springframework.domain.ImageBlob} and recorded on every recipe showing the image.
+     */
+    public void submit(String recipeId, ImageMetadata original, Resource source) {
+        try {
+            executor.execute(() -> generate(recipeId, original, source));
+        } catch (RejectedExecutionException e) {
+            log.warn("Image variant queue is full, recipe " + recipeId + " will be served at full size");
+        }
+    }
+
+    void generate(String recipeId, ImageMetadata original, Resource source) {
+        try {
+            BufferedImage image = read(source);
+            if (image == null) {
+                log.debug("No ImageIO reader for the image of recipe " + recipeId + ", no variants generated");
+                return;
+            }
+
+            for (ImageVariant variant : ImageVariant.values()) {
+                if (variant != ImageVariant.FULL) {
+                    store(recipeId, original, variant, image);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Generating image variants failed for recipe " + recipeId, e);
+        }
+    }
+
+    private void store(String recipeId, ImageMetadata original, ImageVariant variant, BufferedImage image) throws IOException {
+        if (Math.max(image.getWidth(), image.getHeight()) <= variant.getMaxDimension()) {
+            //already small enough, the original doubles as this variant
+            record(original, variant, copyOf(original));
+            return;
+        }
+
+        byte[] bytes = encodeJpeg(scale(image, variant.getMaxDimension()));
+        Document metadata = new Document("recipeId", recipeId)
+                .append("contentHash", original.getContentHash())
+                .append("variant", variant.getName());
+        ObjectId fileId = gridFsOperations.store(new ByteArrayInputStream(bytes), null, MediaType.IMAGE_JPEG_VALUE, metadata);
+
+        ImageMetadata stored = new ImageMetadata(fileId.toHexString(), MediaType.IMAGE_JPEG_VALUE, bytes.length, new Date(),
+                ContentHash.of(bytes));
+        if (!record(original, variant, stored)) {
+            //no recipe showed the image anymore and it was collected while this variant was being generated
+            gridFsOperations.delete(query(where("_id").is(fileId)));
+            return;
+        }
+        ImageMetrics.recordSize(meterRegistry, variant.getName(), bytes.length);
+    }
+
+    /**
+     * @return {@code false} if the image is not stored anymore
+     */
+    private boolean record(ImageMetadata original, ImageVariant variant, ImageMetadata stored) {
+        if (!imageBlobRepository.addVariant(original.getContentHash(), original.getFileId(), variant.getName(), stored)) {
+            return false;
+        }
+        //recipes that took the image before this variant existed
+        recipeRepository.addImageVariant(original.getContentHash(), variant.getName(), stored);
+        return true;
+    }
+
+    /**
+     * Decodes the image, subsampling large sources while decoding so a high resolution photo is never fully
+     * expanded in memory.
+     */
+    private BufferedImage read(Resource source) throws IOException {
+        int largestVariant = ImageVariant.MEDIUM.getMaxDimension();
+
+        try (InputStream inputStream = source.getInputStream();
+             ImageInputStream imageInputStream = ImageIO.createImageInputStream(inputStream)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInputStream);
+            if (!readers.hasNext()) {
+                return null;
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInputStream, true, true);
+                int longestSide = Math.max(reader.getWidth(0), reader.getHeight(0));
+
+                //keep at least twice the resolution of the largest variant so downscaling stays smooth
+                int subsampling = Math.max(1, longestSide / (2 * largestVariant));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scales the image so its longest side is at most {@code maxDimension}, halving in steps for a better result
+     * than a single bilinear pass.
+     */
+    static BufferedImage scale(BufferedImage image, int maxDimension) {
+        double ratio = Math.min(1d, (double) maxDimension / Math.max(image.getWidth(), image.getHeight()));
+        int targetWidth = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+
+        BufferedImage current = image;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            current = draw(current, width, height);
+        } while (width != targetWidth || height != targetHeight);
+
+        return current;
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height) {
+        //JPEG has no alpha channel, flatten onto white
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOutputStream = ImageIO.createImageOutputStream(outputStream)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+
+            writer.setOutput(imageOutputStream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static ImageMetadata copyOf(ImageMetadata original) {
+        return new ImageMetadata(original.getFileId(), original.getContentType(), original.getLength(),
+                original.getUploadDate(), original.getContentHash());
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
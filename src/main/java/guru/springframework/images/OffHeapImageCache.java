@@ -0,0 +1,484 @@
+package guru.springframework.images;
+
+import guru.springframework.domain.ImageMetadata;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the most popular images in direct memory, outside the Java heap, in front of the {@link ImageFileCache}.
+ * <p>
+ * The memory, {@code recipe.image.memory-cache.max-size}, is allocated once as slabs of direct buffers split into
+ * fixed size blocks; an image takes as many blocks as it needs, so the budget holds exactly and nothing is left to
+ * the garbage collector. Keys are spread over independently locked segments with a share of the blocks each, so
+ * requests for different images rarely wait for each other, and images are copied out without holding a lock.
+ * <p>
+ * Each segment evicts least recently used first, but a new image only displaces one that has been requested less
+ * often recently (TinyLFU admission), so a burst of one-off requests cannot flush the popular images. A size of 0
+ * disables the cache.
+ */
+@Slf4j
+@Component
+public class OffHeapImageCache {
+
+    static final int SEGMENTS = 16;
+    private static final int MAX_SLAB_SIZE = 64 * 1024 * 1024;
+
+    private final int blockSize;
+    private final long maxEntrySize;
+    private final Segment[] segments;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    public OffHeapImageCache(@Value("${recipe.image.memory-cache.max-size:64MB}") DataSize maxSize,
+                             @Value("${recipe.image.memory-cache.block-size:16KB}") DataSize blockSize,
+                             @Value("${recipe.image.memory-cache.max-entry-size:2MB}") DataSize maxEntrySize) {
+        this.blockSize = (int) blockSize.toBytes();
+        int blocksPerSegment = (int) Math.min(Integer.MAX_VALUE, maxSize.toBytes() / this.blockSize / SEGMENTS);
+        this.maxEntrySize = Math.min(maxEntrySize.toBytes(), (long) blocksPerSegment * this.blockSize);
+
+        this.segments = new Segment[blocksPerSegment > 0 ? SEGMENTS : 0];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(blocksPerSegment);
+        }
+        if (isEnabled()) {
+            log.info("Off-heap image cache of " + (long) blocksPerSegment * SEGMENTS * this.blockSize + " bytes in "
+                    + this.blockSize + " byte blocks");
+        }
+    }
+
+    public boolean isEnabled() {
+        return segments.length > 0;
+    }
+
+    /**
+     * Serves an image from memory once it is popular enough to be admitted, otherwise from {@code source}.
+     * Nothing is read until the content is asked for.
+     */
+    public Resource resource(ImageMetadata imageMetadata, Resource source) {
+        if (!isEnabled() || imageMetadata.getContentHash() == null || imageMetadata.getLength() > maxEntrySize
+                || imageMetadata.getLength() <= 0) {
+            return source;
+        }
+        return new OffHeapImageResource(imageMetadata, source);
+    }
+
+    /**
+     * @return a reader of the cached image that keeps its memory from being reused until it is closed, or
+     * {@code null} if the image is not cached
+     */
+    Entry open(String contentHash) {
+        Segment segment = segment(contentHash);
+        Entry entry;
+        segment.lock.lock();
+        try {
+            entry = segment.entries.get(contentHash);
+            if (entry != null) {
+                entry.pins++;
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+        (entry != null ? hits : misses).increment();
+        return entry;
+    }
+
+    boolean contains(String contentHash) {
+        Segment segment = segment(contentHash);
+        segment.lock.lock();
+        try {
+            return segment.entries.containsKey(contentHash);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    void recordAccess(String contentHash) {
+        Segment segment = segment(contentHash);
+        segment.lock.lock();
+        try {
+            segment.sketch.increment(contentHash);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Copies an image into memory if it is admitted.
+     *
+     * @return whether the image is cached now
+     */
+    boolean load(String contentHash, int length, Resource source) throws IOException {
+        Segment segment = segment(contentHash);
+        Entry entry = segment.reserve(contentHash, length);
+        if (entry == null) {
+            return contains(contentHash);
+        }
+
+        boolean copied = false;
+        try (ReadableByteChannel channel = source.readableChannel()) {
+            entry.copyFrom(channel);
+            copied = true;
+        } finally {
+            segment.complete(contentHash, entry, copied);
+        }
+        return true;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return how often an image was not cached because it is requested less often than the ones it would replace
+     */
+    public long getRejectionCount() {
+        return rejections.sum();
+    }
+
+    public int getEntryCount() {
+        int count = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                count += segment.entries.size();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the bytes of the blocks in use, including images being copied in and evicted images still being read
+     */
+    public long getUsedBytes() {
+        long used = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                used += (long) (segment.blockCount - segment.freeCount) * blockSize;
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return used;
+    }
+
+    public long getCapacityBytes() {
+        long capacity = 0;
+        for (Segment segment : segments) {
+            capacity += (long) segment.blockCount * blockSize;
+        }
+        return capacity;
+    }
+
+    private Segment segment(String contentHash) {
+        return segments[segmentIndex(contentHash)];
+    }
+
+    static int segmentIndex(String contentHash) {
+        int hash = contentHash.hashCode();
+        return (hash ^ (hash >>> 16)) & (SEGMENTS - 1);
+    }
+
+    private final class Segment {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private final List<ByteBuffer> slabs = new ArrayList<>();
+        private final int blocksPerSlab;
+        private final int blockCount;
+        private final int[] freeBlocks;
+        private int freeCount;
+        private final FrequencySketch sketch;
+
+        Segment(int blockCount) {
+            this.blockCount = blockCount;
+            this.blocksPerSlab = Math.max(1, MAX_SLAB_SIZE / blockSize);
+            for (int allocated = 0; allocated < blockCount; allocated += blocksPerSlab) {
+                slabs.add(ByteBuffer.allocateDirect(Math.min(blocksPerSlab, blockCount - allocated) * blockSize));
+            }
+            this.freeBlocks = new int[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                freeBlocks[i] = blockCount - 1 - i;
+            }
+            this.freeCount = blockCount;
+            this.sketch = new FrequencySketch(blockCount);
+        }
+
+        /**
+         * Takes the blocks for a new image, evicting images requested less often than it.
+         *
+         * @return the entry to copy the image into, or {@code null} if it is cached already or not admitted
+         */
+        Entry reserve(String contentHash, int length) {
+            int needed = (length + blockSize - 1) / blockSize;
+            lock.lock();
+            try {
+                if (entries.containsKey(contentHash)) {
+                    return null;
+                }
+                //pick the victims first, so a rejected image leaves the segment as it was
+                int frequency = sketch.frequency(contentHash);
+                List<Map.Entry<String, Entry>> victims = new ArrayList<>();
+                int available = freeCount;
+                Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+                while (available < needed) {
+                    if (!eldest.hasNext()) {
+                        //the rest of the blocks are held by images still being read or copied in
+                        rejections.increment();
+                        return null;
+                    }
+                    Map.Entry<String, Entry> victim = eldest.next();
+                    if (victim.getValue().pins > 0) {
+                        //evicting it would not free its blocks before it is read
+                        continue;
+                    }
+                    if (frequency <= sketch.frequency(victim.getKey())) {
+                        rejections.increment();
+                        return null;
+                    }
+                    victims.add(victim);
+                    available += victim.getValue().blocks.length;
+                }
+
+                for (Map.Entry<String, Entry> victim : victims) {
+                    entries.remove(victim.getKey());
+                    evictions.increment();
+                    victim.getValue().evicted = true;
+                    free(victim.getValue());
+                }
+
+                int[] blocks = new int[needed];
+                for (int i = 0; i < needed; i++) {
+                    blocks[i] = freeBlocks[--freeCount];
+                }
+                return new Entry(this, blocks, length);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void complete(String contentHash, Entry entry, boolean copied) {
+            lock.lock();
+            try {
+                if (copied && !entries.containsKey(contentHash)) {
+                    entries.put(contentHash, entry);
+                } else {
+                    free(entry);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void release(Entry entry) {
+            lock.lock();
+            try {
+                if (--entry.pins == 0 && entry.evicted) {
+                    free(entry);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void free(Entry entry) {
+            for (int block : entry.blocks) {
+                freeBlocks[freeCount++] = block;
+            }
+        }
+
+        /**
+         * @return a view of part of a block; the buffer is private to the caller
+         */
+        ByteBuffer block(int block, int length) {
+            ByteBuffer slab = slabs.get(block / blocksPerSlab).duplicate();
+            int offset = (block % blocksPerSlab) * blockSize;
+            slab.limit(offset + length).position(offset);
+            return slab.slice();
+        }
+    }
+
+    /**
+     * A cached image. Its blocks are only written before it is published and only freed once nobody reads them.
+     */
+    final class Entry {
+
+        private final Segment segment;
+        private final int[] blocks;
+        private final int length;
+        private int pins;
+        private boolean evicted;
+
+        Entry(Segment segment, int[] blocks, int length) {
+            this.segment = segment;
+            this.blocks = blocks;
+            this.length = length;
+        }
+
+        int getLength() {
+            return length;
+        }
+
+        private ByteBuffer block(int index) {
+            return segment.block(blocks[index], Math.min(blockSize, length - index * blockSize));
+        }
+
+        private void copyFrom(ReadableByteChannel channel) throws IOException {
+            for (int i = 0; i < blocks.length; i++) {
+                ByteBuffer block = block(i);
+                while (block.hasRemaining()) {
+                    if (channel.read(block) < 0) {
+                        throw new EOFException("Image is shorter than its recorded length of " + length + " bytes");
+                    }
+                }
+            }
+        }
+
+        /**
+         * Reads the image without copying it to the heap when the target buffer is direct. Closing the channel
+         * releases the image.
+         */
+        ReadableByteChannel channel() {
+            return new ReadableByteChannel() {
+
+                private int index;
+                private ByteBuffer current;
+                private boolean open = true;
+
+                @Override
+                public int read(ByteBuffer target) throws IOException {
+                    if (!open) {
+                        throw new IOException("Channel closed");
+                    }
+                    while (current == null || !current.hasRemaining()) {
+                        if (index == blocks.length) {
+                            return -1;
+                        }
+                        current = block(index++);
+                    }
+                    int count = Math.min(target.remaining(), current.remaining());
+                    ByteBuffer chunk = current.duplicate();
+                    chunk.limit(chunk.position() + count);
+                    target.put(chunk);
+                    current.position(current.position() + count);
+                    return count;
+                }
+
+                @Override
+                public boolean isOpen() {
+                    return open;
+                }
+
+                @Override
+                public void close() {
+                    if (open) {
+                        open = false;
+                        segment.release(Entry.this);
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * Length and modification time come from the metadata, so answering a conditional request reads nothing.
+     */
+    private class OffHeapImageResource extends AbstractResource {
+
+        private final ImageMetadata imageMetadata;
+        private final Resource source;
+        private boolean accessed;
+
+        OffHeapImageResource(ImageMetadata imageMetadata, Resource source) {
+            this.imageMetadata = imageMetadata;
+            this.source = source;
+        }
+
+        /**
+         * Cached images are served from memory rather than the file below.
+         */
+        @Override
+        public boolean isFile() {
+            return !ensureLoaded() && source.isFile();
+        }
+
+        @Override
+        public File getFile() throws IOException {
+            return source.getFile();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return Channels.newInputStream(readableChannel());
+        }
+
+        @Override
+        public ReadableByteChannel readableChannel() throws IOException {
+            ensureLoaded();
+            Entry entry = open(imageMetadata.getContentHash());
+            return entry != null ? entry.channel() : source.readableChannel();
+        }
+
+        @Override
+        public long contentLength() {
+            return imageMetadata.getLength();
+        }
+
+        @Override
+        public long lastModified() {
+            return imageMetadata.getUploadDate().getTime();
+        }
+
+        @Override
+        public String getDescription() {
+            return "off-heap image [" + imageMetadata.getContentHash() + "]";
+        }
+
+        private synchronized boolean ensureLoaded() {
+            String contentHash = imageMetadata.getContentHash();
+            if (!accessed) {
+                accessed = true;
+                recordAccess(contentHash);
+                try {
+                    return load(contentHash, (int) imageMetadata.getLength(), source);
+                } catch (IOException e) {
+                    log.warn("Caching image " + contentHash + " in memory failed", e);
+                    return false;
+                }
+            }
+            return contains(contentHash);
+        }
+    }
+}
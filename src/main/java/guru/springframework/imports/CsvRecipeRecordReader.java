@@ -0,0 +1,248 @@
+package guru.springframework.imports;
+
+import guru.springframework.commands.CategoryCommand;
+import guru.springframework.commands.IngredientCommand;
+import guru.springframework.commands.NotesCommand;
+import guru.springframework.commands.RecipeCommand;
+import guru.springframework.commands.UnitOfMeasureCommand;
+import guru.springframework.domain.Difficulty;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads recipes from CSV with a header row naming the {@link #COLUMNS}, in any order, quoted as in RFC 4180.
+ * Categories are separated by {@code |}, and so are ingredients, each written as
+ * {@code amount;unit of measure;description}.
+ */
+class CsvRecipeRecordReader implements RecipeRecordReader {
+
+    static final List<String> COLUMNS = Arrays.asList("description", "prepTime", "cookTime", "servings", "difficulty",
+            "source", "url", "directions", "notes", "categories", "ingredients");
+
+    private static final int NONE = -2;
+
+    private final Reader reader;
+    private final int maxRecordLength;
+    private final List<String> fields = new ArrayList<>();
+    private final StringBuilder field = new StringBuilder();
+    private Map<String, Integer> header;
+    private long number;
+    private int pushedBack = NONE;
+    private int recordLength;
+    private boolean tooLong;
+    private boolean unterminated;
+
+    CsvRecipeRecordReader(Reader reader, int maxRecordLength) {
+        this.reader = reader;
+        this.maxRecordLength = maxRecordLength;
+    }
+
+    @Override
+    public RecipeRecord next() throws IOException {
+        if (header == null) {
+            readHeader();
+        }
+        while (readRecord()) {
+            if (!tooLong && !unterminated && fields.size() == 1 && fields.get(0).trim().isEmpty()) {
+                continue;
+            }
+
+            number++;
+            if (tooLong) {
+                return RecipeRecord.rejected(number, "Record is longer than " + maxRecordLength + " characters");
+            }
+            if (unterminated) {
+                return RecipeRecord.rejected(number, "Quoted field is not terminated");
+            }
+            try {
+                return RecipeRecord.parsed(number, toCommand());
+            } catch (IllegalArgumentException e) {
+                return RecipeRecord.rejected(number, e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private void readHeader() throws IOException {
+        header = new HashMap<>();
+        if (!readRecord()) {
+            return;
+        }
+        if (tooLong || unterminated) {
+            throw new IOException("CSV header row is not readable");
+        }
+        for (int i = 0; i < fields.size(); i++) {
+            //a byte order mark is decoded as a character of its own
+            String name = (i == 0 ? fields.get(i).replace("\uFEFF", "") : fields.get(i)).trim();
+            String column = COLUMNS.stream().filter(name::equalsIgnoreCase).findFirst()
+                    .orElseThrow(() -> new IOException("Unknown CSV column: " + name + ", expected " + COLUMNS));
+            header.put(column, i);
+        }
+    }
+
+    /**
+     * @return {@code false} at the end of the input
+     */
+    private boolean readRecord() throws IOException {
+        fields.clear();
+        field.setLength(0);
+        recordLength = 0;
+        tooLong = false;
+        unterminated = false;
+
+        boolean quoted = false;
+        boolean read = false;
+        int c;
+        while ((c = read()) != -1) {
+            read = true;
+            if (quoted) {
+                if (c != '"') {
+                    append(c);
+                } else {
+                    int next = read();
+                    if (next == '"') {
+                        append('"');
+                    } else {
+                        quoted = false;
+                        pushedBack = next;
+                    }
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                endField();
+            } else if (c == '\n') {
+                endField();
+                return true;
+            } else if (c != '\r') {
+                append(c);
+            }
+        }
+        if (!read) {
+            return false;
+        }
+        unterminated = quoted;
+        endField();
+        return true;
+    }
+
+    private int read() throws IOException {
+        if (pushedBack != NONE) {
+            int c = pushedBack;
+            pushedBack = NONE;
+            return c;
+        }
+        return reader.read();
+    }
+
+    private void append(int c) {
+        if (++recordLength > maxRecordLength) {
+            tooLong = true;
+        } else {
+            field.append((char) c);
+        }
+    }
+
+    private void endField() {
+        fields.add(field.toString());
+        field.setLength(0);
+    }
+
+    private RecipeCommand toCommand() {
+        RecipeCommand command = new RecipeCommand();
+        command.setDescription(value("description"));
+        command.setPrepTime(integerValue("prepTime"));
+        command.setCookTime(integerValue("cookTime"));
+        command.setServings(integerValue("servings"));
+        command.setSource(value("source"));
+        command.setUrl(value("url"));
+        command.setDirections(value("directions"));
+
+        String difficulty = value("difficulty");
+        if (difficulty != null) {
+            try {
+                command.setDifficulty(Difficulty.valueOf(difficulty.toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("difficulty is not one of " + Arrays.toString(Difficulty.values())
+                        + ": " + difficulty);
+            }
+        }
+        String notes = value("notes");
+        if (notes != null) {
+            NotesCommand notesCommand = new NotesCommand();
+            notesCommand.setRecipeNotes(notes);
+            command.setNotes(notesCommand);
+        }
+        for (String description : split(value("categories"))) {
+            CategoryCommand category = new CategoryCommand();
+            category.setDescription(description);
+            command.getCategories().add(category);
+        }
+        for (String ingredient : split(value("ingredients"))) {
+            command.getIngredients().add(toIngredient(ingredient));
+        }
+        return command;
+    }
+
+    private static IngredientCommand toIngredient(String value) {
+        String[] parts = value.split(";", 3);
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("ingredient is not amount;unit of measure;description: " + value);
+        }
+        IngredientCommand ingredient = new IngredientCommand();
+        String amount = parts[0].trim();
+        if (!amount.isEmpty()) {
+            try {
+                ingredient.setAmount(new BigDecimal(amount));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("ingredient amount is not a number: " + amount);
+            }
+        }
+        String unitOfMeasure = parts[1].trim();
+        if (!unitOfMeasure.isEmpty()) {
+            UnitOfMeasureCommand uom = new UnitOfMeasureCommand();
+            uom.setDescription(unitOfMeasure);
+            ingredient.setUom(uom);
+        }
+        ingredient.setDescription(parts[2].trim());
+        return ingredient;
+    }
+
+    private String value(String column) {
+        Integer index = header.get(column);
+        if (index == null || index >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private Integer integerValue(String column) {
+        String value = value(column);
+        try {
+            return value == null ? null : Integer.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(column + " is not a whole number: " + value);
+        }
+    }
+
+    private static List<String> split(String value) {
+        List<String> parts = new ArrayList<>();
+        if (value != null) {
+            for (String part : value.split("\\|")) {
+                if (!part.trim().isEmpty()) {
+                    parts.add(part.trim());
+                }
+            }
+        }
+        return parts;
+    }
+}
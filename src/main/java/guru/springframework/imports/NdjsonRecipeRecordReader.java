@@ -0,0 +1,69 @@
+package guru.springframework.imports;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import guru.springframework.commands.RecipeCommand;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads one {@link RecipeCommand} as JSON per line. A malformed line rejects that record only.
+ */
+class NdjsonRecipeRecordReader implements RecipeRecordReader {
+
+    private static final ObjectReader COMMAND_READER = new ObjectMapper().readerFor(RecipeCommand.class);
+
+    private final Reader reader;
+    private final int maxRecordLength;
+    private final StringBuilder line = new StringBuilder();
+    private long number;
+
+    NdjsonRecipeRecordReader(Reader reader, int maxRecordLength) {
+        this.reader = reader;
+        this.maxRecordLength = maxRecordLength;
+    }
+
+    @Override
+    public RecipeRecord next() throws IOException {
+        while (true) {
+            line.setLength(0);
+            boolean tooLong = false;
+            int c;
+            while ((c = reader.read()) != -1 && c != '\n') {
+                if (line.length() < maxRecordLength) {
+                    line.append((char) c);
+                } else {
+                    //keep reading to the end of the line, but not into memory
+                    tooLong = true;
+                }
+            }
+            if (!tooLong && isBlank(line)) {
+                if (c == -1) {
+                    return null;
+                }
+                continue;
+            }
+
+            number++;
+            if (tooLong) {
+                return RecipeRecord.rejected(number, "Record is longer than " + maxRecordLength + " characters");
+            }
+            try {
+                return RecipeRecord.parsed(number, COMMAND_READER.readValue(line.toString()));
+            } catch (JsonProcessingException e) {
+                return RecipeRecord.rejected(number, "Malformed JSON: " + e.getOriginalMessage());
+            }
+        }
+    }
+
+    private static boolean isBlank(CharSequence chars) {
+        for (int i = 0; i < chars.length(); i++) {
+            if (!Character.isWhitespace(chars.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
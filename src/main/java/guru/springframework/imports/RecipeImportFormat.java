@@ -0,0 +1,38 @@
+package guru.springframework.imports;
+
+import org.springframework.http.MediaType;
+
+import java.io.Reader;
+
+public enum RecipeImportFormat {
+
+    NDJSON(RecipeImportFormat.NDJSON_VALUE),
+    CSV(RecipeImportFormat.CSV_VALUE);
+
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+    public static final String CSV_VALUE = "text/csv";
+
+    private final MediaType mediaType;
+
+    RecipeImportFormat(String mediaType) {
+        this.mediaType = MediaType.parseMediaType(mediaType);
+    }
+
+    /**
+     * @param maxRecordLength records longer than this many characters are rejected without being held in memory
+     */
+    public RecipeRecordReader reader(Reader reader, int maxRecordLength) {
+        return this == NDJSON
+                ? new NdjsonRecipeRecordReader(reader, maxRecordLength)
+                : new CsvRecipeRecordReader(reader, maxRecordLength);
+    }
+
+    public static RecipeImportFormat forMediaType(MediaType mediaType) {
+        for (RecipeImportFormat format : values()) {
+            if (format.mediaType.includes(mediaType)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("No import format for " + mediaType);
+    }
+}
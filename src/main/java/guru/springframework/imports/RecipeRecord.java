@@ -0,0 +1,34 @@
+package guru.springframework.imports;
+
+import guru.springframework.commands.RecipeCommand;
+import lombok.Getter;
+
+/**
+ * One record of an import, either parsed into a command or rejected with the reason it could not be parsed.
+ * Records are numbered from 1, blank lines are not counted.
+ */
+@Getter
+public class RecipeRecord {
+
+    private final long number;
+    private final RecipeCommand command;
+    private final String error;
+
+    private RecipeRecord(long number, RecipeCommand command, String error) {
+        this.number = number;
+        this.command = command;
+        this.error = error;
+    }
+
+    public static RecipeRecord parsed(long number, RecipeCommand command) {
+        return new RecipeRecord(number, command, null);
+    }
+
+    public static RecipeRecord rejected(long number, String error) {
+        return new RecipeRecord(number, null, error);
+    }
+
+    public boolean isRejected() {
+        return error != null;
+    }
+}
@@ -0,0 +1,15 @@
+package guru.springframework.imports;
+
+import java.io.IOException;
+
+/**
+ * Reads recipes one record at a time, so only the current record is held in memory whatever the size of the input.
+ */
+public interface RecipeRecordReader {
+
+    /**
+     * @return the next record, or {@code null} at the end of the input
+     * @throws IOException if reading fails or the input cannot be read as this format at all
+     */
+    RecipeRecord next() throws IOException;
+}
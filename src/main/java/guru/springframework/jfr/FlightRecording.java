@@ -0,0 +1,70 @@
+package guru.springframework.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+
+/**
+ * A continuous flight recording with the JDK's low overhead {@code default} settings plus the recipe events. It is
+ * kept on disk, bounded by {@code recipe.jfr.max-age} and {@code recipe.jfr.max-size}, and can be dumped at any
+ * time through the {@code flightrecording} endpoint.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "recipe.jfr.enabled", havingValue = "true")
+public class FlightRecording implements ApplicationListener<ApplicationReadyEvent>, DisposableBean {
+
+    private final Recording recording;
+
+    public FlightRecording(@Value("${recipe.jfr.settings:default}") String settings,
+                           @Value("${recipe.jfr.max-age:6h}") Duration maxAge,
+                           @Value("${recipe.jfr.max-size:256MB}") DataSize maxSize) throws IOException, ParseException {
+        recording = new Recording(Configuration.getConfiguration(settings));
+        recording.setName("recipe-app");
+        recording.setToDisk(true);
+        recording.setMaxAge(maxAge);
+        recording.setMaxSize(maxSize.toBytes());
+        for (Class<?> event : new Class<?>[]{RecipeLoadEvent.class, RecipeConversionEvent.class,
+                IngredientSaveEvent.class, ImageUploadEvent.class, ImageRenderEvent.class}) {
+            recording.enable(event.getName());
+        }
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        recording.start();
+        log.info("Continuous flight recording started, keeping " + recording.getMaxAge() + " of events");
+    }
+
+    /**
+     * Writes what the recording holds so far to a new temporary file, the recording keeps running.
+     */
+    public Path dump() throws IOException {
+        Path file = Files.createTempFile("recipe-app-", ".jfr");
+        try {
+            recording.dump(file);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return file;
+    }
+
+    @Override
+    public void destroy() {
+        recording.close();
+    }
+}
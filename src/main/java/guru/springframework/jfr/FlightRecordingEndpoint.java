@@ -0,0 +1,98 @@
+package guru.springframework.jfr;
+
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * {@code /actuator/flightrecording} downloads a dump of the continuous {@link FlightRecording}, to be opened in
+ * JDK Mission Control. The dump holds stack traces, system properties and the environment, so the endpoint is not
+ * exposed over HTTP unless added to {@code management.endpoints.web.exposure.include}, which should only be done on
+ * a management port not reachable by clients.
+ */
+@Component
+@WebEndpoint(id = "flightrecording")
+@ConditionalOnProperty(name = "recipe.jfr.enabled", havingValue = "true")
+public class FlightRecordingEndpoint {
+
+    private final FlightRecording flightRecording;
+
+    public FlightRecordingEndpoint(FlightRecording flightRecording) {
+        this.flightRecording = flightRecording;
+    }
+
+    @ReadOperation(produces = "application/octet-stream")
+    public WebEndpointResponse<Resource> dump() throws IOException {
+        return new WebEndpointResponse<>(new TemporaryFileResource(flightRecording.dump()));
+    }
+
+    /**
+     * Deletes the dump once it has been read. Not reported as a file, so it is always read through the methods
+     * below rather than transferred from the path.
+     */
+    static class TemporaryFileResource extends FileSystemResource {
+
+        private final Path path;
+
+        TemporaryFileResource(Path path) {
+            super(path);
+            this.path = path;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return new FilterInputStream(super.getInputStream()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        Files.deleteIfExists(path);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public ReadableByteChannel readableChannel() throws IOException {
+            ReadableByteChannel channel = super.readableChannel();
+            return new ReadableByteChannel() {
+                @Override
+                public int read(ByteBuffer dst) throws IOException {
+                    return channel.read(dst);
+                }
+
+                @Override
+                public boolean isOpen() {
+                    return channel.isOpen();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        channel.close();
+                    } finally {
+                        Files.deleteIfExists(path);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public boolean isFile() {
+            return false;
+        }
+    }
+}
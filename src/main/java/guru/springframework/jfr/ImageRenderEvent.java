@@ -0,0 +1,29 @@
+package guru.springframework.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Covers looking up the image and preparing the response. The content is written afterwards on the same thread,
+ * it shows up as socket writes following this event.
+ */
+@Name("guru.springframework.ImageRender")
+@Label("Image Render")
+@Description("A recipe image, or one of its variants, served")
+@Category({"Recipe App", "Images"})
+public class ImageRenderEvent extends Event {
+
+    @Label("Recipe Id")
+    public String recipeId;
+
+    @Label("Variant")
+    public String variant;
+
+    @Label("Image Bytes")
+    @DataAmount
+    public long imageBytes;
+}
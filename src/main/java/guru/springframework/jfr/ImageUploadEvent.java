@@ -0,0 +1,29 @@
+package guru.springframework.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("guru.springframework.ImageUpload")
+@Label("Image Upload")
+@Description("An uploaded recipe image stored in GridFS, variants are generated afterwards")
+@Category({"Recipe App", "Images"})
+public class ImageUploadEvent extends Event {
+
+    @Label("Recipe Id")
+    public String recipeId;
+
+    @Label("Content Type")
+    public String contentType;
+
+    @Label("Image Bytes")
+    @DataAmount
+    public long imageBytes;
+
+    @Label("Duplicate")
+    @Description("The same image was stored already and is shared")
+    public boolean duplicate;
+}
@@ -0,0 +1,31 @@
+package guru.springframework.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The ingredient is written with an in-place update and the recipe is never loaded, so unlike the other recipe
+ * events this one has no recipe size.
+ */
+@Name("guru.springframework.IngredientSave")
+@Label("Ingredient Save")
+@Description("An ingredient added to or updated in a recipe, including optimistic locking retries")
+@Category({"Recipe App", "Ingredients"})
+public class IngredientSaveEvent extends Event {
+
+    @Label("Recipe Id")
+    public String recipeId;
+
+    @Label("Ingredient Id")
+    public String ingredientId;
+
+    @Label("New Ingredient")
+    public boolean newIngredient;
+
+    @Label("Ingredient Count")
+    @Description("Ingredients written")
+    public int ingredientCount;
+}
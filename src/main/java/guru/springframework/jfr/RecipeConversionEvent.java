@@ -0,0 +1,33 @@
+package guru.springframework.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("guru.springframework.RecipeConversion")
+@Label("Recipe Conversion")
+@Description("A recipe converted to or from its form command")
+@Category({"Recipe App", "Recipes"})
+public class RecipeConversionEvent extends Event {
+
+    @Label("Converter")
+    public String converter;
+
+    @Label("Recipe Id")
+    public String recipeId;
+
+    @Label("Recipe Size")
+    @Description("Characters of text in the recipe and its ingredients")
+    public long recipeSize;
+
+    @Label("Ingredient Count")
+    public int ingredientCount;
+
+    @Label("Image Bytes")
+    @Description("Size of the recipe image, commands carry none")
+    @DataAmount
+    public long imageBytes;
+}
@@ -0,0 +1,77 @@
+package guru.springframework.jfr;
+
+import guru.springframework.commands.IngredientCommand;
+import guru.springframework.commands.RecipeCommand;
+import guru.springframework.domain.Ingredient;
+import guru.springframework.domain.Recipe;
+
+/**
+ * Sizes the recipe events report. Only called once an event is going to be committed, so a disabled event costs
+ * nothing beyond its allocation.
+ */
+public final class RecipeEvents {
+
+    private RecipeEvents() {
+    }
+
+    public static void describe(RecipeLoadEvent event, Recipe recipe) {
+        event.found = recipe != null;
+        if (recipe != null) {
+            event.recipeSize = size(recipe);
+            event.ingredientCount = recipe.getIngredients().size();
+            event.imageBytes = imageBytes(recipe);
+        }
+    }
+
+    public static void describe(RecipeConversionEvent event, Recipe recipe) {
+        if (recipe != null) {
+            event.recipeId = recipe.getId();
+            event.recipeSize = size(recipe);
+            event.ingredientCount = recipe.getIngredients().size();
+            event.imageBytes = imageBytes(recipe);
+        }
+    }
+
+    public static void describe(RecipeConversionEvent event, RecipeCommand command) {
+        if (command != null) {
+            event.recipeId = command.getId();
+            event.recipeSize = size(command);
+            event.ingredientCount = command.getIngredients().size();
+        }
+    }
+
+    /**
+     * Characters of free text in the recipe, the part of a recipe that grows.
+     */
+    static long size(Recipe recipe) {
+        long size = length(recipe.getDescription()) + length(recipe.getDirections()) + length(recipe.getSource())
+                + length(recipe.getUrl());
+        if (recipe.getNotes() != null) {
+            size += length(recipe.getNotes().getRecipeNotes());
+        }
+        for (Ingredient ingredient : recipe.getIngredients()) {
+            size += length(ingredient.getDescription());
+        }
+        return size;
+    }
+
+    static long size(RecipeCommand command) {
+        long size = length(command.getDescription()) + length(command.getDirections()) + length(command.getSource())
+                + length(command.getUrl());
+        if (command.getNotes() != null) {
+            size += length(command.getNotes().getRecipeNotes());
+        }
+        for (IngredientCommand ingredient : command.getIngredients()) {
+            size += length(ingredient.getDescription());
+        }
+        return size;
+    }
+
+    private static long imageBytes(Recipe recipe) {
+        return recipe.getImageMetadata() != null ? recipe.getImageMetadata().getLength() : 0;
+    }
+
+    private static int length(String text) {
+        return text != null ? text.length() : 0;
+    }
+}
@@ -0,0 +1,32 @@
+package guru.springframework.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("guru.springframework.RecipeLoad")
+@Label("Recipe Load")
+@Description("A recipe read from Mongo together with its categories and units of measure")
+@Category({"Recipe App", "Recipes"})
+public class RecipeLoadEvent extends Event {
+
+    @Label("Recipe Id")
+    public String recipeId;
+
+    @Label("Found")
+    public boolean found;
+
+    @Label("Recipe Size")
+    @Description("Characters of text in the recipe and its ingredients")
+    public long recipeSize;
+
+    @Label("Ingredient Count")
+    public int ingredientCount;
+
+    @Label("Image Bytes")
+    @DataAmount
+    public long imageBytes;
+}
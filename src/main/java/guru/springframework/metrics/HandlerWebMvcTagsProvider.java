@@ -0,0 +1,29 @@
+package guru.springframework.metrics;
+
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.boot.actuate.metrics.web.servlet.DefaultWebMvcTagsProvider;
+import org.springframework.web.method.HandlerMethod;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Adds the controller method that handled a request to the default {@code http.server.requests} tags. The default
+ * {@code uri} tag is the request mapping's template, never the path with its ids.
+ */
+public class HandlerWebMvcTagsProvider extends DefaultWebMvcTagsProvider {
+
+    @Override
+    public Iterable<Tag> getTags(HttpServletRequest request, HttpServletResponse response, Object handler, Throwable exception) {
+        return Tags.of(super.getTags(request, response, handler, exception)).and(handler(handler));
+    }
+
+    static Tag handler(Object handler) {
+        if (handler instanceof HandlerMethod) {
+            HandlerMethod handlerMethod = (HandlerMethod) handler;
+            return Tag.of("handler", handlerMethod.getBeanType().getSimpleName() + "." + handlerMethod.getMethod().getName());
+        }
+        return Tag.of("handler", "none");
+    }
+}
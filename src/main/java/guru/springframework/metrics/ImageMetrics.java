@@ -0,0 +1,36 @@
+package guru.springframework.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Sizes of stored recipe images as {@code recipe.image.size}, tagged with the variant: {@code original} for
+ * uploads, the variant name for generated ones. Uploads are counted as {@code recipe.image.uploads}, tagged
+ * {@code stored} or {@code duplicate} when the same image was stored already.
+ */
+public final class ImageMetrics {
+
+    public static final String ORIGINAL = "original";
+
+    private ImageMetrics() {
+    }
+
+    public static void recordSize(MeterRegistry registry, String variant, long bytes) {
+        DistributionSummary.builder("recipe.image.size")
+                .baseUnit("bytes")
+                .tag("variant", variant)
+                //from a thumbnail to a large photo
+                .minimumExpectedValue(1024L)
+                .maximumExpectedValue(32L * 1024 * 1024)
+                .register(registry)
+                .record(bytes);
+    }
+
+    public static void recordUpload(MeterRegistry registry, boolean duplicate) {
+        Counter.builder("recipe.image.uploads")
+                .tag("result", duplicate ? "duplicate" : "stored")
+                .register(registry)
+                .increment();
+    }
+}
@@ -0,0 +1,124 @@
+package guru.springframework.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.Repository;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * Times every call into a {@code *ServiceImpl} bean as {@code service.calls} and into a Spring Data repository as
+ * {@code repository.calls}, tagged with the class or repository interface, the method name and the exception
+ * thrown. Arguments never become tags.
+ * <p>
+ * Beans returning reactive types are left alone, timing them would only measure assembling the pipeline.
+ */
+public class InvocationMetricsPostProcessor implements BeanPostProcessor {
+
+    private static final String PUBLISHER = "org.reactivestreams.Publisher";
+
+    //resolved on first use, a registry created this early would miss the filters Spring Boot applies to it
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public InvocationMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof Repository) {
+            Class<?> repositoryInterface = repositoryInterface(bean);
+            if (repositoryInterface != null && !isReactive(repositoryInterface)) {
+                return advise(bean, new InvocationTimer("repository.calls", "repository", repositoryInterface.getSimpleName()));
+            }
+        } else {
+            Class<?> type = AopUtils.getTargetClass(bean);
+            if (type.getSimpleName().endsWith("ServiceImpl") && !isReactive(type)) {
+                return advise(bean, new InvocationTimer("service.calls", "service", type.getSimpleName()));
+            }
+        }
+        return bean;
+    }
+
+    private static Object advise(Object bean, InvocationTimer timer) {
+        if (bean instanceof Advised && !((Advised) bean).isFrozen()) {
+            //outermost, so it also covers query methods that never reach the target
+            ((Advised) bean).addAdvice(0, timer);
+            return bean;
+        }
+        ProxyFactory proxyFactory = new ProxyFactory(bean);
+        proxyFactory.addAdvice(timer);
+        return proxyFactory.getProxy(ClassUtils.getDefaultClassLoader());
+    }
+
+    private static Class<?> repositoryInterface(Object repository) {
+        Class<?>[] interfaces = repository instanceof Advised
+                ? ((Advised) repository).getProxiedInterfaces()
+                : repository.getClass().getInterfaces();
+        return Arrays.stream(interfaces)
+                .filter(type -> type != Repository.class && Repository.class.isAssignableFrom(type))
+                .findFirst()
+                .orElse(null);
+    }
+
+    static boolean isReactive(Class<?> type) {
+        if (!ClassUtils.isPresent(PUBLISHER, type.getClassLoader())) {
+            return false;
+        }
+        Class<?> publisher = ClassUtils.resolveClassName(PUBLISHER, type.getClassLoader());
+        return Arrays.stream(type.getMethods()).map(Method::getReturnType).anyMatch(publisher::isAssignableFrom);
+    }
+
+    private class InvocationTimer implements MethodInterceptor {
+
+        private final String name;
+        private final String typeTag;
+        private final String type;
+        private volatile MeterRegistry registry;
+
+        InvocationTimer(String name, String typeTag, String type) {
+            this.name = name;
+            this.typeTag = typeTag;
+            this.type = type;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            MeterRegistry registry = registry();
+            if (registry == null || invocation.getMethod().getDeclaringClass() == Object.class) {
+                return invocation.proceed();
+            }
+
+            Timer.Sample sample = Timer.start(registry);
+            String exception = "none";
+            try {
+                return invocation.proceed();
+            } catch (Throwable e) {
+                exception = e.getClass().getSimpleName();
+                throw e;
+            } finally {
+                sample.stop(Timer.builder(name)
+                        .tag(typeTag, type)
+                        .tag("method", invocation.getMethod().getName())
+                        .tag("exception", exception)
+                        .register(registry));
+            }
+        }
+
+        private MeterRegistry registry() {
+            if (registry == null) {
+                registry = meterRegistry.getIfAvailable();
+            }
+            return registry;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package guru.springframework.metrics;
+
+import com.mongodb.MongoClientOptions;
+import guru.springframework.cache.ReferenceDataCache;
+import guru.springframework.cache.RenderedPageCache;
+import guru.springframework.images.ImageFileCache;
+import guru.springframework.images.OffHeapImageCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * Metrics beyond what Spring Boot records on its own. Everything is exported on {@code /actuator/prometheus} once
+ * that endpoint is exposed, on the management port.
+ */
+@Configuration
+public class MetricsConfiguration {
+
+    //static, a post processor is created before the configuration it is declared in
+    @Bean
+    public static InvocationMetricsPostProcessor invocationMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new InvocationMetricsPostProcessor(meterRegistry);
+    }
+
+    /**
+     * Picked up by the Mongo auto-configuration for the client it creates.
+     */
+    @Bean
+    public MongoClientOptions mongoClientOptions(MeterRegistry meterRegistry) {
+        return MongoClientOptions.builder()
+                .addCommandListener(new MongoCommandMetrics(meterRegistry))
+                .addConnectionPoolListener(new MongoPoolMetrics(meterRegistry, "sync"))
+                .build();
+    }
+
+    @Bean
+    public MeterBinder referenceDataCacheMetrics(List<ReferenceDataCache<?>> caches) {
+        return registry -> caches.forEach(cache -> {
+            FunctionCounter.builder("cache.gets", cache, ReferenceDataCache::getHitCount)
+                    .tag("cache", cache.getName())
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("cache.gets", cache, ReferenceDataCache::getMissCount)
+                    .tag("cache", cache.getName())
+                    .tag("result", "miss")
+                    .register(registry);
+        });
+    }
+
+    @Bean
+    public MeterBinder renderedPageCacheMetrics(RenderedPageCache cache) {
+        return registry -> {
+            FunctionCounter.builder("cache.gets", cache, RenderedPageCache::getHitCount)
+                    .tag("cache", "renderedPages")
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("cache.gets", cache, RenderedPageCache::getMissCount)
+                    .tag("cache", "renderedPages")
+                    .tag("result", "miss")
+                    .register(registry);
+            FunctionCounter.builder("cache.evictions", cache, RenderedPageCache::getEvictionCount)
+                    .tag("cache", "renderedPages")
+                    .register(registry);
+            Gauge.builder("cache.size", cache, RenderedPageCache::getPageCount)
+                    .tag("cache", "renderedPages")
+                    .register(registry);
+            Gauge.builder("cache.memory", cache, RenderedPageCache::getSize)
+                    .tag("cache", "renderedPages")
+                    .baseUnit("bytes")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder imageFileCacheMetrics(ImageFileCache cache) {
+        return registry -> {
+            FunctionCounter.builder("cache.gets", cache, ImageFileCache::getHitCount)
+                    .tag("cache", "imageFiles")
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("cache.gets", cache, ImageFileCache::getMissCount)
+                    .tag("cache", "imageFiles")
+                    .tag("result", "miss")
+                    .register(registry);
+            FunctionCounter.builder("cache.evictions", cache, ImageFileCache::getEvictionCount)
+                    .tag("cache", "imageFiles")
+                    .register(registry);
+            Gauge.builder("cache.size", cache, ImageFileCache::getFileCount)
+                    .tag("cache", "imageFiles")
+                    .register(registry);
+            Gauge.builder("cache.disk", cache, ImageFileCache::getSize)
+                    .tag("cache", "imageFiles")
+                    .baseUnit("bytes")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder offHeapImageCacheMetrics(OffHeapImageCache cache) {
+        return registry -> {
+            FunctionCounter.builder("cache.gets", cache, OffHeapImageCache::getHitCount)
+                    .tag("cache", "imageMemory")
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("cache.gets", cache, OffHeapImageCache::getMissCount)
+                    .tag("cache", "imageMemory")
+                    .tag("result", "miss")
+                    .register(registry);
+            FunctionCounter.builder("cache.evictions", cache, OffHeapImageCache::getEvictionCount)
+                    .tag("cache", "imageMemory")
+                    .register(registry);
+            FunctionCounter.builder("cache.rejections", cache, OffHeapImageCache::getRejectionCount)
+                    .tag("cache", "imageMemory")
+                    .register(registry);
+            Gauge.builder("cache.size", cache, OffHeapImageCache::getEntryCount)
+                    .tag("cache", "imageMemory")
+                    .register(registry);
+            Gauge.builder("cache.memory", cache, OffHeapImageCache::getUsedBytes)
+                    .tag("cache", "imageMemory")
+                    .baseUnit("bytes")
+                    .register(registry);
+            Gauge.builder("cache.memory.max", cache, OffHeapImageCache::getCapacityBytes)
+                    .tag("cache", "imageMemory")
+                    .baseUnit("bytes")
+                    .register(registry);
+        };
+    }
+}
@@ -0,0 +1,111 @@
+package guru.springframework.metrics;
+
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.ConnectionAddedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolClosedEvent;
+import com.mongodb.event.ConnectionPoolListenerAdapter;
+import com.mongodb.event.ConnectionPoolOpenedEvent;
+import com.mongodb.event.ConnectionPoolWaitQueueEnteredEvent;
+import com.mongodb.event.ConnectionPoolWaitQueueExitedEvent;
+import com.mongodb.event.ConnectionRemovedEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gauges of the driver's connection pool per server: {@code mongodb.driver.pool.size} connections open,
+ * {@code mongodb.driver.pool.checkedout} in use and {@code mongodb.driver.pool.waitqueuesize} threads waiting for
+ * one. The sync and the reactive client each have pools of their own, told apart by the {@code client} tag.
+ */
+public class MongoPoolMetrics extends ConnectionPoolListenerAdapter {
+
+    private final MeterRegistry registry;
+    private final String client;
+    private final Map<ServerId, AtomicInteger> sizes = new ConcurrentHashMap<>();
+    private final Map<ServerId, AtomicInteger> checkedOut = new ConcurrentHashMap<>();
+    private final Map<ServerId, AtomicInteger> waitQueueSizes = new ConcurrentHashMap<>();
+    private final Map<ServerId, List<Meter>> meters = new ConcurrentHashMap<>();
+
+    public MongoPoolMetrics(MeterRegistry registry, String client) {
+        this.registry = registry;
+        this.client = client;
+    }
+
+    @Override
+    public void connectionPoolOpened(ConnectionPoolOpenedEvent event) {
+        ServerId serverId = event.getServerId();
+        Tags tags = Tags.of("server", serverId.getAddress().toString(), "client", client);
+        List<Meter> serverMeters = new ArrayList<>();
+        serverMeters.add(gauge("mongodb.driver.pool.size", "connections open", tags, sizes, serverId));
+        serverMeters.add(gauge("mongodb.driver.pool.checkedout", "connections in use", tags, checkedOut, serverId));
+        serverMeters.add(gauge("mongodb.driver.pool.waitqueuesize", "threads waiting for a connection", tags,
+                waitQueueSizes, serverId));
+        meters.put(serverId, serverMeters);
+    }
+
+    @Override
+    public void connectionPoolClosed(ConnectionPoolClosedEvent event) {
+        ServerId serverId = event.getServerId();
+        List<Meter> serverMeters = meters.remove(serverId);
+        if (serverMeters != null) {
+            serverMeters.forEach(registry::remove);
+        }
+        sizes.remove(serverId);
+        checkedOut.remove(serverId);
+        waitQueueSizes.remove(serverId);
+    }
+
+    @Override
+    public void connectionAdded(ConnectionAddedEvent event) {
+        add(sizes, event.getConnectionId().getServerId(), 1);
+    }
+
+    @Override
+    public void connectionRemoved(ConnectionRemovedEvent event) {
+        add(sizes, event.getConnectionId().getServerId(), -1);
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        add(checkedOut, event.getConnectionId().getServerId(), 1);
+    }
+
+    @Override
+    public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+        add(checkedOut, event.getConnectionId().getServerId(), -1);
+    }
+
+    @Override
+    public void waitQueueEntered(ConnectionPoolWaitQueueEnteredEvent event) {
+        add(waitQueueSizes, event.getServerId(), 1);
+    }
+
+    @Override
+    public void waitQueueExited(ConnectionPoolWaitQueueExitedEvent event) {
+        add(waitQueueSizes, event.getServerId(), -1);
+    }
+
+    private Meter gauge(String name, String description, Tags tags, Map<ServerId, AtomicInteger> values, ServerId serverId) {
+        AtomicInteger value = values.computeIfAbsent(serverId, id -> new AtomicInteger());
+        return Gauge.builder(name, value, AtomicInteger::get)
+                .description(description)
+                .tags(tags)
+                .register(registry);
+    }
+
+    private static void add(Map<ServerId, AtomicInteger> values, ServerId serverId, int delta) {
+        AtomicInteger value = values.get(serverId);
+        if (value != null) {
+            value.addAndGet(delta);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package guru.springframework.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Times rendering the view of a request as {@code view.render}, tagged with the view name: the time between the
+ * handler returning and the request completing. Redirects are not rendered, and their names hold ids.
+ */
+public class ViewRenderMetricsInterceptor extends HandlerInterceptorAdapter {
+
+    private static final String SAMPLE = ViewRenderMetricsInterceptor.class.getName() + ".sample";
+    private static final String VIEW = ViewRenderMetricsInterceptor.class.getName() + ".view";
+
+    private final MeterRegistry registry;
+
+    public ViewRenderMetricsInterceptor(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler, ModelAndView modelAndView) {
+        if (modelAndView != null && modelAndView.getViewName() != null && !modelAndView.getViewName().startsWith("redirect:")) {
+            request.setAttribute(VIEW, modelAndView.getViewName());
+            request.setAttribute(SAMPLE, Timer.start(registry));
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Timer.Sample sample = (Timer.Sample) request.getAttribute(SAMPLE);
+        if (sample != null) {
+            sample.stop(Timer.builder("view.render")
+                    .tag("view", (String) request.getAttribute(VIEW))
+                    .tag("exception", ex != null ? ex.getClass().getSimpleName() : "none")
+                    .register(registry));
+        }
+    }
+}
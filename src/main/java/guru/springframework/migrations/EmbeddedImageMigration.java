@@ -0,0 +1,159 @@
+package guru.springframework.migrations;
+
+import guru.springframework.domain.ImageMetadata;
+import guru.springframework.domain.Recipe;
+import guru.springframework.images.ContentHash;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.gridfs.GridFsOperations;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.util.Date;
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Moves recipe images that are still embedded in the recipe document into GridFS, leaving an
+ * {@link ImageMetadata} reference behind. Handles both the boxed {@code Byte[]} layout (a BSON array of ints)
+ * and the later {@code byte[]} layout (a BSON binary). Runs in the background once the application is ready,
+ * one batch at a time.
+ * <p>
+ * Only documents that still embed an image are selected, so a restarted migration simply picks up the
+ * remaining ones. Each document is rewritten only if its embedded image is still the one that was read, so
+ * writes happening concurrently (including from nodes still running the old code) are never overwritten.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "recipe.migration.embedded-image.enabled", havingValue = "true", matchIfMissing = true)
+public class EmbeddedImageMigration implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final String ID = "_id";
+    private static final String IMAGE = "image";
+
+    private final MongoOperations mongoOperations;
+    private final GridFsOperations gridFsOperations;
+    private final int batchSize;
+    private final long pauseMillis;
+
+    public EmbeddedImageMigration(MongoOperations mongoOperations, GridFsOperations gridFsOperations,
+                                  @Value("${recipe.migration.embedded-image.batch-size:20}") int batchSize,
+                                  @Value("${recipe.migration.embedded-image.pause-millis:50}") long pauseMillis) {
+        this.mongoOperations = mongoOperations;
+        this.gridFsOperations = gridFsOperations;
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        Thread worker = new Thread(this::migrate, "embedded-image-migration");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Migrates every remaining embedded image.
+     *
+     * @return the number of documents rewritten
+     */
+    public long migrate() {
+        String collection = mongoOperations.getCollectionName(Recipe.class);
+        long migrated = 0;
+        Object lastId = null;
+
+        try {
+            while (true) {
+                List<Document> batch = mongoOperations.find(nextBatch(lastId), Document.class, collection);
+                if (batch.isEmpty()) {
+                    break;
+                }
+
+                for (Document document : batch) {
+                    if (migrate(document)) {
+                        migrated++;
+                    }
+                }
+                lastId = batch.get(batch.size() - 1).get(ID);
+
+                log.debug("Moved " + migrated + " recipe images to GridFS so far");
+                if (pauseMillis > 0) {
+                    Thread.sleep(pauseMillis);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Recipe image migration interrupted after " + migrated + " documents");
+            return migrated;
+        }
+
+        log.info("Recipe image migration finished. Documents migrated: " + migrated);
+        return migrated;
+    }
+
+    private boolean migrate(Document document) {
+        Object recipeId = document.get(ID);
+        Object embeddedImage = document.get(IMAGE);
+        byte[] bytes = toBytes(embeddedImage);
+
+        Update update = new Update().unset(IMAGE).inc("version", 1);
+        ObjectId fileId = null;
+        if (bytes != null) {
+            fileId = gridFsOperations.store(new ByteArrayInputStream(bytes), null, MediaType.IMAGE_JPEG_VALUE,
+                    new Document("recipeId", recipeId.toString()));
+            update.set("imageMetadata",
+                    new ImageMetadata(fileId.toHexString(), MediaType.IMAGE_JPEG_VALUE, bytes.length, new Date(),
+                            ContentHash.of(bytes)));
+        }
+
+        long modified = mongoOperations.updateFirst(query(where(ID).is(recipeId).and(IMAGE).is(embeddedImage)),
+                update, Recipe.class).getModifiedCount();
+
+        if (modified == 0 && fileId != null) {
+            //the document changed since it was read, the next run will pick it up again if needed
+            gridFsOperations.delete(query(where(ID).is(fileId)));
+        }
+        return modified > 0;
+    }
+
+    private Query nextBatch(Object lastId) {
+        Query query = new Query(where(IMAGE).exists(true)).with(Sort.by(Sort.Direction.ASC, ID)).limit(batchSize);
+        if (lastId != null) {
+            query.addCriteria(where(ID).gt(lastId));
+        }
+        query.fields().include(ID).include(IMAGE);
+        return query;
+    }
+
+    static byte[] toBytes(Object embeddedImage) {
+        if (embeddedImage instanceof byte[]) {
+            return (byte[]) embeddedImage;
+        }
+        if (embeddedImage instanceof Binary) {
+            return ((Binary) embeddedImage).getData();
+        }
+        if (embeddedImage instanceof List) {
+            List<?> legacyImage = (List<?>) embeddedImage;
+            byte[] bytes = new byte[legacyImage.size()];
+            int i = 0;
+            for (Object value : legacyImage) {
+                bytes[i++] = ((Number) value).byteValue();
+            }
+            return bytes;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,140 @@
+package guru.springframework.migrations;
+
+import guru.springframework.domain.ImageBlob;
+import guru.springframework.domain.ImageMetadata;
+import guru.springframework.domain.Recipe;
+import guru.springframework.images.ImageFiles;
+import guru.springframework.repositories.ImageBlobRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.gridfs.GridFsOperations;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Registers the images of recipes written before images were shared as {@link ImageBlob}s. Recipes showing an
+ * image that is stored already under the same hash are pointed at that copy and their own copy is deleted. Runs
+ * in the background once the application is ready, one batch at a time.
+ * <p>
+ * References are a set, so registering a recipe again changes nothing and an interrupted migration is simply run
+ * again. A recipe is only repointed if it still shows the copy that was read, so concurrent uploads are never
+ * overwritten.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "recipe.migration.image-blobs.enabled", havingValue = "true", matchIfMissing = true)
+public class ImageBlobMigration implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final String ID = "_id";
+    private static final String IMAGE_METADATA = "imageMetadata";
+
+    private final MongoOperations mongoOperations;
+    private final GridFsOperations gridFsOperations;
+    private final ImageBlobRepository imageBlobRepository;
+    private final int batchSize;
+    private final long pauseMillis;
+
+    public ImageBlobMigration(MongoOperations mongoOperations, GridFsOperations gridFsOperations,
+                              ImageBlobRepository imageBlobRepository,
+                              @Value("${recipe.migration.image-blobs.batch-size:100}") int batchSize,
+                              @Value("${recipe.migration.image-blobs.pause-millis:50}") long pauseMillis) {
+        this.mongoOperations = mongoOperations;
+        this.gridFsOperations = gridFsOperations;
+        this.imageBlobRepository = imageBlobRepository;
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        Thread worker = new Thread(this::migrate, "image-blob-migration");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Registers the image of every recipe.
+     *
+     * @return the number of duplicate copies deleted
+     */
+    public long migrate() {
+        long recipes = 0;
+        long deduplicated = 0;
+        String lastId = null;
+
+        try {
+            while (true) {
+                List<Recipe> batch = mongoOperations.find(nextBatch(lastId), Recipe.class);
+                if (batch.isEmpty()) {
+                    break;
+                }
+
+                for (Recipe recipe : batch) {
+                    if (register(recipe.getId(), recipe.getImageMetadata())) {
+                        deduplicated++;
+                    }
+                }
+                recipes += batch.size();
+                lastId = batch.get(batch.size() - 1).getId();
+
+                log.debug("Registered the images of " + recipes + " recipes so far");
+                if (pauseMillis > 0) {
+                    Thread.sleep(pauseMillis);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Image registration interrupted after " + recipes + " recipes");
+            return deduplicated;
+        }
+
+        log.info("Image registration finished. Recipes: " + recipes + ", duplicate images deleted: " + deduplicated);
+        return deduplicated;
+    }
+
+    /**
+     * @return {@code true} if the recipe's own copy was a duplicate and has been deleted
+     */
+    private boolean register(String recipeId, ImageMetadata imageMetadata) {
+        ImageBlob blob = imageBlobRepository.acquire(imageMetadata, recipeId);
+        if (blob.getFileId().equals(imageMetadata.getFileId())) {
+            return false;
+        }
+
+        Query showsOwnCopy = query(where(ID).is(recipeId).and(IMAGE_METADATA + ".fileId").is(imageMetadata.getFileId()));
+        Update update = Update.update(IMAGE_METADATA, blob.toImageMetadata()).inc("version", 1);
+        if (mongoOperations.updateFirst(showsOwnCopy, update, Recipe.class).getModifiedCount() == 0) {
+            //the image was replaced since the batch was read, the reference may be stale
+            Recipe current = mongoOperations.findOne(query(where(ID).is(recipeId)), Recipe.class);
+            if (current == null || current.getImageMetadata() == null
+                    || !blob.getContentHash().equals(current.getImageMetadata().getContentHash())) {
+                imageBlobRepository.release(blob.getContentHash(), recipeId);
+            }
+            return false;
+        }
+
+        ImageFiles.delete(gridFsOperations, imageMetadata);
+        return true;
+    }
+
+    private Query nextBatch(String lastId) {
+        Query query = new Query(where(IMAGE_METADATA + ".contentHash").exists(true))
+                .with(Sort.by(Sort.Direction.ASC, ID)).limit(batchSize);
+        if (lastId != null) {
+            query.addCriteria(where(ID).gt(lastId));
+        }
+        query.fields().include(ID).include(IMAGE_METADATA);
+        return query;
+    }
+}
@@ -0,0 +1,49 @@
+package guru.springframework.migrations;
+
+import guru.springframework.domain.Recipe;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Gives recipes stored before they were versioned a starting version. Spring Data treats a document without a
+ * version as new, so saving one of them would otherwise try to insert it again. The filter only matches
+ * documents that still lack the field, which makes the migration safe to run on every start.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "recipe.migration.recipe-version.enabled", havingValue = "true", matchIfMissing = true)
+public class RecipeVersionMigration implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final String VERSION = "version";
+
+    private final MongoOperations mongoOperations;
+
+    public RecipeVersionMigration(MongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        migrate();
+    }
+
+    /**
+     * @return the number of recipes that were given a version
+     */
+    public long migrate() {
+        long migrated = mongoOperations.updateMulti(query(where(VERSION).exists(false)), Update.update(VERSION, 0L),
+                Recipe.class).getModifiedCount();
+        if (migrated > 0) {
+            log.info("Recipe version migration finished. Documents migrated: " + migrated);
+        }
+        return migrated;
+    }
+}
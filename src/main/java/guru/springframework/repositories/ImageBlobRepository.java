@@ -0,0 +1,7 @@
+package guru.springframework.repositories;
+
+import guru.springframework.domain.ImageBlob;
+import org.springframework.data.repository.CrudRepository;
+
+public interface ImageBlobRepository extends CrudRepository<ImageBlob, String>, ImageBlobRepositoryCustom {
+}
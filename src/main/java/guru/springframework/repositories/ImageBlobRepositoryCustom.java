@@ -0,0 +1,49 @@
+package guru.springframework.repositories;
+
+import guru.springframework.domain.ImageBlob;
+import guru.springframework.domain.ImageMetadata;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Atomic reference updates of {@link ImageBlob}s. Every method is a single write, so concurrent uploads of the
+ * same image and the collector never lose a reference.
+ */
+public interface ImageBlobRepositoryCustom {
+
+    /**
+     * Adds a recipe's reference to the image with the content hash of {@code candidate}, recording the candidate as
+     * the stored copy if the image is not known yet.
+     *
+     * @return the image, holding the candidate's file if it was not known before or the earlier copy otherwise
+     */
+    ImageBlob acquire(ImageMetadata candidate, String recipeId);
+
+    /**
+     * Removes a recipe's reference to an image.
+     *
+     * @return {@code false} if no image is known with that hash
+     */
+    boolean release(String contentHash, String recipeId);
+
+    /**
+     * Records a generated rendition, provided the image is still stored as the file it was generated from.
+     *
+     * @return {@code false} if the image has been deleted in the meantime
+     */
+    boolean addVariant(String contentHash, String fileId, String variantName, ImageMetadata variant);
+
+    /**
+     * @return up to {@code limit} images nobody has referred to since before {@code releasedBefore}
+     */
+    List<ImageBlob> findUnreferenced(Date releasedBefore, int limit);
+
+    /**
+     * Removes an image, provided nobody has referred to it since before {@code releasedBefore}.
+     *
+     * @return the removed image, or an empty optional if it is referred to again
+     */
+    Optional<ImageBlob> removeUnreferenced(String contentHash, Date releasedBefore);
+}
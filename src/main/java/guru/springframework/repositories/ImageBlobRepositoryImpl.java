@@ -0,0 +1,75 @@
+package guru.springframework.repositories;
+
+import guru.springframework.domain.ImageBlob;
+import guru.springframework.domain.ImageMetadata;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+public class ImageBlobRepositoryImpl implements ImageBlobRepositoryCustom {
+
+    private static final String RECIPE_IDS = "recipeIds";
+    private static final String RELEASED_AT = "releasedAt";
+
+    private final MongoOperations mongoOperations;
+
+    public ImageBlobRepositoryImpl(MongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    @Override
+    public ImageBlob acquire(ImageMetadata candidate, String recipeId) {
+        Query query = query(where("contentHash").is(candidate.getContentHash()));
+        Update update = new Update().addToSet(RECIPE_IDS, recipeId).unset(RELEASED_AT)
+                .setOnInsert("fileId", candidate.getFileId())
+                .setOnInsert("contentType", candidate.getContentType())
+                .setOnInsert("length", candidate.getLength())
+                .setOnInsert("uploadDate", candidate.getUploadDate())
+                .setOnInsert("variants", candidate.getVariants());
+        FindAndModifyOptions options = FindAndModifyOptions.options().upsert(true).returnNew(true);
+        try {
+            return mongoOperations.findAndModify(query, update, options, ImageBlob.class);
+        } catch (DuplicateKeyException e) {
+            //a concurrent upload of the same image inserted it first, this one now updates it
+            return mongoOperations.findAndModify(query, update, options, ImageBlob.class);
+        }
+    }
+
+    @Override
+    public boolean release(String contentHash, String recipeId) {
+        Update update = new Update().pull(RECIPE_IDS, recipeId).currentDate(RELEASED_AT);
+        return mongoOperations.updateFirst(query(where("contentHash").is(contentHash)), update, ImageBlob.class)
+                .getMatchedCount() > 0;
+    }
+
+    @Override
+    public boolean addVariant(String contentHash, String fileId, String variantName, ImageMetadata variant) {
+        Query query = query(where("contentHash").is(contentHash).and("fileId").is(fileId));
+        return mongoOperations.updateFirst(query, Update.update("variants." + variantName, variant), ImageBlob.class)
+                .getMatchedCount() > 0;
+    }
+
+    @Override
+    public List<ImageBlob> findUnreferenced(Date releasedBefore, int limit) {
+        return mongoOperations.find(unreferencedQuery(releasedBefore).limit(limit), ImageBlob.class);
+    }
+
+    @Override
+    public Optional<ImageBlob> removeUnreferenced(String contentHash, Date releasedBefore) {
+        Query query = unreferencedQuery(releasedBefore).addCriteria(where("contentHash").is(contentHash));
+        return Optional.ofNullable(mongoOperations.findAndRemove(query, ImageBlob.class));
+    }
+
+    static Query unreferencedQuery(Date releasedBefore) {
+        return query(where(RELEASED_AT).lt(releasedBefore).and(RECIPE_IDS).size(0));
+    }
+}
@@ -0,0 +1,194 @@
+package guru.springframework.repositories;
+
+import guru.springframework.domain.ImageBlob;
+import guru.springframework.domain.Recipe;
+import guru.springframework.domain.RecipeSort;
+import guru.springframework.domain.RecipeSummary;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.query.parser.Part;
+import org.springframework.data.repository.query.parser.PartTree;
+import org.springframework.data.repository.support.Repositories;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Asks Mongo for the plan of every repository query method, and of the keyset queries behind the recipe listing,
+ * and fails if any of them would scan a whole collection.
+ * <p>
+ * Derived queries are explained with an equality filter on each property they name, annotated queries with their
+ * filter; a sample value stands in for every argument, since the plan only depends on the fields filtered and
+ * sorted on. Runs at startup when {@code recipe.query-plans.verify-on-startup} is set. Indexes on large
+ * collections are built in the background, so leave it off while they are still building.
+ */
+@Slf4j
+@Component
+public class QueryPlanVerifier implements ApplicationListener<ApplicationReadyEvent> {
+
+    static final String SAMPLE = "query-plan-sample";
+
+    private static final String COLLECTION_SCAN = "COLLSCAN";
+
+    private final MongoOperations mongoOperations;
+    private final ListableBeanFactory beanFactory;
+    private final boolean verifyOnStartup;
+
+    public QueryPlanVerifier(MongoOperations mongoOperations, ListableBeanFactory beanFactory,
+                             @Value("${recipe.query-plans.verify-on-startup:false}") boolean verifyOnStartup) {
+        this.mongoOperations = mongoOperations;
+        this.beanFactory = beanFactory;
+        this.verifyOnStartup = verifyOnStartup;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (verifyOnStartup) {
+            verify();
+        }
+    }
+
+    /**
+     * @throws IllegalStateException naming the queries that are planned as collection scans
+     */
+    public void verify() {
+        Map<String, PlannedQuery> queries = plannedQueries();
+        List<String> collectionScans = new ArrayList<>();
+        queries.forEach((name, plannedQuery) -> {
+            Document explained = explain(plannedQuery);
+            if (scansCollection(explained.get("queryPlanner", Document.class).get("winningPlan"))) {
+                collectionScans.add(name);
+            }
+        });
+
+        if (!collectionScans.isEmpty()) {
+            throw new IllegalStateException("Queries planned as collection scans, they need an index: " + collectionScans);
+        }
+        log.info("Verified the query plans of " + queries.size() + " repository queries");
+    }
+
+    private Map<String, PlannedQuery> plannedQueries() {
+        Map<String, PlannedQuery> queries = new LinkedHashMap<>();
+
+        Repositories repositories = new Repositories(beanFactory);
+        for (Class<?> domainType : repositories) {
+            RepositoryInformation information = repositories.getRequiredRepositoryInformation(domainType);
+            for (Method method : information.getQueryMethods()) {
+                queries.put(information.getRepositoryInterface().getSimpleName() + "." + method.getName(),
+                        new PlannedQuery(domainType, plannedQuery(method, domainType)));
+            }
+        }
+
+        //the listing pages are the hottest reads, check them past the first page
+        for (RecipeSort sort : RecipeSort.values()) {
+            queries.put("RecipeRepository.findSummaries(" + sort + ")", new PlannedQuery(Recipe.class,
+                    RecipeRepositoryImpl.summariesQuery(sort, new RecipeSummary(SAMPLE, SAMPLE), false, 20)));
+        }
+        //unfiltered exports read everything, filtered ones must not
+        queries.put("RecipeRepository.streamWithReferences(category)", new PlannedQuery(Recipe.class,
+                RecipeRepositoryImpl.exportQuery(new ObjectId().toHexString(), null)));
+        queries.put("RecipeRepository.streamWithReferences(modifiedSince)", new PlannedQuery(Recipe.class,
+                RecipeRepositoryImpl.exportQuery(null, new Date())));
+        queries.put("RecipeRepository.addImageVariant", new PlannedQuery(Recipe.class, RecipeRepositoryImpl.imageQuery(SAMPLE)));
+        queries.put("ImageBlobRepository.findUnreferenced", new PlannedQuery(ImageBlob.class,
+                ImageBlobRepositoryImpl.unreferencedQuery(new Date())));
+        return queries;
+    }
+
+    /**
+     * The query a repository query method issues, with sample values for its arguments.
+     */
+    static Query plannedQuery(Method method, Class<?> domainType) {
+        org.springframework.data.mongodb.repository.Query annotation = AnnotatedElementUtils.findMergedAnnotation(method,
+                org.springframework.data.mongodb.repository.Query.class);
+        if (annotation != null && StringUtils.hasText(annotation.value())) {
+            return new BasicQuery(annotation.value().replaceAll("['\"]?\\?\\d+['\"]?", "'" + SAMPLE + "'"));
+        }
+
+        PartTree tree = new PartTree(method.getName(), domainType);
+        List<Criteria> alternatives = new ArrayList<>();
+        for (PartTree.OrPart orPart : tree) {
+            Criteria criteria = null;
+            for (Part part : orPart) {
+                String path = part.getProperty().toDotPath();
+                criteria = criteria == null ? where(path).is(SAMPLE) : criteria.and(path).is(SAMPLE);
+            }
+            alternatives.add(criteria);
+        }
+
+        Query query = new Query();
+        if (alternatives.size() == 1) {
+            query.addCriteria(alternatives.get(0));
+        } else if (alternatives.size() > 1) {
+            query.addCriteria(new Criteria().orOperator(alternatives.toArray(new Criteria[0])));
+        }
+        return query.with(tree.getSort());
+    }
+
+    private Document explain(PlannedQuery plannedQuery) {
+        QueryMapper queryMapper = new QueryMapper(mongoOperations.getConverter());
+        MongoPersistentEntity<?> entity = mongoOperations.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(plannedQuery.domainType);
+        Query query = plannedQuery.query;
+
+        Document find = new Document("find", mongoOperations.getCollectionName(plannedQuery.domainType))
+                .append("filter", queryMapper.getMappedObject(query.getQueryObject(), entity));
+        if (!query.getSortObject().isEmpty()) {
+            find.append("sort", queryMapper.getMappedSort(query.getSortObject(), entity));
+        }
+        if (query.getLimit() > 0) {
+            find.append("limit", query.getLimit());
+        }
+        return mongoOperations.executeCommand(new Document("explain", find).append("verbosity", "queryPlanner"));
+    }
+
+    /**
+     * @return whether any stage of the plan, or of the plans nested in it, is a collection scan
+     */
+    static boolean scansCollection(Object plan) {
+        if (plan instanceof Document) {
+            Document stage = (Document) plan;
+            if (COLLECTION_SCAN.equals(stage.get("stage"))) {
+                return true;
+            }
+            return stage.values().stream().anyMatch(QueryPlanVerifier::scansCollection);
+        }
+        if (plan instanceof Collection) {
+            return ((Collection<?>) plan).stream().anyMatch(QueryPlanVerifier::scansCollection);
+        }
+        return false;
+    }
+
+    private static final class PlannedQuery {
+
+        private final Class<?> domainType;
+        private final Query query;
+
+        private PlannedQuery(Class<?> domainType, Query query) {
+            this.domainType = domainType;
+            this.query = query;
+        }
+    }
+}
@@ -1,7 +1,16 @@
 package guru.springframework.repositories;
 
 import guru.springframework.domain.Recipe;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 
-public interface RecipeRepository extends CrudRepository<Recipe, String> {
+import java.util.Optional;
+
+public interface RecipeRepository extends CrudRepository<Recipe, String>, RecipeRepositoryCustom {
+
+    @Query(value = "{ '_id' : ?0 }", fields = "{ 'imageMetadata' : 1, 'version' : 1 }")
+    Optional<Recipe> findImageMetadataById(String id);
+
+    @Query(value = "{ '_id' : ?0 }", fields = "{ 'version' : 1 }")
+    Optional<Recipe> findVersionById(String id);
 }
@@ -0,0 +1,116 @@
+package guru.springframework.repositories;
+
+import guru.springframework.domain.ImageMetadata;
+import guru.springframework.domain.Ingredient;
+import guru.springframework.domain.Recipe;
+import guru.springframework.domain.RecipeSort;
+import guru.springframework.domain.RecipeSummary;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Partial updates and projections of {@link Recipe} documents that must not read or rewrite the whole document.
+ */
+public interface RecipeRepositoryCustom {
+
+    /**
+     * Replaces the image reference of a recipe in place, bumps its version and sets its modification time.
+     *
+     * @return the recipe as it was before the update, holding only its id and previous image reference,
+     * or an empty optional if no recipe exists with that id
+     */
+    Optional<Recipe> replaceImageMetadata(String recipeId, ImageMetadata imageMetadata);
+
+    /**
+     * Deletes a recipe in one step, so nothing can change its image reference in between.
+     *
+     * @return the deleted recipe, holding only its id and image reference, or an empty optional if no recipe exists
+     * with that id
+     */
+    Optional<Recipe> findAndDeleteById(String recipeId);
+
+    /**
+     * Records a generated rendition of an image on every recipe showing it, moving each to a new version.
+     *
+     * @return the number of recipes showing the image
+     */
+    long addImageVariant(String contentHash, String variantName, ImageMetadata variant);
+
+    /**
+     * Appends an ingredient to a recipe in a single atomic update, provided the recipe is still at the expected
+     * version. The version is bumped and the modification time set.
+     *
+     * @return the ingredient as stored, or an empty optional if no recipe exists with that id
+     * @throws org.springframework.dao.OptimisticLockingFailureException if the recipe is at another version
+     */
+    Optional<Ingredient> addIngredient(String recipeId, Long expectedVersion, Ingredient ingredient);
+
+    /**
+     * Replaces the ingredient with the same id in place, leaving the rest of the recipe untouched, provided the
+     * recipe is still at the expected version. The version is bumped and the modification time set.
+     *
+     * @return the ingredient as stored, or an empty optional if the recipe or the ingredient does not exist
+     * @throws org.springframework.dao.OptimisticLockingFailureException if the recipe is at another version
+     */
+    Optional<Ingredient> updateIngredient(String recipeId, Long expectedVersion, Ingredient ingredient);
+
+    /**
+     * Removes an ingredient, provided the recipe is still at the expected version. The version is bumped and the modification time set.
+     *
+     * @return {@code false} if the recipe or the ingredient does not exist
+     * @throws org.springframework.dao.OptimisticLockingFailureException if the recipe is at another version
+     */
+    boolean removeIngredient(String recipeId, Long expectedVersion, String ingredientId);
+
+    /**
+     * Reads one page of recipe summaries with keyset pagination: the page starts right after the boundary in the
+     * given order or, going backwards, ends right before it. Cost depends on the page size only, not on how deep
+     * the page is.
+     *
+     * @param boundary the first or last summary of the adjacent page, or {@code null} for the first page
+     * @return at most {@code limit} summaries, always in {@code sort} order
+     */
+    List<RecipeSummary> findSummaries(RecipeSort sort, RecipeSummary boundary, boolean backward, int limit);
+
+    /**
+     * Reads the summaries of the given recipes in a single query.
+     *
+     * @return the summaries in the order of the ids, without the recipes that do not exist
+     */
+    List<RecipeSummary> findSummariesByIds(List<String> ids);
+
+    /**
+     * Streams every recipe holding only its id, version and the text that is searched: description, directions,
+     * notes and ingredient descriptions. The stream holds a cursor open and must be closed.
+     */
+    Stream<Recipe> streamSearchableFields();
+
+    /**
+     * Reads the searchable text of one recipe, see {@link #streamSearchableFields()}.
+     */
+    Optional<Recipe> findSearchableFieldsById(String id);
+
+    /**
+     * Loads a recipe with its categories and units of measure resolved in bulk instead of one read per reference.
+     */
+    Optional<Recipe> findByIdWithReferences(String id);
+
+    /**
+     * Loads every recipe; references of all recipes are resolved together, with at most one {@code $in} query
+     * per referenced collection.
+     */
+    List<Recipe> findAllWithReferences();
+
+    /**
+     * Streams the recipes matching an export filter with their references resolved. Documents are read from the
+     * cursor {@code batchSize} at a time and the references of each batch are resolved together, so memory use
+     * does not grow with the number of recipes. The stream holds a cursor open and must be closed.
+     *
+     * @param categoryId    only recipes in this category, or {@code null} for all
+     * @param modifiedSince only recipes modified at or after this time, or {@code null} for all
+     */
+    Stream<Recipe> streamWithReferences(String categoryId, Date modifiedSince, int batchSize);
+}
@@ -0,0 +1,364 @@
+package guru.springframework.repositories;
+
+import com.mongodb.DBRef;
+import guru.springframework.cache.ReferenceDataCache;
+import guru.springframework.domain.Category;
+import guru.springframework.domain.ImageMetadata;
+import guru.springframework.domain.Ingredient;
+import guru.springframework.domain.Recipe;
+import guru.springframework.domain.RecipeSort;
+import guru.springframework.domain.RecipeSummary;
+import guru.springframework.domain.UnitOfMeasure;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.convert.LazyLoadingProxy;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.data.util.StreamUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+public class RecipeRepositoryImpl implements RecipeRepositoryCustom {
+
+    private static final String CATEGORIES = "categories";
+    private static final String INGREDIENTS = "ingredients";
+    private static final String VERSION = "version";
+    private static final String LAST_MODIFIED = "lastModified";
+
+    private final MongoOperations mongoOperations;
+    private final ReferenceDataCache<UnitOfMeasure> unitOfMeasureCache;
+    private final ReferenceDataCache<Category> categoryCache;
+
+    public RecipeRepositoryImpl(MongoOperations mongoOperations, ReferenceDataCache<UnitOfMeasure> unitOfMeasureCache,
+                                ReferenceDataCache<Category> categoryCache) {
+        this.mongoOperations = mongoOperations;
+        this.unitOfMeasureCache = unitOfMeasureCache;
+        this.categoryCache = categoryCache;
+    }
+
+    @Override
+    public Optional<Recipe> replaceImageMetadata(String recipeId, ImageMetadata imageMetadata) {
+        Query query = imageMetadataQuery(recipeId);
+        Update update = Update.update("imageMetadata", imageMetadata).inc(VERSION, 1).currentDate(LAST_MODIFIED);
+        return Optional.ofNullable(mongoOperations.findAndModify(query, update, Recipe.class));
+    }
+
+    @Override
+    public Optional<Recipe> findAndDeleteById(String recipeId) {
+        return Optional.ofNullable(mongoOperations.findAndRemove(imageMetadataQuery(recipeId), Recipe.class));
+    }
+
+    @Override
+    public long addImageVariant(String contentHash, String variantName, ImageMetadata variant) {
+        //a form opened before the variant existed would save it away again, the new version makes it conflict instead
+        Update update = Update.update("imageMetadata.variants." + variantName, variant).inc(VERSION, 1);
+        return mongoOperations.updateMulti(imageQuery(contentHash), update, Recipe.class).getMatchedCount();
+    }
+
+    static Query imageMetadataQuery(String recipeId) {
+        Query query = query(where("id").is(recipeId));
+        query.fields().include("imageMetadata");
+        return query;
+    }
+
+    static Query imageQuery(String contentHash) {
+        return query(where("imageMetadata.contentHash").is(contentHash));
+    }
+
+    @Override
+    public Optional<Ingredient> addIngredient(String recipeId, Long expectedVersion, Ingredient ingredient) {
+        return modifyIngredient(recipeId, expectedVersion, where("id").is(recipeId),
+                new Update().push(INGREDIENTS, ingredient), ingredient.getId());
+    }
+
+    @Override
+    public Optional<Ingredient> updateIngredient(String recipeId, Long expectedVersion, Ingredient ingredient) {
+        //the positional operator targets the element matched by the query
+        return modifyIngredient(recipeId, expectedVersion, where("id").is(recipeId).and(INGREDIENTS + ".id").is(ingredient.getId()),
+                Update.update(INGREDIENTS + ".$", ingredient), ingredient.getId());
+    }
+
+    @Override
+    public boolean removeIngredient(String recipeId, Long expectedVersion, String ingredientId) {
+        Query query = query(where("id").is(recipeId).and(INGREDIENTS + ".id").is(ingredientId).and(VERSION).is(expectedVersion));
+        Update update = new Update().pull(INGREDIENTS, query(where("id").is(ingredientId)).getQueryObject()).inc(VERSION, 1)
+                .currentDate(LAST_MODIFIED);
+        if (mongoOperations.updateFirst(query, update, Recipe.class).getModifiedCount() > 0) {
+            return true;
+        }
+        checkVersion(recipeId, expectedVersion);
+        return false;
+    }
+
+    /**
+     * Applies the update and reads back just the ingredient it touched.
+     */
+    private Optional<Ingredient> modifyIngredient(String recipeId, Long expectedVersion, Criteria criteria, Update update,
+                                                  String ingredientId) {
+        Query query = query(criteria.and(VERSION).is(expectedVersion));
+        query.fields().elemMatch(INGREDIENTS, where("id").is(ingredientId));
+        Recipe recipe = mongoOperations.findAndModify(query, update.inc(VERSION, 1).currentDate(LAST_MODIFIED),
+                FindAndModifyOptions.options().returnNew(true), Recipe.class);
+        if (recipe == null) {
+            checkVersion(recipeId, expectedVersion);
+            return Optional.empty();
+        }
+
+        resolveUnitsOfMeasure(Collections.singletonList(recipe));
+        return recipe.getIngredients().stream().findFirst();
+    }
+
+    /**
+     * Tells a lost compare-and-swap apart from a missing recipe or ingredient after an update matched nothing.
+     */
+    private void checkVersion(String recipeId, Long expectedVersion) {
+        if (mongoOperations.exists(query(where("id").is(recipeId).and(VERSION).ne(expectedVersion)), Recipe.class)) {
+            throw new OptimisticLockingFailureException("Recipe " + recipeId + " is no longer at version " + expectedVersion);
+        }
+    }
+
+    @Override
+    public List<RecipeSummary> findSummaries(RecipeSort sort, RecipeSummary boundary, boolean backward, int limit) {
+        List<RecipeSummary> summaries = mongoOperations.find(summariesQuery(sort, boundary, backward, limit),
+                RecipeSummary.class, mongoOperations.getCollectionName(Recipe.class));
+        if (backward) {
+            Collections.reverse(summaries);
+        }
+        return summaries;
+    }
+
+    /**
+     * The keyset query behind {@link #findSummaries}. Going backwards it returns the summaries in reverse order.
+     */
+    public static Query summariesQuery(RecipeSort sort, RecipeSummary boundary, boolean backward, int limit) {
+        //NEWEST walks ids downwards, ObjectIds grow with creation time
+        boolean ascending = (sort == RecipeSort.DESCRIPTION) != backward;
+        Sort.Direction direction = ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
+
+        Query query = new Query().limit(limit);
+        if (sort == RecipeSort.DESCRIPTION) {
+            query.with(Sort.by(direction, "description", "id"));
+            if (boundary != null) {
+                query.addCriteria(new Criteria().orOperator(
+                        seek(where("description"), boundary.getDescription(), ascending),
+                        seek(where("description").is(boundary.getDescription()).and("id"), boundary.getId(), ascending)));
+            }
+        } else {
+            query.with(Sort.by(direction, "id"));
+            if (boundary != null) {
+                query.addCriteria(seek(where("id"), boundary.getId(), ascending));
+            }
+        }
+        query.fields().include("description").include("imageMetadata.contentHash");
+        return query;
+    }
+
+    @Override
+    public List<RecipeSummary> findSummariesByIds(List<String> ids) {
+        Query query = query(where("id").in(ids));
+        query.fields().include("description").include("imageMetadata.contentHash");
+        return inOrder(ids, mongoOperations.find(query, RecipeSummary.class, mongoOperations.getCollectionName(Recipe.class)));
+    }
+
+    /**
+     * Orders summaries read with an {@code $in} query like the ids they were read by.
+     */
+    public static List<RecipeSummary> inOrder(List<String> ids, List<RecipeSummary> summaries) {
+        Map<String, RecipeSummary> byId = new HashMap<>();
+        summaries.forEach(summary -> byId.put(summary.getId(), summary));
+
+        List<RecipeSummary> ordered = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            RecipeSummary summary = byId.get(id);
+            if (summary != null) {
+                ordered.add(summary);
+            }
+        }
+        return ordered;
+    }
+
+    @Override
+    public Stream<Recipe> streamSearchableFields() {
+        return StreamUtils.createStreamFromIterator(mongoOperations.stream(searchableFields(new Query()), Recipe.class));
+    }
+
+    @Override
+    public Optional<Recipe> findSearchableFieldsById(String id) {
+        return Optional.ofNullable(mongoOperations.findOne(searchableFields(query(where("id").is(id))), Recipe.class));
+    }
+
+    private static Query searchableFields(Query query) {
+        //no references are read, ingredients come without their unit of measure
+        query.fields().include(VERSION).include("description").include("directions").include("notes.recipeNotes")
+                .include(INGREDIENTS + ".description");
+        return query;
+    }
+
+    @Override
+    public Optional<Recipe> findByIdWithReferences(String id) {
+        return findWithReferences(query(where("id").is(id))).stream().findFirst();
+    }
+
+    @Override
+    public List<Recipe> findAllWithReferences() {
+        return findWithReferences(new Query());
+    }
+
+    @Override
+    public Stream<Recipe> streamWithReferences(String categoryId, Date modifiedSince, int batchSize) {
+        CloseableIterator<Document> documents = mongoOperations.stream(
+                exportQuery(categoryId, modifiedSince).cursorBatchSize(batchSize), Document.class,
+                mongoOperations.getCollectionName(Recipe.class));
+        Iterator<List<Recipe>> batches = new Iterator<List<Recipe>>() {
+            @Override
+            public boolean hasNext() {
+                return documents.hasNext();
+            }
+
+            @Override
+            public List<Recipe> next() {
+                List<Document> batch = new ArrayList<>(batchSize);
+                while (batch.size() < batchSize && documents.hasNext()) {
+                    batch.add(documents.next());
+                }
+                return withReferences(batch);
+            }
+        };
+        return StreamUtils.createStreamFromIterator(batches).onClose(documents::close).flatMap(List::stream);
+    }
+
+    /**
+     * The query behind {@link #streamWithReferences}. Recipes last written before modification times were
+     * recorded count as modified when they were created, which their ObjectId tells. An ObjectId holds the seconds
+     * since 1970 in four unsigned bytes, so earlier and later dates are clamped to that range.
+     */
+    public static Query exportQuery(String categoryId, Date modifiedSince) {
+        Query query = new Query();
+        if (categoryId != null) {
+            //category references are stored as DBRefs, their ids as ObjectIds where they are valid ones
+            query.addCriteria(where(CATEGORIES + ".$id").is(ObjectId.isValid(categoryId) ? new ObjectId(categoryId) : categoryId));
+        }
+        if (modifiedSince != null) {
+            long seconds = Math.min(Math.max(Math.floorDiv(modifiedSince.getTime(), 1000), 0), 0xFFFFFFFFL);
+            ObjectId createdSince = new ObjectId(String.format("%08x", seconds) + "0000000000000000");
+            query.addCriteria(new Criteria().orOperator(
+                    where(LAST_MODIFIED).gte(modifiedSince),
+                    where(LAST_MODIFIED).exists(false).and("id").gte(createdSince)));
+        }
+        return query;
+    }
+
+    private List<Recipe> findWithReferences(Query query) {
+        return withReferences(mongoOperations.find(query, Document.class, mongoOperations.getCollectionName(Recipe.class)));
+    }
+
+    /**
+     * Maps recipes read as raw documents so no reference is resolved while mapping: category references are
+     * taken out of the document before it is mapped, unit of measure references come back as lazy proxies that
+     * are never initialized. All of them are then resolved at once, from the reference data caches where
+     * possible and with one {@code $in} query per collection for the rest.
+     */
+    private List<Recipe> withReferences(List<Document> documents) {
+        List<Recipe> recipes = new ArrayList<>(documents.size());
+        Map<Recipe, List<Object>> categoryIds = new IdentityHashMap<>();
+        for (Document document : documents) {
+            List<Object> recipeCategoryIds = referencedIds(document.remove(CATEGORIES));
+            Recipe recipe = mongoOperations.getConverter().read(Recipe.class, document);
+            recipes.add(recipe);
+            categoryIds.put(recipe, recipeCategoryIds);
+        }
+
+        List<Object> allCategoryIds = new ArrayList<>();
+        categoryIds.values().forEach(allCategoryIds::addAll);
+        Map<String, Category> categories = resolve(allCategoryIds, Category.class, categoryCache, Category::getId);
+        categoryIds.forEach((recipe, ids) -> {
+            Set<Category> recipeCategories = new HashSet<>();
+            for (Object id : ids) {
+                Category category = categories.get(id.toString());
+                if (category != null) {
+                    recipeCategories.add(category);
+                }
+            }
+            recipe.setCategories(recipeCategories);
+        });
+
+        resolveUnitsOfMeasure(recipes);
+        return recipes;
+    }
+
+    private void resolveUnitsOfMeasure(Collection<Recipe> recipes) {
+        Map<Ingredient, Object> uomIds = new IdentityHashMap<>();
+        for (Recipe recipe : recipes) {
+            for (Ingredient ingredient : recipe.getIngredients()) {
+                if (ingredient.getUom() instanceof LazyLoadingProxy) {
+                    uomIds.put(ingredient, ((LazyLoadingProxy) ingredient.getUom()).toDBRef().getId());
+                }
+            }
+        }
+
+        Map<String, UnitOfMeasure> uoms = resolve(uomIds.values(), UnitOfMeasure.class, unitOfMeasureCache, UnitOfMeasure::getId);
+        uomIds.forEach((ingredient, id) -> ingredient.setUom(uoms.get(id.toString())));
+    }
+
+    private <T> Map<String, T> resolve(Collection<Object> ids, Class<T> type, ReferenceDataCache<T> cache,
+                                       Function<T, String> idFunction) {
+        Map<String, T> resolved = new HashMap<>();
+        Set<Object> missing = new HashSet<>();
+        for (Object id : ids) {
+            String key = id.toString();
+            if (!resolved.containsKey(key)) {
+                Optional<T> cached = cache.findById(key);
+                if (cached.isPresent()) {
+                    resolved.put(key, cached.get());
+                } else {
+                    missing.add(id);
+                }
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            //written since the cache snapshot was taken
+            mongoOperations.find(query(where("_id").in(missing)), type)
+                    .forEach(entity -> resolved.put(idFunction.apply(entity), entity));
+        }
+        return resolved;
+    }
+
+    private static List<Object> referencedIds(Object references) {
+        List<Object> ids = new ArrayList<>();
+        if (references instanceof Collection) {
+            for (Object reference : (Collection<?>) references) {
+                if (reference instanceof DBRef) {
+                    ids.add(((DBRef) reference).getId());
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static Criteria seek(Criteria criteria, Object value, boolean ascending) {
+        return ascending ? criteria.gt(value) : criteria.lt(value);
+    }
+}
@@ -0,0 +1,353 @@
+package guru.springframework.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over recipe text, ranked with BM25. Each term maps to its postings: parallel
+ * {@code int} arrays of document numbers and term frequencies, kept in document number order.
+ * <p>
+ * Updating a recipe deletes its document and appends a new one under the next document number, so postings only
+ * ever grow at their end. Deleted documents are skipped while scoring and dropped by a compaction once they make
+ * up a quarter of the index. Queries run concurrently under a read lock, updates take the write lock.
+ * <p>
+ * Terms are scored rarest first. Once enough recipes have matched that the remaining, more common terms could not
+ * lift a recipe that has not matched yet into the requested page, those terms only add to the scores of recipes
+ * already matched (MaxScore). The total number of hits is then a lower bound, but never less than
+ * {@link #EXACT_TOTAL_HITS}.
+ */
+public class RecipeSearchIndex {
+
+    static final float K1 = 1.2f;
+    static final float B = 0.75f;
+
+    /**
+     * Total hits are counted exactly up to this number.
+     */
+    public static final int EXACT_TOTAL_HITS = 1000;
+
+    //document lengths are kept as one byte: exact up to 127 words, then in steps of 5%
+    private static final int[] NORM_LENGTHS = new int[255];
+    private static final int DELETED = 255;
+
+    static {
+        for (int norm = 0; norm < NORM_LENGTHS.length; norm++) {
+            NORM_LENGTHS[norm] = norm < 128 ? norm : Math.max(NORM_LENGTHS[norm - 1] + 1, Math.round(NORM_LENGTHS[norm - 1] * 1.05f));
+        }
+    }
+
+    //the document of a removed recipe's entry
+    private static final int REMOVED = -1;
+
+    private static final int MIN_COMPACTION_DOCUMENTS = 1024;
+    private static final double COMPACTION_RATIO = 0.25;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Queue<ScoreAccumulator> accumulators = new ConcurrentLinkedQueue<>();
+
+    private final Map<String, Postings> postingsByTerm = new HashMap<>();
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    //by document number, the postings of a document are null once it is deleted
+    private String[] recipeIds = new String[16];
+    private int[] lengths = new int[16];
+    private byte[] norms = new byte[16];
+    private Postings[][] documentPostings = new Postings[16][];
+
+    private int documentCount;
+    private int liveCount;
+    private long liveLength;
+
+    /**
+     * Indexes the tokens of a recipe, replacing what was indexed for it before. An update older than the
+     * indexed version is ignored, so a slow writer cannot bring back text that has been changed since, and so is
+     * any update of a removed recipe, whatever its version.
+     *
+     * @return {@code false} if the update was stale
+     */
+    public boolean update(String recipeId, Long version, Collection<String> tokens) {
+        //counted before locking, queries keep running meanwhile
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : tokens) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.get(recipeId);
+            if (entry != null) {
+                if (entry.document == REMOVED
+                        || version != null && entry.version != null && version < entry.version) {
+                    return false;
+                }
+                delete(entry.document);
+            }
+
+            int document = documentCount++;
+            ensureCapacity(documentCount);
+            Postings[] postings = new Postings[frequencies.size()];
+            int i = 0;
+            for (Map.Entry<String, Integer> frequency : frequencies.entrySet()) {
+                Postings termPostings = postingsByTerm.computeIfAbsent(frequency.getKey(), term -> new Postings());
+                termPostings.add(document, frequency.getValue());
+                postings[i++] = termPostings;
+            }
+
+            recipeIds[document] = recipeId;
+            lengths[document] = tokens.size();
+            norms[document] = encodeNorm(tokens.size());
+            documentPostings[document] = postings;
+            liveCount++;
+            liveLength += tokens.size();
+            entries.put(recipeId, new Entry(document, version));
+
+            compactIfNeeded();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops a recipe for good. Its entry stays behind without a document, so indexing calls that were already
+     * under way cannot add the recipe back; recipe ids are never reused.
+     */
+    public void remove(String recipeId) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.put(recipeId, new Entry(REMOVED, null));
+            if (entry != null && entry.document != REMOVED) {
+                delete(entry.document);
+                compactIfNeeded();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ranks the recipes matching any of the terms.
+     *
+     * @param offset number of best hits to skip
+     * @param limit  maximum number of hits returned
+     */
+    public SearchResult search(Collection<String> terms, int offset, int limit) {
+        ScoreAccumulator accumulator = accumulators.poll();
+        if (accumulator == null) {
+            accumulator = new ScoreAccumulator();
+        }
+
+        lock.readLock().lock();
+        try {
+            if (liveCount == 0) {
+                return SearchResult.EMPTY;
+            }
+
+            List<Postings> matched = new ArrayList<>();
+            for (String term : new LinkedHashSet<>(terms)) {
+                Postings postings = postingsByTerm.get(term);
+                if (postings != null && postings.live > 0) {
+                    matched.add(postings);
+                }
+            }
+            //rarest first, it weighs the most
+            matched.sort(Comparator.comparingInt(postings -> postings.live));
+
+            //a term adds at most idf * (k1 + 1) to a score, remaining[i] bounds what the terms after i can add
+            float[] weights = new float[matched.size()];
+            float[] remaining = new float[matched.size()];
+            for (int i = 0; i < weights.length; i++) {
+                int live = matched.get(i).live;
+                weights[i] = (float) Math.log(1 + (liveCount - live + 0.5) / (live + 0.5)) * (K1 + 1);
+            }
+            for (int i = weights.length - 2; i >= 0; i--) {
+                remaining[i] = remaining[i + 1] + weights[i + 1];
+            }
+
+            accumulator.prepare(documentCount);
+            float[] normFactors = normFactors((float) liveLength / liveCount);
+            int wanted = offset + limit;
+            boolean pruned = false;
+            for (int i = 0; i < weights.length; i++) {
+                score(matched.get(i), weights[i], normFactors, accumulator, pruned);
+                if (!pruned && i < weights.length - 1 && accumulator.size() >= Math.max(wanted, EXACT_TOTAL_HITS)) {
+                    pruned = accumulator.scoreAt(wanted) > remaining[i];
+                }
+            }
+
+            int[] ranked = accumulator.top(wanted);
+            List<SearchHit> hits = new ArrayList<>(Math.max(0, ranked.length - offset));
+            for (int rank = offset; rank < ranked.length; rank++) {
+                hits.add(new SearchHit(recipeIds[ranked[rank]], accumulator.score(ranked[rank])));
+            }
+            return new SearchResult(hits, accumulator.size(), !pruned);
+        } finally {
+            lock.readLock().unlock();
+            accumulator.clear();
+            accumulators.offer(accumulator);
+        }
+    }
+
+    /**
+     * @return the number of indexed recipes
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the BM25 weight of one term to every document in its postings or, once pruned, only to the documents
+     * that have matched already.
+     */
+    private void score(Postings postings, float weight, float[] normFactors, ScoreAccumulator accumulator,
+                       boolean matchedOnly) {
+        int[] documents = postings.documents;
+        int[] frequencies = postings.frequencies;
+        for (int i = 0; i < postings.size; i++) {
+            int document = documents[i];
+            int norm = norms[document] & 0xFF;
+            if (norm == DELETED || (matchedOnly && !accumulator.isMatched(document))) {
+                continue;
+            }
+            float frequency = frequencies[i];
+            accumulator.add(document, weight * frequency / (frequency + normFactors[norm]));
+        }
+    }
+
+    /**
+     * @return the BM25 length normalisation for every encoded document length
+     */
+    private static float[] normFactors(float averageLength) {
+        float[] factors = new float[NORM_LENGTHS.length];
+        for (int norm = 0; norm < factors.length; norm++) {
+            factors[norm] = K1 * (1 - B + B * NORM_LENGTHS[norm] / averageLength);
+        }
+        return factors;
+    }
+
+    static byte encodeNorm(int length) {
+        int index = Arrays.binarySearch(NORM_LENGTHS, length);
+        return (byte) (index >= 0 ? index : -index - 2);
+    }
+
+    private void delete(int document) {
+        for (Postings postings : documentPostings[document]) {
+            postings.live--;
+        }
+        documentPostings[document] = null;
+        recipeIds[document] = null;
+        norms[document] = (byte) DELETED;
+        liveCount--;
+        liveLength -= lengths[document];
+    }
+
+    private void compactIfNeeded() {
+        int deleted = documentCount - liveCount;
+        if (documentCount < MIN_COMPACTION_DOCUMENTS || deleted < documentCount * COMPACTION_RATIO) {
+            return;
+        }
+
+        //renumbering keeps the order, so postings stay sorted
+        int[] renumbered = new int[documentCount];
+        int next = 0;
+        for (int document = 0; document < documentCount; document++) {
+            if (documentPostings[document] == null) {
+                renumbered[document] = -1;
+                continue;
+            }
+            renumbered[document] = next;
+            recipeIds[next] = recipeIds[document];
+            lengths[next] = lengths[document];
+            norms[next] = norms[document];
+            documentPostings[next] = documentPostings[document];
+            entries.get(recipeIds[next]).document = next;
+            next++;
+        }
+        Arrays.fill(recipeIds, next, documentCount, null);
+        Arrays.fill(documentPostings, next, documentCount, null);
+        documentCount = next;
+
+        Iterator<Postings> iterator = postingsByTerm.values().iterator();
+        while (iterator.hasNext()) {
+            Postings postings = iterator.next();
+            postings.renumber(renumbered);
+            if (postings.size == 0) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > recipeIds.length) {
+            int length = Math.max(capacity, recipeIds.length * 2);
+            recipeIds = Arrays.copyOf(recipeIds, length);
+            lengths = Arrays.copyOf(lengths, length);
+            norms = Arrays.copyOf(norms, length);
+            documentPostings = Arrays.copyOf(documentPostings, length);
+        }
+    }
+
+    private static final class Entry {
+
+        private int document;
+        private final Long version;
+
+        private Entry(int document, Long version) {
+            this.document = document;
+            this.version = version;
+        }
+    }
+
+    private static final class Postings {
+
+        private int[] documents = new int[2];
+        private int[] frequencies = new int[2];
+        private int size;
+        //postings of documents that are not deleted, the document frequency
+        private int live;
+
+        private void add(int document, int frequency) {
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            documents[size] = document;
+            frequencies[size] = frequency;
+            size++;
+            live++;
+        }
+
+        private void renumber(int[] renumbered) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int document = renumbered[documents[i]];
+                if (document >= 0) {
+                    documents[kept] = document;
+                    frequencies[kept] = frequencies[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            if (documents.length > 2 * size + 2) {
+                documents = Arrays.copyOf(documents, Math.max(2, size));
+                frequencies = Arrays.copyOf(frequencies, Math.max(2, size));
+            }
+        }
+    }
+}
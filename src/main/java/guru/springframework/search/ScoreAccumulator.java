@@ -0,0 +1,125 @@
+package guru.springframework.search;
+
+/**
+ * Per query scratch space: a score per document number plus the list of documents that scored, so clearing and
+ * ranking only cost as much as the matches. Instances are pooled and reused across queries.
+ */
+class ScoreAccumulator {
+
+    private float[] scores = new float[0];
+    private int[] matches = new int[0];
+    private int size;
+
+    void prepare(int documentCount) {
+        if (scores.length < documentCount) {
+            scores = new float[documentCount];
+            matches = new int[documentCount];
+        }
+    }
+
+    void add(int document, float score) {
+        //BM25 scores are always positive, zero means not matched yet
+        if (scores[document] == 0f) {
+            matches[size++] = document;
+        }
+        scores[document] += score;
+    }
+
+    boolean isMatched(int document) {
+        return scores[document] != 0f;
+    }
+
+    int size() {
+        return size;
+    }
+
+    float score(int document) {
+        return scores[document];
+    }
+
+    /**
+     * @return the {@code count} best documents, best first, ties broken by document number
+     */
+    int[] top(int count) {
+        int heapSize = 0;
+        int[] heap = new int[Math.min(count, size)];
+        if (heap.length == 0) {
+            return heap;
+        }
+
+        //min-heap on the score, the root is the worst of the best seen so far
+        for (int i = 0; i < size; i++) {
+            int document = matches[i];
+            if (heapSize < heap.length) {
+                heap[heapSize] = document;
+                siftUp(heap, heapSize++);
+            } else if (better(document, heap[0])) {
+                heap[0] = document;
+                siftDown(heap, heapSize);
+            }
+        }
+
+        int[] ranked = new int[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            ranked[i] = heap[0];
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize);
+        }
+        return ranked;
+    }
+
+    /**
+     * @return the score of the {@code rank}th best document, {@code 0} if fewer documents matched
+     */
+    float scoreAt(int rank) {
+        int[] ranked = top(rank);
+        return ranked.length < rank ? 0f : scores[ranked[rank - 1]];
+    }
+
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            scores[matches[i]] = 0f;
+        }
+        size = 0;
+    }
+
+    private boolean better(int document, int other) {
+        return scores[document] > scores[other] || (scores[document] == scores[other] && document < other);
+    }
+
+    private void siftUp(int[] heap, int index) {
+        int document = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!better(heap[parent], document)) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = document;
+    }
+
+    private void siftDown(int[] heap, int heapSize) {
+        if (heapSize == 0) {
+            return;
+        }
+        int index = 0;
+        int document = heap[0];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && better(heap[child], heap[child + 1])) {
+                child++;
+            }
+            if (!better(document, heap[child])) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = document;
+    }
+}
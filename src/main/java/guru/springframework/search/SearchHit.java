@@ -0,0 +1,15 @@
+package guru.springframework.search;
+
+import lombok.Getter;
+
+@Getter
+public class SearchHit {
+
+    private final String recipeId;
+    private final float score;
+
+    public SearchHit(String recipeId, float score) {
+        this.recipeId = recipeId;
+        this.score = score;
+    }
+}
@@ -0,0 +1,26 @@
+package guru.springframework.search;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The requested slice of the ranking, best match first, along with the number of recipes matching any term. That
+ * number is a lower bound when it is not exact, see {@link RecipeSearchIndex#EXACT_TOTAL_HITS}.
+ */
+@Getter
+public class SearchResult {
+
+    public static final SearchResult EMPTY = new SearchResult(Collections.emptyList(), 0, true);
+
+    private final List<SearchHit> hits;
+    private final int totalHits;
+    private final boolean totalHitsExact;
+
+    public SearchResult(List<SearchHit> hits, int totalHits, boolean totalHitsExact) {
+        this.hits = hits;
+        this.totalHits = totalHits;
+        this.totalHitsExact = totalHitsExact;
+    }
+}
@@ -0,0 +1,36 @@
+package guru.springframework.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Splits text into lower case words, breaking on anything that is not a letter or a digit. Used for indexed
+ * recipe text and for queries alike, so both produce the same terms.
+ */
+public final class SearchTokenizer {
+
+    private SearchTokenizer() {
+    }
+
+    public static List<String> tokenize(String... texts) {
+        List<String> tokens = new ArrayList<>();
+        for (String text : texts) {
+            if (text == null) {
+                continue;
+            }
+
+            int start = -1;
+            for (int i = 0; i <= text.length(); i++) {
+                boolean wordCharacter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+                if (wordCharacter && start < 0) {
+                    start = i;
+                } else if (!wordCharacter && start >= 0) {
+                    tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                    start = -1;
+                }
+            }
+        }
+        return tokens;
+    }
+}
@@ -1,7 +1,39 @@
 package guru.springframework.services;
 
+import guru.springframework.domain.ImageMetadata;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.Optional;
+
 public interface ImageService {
+
+    /**
+     * @throws guru.springframework.exceptions.BadRequestException if the file is not a JPEG, PNG or GIF image
+     * @throws guru.springframework.exceptions.PayloadTooLargeException if the file exceeds the upload size limit
+     * @throws java.io.UncheckedIOException if reading the upload fails
+     */
     void saveImageFile(String recipeId, MultipartFile file);
+
+    /**
+     * Stores an image read once from {@code content}, which claims to be {@code size} bytes long, as
+     * {@link #saveImageFile} does.
+     */
+    void saveImage(String recipeId, String filename, long size, InputStreamSource content);
+
+    /**
+     * Drops the reference of a deleted recipe to its image.
+     */
+    void releaseImage(String recipeId, ImageMetadata imageMetadata);
+
+    Optional<ImageMetadata> findImageMetadata(String recipeId);
+
+    Resource loadImage(ImageMetadata imageMetadata);
+
+    /**
+     * Like {@link #loadImage}, but served from the node's image file cache, which is filled from the database on
+     * first use.
+     */
+    Resource loadCachedImage(ImageMetadata imageMetadata);
 }
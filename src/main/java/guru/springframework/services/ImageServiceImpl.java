@@ -1,44 +1,233 @@
 package guru.springframework.services;
 
+import com.mongodb.MongoGridFSException;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import guru.springframework.cache.RenderedPageCache;
+import guru.springframework.domain.ImageBlob;
+import guru.springframework.domain.ImageMetadata;
 import guru.springframework.domain.Recipe;
+import guru.springframework.exceptions.BadRequestException;
+import guru.springframework.exceptions.NotFoundException;
+import guru.springframework.exceptions.PayloadTooLargeException;
+import guru.springframework.images.ImageFileCache;
+import guru.springframework.images.ImageFiles;
+import guru.springframework.images.ImageUploadStream;
+import guru.springframework.images.ImageVariantGenerator;
+import guru.springframework.images.OffHeapImageCache;
+import guru.springframework.jfr.ImageUploadEvent;
+import guru.springframework.metrics.ImageMetrics;
+import guru.springframework.repositories.ImageBlobRepository;
 import guru.springframework.repositories.RecipeRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.core.io.Resource;
+import org.springframework.data.mongodb.gridfs.GridFsOperations;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Date;
+import java.util.Optional;
 
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Stores recipe images in GridFS and keeps only an {@link ImageMetadata} reference on the recipe, so loading a
+ * recipe never pulls the image bytes along with it. Each distinct image is stored once as an {@link ImageBlob},
+ * however many recipes show it.
+ */
 @Slf4j
 @Service
 public class ImageServiceImpl implements ImageService {
 
     private final RecipeRepository recipeRepository;
+    private final ImageBlobRepository imageBlobRepository;
+    private final GridFsOperations gridFsOperations;
+    private final ImageVariantGenerator imageVariantGenerator;
+    private final MeterRegistry meterRegistry;
+    private final RenderedPageCache renderedPageCache;
+    private final ImageFileCache imageFileCache;
+    private final OffHeapImageCache offHeapImageCache;
+    private final long maxUploadSize;
 
-    public ImageServiceImpl(RecipeRepository recipeRepository) {
+    public ImageServiceImpl(RecipeRepository recipeRepository, ImageBlobRepository imageBlobRepository,
+                            GridFsOperations gridFsOperations,
+                            ImageVariantGenerator imageVariantGenerator, MeterRegistry meterRegistry,
+                            RenderedPageCache renderedPageCache, ImageFileCache imageFileCache,
+                            OffHeapImageCache offHeapImageCache,
+                            @Value("${recipe.image.upload.max-size:8MB}") DataSize maxUploadSize) {
         this.recipeRepository = recipeRepository;
+        this.imageBlobRepository = imageBlobRepository;
+        this.gridFsOperations = gridFsOperations;
+        this.imageVariantGenerator = imageVariantGenerator;
+        this.meterRegistry = meterRegistry;
+        this.renderedPageCache = renderedPageCache;
+        this.imageFileCache = imageFileCache;
+        this.offHeapImageCache = offHeapImageCache;
+        this.maxUploadSize = maxUploadSize.toBytes();
     }
 
-
     @Override
     public void saveImageFile(String recipeId, MultipartFile file) {
-        Recipe recipe = recipeRepository.findById(recipeId).get();
+        saveImage(recipeId, file.getOriginalFilename(), file.getSize(), file);
+    }
+
+    @Override
+    public void saveImage(String recipeId, String filename, long size, InputStreamSource content) {
+        ImageUploadEvent event = new ImageUploadEvent();
+        event.begin();
+        if (!recipeRepository.existsById(recipeId)) {
+            throw new NotFoundException("Recipe Not Found. For ID value: " + recipeId);
+        }
+        //the size is known before reading, a multipart part has been spooled to disk by the container
+        if (size > maxUploadSize) {
+            throw new PayloadTooLargeException("Image is larger than " + maxUploadSize + " bytes");
+        }
+
+        ImageMetadata stored;
+        try (ImageUploadStream upload = ImageUploadStream.open(content.getInputStream(), maxUploadSize)) {
+            //format, hash and length are taken from the content as it streams into GridFS
+            String contentType = upload.getFormat().getContentType();
+            ObjectId fileId = store(upload, filename, contentType, recipeId);
+            stored = new ImageMetadata(fileId.toHexString(), contentType, upload.getLength(), new Date(),
+                    upload.getContentHash());
+        } catch (ImageUploadStream.UnsupportedImageException e) {
+            throw new BadRequestException(e.getMessage(), e);
+        } catch (ImageUploadStream.ImageTooLargeException e) {
+            throw new PayloadTooLargeException(e.getMessage(), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Reading the image upload for recipe " + recipeId + " failed", e);
+        }
+
+        //the hash is only known once the image is stored, a copy stored earlier wins and this one is dropped
+        ImageBlob blob = imageBlobRepository.acquire(stored, recipeId);
+        boolean duplicate = !blob.getFileId().equals(stored.getFileId());
+        if (duplicate) {
+            gridFsOperations.delete(query(where("_id").is(new ObjectId(stored.getFileId()))));
+        }
+        ImageMetadata imageMetadata = duplicate ? blob.toImageMetadata() : stored;
 
+        Optional<Recipe> previous = recipeRepository.replaceImageMetadata(recipeId, imageMetadata);
+        if (!previous.isPresent()) {
+            //recipe was deleted while the upload was in flight
+            imageBlobRepository.release(imageMetadata.getContentHash(), recipeId);
+            throw new NotFoundException("Recipe Not Found. For ID value: " + recipeId);
+        }
+        ImageMetadata previousImage = previous.get().getImageMetadata();
+        if (previousImage != null && !imageMetadata.getContentHash().equals(previousImage.getContentHash())) {
+            release(recipeId, previousImage);
+        }
+        //the recipe page links the image by its content hash
+        renderedPageCache.invalidate(recipeId);
+        ImageMetrics.recordUpload(meterRegistry, duplicate);
+        if (!duplicate) {
+            ImageMetrics.recordSize(meterRegistry, ImageMetrics.ORIGINAL, imageMetadata.getLength());
+            imageVariantGenerator.submit(recipeId, imageMetadata, loadImage(imageMetadata));
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.recipeId = recipeId;
+            event.contentType = imageMetadata.getContentType();
+            event.imageBytes = imageMetadata.getLength();
+            event.duplicate = duplicate;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void releaseImage(String recipeId, ImageMetadata imageMetadata) {
+        release(recipeId, imageMetadata);
+    }
+
+    /**
+     * Drops a recipe's reference to an image; the image itself is deleted by the
+     * {@link guru.springframework.images.ImageBlobCollector}.
+     */
+    private void release(String recipeId, ImageMetadata imageMetadata) {
+        if (imageMetadata.getContentHash() == null || !imageBlobRepository.release(imageMetadata.getContentHash(), recipeId)) {
+            //stored before images were shared and not registered yet, nobody else refers to it
+            ImageFiles.delete(gridFsOperations, imageMetadata);
+        }
+    }
+
+    /**
+     * GridFS writes a chunk at a time as it reads. When reading fails it removes the chunks written so far and
+     * wraps the cause, which is unwrapped again here.
+     */
+    private ObjectId store(ImageUploadStream upload, String filename, String contentType, String recipeId) throws IOException {
         try {
-            Byte[] byteObj = new Byte[file.getBytes().length];
+            return gridFsOperations.store(upload, filename, contentType, new Document("recipeId", recipeId));
+        } catch (MongoGridFSException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public Optional<ImageMetadata> findImageMetadata(String recipeId) {
+        Recipe recipe = recipeRepository.findImageMetadataById(recipeId)
+                .orElseThrow(() -> new NotFoundException("Recipe Not Found. For ID value: " + recipeId));
+        return Optional.ofNullable(recipe.getImageMetadata());
+    }
+
+    @Override
+    public Resource loadImage(ImageMetadata imageMetadata) {
+        return new GridFsImageResource(imageMetadata);
+    }
 
-            int i = 0;
+    @Override
+    public Resource loadCachedImage(ImageMetadata imageMetadata) {
+        //popular images from memory, the rest from the local file, GridFS only once per node
+        return offHeapImageCache.resource(imageMetadata, imageFileCache.resource(imageMetadata, loadImage(imageMetadata)));
+    }
 
-            for (byte b : file.getBytes()) {
-                byteObj[i++] = b;
+    /**
+     * Describes a stored image from its metadata alone; GridFS is only queried once the content is actually read,
+     * and every read opens a fresh download stream.
+     */
+    private class GridFsImageResource extends AbstractResource {
+
+        private final ImageMetadata imageMetadata;
+
+        GridFsImageResource(ImageMetadata imageMetadata) {
+            this.imageMetadata = imageMetadata;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            GridFSFile file = gridFsOperations.findOne(query(where("_id").is(new ObjectId(imageMetadata.getFileId()))));
+            if (file == null) {
+                throw new FileNotFoundException(getDescription() + " does not exist");
             }
+            return gridFsOperations.getResource(file).getInputStream();
+        }
 
-            recipe.setImage(byteObj);
-            recipeRepository.save(recipe);
-        } catch (IOException e) {
-            //todo handle better
-            log.error("Error occurred", e);
-            e.printStackTrace();
+        @Override
+        public long contentLength() {
+            return imageMetadata.getLength();
+        }
+
+        @Override
+        public long lastModified() {
+            return imageMetadata.getUploadDate().getTime();
         }
-    }
 
+        @Override
+        public String getDescription() {
+            return "GridFS image [" + imageMetadata.getFileId() + "]";
+        }
+    }
 }
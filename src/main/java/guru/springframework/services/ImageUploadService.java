@@ -0,0 +1,46 @@
+package guru.springframework.services;
+
+import guru.springframework.domain.ImageUpload;
+
+import java.io.InputStream;
+import java.util.Optional;
+
+/**
+ * Resumable recipe image uploads: the image is sent in chunks at byte offsets, in any order and as often as needed,
+ * and stored once every byte has arrived.
+ */
+public interface ImageUploadService {
+
+    /**
+     * @throws guru.springframework.exceptions.NotFoundException if the recipe does not exist
+     * @throws guru.springframework.exceptions.PayloadTooLargeException if the image exceeds the upload size limit
+     * @throws guru.springframework.exceptions.TooManyRequestsException if the maximum number of uploads is pending
+     */
+    ImageUpload startUpload(String recipeId, String filename, long length);
+
+    /**
+     * Writes a chunk read from {@code content} at {@code offset}. Whatever arrived before reading failed is kept.
+     *
+     * @throws guru.springframework.exceptions.BadRequestException if the chunk extends past the image length or
+     *                                                               the upload is not accepting chunks
+     * @throws guru.springframework.exceptions.NotFoundException if the upload or its staged file does not exist
+     */
+    ImageUpload writeChunk(String recipeId, String uploadId, long offset, InputStream content);
+
+    Optional<ImageUpload> findUpload(String recipeId, String uploadId);
+
+    /**
+     * Stores the image with the {@link ImageService} once every byte has arrived.
+     *
+     * @throws guru.springframework.exceptions.BadRequestException if bytes are missing or the image is invalid
+     * @throws guru.springframework.exceptions.ConflictException if a chunk is still being written
+     * @throws guru.springframework.exceptions.NotFoundException if the upload or its staged file does not exist
+     */
+    ImageUpload completeUpload(String recipeId, String uploadId);
+
+    /**
+     * @throws guru.springframework.exceptions.ConflictException if a chunk is being written or the image is being
+     *                                                             stored
+     */
+    void cancelUpload(String recipeId, String uploadId);
+}
@@ -0,0 +1,263 @@
+package guru.springframework.services;
+
+import guru.springframework.domain.ImageUpload;
+import guru.springframework.exceptions.BadRequestException;
+import guru.springframework.exceptions.ConflictException;
+import guru.springframework.exceptions.NotFoundException;
+import guru.springframework.exceptions.PayloadTooLargeException;
+import guru.springframework.exceptions.TooManyRequestsException;
+import guru.springframework.repositories.RecipeRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Stages each upload in a file of its own in {@code recipe.image.upload.staging-directory}, writing every chunk
+ * at its offset, and streams the file into the {@link ImageService} once it is complete. Uploads are held on the
+ * node that started them and do not survive a restart; staged files left behind are deleted at startup.
+ * <p>
+ * Uploads without a chunk for {@code recipe.image.upload.expiry} are removed with their staged file, finished
+ * ones are forgotten after the same time.
+ */
+@Slf4j
+@Service
+public class ImageUploadServiceImpl implements ImageUploadService {
+
+    private static final String STAGED_SUFFIX = ".part";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final RecipeRepository recipeRepository;
+    private final ImageService imageService;
+    private final Path stagingDirectory;
+    private final long maxUploadSize;
+    private final int maxPending;
+    private final long expiryMillis;
+
+    private final Map<String, ImageUpload> uploads = new HashMap<>();
+
+    public ImageUploadServiceImpl(RecipeRepository recipeRepository, ImageService imageService,
+                                  @Value("${recipe.image.upload.staging-directory:${java.io.tmpdir}/recipe-image-uploads}") String stagingDirectory,
+                                  @Value("${recipe.image.upload.max-size:8MB}") DataSize maxUploadSize,
+                                  @Value("${recipe.image.upload.max-pending:100}") int maxPending,
+                                  @Value("${recipe.image.upload.expiry:24h}") Duration expiry) throws IOException {
+        this.recipeRepository = recipeRepository;
+        this.imageService = imageService;
+        this.stagingDirectory = Paths.get(stagingDirectory);
+        this.maxUploadSize = maxUploadSize.toBytes();
+        this.maxPending = maxPending;
+        this.expiryMillis = expiry.toMillis();
+
+        Files.createDirectories(this.stagingDirectory);
+        try (DirectoryStream<Path> staged = Files.newDirectoryStream(this.stagingDirectory, "*" + STAGED_SUFFIX)) {
+            for (Path path : staged) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Override
+    public ImageUpload startUpload(String recipeId, String filename, long length) {
+        if (length <= 0) {
+            throw new BadRequestException("Image length has to be positive");
+        }
+        if (length > maxUploadSize) {
+            throw new PayloadTooLargeException("Image is larger than " + maxUploadSize + " bytes");
+        }
+        if (!recipeRepository.existsById(recipeId)) {
+            throw new NotFoundException("Recipe Not Found. For ID value: " + recipeId);
+        }
+
+        ImageUpload upload = new ImageUpload(new ObjectId().toHexString(), recipeId, filename, length);
+        synchronized (uploads) {
+            long pending = uploads.values().stream().filter(ImageUpload::isUploading).count();
+            if (pending >= maxPending) {
+                throw new TooManyRequestsException("Too many image uploads pending, try again later");
+            }
+            uploads.put(upload.getId(), upload);
+        }
+        try {
+            //a sparse file, chunks fill it in at their offsets
+            Files.createFile(stagedFile(upload));
+        } catch (IOException e) {
+            remove(upload);
+            throw new UncheckedIOException("Staging image upload " + upload.getId() + " failed", e);
+        }
+        log.debug("Started image upload " + upload.getId() + " of " + length + " bytes for recipe " + recipeId);
+        return upload;
+    }
+
+    @Override
+    public ImageUpload writeChunk(String recipeId, String uploadId, long offset, InputStream content) {
+        ImageUpload upload = getUpload(recipeId, uploadId);
+        if (offset < 0 || offset >= upload.getLength()) {
+            throw new BadRequestException("Offset " + offset + " is outside of the image of " + upload.getLength() + " bytes");
+        }
+        if (!upload.beginWrite()) {
+            throw new BadRequestException("Image upload " + uploadId + " is " + upload.getState());
+        }
+
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(stagedFile(upload), StandardOpenOption.WRITE)) {
+            //positional writes, chunks past the current end of the file extend it
+            long remaining = upload.getLength() - offset;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            for (int count; written < remaining
+                    && (count = content.read(buffer, 0, (int) Math.min(buffer.length, remaining - written))) != -1; ) {
+                ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, count);
+                while (bytes.hasRemaining()) {
+                    written += channel.write(bytes, offset + written);
+                }
+            }
+            if (content.read() != -1) {
+                throw new BadRequestException("Chunk at offset " + offset + " extends past the image of "
+                        + upload.getLength() + " bytes");
+            }
+        } catch (NoSuchFileException e) {
+            throw stagedFileGone(upload, e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Writing chunk at offset " + offset + " of image upload " + uploadId
+                    + " failed after " + written + " bytes", e);
+        } finally {
+            //a chunk cut off by a dropped connection still counts as far as it got
+            upload.endWrite(offset, offset + written);
+        }
+        return upload;
+    }
+
+    @Override
+    public Optional<ImageUpload> findUpload(String recipeId, String uploadId) {
+        synchronized (uploads) {
+            return Optional.ofNullable(uploads.get(uploadId))
+                    .filter(upload -> upload.getRecipeId().equals(recipeId));
+        }
+    }
+
+    @Override
+    public ImageUpload completeUpload(String recipeId, String uploadId) {
+        ImageUpload upload = getUpload(recipeId, uploadId);
+        if (upload.getState() == ImageUpload.State.COMPLETED) {
+            return upload;
+        }
+        if (!upload.beginCompleting()) {
+            if (upload.isWriting() || upload.getState() == ImageUpload.State.COMPLETING) {
+                throw new ConflictException("Image upload " + uploadId + " is still receiving a chunk or being stored");
+            }
+            throw new BadRequestException("Image upload " + uploadId + " is " + upload.getState() + " with "
+                    + upload.getReceivedBytes() + " of " + upload.getLength() + " bytes received");
+        }
+
+        Path staged = stagedFile(upload);
+        try {
+            imageService.saveImage(recipeId, upload.getFilename(), upload.getLength(), new FileSystemResource(staged));
+        } catch (BadRequestException | PayloadTooLargeException | NotFoundException e) {
+            //sending the same bytes again would not help
+            upload.fail(e.getMessage());
+            deleteStaged(upload);
+            throw e;
+        } catch (UncheckedIOException e) {
+            if (e.getCause() instanceof NoSuchFileException) {
+                throw stagedFileGone(upload, e.getCause());
+            }
+            upload.resume();
+            throw e;
+        } catch (RuntimeException e) {
+            upload.resume();
+            throw e;
+        }
+        upload.complete();
+        deleteStaged(upload);
+        log.debug("Completed image upload " + uploadId + " for recipe " + recipeId);
+        return upload;
+    }
+
+    @Override
+    public void cancelUpload(String recipeId, String uploadId) {
+        ImageUpload upload = getUpload(recipeId, uploadId);
+        if (!upload.cancel()) {
+            throw new ConflictException("Image upload " + uploadId + " is still receiving a chunk or being stored");
+        }
+        remove(upload);
+        deleteStaged(upload);
+    }
+
+    @Scheduled(fixedDelayString = "${recipe.image.upload.sweep-interval-millis:600000}")
+    public void removeStaleUploads() {
+        removeStaleUploads(System.currentTimeMillis());
+    }
+
+    /**
+     * @return how many uploads were removed
+     */
+    int removeStaleUploads(long now) {
+        int removed = 0;
+        synchronized (uploads) {
+            for (Iterator<ImageUpload> iterator = uploads.values().iterator(); iterator.hasNext(); ) {
+                ImageUpload upload = iterator.next();
+                //an upload receiving a chunk or being stored is left for the next sweep
+                if (now - upload.getLastActivity() > expiryMillis && upload.cancel()) {
+                    iterator.remove();
+                    deleteStaged(upload);
+                    removed++;
+                }
+            }
+        }
+        if (removed > 0) {
+            log.info("Removed " + removed + " stale image uploads");
+        }
+        return removed;
+    }
+
+    private ImageUpload getUpload(String recipeId, String uploadId) {
+        return findUpload(recipeId, uploadId)
+                .orElseThrow(() -> new NotFoundException("Image upload Not Found. For ID value: " + uploadId));
+    }
+
+    private void remove(ImageUpload upload) {
+        synchronized (uploads) {
+            uploads.remove(upload.getId());
+        }
+    }
+
+    /**
+     * Fails an upload whose staged file was deleted outside the application, by a temp directory cleaner for
+     * instance. The bytes are lost, so the client has to start over.
+     */
+    private NotFoundException stagedFileGone(ImageUpload upload, Throwable cause) {
+        upload.fail("The staged image is gone");
+        remove(upload);
+        return new NotFoundException("Staged image of upload " + upload.getId() + " Not Found", cause);
+    }
+
+    private Path stagedFile(ImageUpload upload) {
+        return stagingDirectory.resolve(upload.getId() + STAGED_SUFFIX);
+    }
+
+    private void deleteStaged(ImageUpload upload) {
+        try {
+            Files.deleteIfExists(stagedFile(upload));
+        } catch (IOException e) {
+            log.warn("Deleting staged image upload " + upload.getId() + " failed", e);
+        }
+    }
+}
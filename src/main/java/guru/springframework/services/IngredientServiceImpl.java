@@ -1,17 +1,25 @@
 package guru.springframework.services;
 
+import guru.springframework.cache.ReferenceDataCache;
+import guru.springframework.cache.RenderedPageCache;
 import guru.springframework.commands.IngredientCommand;
+import guru.springframework.concurrency.OptimisticRetry;
 import guru.springframework.converters.IngredientCommandToIngredient;
 import guru.springframework.converters.IngredientToIngredientCommand;
 import guru.springframework.domain.Ingredient;
 import guru.springframework.domain.Recipe;
+import guru.springframework.domain.UnitOfMeasure;
+import guru.springframework.exceptions.NotFoundException;
+import guru.springframework.jfr.IngredientSaveEvent;
 import guru.springframework.repositories.RecipeRepository;
-import guru.springframework.repositories.UnitOfMeasureRepository;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 
 import java.util.Optional;
+import java.util.UUID;
 
 @Slf4j
 @Service
@@ -20,13 +28,20 @@ public class IngredientServiceImpl implements IngredientService {
     private final RecipeRepository recipeRepository;
     private final IngredientToIngredientCommand ingredientToIngredientCommand;
     private final IngredientCommandToIngredient ingredientCommandToIngredient;
-    private final UnitOfMeasureRepository unitOfMeasureRepository;
+    private final ReferenceDataCache<UnitOfMeasure> unitOfMeasureCache;
+    private final OptimisticRetry optimisticRetry;
+    private final RecipeSearchService recipeSearchService;
+    private final RenderedPageCache renderedPageCache;
 
-    public IngredientServiceImpl(RecipeRepository recipeRepository, IngredientToIngredientCommand ingredientToIngredientCommand, IngredientCommandToIngredient ingredientCommandToIngredient, UnitOfMeasureRepository unitOfMeasureRepository) {
+    public IngredientServiceImpl(RecipeRepository recipeRepository, IngredientToIngredientCommand ingredientToIngredientCommand, IngredientCommandToIngredient ingredientCommandToIngredient, ReferenceDataCache<UnitOfMeasure> unitOfMeasureCache, OptimisticRetry optimisticRetry,
+                                 RecipeSearchService recipeSearchService, RenderedPageCache renderedPageCache) {
         this.recipeRepository = recipeRepository;
         this.ingredientToIngredientCommand = ingredientToIngredientCommand;
         this.ingredientCommandToIngredient = ingredientCommandToIngredient;
-        this.unitOfMeasureRepository = unitOfMeasureRepository;
+        this.unitOfMeasureCache = unitOfMeasureCache;
+        this.optimisticRetry = optimisticRetry;
+        this.recipeSearchService = recipeSearchService;
+        this.renderedPageCache = renderedPageCache;
     }
 
     @Override
@@ -35,7 +50,7 @@ public class IngredientServiceImpl implements IngredientService {
         // it would be simpler in case we just search an ingredient by id with the help of IngredientRepository
         // using findByRecipeIdAndId method.
 
-        Optional<Recipe> optionalRecipe = recipeRepository.findById(recipeId);
+        Optional<Recipe> optionalRecipe = recipeRepository.findByIdWithReferences(recipeId);
 
         if (!optionalRecipe.isPresent()) {
             //todo implerror handling
@@ -62,72 +77,66 @@ public class IngredientServiceImpl implements IngredientService {
 
     @Override
     public IngredientCommand saveIngredientCommand(IngredientCommand command) {
-        Optional<Recipe> recipeOptional = recipeRepository.findById(command.getRecipeId());
-        if (!recipeOptional.isPresent()) {
-            //todo impl error handling
-            log.error("recipe id not found. Id: " + command.getId());
+        IngredientSaveEvent event = new IngredientSaveEvent();
+        event.begin();
+        Ingredient ingredient = ingredientCommandToIngredient.convert(command);
+        if (ingredient.getUom() != null) {
+            ingredient.setUom(unitOfMeasureCache.findById(ingredient.getUom().getId())
+                    .orElseThrow(() -> new NotFoundException("Unit of Measure Not Found. For ID value: " + command.getUom().getId())));
         }
-        Recipe recipe = recipeOptional.get();
-        Optional<Ingredient> optionalIngredient = recipe.getIngredients()
-                .stream()
-                .filter(ingredient -> ingredient.getId().equals(command.getId()))
-                .findFirst();
-        if (optionalIngredient.isPresent()) {
-            Ingredient ingredientFound = optionalIngredient.get();
-            ingredientFound.setDescription(command.getDescription());
-            ingredientFound.setAmount(command.getAmount());
-            ingredientFound.setUom(unitOfMeasureRepository.findById(command.getUom().getId())
-                    .orElseThrow(() -> new RuntimeException("uom not found"))); //todo address this
-        } else {
-            //add new Ingredient
-            Ingredient ingredient = ingredientCommandToIngredient.convert(command);
-            //  ingredient.setRecipe(recipe); already done inside addIngredient (for two way directional flow)
-            recipe.addIngredient(ingredient);
+
+        //a single atomic update either way, the rest of the recipe is never rewritten
+        boolean newIngredient = !StringUtils.hasText(command.getId());
+        if (newIngredient) {
+            ingredient.setId(UUID.randomUUID().toString());
         }
-        Recipe savedRecipe = recipeRepository.save(recipe);
-
-        Optional<Ingredient> savedIngredientOptional = savedRecipe.getIngredients().stream()
-                .filter(recipeIngredients -> recipeIngredients.getId().equals(command.getId()))
-                .findFirst();
-
-        //check by description
-        if (!savedIngredientOptional.isPresent()) {
-            //not totally safe... But best guess
-            savedIngredientOptional = savedRecipe.getIngredients().stream()
-                    .filter(recipeIngredients -> recipeIngredients.getDescription().equals(command.getDescription()))
-                    .filter(recipeIngredients -> recipeIngredients.getAmount().equals(command.getAmount()))
-                    .filter(recipeIngredients -> recipeIngredients.getUom().getId().equals(command.getUom().getId()))
-                    .findFirst();
+        Optional<Ingredient> savedIngredientOptional = optimisticRetry.execute("ingredient.save", () -> {
+            Long version = currentVersion(command.getRecipeId());
+            return newIngredient
+                    ? recipeRepository.addIngredient(command.getRecipeId(), version, ingredient)
+                    : recipeRepository.updateIngredient(command.getRecipeId(), version, ingredient);
+        });
+        if (!newIngredient && !savedIngredientOptional.isPresent()) {
+            //removed since the form was loaded, adding it would bring it back; not retried, it stays removed
+            throw new OptimisticLockingFailureException("Ingredient " + command.getId() + " of recipe "
+                    + command.getRecipeId() + " was removed meanwhile");
         }
 
-        //todo check for fail
         //enhance with id value
-        IngredientCommand ingredientCommandSaved = ingredientToIngredientCommand.convert(savedIngredientOptional.get());
-        ingredientCommandSaved.setRecipeId(recipe.getId());
-
+        IngredientCommand ingredientCommandSaved = ingredientToIngredientCommand.convert(savedIngredientOptional
+                .orElseThrow(() -> new NotFoundException("Recipe Not Found. For ID value: " + command.getRecipeId())));
+        ingredientCommandSaved.setRecipeId(command.getRecipeId());
+        recipeSearchService.reindex(command.getRecipeId());
+        renderedPageCache.invalidate(command.getRecipeId());
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.recipeId = command.getRecipeId();
+            event.ingredientId = ingredient.getId();
+            event.newIngredient = newIngredient;
+            event.ingredientCount = 1;
+            event.commit();
+        }
         return ingredientCommandSaved;
     }
 
     @Override
     public void deleteById(String recipeId, String id) {
-
-        Optional<Recipe> optionalRecipe = recipeRepository.findById(recipeId);
-        if (optionalRecipe.isPresent()) {
-            log.debug("recipe found.Id: " + recipeId);
-            Recipe recipe = optionalRecipe.get();
-            Optional<Ingredient> optionalIngredient = recipe.getIngredients()
-                    .stream()
-                    .filter(ingredient -> ingredient.getId().equals(id))
-                    .findFirst();
-            if (optionalIngredient.isPresent()) {
-                Ingredient ingredient = optionalIngredient.get();
-                recipe.getIngredients().remove(ingredient);
-                recipeRepository.save(recipe);
-            } else {
-                log.error("ingredient not found.Id: " + id);
-            }
+        boolean removed = optimisticRetry.execute("ingredient.delete", () -> recipeRepository.findVersionById(recipeId)
+                .map(recipe -> recipeRepository.removeIngredient(recipeId, recipe.getVersion(), id))
+                .orElse(false));
+        if (removed) {
+            log.debug("ingredient removed.Id: " + id);
+            recipeSearchService.reindex(recipeId);
+            renderedPageCache.invalidate(recipeId);
         } else {
-            log.error("recipe id not found.Id: " + recipeId);
+            log.error("recipe or ingredient not found. Recipe id: " + recipeId + ", ingredient id: " + id);
         }
     }
+
+    private Long currentVersion(String recipeId) {
+        return recipeRepository.findVersionById(recipeId)
+                .orElseThrow(() -> new NotFoundException("Recipe Not Found. For ID value: " + recipeId))
+                .getVersion();
+    }
 }
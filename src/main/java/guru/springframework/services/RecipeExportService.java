@@ -0,0 +1,26 @@
+package guru.springframework.services;
+
+import guru.springframework.domain.RecipeExportFilter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+
+public interface RecipeExportService {
+
+    /**
+     * @param category      description of the only category to export, or {@code null} for all
+     * @param modifiedSince only export recipes modified at or after this time, or {@code null} for all
+     * @throws guru.springframework.exceptions.NotFoundException if there is no such category
+     */
+    RecipeExportFilter filter(String category, Date modifiedSince);
+
+    /**
+     * Writes the matching recipes as NDJSON, one {@link guru.springframework.commands.RecipeCommand} per line, in
+     * the format the NDJSON import reads. Recipes are read from a cursor as they are written, the output stream is
+     * flushed but not closed.
+     *
+     * @return the number of recipes written
+     */
+    long exportRecipes(RecipeExportFilter filter, OutputStream outputStream) throws IOException;
+}
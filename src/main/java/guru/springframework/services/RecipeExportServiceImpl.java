@@ -0,0 +1,75 @@
+package guru.springframework.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import guru.springframework.cache.ReferenceDataCache;
+import guru.springframework.commands.RecipeCommand;
+import guru.springframework.converters.RecipeToRecipeCommand;
+import guru.springframework.domain.Category;
+import guru.springframework.domain.Recipe;
+import guru.springframework.domain.RecipeExportFilter;
+import guru.springframework.exceptions.NotFoundException;
+import guru.springframework.repositories.RecipeRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+@Slf4j
+@Service
+public class RecipeExportServiceImpl implements RecipeExportService {
+
+    //the generator buffers, flushing after every recipe would send one chunk per recipe
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private static final ObjectWriter COMMAND_WRITER = OBJECT_MAPPER.writerFor(RecipeCommand.class);
+
+    private final RecipeRepository recipeRepository;
+    private final RecipeToRecipeCommand recipeToRecipeCommand;
+    private final ReferenceDataCache<Category> categoryCache;
+    private final int batchSize;
+
+    public RecipeExportServiceImpl(RecipeRepository recipeRepository, RecipeToRecipeCommand recipeToRecipeCommand,
+                                   ReferenceDataCache<Category> categoryCache,
+                                   @Value("${recipe.export.batch-size:500}") int batchSize) {
+        this.recipeRepository = recipeRepository;
+        this.recipeToRecipeCommand = recipeToRecipeCommand;
+        this.categoryCache = categoryCache;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public RecipeExportFilter filter(String category, Date modifiedSince) {
+        String categoryId = null;
+        if (category != null) {
+            categoryId = categoryCache.findByDescription(category)
+                    .orElseThrow(() -> new NotFoundException("Category Not Found: " + category))
+                    .getId();
+        }
+        return new RecipeExportFilter(categoryId, modifiedSince);
+    }
+
+    @Override
+    public long exportRecipes(RecipeExportFilter filter, OutputStream outputStream) throws IOException {
+        long started = System.nanoTime();
+        long exported = 0;
+        try (Stream<Recipe> recipes = recipeRepository.streamWithReferences(filter.getCategoryId(),
+                filter.getModifiedSince(), batchSize);
+             JsonGenerator generator = OBJECT_MAPPER.getFactory().createGenerator(outputStream)) {
+            for (Iterator<Recipe> iterator = recipes.iterator(); iterator.hasNext(); exported++) {
+                COMMAND_WRITER.writeValue(generator, recipeToRecipeCommand.convert(iterator.next()));
+                generator.writeRaw('\n');
+            }
+        }
+        log.info("Exported " + exported + " recipes in " + (System.nanoTime() - started) / 1_000_000 + " ms");
+        return exported;
+    }
+}
@@ -0,0 +1,27 @@
+package guru.springframework.services;
+
+import guru.springframework.domain.RecipeImport;
+import guru.springframework.imports.RecipeImportFormat;
+
+import java.io.Reader;
+import java.util.List;
+import java.util.Optional;
+
+public interface RecipeImportService {
+
+    /**
+     * Imports every recipe of the input as new recipes, reading it as it is written. Returns once the input was read
+     * to the end; records that are invalid or refer to unknown categories or units of measure are reported and
+     * skipped.
+     *
+     * @throws guru.springframework.exceptions.TooManyRequestsException if the maximum number of imports is running
+     */
+    RecipeImport importRecipes(RecipeImportFormat format, Reader reader);
+
+    /**
+     * @return the running and most recent imports, oldest first
+     */
+    List<RecipeImport> getImports();
+
+    Optional<RecipeImport> findImport(String id);
+}
@@ -0,0 +1,247 @@
+package guru.springframework.services;
+
+import guru.springframework.cache.ReferenceDataCache;
+import guru.springframework.commands.CategoryCommand;
+import guru.springframework.commands.IngredientCommand;
+import guru.springframework.commands.RecipeCommand;
+import guru.springframework.commands.UnitOfMeasureCommand;
+import guru.springframework.converters.RecipeCommandToRecipe;
+import guru.springframework.domain.Category;
+import guru.springframework.domain.Ingredient;
+import guru.springframework.domain.Recipe;
+import guru.springframework.domain.RecipeImport;
+import guru.springframework.domain.UnitOfMeasure;
+import guru.springframework.exceptions.TooManyRequestsException;
+import guru.springframework.imports.RecipeImportFormat;
+import guru.springframework.imports.RecipeRecord;
+import guru.springframework.imports.RecipeRecordReader;
+import com.mongodb.MongoBulkWriteException;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.stereotype.Service;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+
+/**
+ * Reads an import record by record and inserts the valid recipes in unordered bulk writes of {@code batchSize}.
+ * The input is only read further once the previous batch is written, so a client sending faster than Mongo takes
+ * the writes is held back by the request body not being read; at most one batch of recipes is in memory.
+ */
+@Slf4j
+@Service
+public class RecipeImportServiceImpl implements RecipeImportService {
+
+    private static final int RECENT_IMPORTS = 20;
+
+    private final MongoOperations mongoOperations;
+    private final Validator validator;
+    private final RecipeCommandToRecipe recipeCommandToRecipe;
+    private final ReferenceDataCache<UnitOfMeasure> unitOfMeasureCache;
+    private final ReferenceDataCache<Category> categoryCache;
+    private final RecipeSearchService recipeSearchService;
+    private final int batchSize;
+    private final int maxErrors;
+    private final int maxRecordLength;
+    private final Semaphore permits;
+
+    //running imports are never evicted, they hold a permit and there are fewer permits than entries
+    private final Map<String, RecipeImport> imports = new LinkedHashMap<String, RecipeImport>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, RecipeImport> eldest) {
+            return size() > RECENT_IMPORTS && eldest.getValue().getState() != RecipeImport.State.RUNNING;
+        }
+    };
+
+    public RecipeImportServiceImpl(MongoOperations mongoOperations, Validator validator,
+                                   RecipeCommandToRecipe recipeCommandToRecipe,
+                                   ReferenceDataCache<UnitOfMeasure> unitOfMeasureCache,
+                                   ReferenceDataCache<Category> categoryCache,
+                                   RecipeSearchService recipeSearchService,
+                                   @Value("${recipe.import.batch-size:500}") int batchSize,
+                                   @Value("${recipe.import.max-errors:1000}") int maxErrors,
+                                   @Value("${recipe.import.max-record-length:1048576}") int maxRecordLength,
+                                   @Value("${recipe.import.max-concurrent:2}") int maxConcurrent) {
+        this.mongoOperations = mongoOperations;
+        this.validator = validator;
+        this.recipeCommandToRecipe = recipeCommandToRecipe;
+        this.unitOfMeasureCache = unitOfMeasureCache;
+        this.categoryCache = categoryCache;
+        this.recipeSearchService = recipeSearchService;
+        this.batchSize = batchSize;
+        this.maxErrors = maxErrors;
+        this.maxRecordLength = maxRecordLength;
+        this.permits = new Semaphore(Math.min(maxConcurrent, RECENT_IMPORTS));
+    }
+
+    @Override
+    public RecipeImport importRecipes(RecipeImportFormat format, Reader reader) {
+        if (!permits.tryAcquire()) {
+            throw new TooManyRequestsException("Too many recipe imports running, try again later");
+        }
+        try {
+            RecipeImport recipeImport = new RecipeImport(new ObjectId().toHexString(), format, maxErrors);
+            synchronized (imports) {
+                imports.put(recipeImport.getId(), recipeImport);
+            }
+            log.info("Starting " + format + " recipe import " + recipeImport.getId());
+            long started = System.nanoTime();
+            try {
+                read(format.reader(new BufferedReader(reader), maxRecordLength), recipeImport);
+                recipeImport.complete();
+            } catch (IOException | DataAccessException e) {
+                log.error("Recipe import " + recipeImport.getId() + " failed", e);
+                recipeImport.fail(e.getMessage());
+            } catch (RuntimeException e) {
+                recipeImport.fail(e.getMessage());
+                throw e;
+            }
+            log.info("Recipe import " + recipeImport.getId() + " " + recipeImport.getState() + ": "
+                    + recipeImport.getRecordsImported() + " imported, " + recipeImport.getRecordsRejected()
+                    + " rejected in " + (System.nanoTime() - started) / 1_000_000 + " ms");
+            return recipeImport;
+        } finally {
+            permits.release();
+        }
+    }
+
+    @Override
+    public List<RecipeImport> getImports() {
+        synchronized (imports) {
+            return new ArrayList<>(imports.values());
+        }
+    }
+
+    @Override
+    public Optional<RecipeImport> findImport(String id) {
+        synchronized (imports) {
+            return Optional.ofNullable(imports.get(id));
+        }
+    }
+
+    private void read(RecipeRecordReader reader, RecipeImport recipeImport) throws IOException {
+        List<Long> numbers = new ArrayList<>(batchSize);
+        List<Recipe> batch = new ArrayList<>(batchSize);
+        RecipeRecord record;
+        while ((record = reader.next()) != null) {
+            recipeImport.recordRead();
+            String error = record.isRejected() ? record.getError() : check(record.getCommand());
+            if (error != null) {
+                recipeImport.reject(record.getNumber(), error);
+                continue;
+            }
+            numbers.add(record.getNumber());
+            batch.add(toRecipe(record.getCommand()));
+            if (batch.size() == batchSize) {
+                insert(numbers, batch, recipeImport);
+            }
+        }
+        insert(numbers, batch, recipeImport);
+    }
+
+    /**
+     * Validates the command and resolves its categories and units of measure to stored ones, by id if it has one
+     * and by description otherwise.
+     *
+     * @return why the record cannot be imported, {@code null} if it can
+     */
+    private String check(RecipeCommand command) {
+        Set<ConstraintViolation<RecipeCommand>> violations = validator.validate(command);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+        }
+        for (CategoryCommand category : command.getCategories()) {
+            Optional<Category> stored = resolve(categoryCache, category.getId(), category.getDescription());
+            if (!stored.isPresent()) {
+                return "Unknown category: " + describe(category.getId(), category.getDescription());
+            }
+            category.setId(stored.get().getId());
+        }
+        for (IngredientCommand ingredient : command.getIngredients()) {
+            UnitOfMeasureCommand uom = ingredient.getUom();
+            if (uom == null) {
+                continue;
+            }
+            Optional<UnitOfMeasure> stored = resolve(unitOfMeasureCache, uom.getId(), uom.getDescription());
+            if (!stored.isPresent()) {
+                return "Unknown unit of measure: " + describe(uom.getId(), uom.getDescription());
+            }
+            uom.setId(stored.get().getId());
+        }
+        return null;
+    }
+
+    private static <T> Optional<T> resolve(ReferenceDataCache<T> cache, String id, String description) {
+        return id != null ? cache.findById(id) : cache.findByDescription(description);
+    }
+
+    private static String describe(String id, String description) {
+        return id != null ? "id " + id : description;
+    }
+
+    private Recipe toRecipe(RecipeCommand command) {
+        //imports only add recipes, whatever ids the records carry
+        command.setId(null);
+        command.setVersion(null);
+        Recipe recipe = recipeCommandToRecipe.convert(command);
+        recipe.setId(new ObjectId().toHexString());
+        //bulk inserts do not initialise the version like a save does
+        recipe.setVersion(0L);
+        recipe.setLastModified(new Date());
+        for (Ingredient ingredient : recipe.getIngredients()) {
+            if (ingredient.getId() == null) {
+                ingredient.setId(UUID.randomUUID().toString());
+            }
+        }
+        return recipe;
+    }
+
+    private void insert(List<Long> numbers, List<Recipe> batch, RecipeImport recipeImport) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Set<Integer> failed = new HashSet<>();
+        try {
+            mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED, Recipe.class).insert(batch).execute();
+        } catch (DataIntegrityViolationException e) {
+            if (!(e.getCause() instanceof MongoBulkWriteException)) {
+                throw e;
+            }
+            //unordered, so every recipe of the batch without a write error was written
+            ((MongoBulkWriteException) e.getCause()).getWriteErrors().forEach(error -> {
+                failed.add(error.getIndex());
+                recipeImport.reject(numbers.get(error.getIndex()), error.getMessage());
+            });
+        }
+        recipeImport.imported(batch.size() - failed.size());
+        for (int i = 0; i < batch.size(); i++) {
+            if (!failed.contains(i)) {
+                recipeSearchService.index(batch.get(i));
+            }
+        }
+        numbers.clear();
+        batch.clear();
+    }
+}
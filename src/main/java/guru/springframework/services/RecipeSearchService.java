@@ -0,0 +1,32 @@
+package guru.springframework.services;
+
+import guru.springframework.domain.Recipe;
+import guru.springframework.domain.SearchPage;
+import guru.springframework.search.SearchResult;
+
+public interface RecipeSearchService {
+
+    /**
+     * Full-text search over recipe descriptions, directions, notes and ingredient descriptions, best match first.
+     *
+     * @param page zero based page number
+     */
+    SearchPage search(String query, int page, int pageSize);
+
+    /**
+     * Ranks the recipes matching the query without reading them.
+     */
+    SearchResult findHits(String query, int page, int pageSize);
+
+    /**
+     * Indexes a recipe that has just been saved, replacing what was indexed for it.
+     */
+    void index(Recipe recipe);
+
+    /**
+     * Re-reads the searchable text of a recipe changed in place and indexes it.
+     */
+    void reindex(String recipeId);
+
+    void remove(String recipeId);
+}
@@ -0,0 +1,112 @@
+package guru.springframework.services;
+
+import guru.springframework.domain.Ingredient;
+import guru.springframework.domain.Recipe;
+import guru.springframework.domain.RecipeSummary;
+import guru.springframework.domain.SearchPage;
+import guru.springframework.repositories.RecipeRepository;
+import guru.springframework.search.RecipeSearchIndex;
+import guru.springframework.search.SearchHit;
+import guru.springframework.search.SearchResult;
+import guru.springframework.search.SearchTokenizer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps a {@link RecipeSearchIndex} of every recipe. The index is built in the background once the application
+ * is ready and is then kept current by the services that save and delete recipes and ingredients. It only sees
+ * writes made through this instance.
+ */
+@Slf4j
+@Service
+public class RecipeSearchServiceImpl implements RecipeSearchService, ApplicationListener<ApplicationReadyEvent> {
+
+    //ranking deeper than this is not offered, the cost of a page grows with its depth and the total is not exact
+    static final int MAX_RESULTS = RecipeSearchIndex.EXACT_TOTAL_HITS;
+
+    private final RecipeRepository recipeRepository;
+    private final RecipeSearchIndex index = new RecipeSearchIndex();
+
+    public RecipeSearchServiceImpl(RecipeRepository recipeRepository) {
+        this.recipeRepository = recipeRepository;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        Thread builder = new Thread(this::build, "recipe-search-index");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    /**
+     * Indexes every stored recipe, streaming them so they are never all in memory at once.
+     */
+    void build() {
+        long started = System.nanoTime();
+        //recipes deleted meanwhile are not added back, the index remembers removals
+        try (Stream<Recipe> recipes = recipeRepository.streamSearchableFields()) {
+            recipes.forEach(this::index);
+            log.info("Indexed " + index.size() + " recipes for search in "
+                    + (System.nanoTime() - started) / 1_000_000 + " ms");
+        } catch (RuntimeException e) {
+            log.error("Building the recipe search index failed, search results are incomplete", e);
+        }
+    }
+
+    @Override
+    public SearchPage search(String query, int page, int pageSize) {
+        SearchResult result = findHits(query, page, pageSize);
+        List<String> ids = result.getHits().stream().map(SearchHit::getRecipeId).collect(Collectors.toList());
+        List<RecipeSummary> recipes = ids.isEmpty() ? Collections.emptyList() : recipeRepository.findSummariesByIds(ids);
+        return toPage(query, page, pageSize, result, recipes);
+    }
+
+    @Override
+    public SearchResult findHits(String query, int page, int pageSize) {
+        List<String> terms = SearchTokenizer.tokenize(query);
+        int offset = page * pageSize;
+        if (terms.isEmpty() || offset >= MAX_RESULTS) {
+            return SearchResult.EMPTY;
+        }
+        return index.search(terms, offset, Math.min(pageSize, MAX_RESULTS - offset));
+    }
+
+    static SearchPage toPage(String query, int page, int pageSize, SearchResult result, List<RecipeSummary> recipes) {
+        boolean hasNext = (page + 1) * pageSize < Math.min(result.getTotalHits(), MAX_RESULTS);
+        return new SearchPage(query, recipes, page, result.getTotalHits(), result.isTotalHitsExact(),
+                page > 0 ? page - 1 : null,
+                hasNext ? page + 1 : null);
+    }
+
+    @Override
+    public void index(Recipe recipe) {
+        List<String> texts = new ArrayList<>();
+        texts.add(recipe.getDescription());
+        texts.add(recipe.getDirections());
+        if (recipe.getNotes() != null) {
+            texts.add(recipe.getNotes().getRecipeNotes());
+        }
+        for (Ingredient ingredient : recipe.getIngredients()) {
+            texts.add(ingredient.getDescription());
+        }
+        index.update(recipe.getId(), recipe.getVersion(), SearchTokenizer.tokenize(texts.toArray(new String[0])));
+    }
+
+    @Override
+    public void reindex(String recipeId) {
+        recipeRepository.findSearchableFieldsById(recipeId).ifPresent(this::index);
+    }
+
+    @Override
+    public void remove(String recipeId) {
+        index.remove(recipeId);
+    }
+}
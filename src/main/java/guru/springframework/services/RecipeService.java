@@ -2,6 +2,8 @@ package guru.springframework.services;
 
 import guru.springframework.commands.RecipeCommand;
 import guru.springframework.domain.Recipe;
+import guru.springframework.domain.RecipePage;
+import guru.springframework.domain.RecipeSort;
 
 import java.util.Set;
 
@@ -9,10 +11,23 @@ public interface RecipeService {
 
     Set<Recipe> getRecipes();
 
+    /**
+     * Lists recipe summaries one page at a time. Pass the next cursor of a page as {@code after} to move forward,
+     * or its previous cursor as {@code before} to move back; pass neither for the first page.
+     */
+    RecipePage listRecipes(RecipeSort sort, String after, String before, int pageSize);
+
     Recipe findById(String l);
 
     RecipeCommand findCommandById(String l);
 
+    /**
+     * Reads only the version of a recipe, to tell whether a cached rendering of it is still current.
+     *
+     * @return {@code null} for a recipe written before recipes were versioned
+     */
+    Long findVersionById(String id);
+
     RecipeCommand saveRecipeCommand(RecipeCommand recipeCommand);
 
     void deleteById(String l);
@@ -1,16 +1,30 @@
 package guru.springframework.services;
 
+import guru.springframework.cache.RenderedPageCache;
 import guru.springframework.commands.RecipeCommand;
+import guru.springframework.concurrency.OptimisticRetry;
 import guru.springframework.converters.RecipeCommandToRecipe;
 import guru.springframework.converters.RecipeToRecipeCommand;
 import guru.springframework.domain.Recipe;
+import guru.springframework.domain.RecipePage;
+import guru.springframework.domain.RecipeSort;
+import guru.springframework.domain.RecipeSummary;
+import guru.springframework.exceptions.BadRequestException;
 import guru.springframework.exceptions.NotFoundException;
+import guru.springframework.jfr.RecipeEvents;
+import guru.springframework.jfr.RecipeLoadEvent;
 import guru.springframework.repositories.RecipeRepository;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
@@ -18,27 +32,98 @@ import java.util.Set;
 @Service
 public class RecipeServiceImpl implements RecipeService {
 
+    private static final char CURSOR_SEPARATOR = '\u0000';
+
     private final RecipeRepository recipeRepository;
     private final RecipeCommandToRecipe recipeCommandToRecipe;
     private final RecipeToRecipeCommand recipeToRecipeCommand;
+    private final OptimisticRetry optimisticRetry;
+    private final RecipeSearchService recipeSearchService;
+    private final RenderedPageCache renderedPageCache;
+    private final ImageService imageService;
 
-    public RecipeServiceImpl(RecipeRepository recipeRepository, RecipeCommandToRecipe recipeCommandToRecipe, RecipeToRecipeCommand recipeToRecipeCommand) {
+    public RecipeServiceImpl(RecipeRepository recipeRepository, RecipeCommandToRecipe recipeCommandToRecipe, RecipeToRecipeCommand recipeToRecipeCommand,
+                             OptimisticRetry optimisticRetry, RecipeSearchService recipeSearchService,
+                             RenderedPageCache renderedPageCache, ImageService imageService) {
         this.recipeRepository = recipeRepository;
         this.recipeCommandToRecipe = recipeCommandToRecipe;
         this.recipeToRecipeCommand = recipeToRecipeCommand;
+        this.optimisticRetry = optimisticRetry;
+        this.recipeSearchService = recipeSearchService;
+        this.renderedPageCache = renderedPageCache;
+        this.imageService = imageService;
     }
 
     @Override
     public Set<Recipe> getRecipes() {
         log.debug("I'm in service");
         Set<Recipe> recipeSet = new HashSet<>();
-        recipeRepository.findAll().iterator().forEachRemaining(recipeSet::add);
+        recipeSet.addAll(recipeRepository.findAllWithReferences());
         return recipeSet;
     }
 
+    @Override
+    public RecipePage listRecipes(RecipeSort sort, String after, String before, int pageSize) {
+        boolean backward = after == null && before != null;
+        RecipeSummary boundary = decodeCursor(backward ? before : after);
+
+        //one extra row tells whether there is another page beyond this one
+        return toPage(recipeRepository.findSummaries(sort, boundary, backward, pageSize + 1), sort, boundary, backward, pageSize);
+    }
+
+    /**
+     * Builds a page from the up to {@code pageSize + 1} summaries read after or, going backwards, before the
+     * boundary.
+     */
+    static RecipePage toPage(List<RecipeSummary> summaries, RecipeSort sort, RecipeSummary boundary, boolean backward,
+                             int pageSize) {
+        boolean more = summaries.size() > pageSize;
+        if (more) {
+            summaries.remove(backward ? 0 : summaries.size() - 1);
+        }
+        if (summaries.isEmpty()) {
+            return new RecipePage(summaries, sort, null, null);
+        }
+
+        boolean hasPrevious = backward ? more : boundary != null;
+        boolean hasNext = backward || more;
+        return new RecipePage(summaries, sort,
+                hasPrevious ? encodeCursor(summaries.get(0)) : null,
+                hasNext ? encodeCursor(summaries.get(summaries.size() - 1)) : null);
+    }
+
+    static String encodeCursor(RecipeSummary summary) {
+        String key = (summary.getDescription() == null ? "" : summary.getDescription()) + CURSOR_SEPARATOR + summary.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static RecipeSummary decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = key.lastIndexOf(CURSOR_SEPARATOR);
+            if (separator < 0) {
+                throw new BadRequestException("Invalid page cursor: " + cursor);
+            }
+            return new RecipeSummary(key.substring(separator + 1), key.substring(0, separator));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid page cursor: " + cursor, e);
+        }
+    }
+
     @Override
     public Recipe findById(String l) {
-        Optional<Recipe> recipe = recipeRepository.findById(l);
+        RecipeLoadEvent event = new RecipeLoadEvent();
+        event.begin();
+        Optional<Recipe> recipe = recipeRepository.findByIdWithReferences(l);
+        event.end();
+        if (event.shouldCommit()) {
+            event.recipeId = l;
+            RecipeEvents.describe(event, recipe.orElse(null));
+            event.commit();
+        }
         if (!recipe.isPresent()) {
             throw new NotFoundException("Recipe Not Found. For ID value: " + l);
         }
@@ -60,6 +145,13 @@ public class RecipeServiceImpl implements RecipeService {
         return recipeCommand;
     }
 
+    @Override
+    public Long findVersionById(String id) {
+        return recipeRepository.findVersionById(id)
+                .orElseThrow(() -> new NotFoundException("Recipe Not Found. For ID value: " + id))
+                .getVersion();
+    }
+
     @Transactional
     @Override
     public RecipeCommand saveRecipeCommand(RecipeCommand recipeCommand) {
@@ -73,13 +165,52 @@ public class RecipeServiceImpl implements RecipeService {
 
         Recipe detachedRecipe = recipeCommandToRecipe.convert(recipeCommand);
 
-        Recipe savedRecipe = recipeRepository.save(detachedRecipe);
+        if (!StringUtils.hasText(detachedRecipe.getId())) {
+            detachedRecipe.setId(null);
+        }
+        detachedRecipe.setLastModified(new Date());
+
+        //saving a whole form cannot be merged with somebody else's change, a conflict goes back to the user
+        Recipe savedRecipe;
+        try {
+            if (detachedRecipe.getId() != null) {
+                recipeRepository.findImageMetadataById(detachedRecipe.getId())
+                        .ifPresent(existing -> keepStoredState(detachedRecipe, existing));
+            }
+            savedRecipe = recipeRepository.save(detachedRecipe);
+        } catch (OptimisticLockingFailureException e) {
+            optimisticRetry.recordConflict("recipe.save");
+            throw e;
+        }
         log.debug("Saved RecipeId:" + savedRecipe.getId());
+        recipeSearchService.index(savedRecipe);
+        renderedPageCache.invalidate(savedRecipe.getId());
         return recipeToRecipeCommand.convert(savedRecipe);
     }
 
+    /**
+     * Carries over what the recipe form does not hold from the stored recipe, read with
+     * {@link RecipeRepository#findImageMetadataById}.
+     *
+     * @throws OptimisticLockingFailureException if the form has no version to check against
+     */
+    static void keepStoredState(Recipe detachedRecipe, Recipe existing) {
+        //the form does not carry the image reference, keep the one already stored
+        detachedRecipe.setImageMetadata(existing.getImageMetadata());
+        //without the version it was rendered from, a form could silently overwrite changes made since
+        if (detachedRecipe.getVersion() == null) {
+            throw new OptimisticLockingFailureException("Form for recipe " + detachedRecipe.getId()
+                    + " does not carry the version it was rendered from");
+        }
+    }
+
     @Override
     public void deleteById(String l) {
-        recipeRepository.deleteById(l);
+        //released as deleted, an upload finishing meanwhile either replaced it before or finds no recipe
+        recipeRepository.findAndDeleteById(l)
+                .map(Recipe::getImageMetadata)
+                .ifPresent(image -> imageService.releaseImage(l, image));
+        recipeSearchService.remove(l);
+        renderedPageCache.invalidate(l);
     }
 }
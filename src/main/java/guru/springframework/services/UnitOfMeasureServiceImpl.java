@@ -1,24 +1,23 @@
 package guru.springframework.services;
 
 import guru.springframework.commands.UnitOfMeasureCommand;
+import guru.springframework.cache.ReferenceDataCache;
 import guru.springframework.converters.UnitOfMeasureToUnitOfMeasureCommand;
-import guru.springframework.repositories.UnitOfMeasureRepository;
+import guru.springframework.domain.UnitOfMeasure;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 @Slf4j
 @Service
 public class UnitOfMeasureServiceImpl implements UnitOfMeasureService {
 
-    private final UnitOfMeasureRepository unitOfMeasureRepository;
+    private final ReferenceDataCache<UnitOfMeasure> unitOfMeasureCache;
     private final UnitOfMeasureToUnitOfMeasureCommand unitOfMeasureToUnitOfMeasureCommand;
 
-    public UnitOfMeasureServiceImpl(UnitOfMeasureRepository unitOfMeasureRepository, UnitOfMeasureToUnitOfMeasureCommand unitOfMeasureToUnitOfMeasureCommand) {
-        this.unitOfMeasureRepository = unitOfMeasureRepository;
+    public UnitOfMeasureServiceImpl(ReferenceDataCache<UnitOfMeasure> unitOfMeasureCache, UnitOfMeasureToUnitOfMeasureCommand unitOfMeasureToUnitOfMeasureCommand) {
+        this.unitOfMeasureCache = unitOfMeasureCache;
         this.unitOfMeasureToUnitOfMeasureCommand = unitOfMeasureToUnitOfMeasureCommand;
     }
 
@@ -31,10 +30,7 @@ public class UnitOfMeasureServiceImpl implements UnitOfMeasureService {
 //        });
 //        return unitOfMeasureCommands;
 
-        return StreamSupport.stream(unitOfMeasureRepository.findAll()
-                .spliterator(), false)
-                .map(unitOfMeasureToUnitOfMeasureCommand::convert)
-                .collect(Collectors.toSet());
-
+        //served from the cached snapshot, only the commands are built per call
+        return unitOfMeasureToUnitOfMeasureCommand.convertAllToSet(unitOfMeasureCache.findAll());
     }
 }
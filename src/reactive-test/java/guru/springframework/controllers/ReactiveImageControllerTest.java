@@ -0,0 +1,135 @@
+package guru.springframework.controllers;
+
+import guru.springframework.domain.ImageMetadata;
+import guru.springframework.images.ImageVariant;
+import guru.springframework.services.ImageService;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.NonBlocking;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class ReactiveImageControllerTest {
+
+    private static final String IMAGE = "image bytes";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock
+    ImageService imageService;
+
+    private final ImageMetadata imageMetadata = new ImageMetadata("5d4b1a2f9c1e4a0001a1b2c4", "image/jpeg",
+            IMAGE.length(), new Date(), "abc");
+
+    private ReactiveImageController controller;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(imageService.findImageMetadata("1")).thenReturn(Optional.of(imageMetadata));
+        controller = new ReactiveImageController(imageService);
+    }
+
+    @Test
+    public void imageIsNeverReadOnNonBlockingThread() {
+        //given an image that is not cached as a file, like one streamed from GridFS
+        List<Thread> readers = new CopyOnWriteArrayList<>();
+        when(imageService.loadCachedImage(imageMetadata)).thenReturn(new AbstractResource() {
+            @Override
+            public boolean isFile() {
+                readers.add(Thread.currentThread());
+                return false;
+            }
+
+            @Override
+            public InputStream getInputStream() {
+                readers.add(Thread.currentThread());
+                return new ByteArrayInputStream(IMAGE.getBytes(StandardCharsets.UTF_8));
+            }
+
+            @Override
+            public long contentLength() {
+                return IMAGE.length();
+            }
+
+            @Override
+            public String getDescription() {
+                return "image";
+            }
+        });
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/recipe/1/recipeImage"));
+
+        //when handled on an event loop like thread
+        Mono.defer(() -> controller.renderImageFromDb("1", ImageVariant.FULL, null, exchange))
+                .subscribeOn(Schedulers.parallel())
+                .block();
+
+        //then
+        assertEquals(IMAGE, exchange.getResponse().getBodyAsString().block());
+        assertEquals(IMAGE.length(), exchange.getResponse().getHeaders().getContentLength());
+        assertEquals(2, readers.size());
+        for (Thread reader : readers) {
+            assertFalse(reader.getName() + " is non-blocking", reader instanceof NonBlocking);
+        }
+    }
+
+    @Test
+    public void cachedFileIsSent() throws Exception {
+        //given
+        File file = folder.newFile();
+        Files.write(file.toPath(), IMAGE.getBytes(StandardCharsets.UTF_8));
+        when(imageService.loadCachedImage(imageMetadata)).thenReturn(new FileSystemResource(file));
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/recipe/1/recipeImage")
+                .header(HttpHeaders.RANGE, "bytes=0-4"));
+
+        //when
+        controller.renderImageFromDb("1", ImageVariant.FULL, null, exchange).block();
+
+        //then range requests are answered from the file
+        assertEquals(HttpStatus.PARTIAL_CONTENT, exchange.getResponse().getStatusCode());
+        assertEquals("image", exchange.getResponse().getBodyAsString().block());
+        assertEquals("image/jpeg", exchange.getResponse().getHeaders().getContentType().toString());
+    }
+
+    @Test
+    public void unchangedImageIsNotSent() {
+        //given
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/recipe/1/recipeImage")
+                .ifNoneMatch("\"abc\""));
+        when(imageService.loadCachedImage(imageMetadata)).thenReturn(new ByteArrayResource(IMAGE.getBytes(StandardCharsets.UTF_8)));
+
+        //when
+        controller.renderImageFromDb("1", ImageVariant.FULL, null, exchange).block();
+
+        //then
+        assertEquals(HttpStatus.NOT_MODIFIED, exchange.getResponse().getStatusCode());
+        assertTrue(exchange.getResponse().getBodyAsString().block().isEmpty());
+    }
+}
@@ -0,0 +1,56 @@
+package guru.springframework.controllers;
+
+import guru.springframework.domain.RecipePage;
+import guru.springframework.domain.RecipeSort;
+import guru.springframework.domain.RecipeSummary;
+import guru.springframework.services.ReactiveRecipeService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.ui.ConcurrentModel;
+import org.thymeleaf.spring5.context.webflux.ReactiveDataDriverContextVariable;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ReactiveIndexControllerTest {
+
+    @Mock
+    ReactiveRecipeService reactiveRecipeService;
+
+    private ReactiveIndexController controller;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        controller = new ReactiveIndexController(reactiveRecipeService);
+    }
+
+    @Test
+    public void getIndexPage() {
+        //given
+        RecipePage page = new RecipePage(Arrays.asList(new RecipeSummary("1", "a"), new RecipeSummary("2", "b")),
+                RecipeSort.DESCRIPTION, null, null);
+        when(reactiveRecipeService.listRecipes(any(), any(), any(), anyInt())).thenReturn(Mono.just(page));
+        ConcurrentModel model = new ConcurrentModel();
+
+        //when
+        String viewName = controller.getIndexPage(RecipeSort.NEWEST, null, null, 500, model);
+
+        //then
+        assertEquals("index", viewName);
+        verify(reactiveRecipeService, times(1)).listRecipes(eq(RecipeSort.NEWEST), any(), any(), eq(IndexController.MAX_PAGE_SIZE));
+        assertTrue(model.asMap().get("recipes") instanceof ReactiveDataDriverContextVariable);
+        StepVerifier.create(((ReactiveDataDriverContextVariable) model.asMap().get("recipes")).getDataStream(null))
+                .expectNextCount(2)
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,117 @@
+package guru.springframework.repositories;
+
+import com.mongodb.DBRef;
+import guru.springframework.domain.Category;
+import guru.springframework.domain.Ingredient;
+import guru.springframework.domain.Recipe;
+import guru.springframework.domain.RecipeSort;
+import guru.springframework.domain.RecipeSummary;
+import guru.springframework.domain.UnitOfMeasure;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class RecipeReactiveRepositoryImplTest {
+
+    @Mock
+    ReactiveMongoOperations reactiveMongoOperations;
+
+    @Mock
+    CategoryReactiveRepository categoryReactiveRepository;
+
+    @Mock
+    UnitOfMeasureReactiveRepository unitOfMeasureReactiveRepository;
+
+    private RecipeReactiveRepositoryImpl recipeReactiveRepository;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        //the reactive template maps with a resolver that fails on any reference
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext());
+        converter.afterPropertiesSet();
+        when(reactiveMongoOperations.getConverter()).thenReturn(converter);
+        when(reactiveMongoOperations.getCollectionName(Recipe.class)).thenReturn("recipe");
+
+        recipeReactiveRepository = new RecipeReactiveRepositoryImpl(reactiveMongoOperations, categoryReactiveRepository,
+                unitOfMeasureReactiveRepository);
+    }
+
+    @Test
+    public void findByIdWithReferences() {
+        //given
+        Category category = new Category();
+        category.setId(new ObjectId().toHexString());
+        UnitOfMeasure uom = new UnitOfMeasure();
+        uom.setId(new ObjectId().toHexString());
+
+        Document document = new Document("_id", new ObjectId())
+                .append("description", "guacamole")
+                .append("categories", Collections.singletonList(new DBRef("category", new ObjectId(category.getId()))))
+                .append("ingredients", Arrays.asList(
+                        new Document("_id", "1").append("description", "avocado")
+                                .append("uom", new DBRef("unitOfMeasure", new ObjectId(uom.getId()))),
+                        new Document("_id", "2").append("description", "salt")
+                                .append("uom", new DBRef("unitOfMeasure", new ObjectId(uom.getId())))));
+
+        when(reactiveMongoOperations.findOne(any(Query.class), eq(Document.class), eq("recipe"))).thenReturn(Mono.just(document));
+        when(categoryReactiveRepository.findAllById(anyIterable())).thenReturn(Flux.just(category));
+        when(unitOfMeasureReactiveRepository.findAllById(anyIterable())).thenReturn(Flux.just(uom));
+
+        //when
+        Recipe recipe = recipeReactiveRepository.findByIdWithReferences("1").block();
+
+        //then
+        assertEquals("guacamole", recipe.getDescription());
+        assertSame(category, recipe.getCategories().iterator().next());
+        assertEquals(2, recipe.getIngredients().size());
+        for (Ingredient ingredient : recipe.getIngredients()) {
+            assertSame(uom, ingredient.getUom());
+        }
+        verify(unitOfMeasureReactiveRepository, times(1)).findAllById(anyIterable());
+    }
+
+    @Test
+    public void findByIdWithReferencesWithoutReferences() {
+        when(reactiveMongoOperations.findOne(any(Query.class), eq(Document.class), eq("recipe")))
+                .thenReturn(Mono.just(new Document("_id", new ObjectId()).append("description", "toast")));
+
+        StepVerifier.create(recipeReactiveRepository.findByIdWithReferences("1"))
+                .expectNextMatches(recipe -> recipe.getIngredients().isEmpty() && recipe.getCategories().isEmpty())
+                .verifyComplete();
+
+        verifyZeroInteractions(categoryReactiveRepository, unitOfMeasureReactiveRepository);
+    }
+
+    @Test
+    public void findSummariesBackwardsKeepsSortOrder() {
+        when(reactiveMongoOperations.find(any(Query.class), eq(RecipeSummary.class), eq("recipe")))
+                .thenReturn(Flux.just(new RecipeSummary("2", "b"), new RecipeSummary("1", "a")));
+
+        StepVerifier.create(recipeReactiveRepository.findSummaries(RecipeSort.DESCRIPTION, new RecipeSummary("3", "c"), true, 2)
+                .map(RecipeSummary::getId))
+                .expectNext("1", "2")
+                .verifyComplete();
+    }
+}
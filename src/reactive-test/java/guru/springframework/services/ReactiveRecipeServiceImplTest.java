@@ -0,0 +1,204 @@
+package guru.springframework.services;
+
+import guru.springframework.commands.RecipeCommand;
+import guru.springframework.concurrency.OptimisticRetry;
+import guru.springframework.converters.RecipeCommandToRecipe;
+import guru.springframework.converters.RecipeToRecipeCommand;
+import guru.springframework.domain.ImageMetadata;
+import guru.springframework.domain.Recipe;
+import guru.springframework.domain.RecipePage;
+import guru.springframework.domain.RecipeSort;
+import guru.springframework.domain.RecipeSummary;
+import guru.springframework.domain.SearchPage;
+import guru.springframework.exceptions.BadRequestException;
+import guru.springframework.exceptions.NotFoundException;
+import guru.springframework.repositories.RecipeReactiveRepository;
+import guru.springframework.search.SearchHit;
+import guru.springframework.search.SearchResult;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.OptimisticLockingFailureException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.*;
+
+public class ReactiveRecipeServiceImplTest {
+
+    private ReactiveRecipeServiceImpl reactiveRecipeService;
+    private OptimisticRetry optimisticRetry;
+
+    @Mock
+    RecipeReactiveRepository recipeReactiveRepository;
+
+    @Mock
+    RecipeToRecipeCommand recipeToRecipeCommand;
+
+    @Mock
+    RecipeCommandToRecipe recipeCommandToRecipe;
+
+    @Mock
+    RecipeSearchService recipeSearchService;
+
+    @Mock
+    ImageService imageService;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        optimisticRetry = new OptimisticRetry(3, 0);
+        reactiveRecipeService = new ReactiveRecipeServiceImpl(recipeReactiveRepository, recipeCommandToRecipe,
+                recipeToRecipeCommand, optimisticRetry, recipeSearchService, imageService);
+    }
+
+    @Test
+    public void listRecipesFirstPage() {
+        //given
+        when(recipeReactiveRepository.findSummaries(RecipeSort.DESCRIPTION, null, false, 3)).thenReturn(Flux.just(
+                new RecipeSummary("1", "a"), new RecipeSummary("2", "b"), new RecipeSummary("3", "c")));
+
+        //when
+        RecipePage page = reactiveRecipeService.listRecipes(RecipeSort.DESCRIPTION, null, null, 2).block();
+
+        //then
+        assertEquals(2, page.getRecipes().size());
+        assertNull(page.getPreviousCursor());
+        assertEquals("2", RecipeServiceImpl.decodeCursor(page.getNextCursor()).getId());
+    }
+
+    @Test
+    public void listRecipesInvalidCursor() {
+        StepVerifier.create(reactiveRecipeService.listRecipes(RecipeSort.DESCRIPTION, "not a cursor!", null, 2))
+                .expectError(BadRequestException.class)
+                .verify();
+    }
+
+    @Test
+    public void findByIdRecipeNotFound() {
+        when(recipeReactiveRepository.findByIdWithReferences(anyString())).thenReturn(Mono.empty());
+
+        StepVerifier.create(reactiveRecipeService.findById("1"))
+                .expectError(NotFoundException.class)
+                .verify();
+    }
+
+    @Test
+    public void saveRecipeCommandKeepsStoredState() {
+        //given
+        RecipeCommand command = new RecipeCommand();
+        Recipe detached = new Recipe();
+        detached.setId("1");
+        detached.setVersion(4L);
+        Recipe stored = new Recipe();
+        stored.setVersion(4L);
+        stored.setImageMetadata(new ImageMetadata("5d5f1e3a8f1b2c0001a1b2c3", "image/jpeg", 3, null, "hash"));
+        RecipeCommand saved = new RecipeCommand();
+        saved.setId("1");
+
+        when(recipeCommandToRecipe.convert(command)).thenReturn(detached);
+        when(recipeReactiveRepository.findImageMetadataById("1")).thenReturn(Mono.just(stored));
+        when(recipeReactiveRepository.save(detached)).thenReturn(Mono.just(detached));
+        when(recipeToRecipeCommand.convert(detached)).thenReturn(saved);
+
+        //when
+        RecipeCommand result = reactiveRecipeService.saveRecipeCommand(command).block();
+
+        //then
+        assertEquals("1", result.getId());
+        assertEquals(stored.getImageMetadata(), detached.getImageMetadata());
+        verify(recipeSearchService, times(1)).index(detached);
+    }
+
+    @Test
+    public void saveRecipeCommandRejectsUnversionedForm() {
+        //given
+        RecipeCommand command = new RecipeCommand();
+        Recipe detached = new Recipe();
+        detached.setId("1");
+        Recipe stored = new Recipe();
+        stored.setVersion(4L);
+
+        when(recipeCommandToRecipe.convert(command)).thenReturn(detached);
+        when(recipeReactiveRepository.findImageMetadataById("1")).thenReturn(Mono.just(stored));
+
+        //when
+        StepVerifier.create(reactiveRecipeService.saveRecipeCommand(command))
+                .expectError(OptimisticLockingFailureException.class)
+                .verify();
+
+        //then
+        verify(recipeReactiveRepository, never()).save(any(Recipe.class));
+        assertEquals(Long.valueOf(1), optimisticRetry.getConflictCounts().get("recipe.save"));
+    }
+
+    @Test
+    public void saveRecipeCommandConflict() {
+        //given
+        RecipeCommand command = new RecipeCommand();
+        Recipe detached = new Recipe();
+
+        when(recipeCommandToRecipe.convert(command)).thenReturn(detached);
+        when(recipeReactiveRepository.save(detached)).thenReturn(Mono.error(new OptimisticLockingFailureException("recipe changed")));
+
+        //when
+        StepVerifier.create(reactiveRecipeService.saveRecipeCommand(command))
+                .expectError(OptimisticLockingFailureException.class)
+                .verify();
+
+        //then
+        assertEquals(Long.valueOf(1), optimisticRetry.getConflictCounts().get("recipe.save"));
+        verify(recipeReactiveRepository, never()).findImageMetadataById(anyString());
+    }
+
+    @Test
+    public void deleteByIdReleasesImage() {
+        //given
+        Recipe deleted = new Recipe();
+        deleted.setImageMetadata(new ImageMetadata("5d5f1e3a8f1b2c0001a1b2c3", "image/jpeg", 3, null, "hash"));
+        when(recipeReactiveRepository.findAndDeleteById("1")).thenReturn(Mono.just(deleted));
+
+        //when
+        reactiveRecipeService.deleteById("1").block();
+
+        //then
+        verify(imageService, times(1)).releaseImage("1", deleted.getImageMetadata());
+        verify(recipeSearchService, times(1)).remove("1");
+    }
+
+    @Test
+    public void deleteByIdWithoutImage() {
+        //given
+        when(recipeReactiveRepository.findAndDeleteById("1")).thenReturn(Mono.just(new Recipe()));
+
+        //when
+        reactiveRecipeService.deleteById("1").block();
+
+        //then
+        verifyZeroInteractions(imageService);
+        verify(recipeSearchService, times(1)).remove("1");
+    }
+
+    @Test
+    public void searchReadsSummariesOfHits() {
+        //given
+        SearchResult result = new SearchResult(Arrays.asList(new SearchHit("2", 3f), new SearchHit("1", 1f)), 2, true);
+        when(recipeSearchService.findHits("taco", 0, 10)).thenReturn(result);
+        when(recipeReactiveRepository.findSummariesByIds(Arrays.asList("2", "1")))
+                .thenReturn(Flux.just(new RecipeSummary("2", "b"), new RecipeSummary("1", "a")));
+
+        //when
+        SearchPage page = reactiveRecipeService.search("taco", 0, 10).block();
+
+        //then
+        assertEquals(2, page.getTotalHits());
+        assertEquals("2", page.getRecipes().get(0).getId());
+        assertNull(page.getNextPage());
+    }
+}
@@ -0,0 +1,47 @@
+package guru.springframework.controllers;
+
+import guru.springframework.exceptions.BadRequestException;
+import guru.springframework.exceptions.NotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.reactive.result.view.Rendering;
+import org.springframework.web.server.ServerWebInputException;
+
+/**
+ * The error pages of {@link ControllerExceptionHandler} and {@link RecipeController} on WebFlux. Unconvertible
+ * request parameters surface as {@link ServerWebInputException} here rather than {@link NumberFormatException}.
+ */
+@Slf4j
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@ControllerAdvice
+public class ReactiveControllerExceptionHandler {
+
+    @ExceptionHandler({BadRequestException.class, ServerWebInputException.class})
+    public Rendering handleBadRequest(Exception ex) {
+        log.error("Handling bad request exception");
+        log.error(ex.getMessage());
+        return errorPage("400error", HttpStatus.BAD_REQUEST, ex);
+    }
+
+    @ExceptionHandler(NotFoundException.class)
+    public Rendering handleNotFound(Exception ex) {
+        log.error("Handling not found exception");
+        log.error(ex.getMessage());
+        return errorPage("404error", HttpStatus.NOT_FOUND, ex);
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public Rendering handleConflict(Exception ex) {
+        log.error("Handling optimistic locking failure");
+        log.error(ex.getMessage());
+        return errorPage("409error", HttpStatus.CONFLICT, ex);
+    }
+
+    private static Rendering errorPage(String view, HttpStatus status, Exception ex) {
+        return Rendering.view(view).modelAttribute("exception", ex).status(status).build();
+    }
+}
@@ -0,0 +1,89 @@
+package guru.springframework.controllers;
+
+import guru.springframework.images.ImageVariant;
+import guru.springframework.services.ImageService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ResourceHttpMessageWriter;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Instant;
+import java.util.Collections;
+
+/**
+ * Serves recipe images on WebFlux. GridFS has no reactive API in this Spring Data version and filling the file and
+ * memory caches blocks as well, so the metadata is read and the image resolved on the elastic scheduler. An image
+ * cached as a file is then sent with zero-copy, which answers range requests too; anything else is read on the
+ * elastic scheduler as it is written, never on an event loop thread. Uploads are only handled on the servlet stack.
+ */
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@Controller
+public class ReactiveImageController {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final ResourceHttpMessageWriter RESOURCE_WRITER = new ResourceHttpMessageWriter(BUFFER_SIZE);
+
+    private final ImageService imageService;
+
+    public ReactiveImageController(ImageService imageService) {
+        this.imageService = imageService;
+    }
+
+    @GetMapping("/recipe/{id}/recipeImage")
+    public Mono<Void> renderImageFromDb(@PathVariable String id,
+                                        @RequestParam(value = "size", defaultValue = "full") ImageVariant size,
+                                        @RequestParam(value = "v", required = false) String version,
+                                        ServerWebExchange exchange) {
+        return Mono.fromCallable(() -> {
+            ResponseEntity<Resource> image = ImageController.imageResponse(imageService, id, size, version);
+            //copies the image into the caches if it is not there yet
+            return new ResolvedImage(image, image.getBody().isFile(), image.getBody().contentLength());
+        })
+                .subscribeOn(Schedulers.elastic())
+                .flatMap(image -> write(image, exchange));
+    }
+
+    private static Mono<Void> write(ResolvedImage image, ServerWebExchange exchange) {
+        HttpHeaders headers = image.response.getHeaders();
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(image.response.getStatusCode());
+        response.getHeaders().putAll(headers);
+        if (exchange.checkNotModified(headers.getETag(), Instant.ofEpochMilli(headers.getLastModified()))) {
+            return response.setComplete();
+        }
+
+        Resource resource = image.response.getBody();
+        if (image.file) {
+            return RESOURCE_WRITER.write(Mono.just(resource), ResolvableType.forClass(Resource.class),
+                    ResolvableType.forClass(Resource.class), headers.getContentType(), exchange.getRequest(), response,
+                    Collections.emptyMap());
+        }
+        response.getHeaders().setContentLength(image.length);
+        return response.writeWith(DataBufferUtils.readInputStream(resource::getInputStream, response.bufferFactory(), BUFFER_SIZE)
+                .subscribeOn(Schedulers.elastic()));
+    }
+
+    private static class ResolvedImage {
+
+        private final ResponseEntity<Resource> response;
+        private final boolean file;
+        private final long length;
+
+        ResolvedImage(ResponseEntity<Resource> response, boolean file, long length) {
+            this.response = response;
+            this.file = file;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package guru.springframework.controllers;
+
+import guru.springframework.domain.RecipePage;
+import guru.springframework.domain.RecipeSort;
+import guru.springframework.services.ReactiveRecipeService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.thymeleaf.spring5.context.webflux.ReactiveDataDriverContextVariable;
+import reactor.core.publisher.Mono;
+
+import static guru.springframework.controllers.IndexController.DEFAULT_PAGE_SIZE;
+import static guru.springframework.controllers.IndexController.MAX_PAGE_SIZE;
+
+@Slf4j
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@Controller
+public class ReactiveIndexController {
+
+    private final ReactiveRecipeService reactiveRecipeService;
+
+    public ReactiveIndexController(ReactiveRecipeService reactiveRecipeService) {
+        this.reactiveRecipeService = reactiveRecipeService;
+    }
+
+    /**
+     * Same page as {@link IndexController}. The page is read once; its rows are fed to Thymeleaf's data driver so
+     * the table is written out in chunks as it renders.
+     */
+    @RequestMapping({"", "/", "/index"})
+    public String getIndexPage(@RequestParam(value = "sort", defaultValue = "DESCRIPTION") RecipeSort sort,
+                               @RequestParam(value = "after", required = false) String after,
+                               @RequestParam(value = "before", required = false) String before,
+                               @RequestParam(value = "size", defaultValue = "" + DEFAULT_PAGE_SIZE) int size,
+                               Model model) {
+        log.debug("getting index page");
+        Mono<RecipePage> page = reactiveRecipeService
+                .listRecipes(sort, after, before, Math.max(1, Math.min(size, MAX_PAGE_SIZE)))
+                .cache();
+        model.addAttribute("page", page);
+        model.addAttribute("recipes", new ReactiveDataDriverContextVariable(page.flatMapIterable(RecipePage::getRecipes)));
+        return "index";
+    }
+}
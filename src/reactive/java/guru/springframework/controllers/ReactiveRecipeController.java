@@ -0,0 +1,69 @@
+package guru.springframework.controllers;
+
+import guru.springframework.commands.RecipeCommand;
+import guru.springframework.services.ReactiveRecipeService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+
+@Slf4j
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@Controller
+public class ReactiveRecipeController {
+
+    private static final String RECIPE_FORM_URL = "recipe/recipeForm";
+
+    private final ReactiveRecipeService reactiveRecipeService;
+
+    public ReactiveRecipeController(ReactiveRecipeService reactiveRecipeService) {
+        this.reactiveRecipeService = reactiveRecipeService;
+    }
+
+    @GetMapping("/recipe/{id}/show")
+    public String showById(@PathVariable String id, Model model) {
+        model.addAttribute("recipe", reactiveRecipeService.findById(id));
+        return "recipe/show";
+    }
+
+    @GetMapping("/recipe/new")
+    public String newRecipe(Model model) {
+        model.addAttribute("recipe", new RecipeCommand());
+        return RECIPE_FORM_URL;
+    }
+
+    @GetMapping("/recipe/{id}/update")
+    public String updateRecipe(@PathVariable String id, Model model) {
+        model.addAttribute("recipe", reactiveRecipeService.findCommandById(id));
+        return RECIPE_FORM_URL;
+    }
+
+    @GetMapping("/recipe/{id}/delete")
+    public Mono<String> deleteRecipeById(@PathVariable String id) {
+        return reactiveRecipeService.deleteById(id).thenReturn("redirect:/");
+    }
+
+    /**
+     * Validation errors arrive as an error signal: WebFlux 5.1 does not find a {@code BindingResult} argument for
+     * a model attribute with an explicit name. The bound command and its errors are in the model either way, so
+     * the form renders them as on the servlet stack.
+     */
+    @PostMapping("recipe")
+    public Mono<String> saveOrUpdateRecipe(@Valid @ModelAttribute("recipe") Mono<RecipeCommand> command) {
+        return command
+                .flatMap(reactiveRecipeService::saveRecipeCommand)
+                .map(savedRecipeCommand -> "redirect:/recipe/" + savedRecipeCommand.getId() + "/show")
+                .onErrorResume(WebExchangeBindException.class, e -> {
+                    e.getAllErrors().forEach(objectError -> log.debug(objectError.toString()));
+                    return Mono.just(RECIPE_FORM_URL);
+                });
+    }
+}
@@ -0,0 +1,37 @@
+package guru.springframework.controllers;
+
+import guru.springframework.services.ReactiveRecipeService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import static guru.springframework.controllers.IndexController.DEFAULT_PAGE_SIZE;
+import static guru.springframework.controllers.IndexController.MAX_PAGE_SIZE;
+
+@Slf4j
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@Controller
+public class ReactiveSearchController {
+
+    private final ReactiveRecipeService reactiveRecipeService;
+
+    public ReactiveSearchController(ReactiveRecipeService reactiveRecipeService) {
+        this.reactiveRecipeService = reactiveRecipeService;
+    }
+
+    /**
+     * Same page as {@link SearchController}.
+     */
+    @GetMapping("/recipe/search")
+    public String search(@RequestParam(value = "q", defaultValue = "") String query,
+                         @RequestParam(value = "page", defaultValue = "0") int page,
+                         @RequestParam(value = "size", defaultValue = "" + DEFAULT_PAGE_SIZE) int size,
+                         Model model) {
+        log.debug("searching recipes for: " + query);
+        model.addAttribute("page", reactiveRecipeService.search(query, Math.max(0, page), Math.max(1, Math.min(size, MAX_PAGE_SIZE))));
+        return "recipe/search";
+    }
+}
@@ -0,0 +1,20 @@
+package guru.springframework.metrics;
+
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.boot.actuate.metrics.web.reactive.server.DefaultWebFluxTagsProvider;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * Adds the controller method that handled a request to the default {@code http.server.requests} tags, like
+ * {@link HandlerWebMvcTagsProvider} does for the servlet mode.
+ */
+public class HandlerWebFluxTagsProvider extends DefaultWebFluxTagsProvider {
+
+    @Override
+    public Iterable<Tag> httpRequestTags(ServerWebExchange exchange, Throwable exception) {
+        Object handler = exchange.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE);
+        return Tags.of(super.httpRequestTags(exchange, exception)).and(HandlerWebMvcTagsProvider.handler(handler));
+    }
+}
@@ -0,0 +1,30 @@
+package guru.springframework.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * The reactive counterpart of {@link WebMvcMetricsConfiguration}. Reactive services and repositories are not timed
+ * per call, their requests are covered by {@code http.server.requests} and their queries by
+ * {@code mongodb.driver.commands}.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveMetricsConfiguration {
+
+    @Bean
+    public HandlerWebFluxTagsProvider handlerWebFluxTagsProvider() {
+        return new HandlerWebFluxTagsProvider();
+    }
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoMetricsCustomizer(MeterRegistry meterRegistry) {
+        MongoPoolMetrics poolMetrics = new MongoPoolMetrics(meterRegistry, "reactive");
+        return builder -> builder
+                .addCommandListener(new MongoCommandMetrics(meterRegistry))
+                .applyToConnectionPoolSettings(pool -> pool.addConnectionPoolListener(poolMetrics));
+    }
+}
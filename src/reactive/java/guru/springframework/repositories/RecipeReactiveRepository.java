@@ -0,0 +1,12 @@
+package guru.springframework.repositories;
+
+import guru.springframework.domain.Recipe;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Mono;
+
+public interface RecipeReactiveRepository extends ReactiveMongoRepository<Recipe, String>, RecipeReactiveRepositoryCustom {
+
+    @Query(value = "{ '_id' : ?0 }", fields = "{ 'imageMetadata' : 1, 'version' : 1 }")
+    Mono<Recipe> findImageMetadataById(String id);
+}
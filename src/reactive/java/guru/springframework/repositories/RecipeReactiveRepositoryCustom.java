@@ -0,0 +1,37 @@
+package guru.springframework.repositories;
+
+import guru.springframework.domain.Recipe;
+import guru.springframework.domain.RecipeSort;
+import guru.springframework.domain.RecipeSummary;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Reactive counterparts of the {@link RecipeRepositoryCustom} reads.
+ */
+public interface RecipeReactiveRepositoryCustom {
+
+    /**
+     * Reads one page of recipe summaries with keyset pagination, see {@link RecipeRepositoryCustom#findSummaries}.
+     */
+    Flux<RecipeSummary> findSummaries(RecipeSort sort, RecipeSummary boundary, boolean backward, int limit);
+
+    /**
+     * Loads a recipe with its categories and units of measure, with one {@code $in} query per referenced
+     * collection.
+     */
+    Mono<Recipe> findByIdWithReferences(String id);
+
+    /**
+     * Reads the summaries of the given recipes in the order of the ids, see
+     * {@link RecipeRepositoryCustom#findSummariesByIds}.
+     */
+    Flux<RecipeSummary> findSummariesByIds(List<String> ids);
+
+    /**
+     * Deletes a recipe in one step, see {@link RecipeRepositoryCustom#findAndDeleteById}.
+     */
+    Mono<Recipe> findAndDeleteById(String id);
+}
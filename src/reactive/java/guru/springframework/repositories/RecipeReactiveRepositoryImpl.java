@@ -0,0 +1,142 @@
+package guru.springframework.repositories;
+
+import com.mongodb.DBRef;
+import guru.springframework.domain.Category;
+import guru.springframework.domain.Ingredient;
+import guru.springframework.domain.Recipe;
+import guru.springframework.domain.RecipeSort;
+import guru.springframework.domain.RecipeSummary;
+import guru.springframework.domain.UnitOfMeasure;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+public class RecipeReactiveRepositoryImpl implements RecipeReactiveRepositoryCustom {
+
+    private static final String CATEGORIES = "categories";
+    private static final String INGREDIENTS = "ingredients";
+    private static final String UOM = "uom";
+
+    private final ReactiveMongoOperations reactiveMongoOperations;
+    private final CategoryReactiveRepository categoryReactiveRepository;
+    private final UnitOfMeasureReactiveRepository unitOfMeasureReactiveRepository;
+
+    public RecipeReactiveRepositoryImpl(ReactiveMongoOperations reactiveMongoOperations,
+                                        CategoryReactiveRepository categoryReactiveRepository,
+                                        UnitOfMeasureReactiveRepository unitOfMeasureReactiveRepository) {
+        this.reactiveMongoOperations = reactiveMongoOperations;
+        this.categoryReactiveRepository = categoryReactiveRepository;
+        this.unitOfMeasureReactiveRepository = unitOfMeasureReactiveRepository;
+    }
+
+    @Override
+    public Flux<RecipeSummary> findSummaries(RecipeSort sort, RecipeSummary boundary, boolean backward, int limit) {
+        Flux<RecipeSummary> summaries = reactiveMongoOperations.find(
+                RecipeRepositoryImpl.summariesQuery(sort, boundary, backward, limit), RecipeSummary.class,
+                reactiveMongoOperations.getCollectionName(Recipe.class));
+        if (!backward) {
+            return summaries;
+        }
+        return summaries.collectList().flatMapIterable(page -> {
+            Collections.reverse(page);
+            return page;
+        });
+    }
+
+    @Override
+    public Flux<RecipeSummary> findSummariesByIds(List<String> ids) {
+        Query query = query(where("id").in(ids));
+        query.fields().include("description").include("imageMetadata.contentHash");
+        return reactiveMongoOperations.find(query, RecipeSummary.class, reactiveMongoOperations.getCollectionName(Recipe.class))
+                .collectList()
+                .flatMapIterable(summaries -> RecipeRepositoryImpl.inOrder(ids, summaries));
+    }
+
+    @Override
+    public Mono<Recipe> findAndDeleteById(String id) {
+        return reactiveMongoOperations.findAndRemove(RecipeRepositoryImpl.imageMetadataQuery(id), Recipe.class);
+    }
+
+    /**
+     * The reactive template cannot resolve references at all, so they are taken out of the raw document before it
+     * is mapped and resolved afterwards, with the categories and units of measure read concurrently.
+     */
+    @Override
+    public Mono<Recipe> findByIdWithReferences(String id) {
+        return reactiveMongoOperations.findOne(query(where("id").is(id)), Document.class,
+                reactiveMongoOperations.getCollectionName(Recipe.class))
+                .flatMap(this::withReferences);
+    }
+
+    private Mono<Recipe> withReferences(Document document) {
+        MongoConverter converter = reactiveMongoOperations.getConverter();
+
+        List<String> categoryIds = referencedIds(document.remove(CATEGORIES));
+        Object ingredients = document.remove(INGREDIENTS);
+        Recipe recipe = converter.read(Recipe.class, document);
+
+        Map<Ingredient, String> uomIds = new IdentityHashMap<>();
+        if (ingredients instanceof Collection) {
+            for (Object ingredientDocument : (Collection<?>) ingredients) {
+                Object uom = ((Document) ingredientDocument).remove(UOM);
+                Ingredient ingredient = converter.read(Ingredient.class, (Document) ingredientDocument);
+                if (uom instanceof DBRef) {
+                    uomIds.put(ingredient, ((DBRef) uom).getId().toString());
+                }
+                recipe.addIngredient(ingredient);
+            }
+        }
+
+        return Mono.zip(resolve(categoryIds, categoryReactiveRepository, Category::getId),
+                resolve(uomIds.values(), unitOfMeasureReactiveRepository, UnitOfMeasure::getId))
+                .map(references -> {
+                    Set<Category> categories = new HashSet<>();
+                    for (String categoryId : categoryIds) {
+                        Category category = references.getT1().get(categoryId);
+                        if (category != null) {
+                            categories.add(category);
+                        }
+                    }
+                    recipe.setCategories(categories);
+                    uomIds.forEach((ingredient, uomId) -> ingredient.setUom(references.getT2().get(uomId)));
+                    return recipe;
+                });
+    }
+
+    private static <T> Mono<Map<String, T>> resolve(Collection<String> ids, ReactiveCrudRepository<T, String> repository,
+                                                    Function<T, String> idFunction) {
+        if (ids.isEmpty()) {
+            return Mono.just(Collections.emptyMap());
+        }
+        return repository.findAllById(new HashSet<>(ids)).collectMap(idFunction);
+    }
+
+    private static List<String> referencedIds(Object references) {
+        List<String> ids = new ArrayList<>();
+        if (references instanceof Collection) {
+            for (Object reference : (Collection<?>) references) {
+                if (reference instanceof DBRef) {
+                    ids.add(((DBRef) reference).getId().toString());
+                }
+            }
+        }
+        return ids;
+    }
+}
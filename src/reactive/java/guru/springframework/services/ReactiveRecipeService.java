@@ -0,0 +1,32 @@
+package guru.springframework.services;
+
+import guru.springframework.commands.RecipeCommand;
+import guru.springframework.domain.Recipe;
+import guru.springframework.domain.RecipePage;
+import guru.springframework.domain.RecipeSort;
+import guru.springframework.domain.SearchPage;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking {@link RecipeService}, backing the controllers when the application runs on WebFlux.
+ */
+public interface ReactiveRecipeService {
+
+    /**
+     * Lists recipe summaries one page at a time, see {@link RecipeService#listRecipes}.
+     */
+    Mono<RecipePage> listRecipes(RecipeSort sort, String after, String before, int pageSize);
+
+    Mono<Recipe> findById(String id);
+
+    Mono<RecipeCommand> findCommandById(String id);
+
+    Mono<RecipeCommand> saveRecipeCommand(RecipeCommand recipeCommand);
+
+    Mono<Void> deleteById(String id);
+
+    /**
+     * Full-text search over the recipes, see {@link RecipeSearchService#search}.
+     */
+    Mono<SearchPage> search(String query, int page, int pageSize);
+}
@@ -0,0 +1,132 @@
+package guru.springframework.services;
+
+import guru.springframework.commands.RecipeCommand;
+import guru.springframework.concurrency.OptimisticRetry;
+import guru.springframework.converters.RecipeCommandToRecipe;
+import guru.springframework.converters.RecipeToRecipeCommand;
+import guru.springframework.domain.Recipe;
+import guru.springframework.domain.RecipePage;
+import guru.springframework.domain.RecipeSort;
+import guru.springframework.domain.RecipeSummary;
+import guru.springframework.domain.SearchPage;
+import guru.springframework.exceptions.NotFoundException;
+import guru.springframework.repositories.RecipeReactiveRepository;
+import guru.springframework.search.SearchHit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveRecipeServiceImpl implements ReactiveRecipeService {
+
+    private final RecipeReactiveRepository recipeReactiveRepository;
+    private final RecipeCommandToRecipe recipeCommandToRecipe;
+    private final RecipeToRecipeCommand recipeToRecipeCommand;
+    private final OptimisticRetry optimisticRetry;
+    private final RecipeSearchService recipeSearchService;
+    private final ImageService imageService;
+
+    public ReactiveRecipeServiceImpl(RecipeReactiveRepository recipeReactiveRepository, RecipeCommandToRecipe recipeCommandToRecipe,
+                                     RecipeToRecipeCommand recipeToRecipeCommand, OptimisticRetry optimisticRetry,
+                                     RecipeSearchService recipeSearchService, ImageService imageService) {
+        this.recipeReactiveRepository = recipeReactiveRepository;
+        this.recipeCommandToRecipe = recipeCommandToRecipe;
+        this.recipeToRecipeCommand = recipeToRecipeCommand;
+        this.optimisticRetry = optimisticRetry;
+        this.recipeSearchService = recipeSearchService;
+        this.imageService = imageService;
+    }
+
+    @Override
+    public Mono<RecipePage> listRecipes(RecipeSort sort, String after, String before, int pageSize) {
+        //deferred so an invalid cursor is signalled as an error instead of thrown
+        return Mono.defer(() -> {
+            boolean backward = after == null && before != null;
+            RecipeSummary boundary = RecipeServiceImpl.decodeCursor(backward ? before : after);
+
+            //one extra row tells whether there is another page beyond this one
+            return recipeReactiveRepository.findSummaries(sort, boundary, backward, pageSize + 1)
+                    .collectList()
+                    .map(summaries -> RecipeServiceImpl.toPage(summaries, sort, boundary, backward, pageSize));
+        });
+    }
+
+    @Override
+    public Mono<Recipe> findById(String id) {
+        return recipeReactiveRepository.findByIdWithReferences(id)
+                .switchIfEmpty(Mono.defer(() -> Mono.error(new NotFoundException("Recipe Not Found. For ID value: " + id))));
+    }
+
+    @Override
+    public Mono<RecipeCommand> findCommandById(String id) {
+        return findById(id).map(recipe -> {
+            RecipeCommand recipeCommand = recipeToRecipeCommand.convert(recipe);
+
+            //enhance command object with id value
+            if (recipeCommand.getIngredients() != null) {
+                recipeCommand.getIngredients().forEach(ingredient -> ingredient.setRecipeId(recipeCommand.getId()));
+            }
+            return recipeCommand;
+        });
+    }
+
+    @Override
+    public Mono<RecipeCommand> saveRecipeCommand(RecipeCommand recipeCommand) {
+        return Mono.fromSupplier(() -> recipeCommandToRecipe.convert(recipeCommand))
+                .flatMap(detachedRecipe -> {
+                    detachedRecipe.setLastModified(new Date());
+                    if (!StringUtils.hasText(detachedRecipe.getId())) {
+                        detachedRecipe.setId(null);
+                        return Mono.just(detachedRecipe);
+                    }
+                    return recipeReactiveRepository.findImageMetadataById(detachedRecipe.getId())
+                            .map(existing -> {
+                                RecipeServiceImpl.keepStoredState(detachedRecipe, existing);
+                                return detachedRecipe;
+                            })
+                            .defaultIfEmpty(detachedRecipe);
+                })
+                .flatMap(recipeReactiveRepository::save)
+                //as on the servlet stack, a conflicting form save goes back to the user
+                .doOnError(OptimisticLockingFailureException.class, e -> optimisticRetry.recordConflict("recipe.save"))
+                .map(savedRecipe -> {
+                    log.debug("Saved RecipeId:" + savedRecipe.getId());
+                    recipeSearchService.index(savedRecipe);
+                    return recipeToRecipeCommand.convert(savedRecipe);
+                });
+    }
+
+    @Override
+    public Mono<Void> deleteById(String id) {
+        //as on the servlet stack, the image the deleted document held is released; image storage is blocking
+        return recipeReactiveRepository.findAndDeleteById(id)
+                .filter(deleted -> deleted.getImageMetadata() != null)
+                .flatMap(deleted -> Mono.fromRunnable(() -> imageService.releaseImage(id, deleted.getImageMetadata()))
+                        .subscribeOn(Schedulers.elastic()))
+                .then(Mono.fromRunnable(() -> recipeSearchService.remove(id)));
+    }
+
+    @Override
+    public Mono<SearchPage> search(String query, int page, int pageSize) {
+        //ranking is in memory, only the summaries of the page are read from Mongo
+        return Mono.fromSupplier(() -> recipeSearchService.findHits(query, page, pageSize))
+                .flatMap(result -> {
+                    List<String> ids = result.getHits().stream().map(SearchHit::getRecipeId).collect(Collectors.toList());
+                    Mono<List<RecipeSummary>> recipes = ids.isEmpty()
+                            ? Mono.just(Collections.emptyList())
+                            : recipeReactiveRepository.findSummariesByIds(ids).collectList();
+                    return recipes.map(summaries -> RecipeSearchServiceImpl.toPage(query, page, pageSize, result, summaries));
+                });
+    }
+}
@@ -0,0 +1,232 @@
+package guru.springframework.bootstrap;
+
+import com.mongodb.bulk.BulkWriteResult;
+import guru.springframework.cache.ReferenceDataCache;
+import guru.springframework.domain.Category;
+import guru.springframework.domain.Ingredient;
+import guru.springframework.domain.Recipe;
+import guru.springframework.domain.UnitOfMeasure;
+import org.bson.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class RecipeBootstrapTest {
+
+    @Mock
+    MongoOperations mongoOperations;
+
+    @Mock
+    BulkOperations bulkOperations;
+
+    @Mock
+    ReferenceDataCache<UnitOfMeasure> unitOfMeasureCache;
+
+    @Mock
+    ReferenceDataCache<Category> categoryCache;
+
+    private final List<Object> inserted = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(mongoOperations.bulkOps(any(BulkOperations.BulkMode.class), any(Class.class))).thenReturn(bulkOperations);
+        when(bulkOperations.insert(anyList())).thenAnswer(invocation -> {
+            List<?> documents = invocation.getArgument(0);
+            inserted.addAll(documents);
+            when(bulkOperations.execute()).thenReturn(BulkWriteResult.acknowledged(documents.size(), 0, 0, 0,
+                    Collections.emptyList()));
+            return bulkOperations;
+        });
+    }
+
+    @Test
+    public void seedLoadsResourceInBatches() {
+        //given
+        RecipeBootstrap recipeBootstrap = bootstrap(new ClassPathResource("seed/recipes.json"), 1);
+
+        //when
+        assertTrue(recipeBootstrap.seed());
+
+        //then
+        verify(mongoOperations, times(1)).bulkOps(BulkOperations.BulkMode.UNORDERED, Category.class);
+        verify(mongoOperations, times(1)).bulkOps(BulkOperations.BulkMode.UNORDERED, UnitOfMeasure.class);
+        verify(mongoOperations, times(2)).bulkOps(BulkOperations.BulkMode.UNORDERED, Recipe.class);
+        assertEquals(4 + 8 + 2, inserted.size());
+
+        Recipe guacamole = (Recipe) inserted.get(12);
+        assertEquals("Perfect Guacamole", guacamole.getDescription());
+        assertEquals(Long.valueOf(0), guacamole.getVersion());
+        assertEquals(2, guacamole.getCategories().size());
+        Ingredient salt = guacamole.getIngredients().stream()
+                .filter(ingredient -> ingredient.getDescription().equals("Kosher salt")).findFirst().get();
+        assertEquals(new BigDecimal("0.5"), salt.getAmount());
+        assertEquals("Teaspoon", salt.getUom().getDescription());
+
+        verify(mongoOperations, times(1)).insert(any(Document.class), eq(RecipeBootstrap.MARKER_COLLECTION));
+        verify(mongoOperations, times(1)).updateFirst(any(Query.class), any(Update.class), eq(RecipeBootstrap.MARKER_COLLECTION));
+        verify(unitOfMeasureCache, times(1)).invalidate();
+        verify(categoryCache, times(1)).invalidate();
+    }
+
+    @Test
+    public void seedSkipsWhenMarkerExists() {
+        //given
+        when(mongoOperations.findById(RecipeBootstrap.MARKER_ID, Document.class, RecipeBootstrap.MARKER_COLLECTION))
+                .thenReturn(new Document("version", 1));
+
+        //when
+        assertFalse(bootstrap(new ClassPathResource("seed/recipes.json"), 500).seed());
+
+        //then no writes at all
+        verify(mongoOperations, never()).bulkOps(any(BulkOperations.BulkMode.class), any(Class.class));
+        verify(mongoOperations, never()).insert(any(), anyString());
+    }
+
+    @Test
+    public void seedSkipsWhenAnotherNodeClaimedMarker() {
+        //given both nodes found no marker, the other one inserted it first
+        when(mongoOperations.insert(any(Document.class), eq(RecipeBootstrap.MARKER_COLLECTION)))
+                .thenThrow(new DuplicateKeyException("E11000 duplicate key error"));
+
+        //when
+        assertFalse(bootstrap(new ClassPathResource("seed/recipes.json"), 500).seed());
+
+        //then
+        verify(mongoOperations, never()).bulkOps(any(BulkOperations.BulkMode.class), any(Class.class));
+    }
+
+    @Test
+    public void seedReleasesMarkerWhenSeedingFails() {
+        //when
+        try {
+            bootstrap(new ByteArrayResource("[".getBytes(StandardCharsets.UTF_8)), 500).seed();
+            fail("expected the seed data to be rejected");
+        } catch (UncheckedIOException expected) {
+        }
+
+        //then the next start tries again
+        verify(mongoOperations, times(1)).remove(any(Query.class), eq(RecipeBootstrap.MARKER_COLLECTION));
+    }
+
+    @Test
+    public void seedMarksDatabaseSeededBeforeMarkers() {
+        when(mongoOperations.exists(any(Query.class), eq(Recipe.class))).thenReturn(true);
+
+        assertFalse(bootstrap(new ClassPathResource("seed/recipes.json"), 500).seed());
+
+        verify(mongoOperations, never()).bulkOps(any(BulkOperations.BulkMode.class), any(Class.class));
+        verify(mongoOperations, times(1)).insert(any(Document.class), eq(RecipeBootstrap.MARKER_COLLECTION));
+    }
+
+    @Test
+    public void seedRemovesReferenceDataWhenRecipeIsInvalid() {
+        //given a recipe referring to a unit of measure the seed does not have
+        String seed = "{\"unitsOfMeasure\": [\"Cup\"], \"recipes\": [{\"description\": \"Tea\","
+                + " \"ingredients\": [{\"description\": \"tea\", \"amount\": 1, \"unitOfMeasure\": \"Spoon\"}]}]}";
+
+        //when
+        try {
+            bootstrap(new ByteArrayResource(seed.getBytes(StandardCharsets.UTF_8)), 500).seed();
+            fail("expected the seed data to be rejected");
+        } catch (IllegalStateException expected) {
+        }
+
+        //then the next start finds an empty database
+        verify(mongoOperations, never()).bulkOps(any(BulkOperations.BulkMode.class), eq(Recipe.class));
+        assertEquals(Collections.singletonList(((UnitOfMeasure) inserted.get(0)).getId()), removedIds(UnitOfMeasure.class));
+        verify(mongoOperations, times(1)).remove(any(Query.class), eq(RecipeBootstrap.MARKER_COLLECTION));
+    }
+
+    @Test
+    public void seedRemovesInsertedBatchesWhenInsertFails() {
+        //given the second batch of recipes fails to insert
+        BulkOperations recipeBulkOperations = mock(BulkOperations.class);
+        when(mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED, Recipe.class)).thenReturn(recipeBulkOperations);
+        List<String> recipeIds = new ArrayList<>();
+        when(recipeBulkOperations.insert(anyList())).thenAnswer(invocation -> {
+            List<?> documents = invocation.getArgument(0);
+            documents.forEach(document -> recipeIds.add(((Recipe) document).getId()));
+            return recipeBulkOperations;
+        });
+        when(recipeBulkOperations.execute())
+                .thenReturn(BulkWriteResult.acknowledged(1, 0, 0, 0, Collections.emptyList()))
+                .thenThrow(new DataIntegrityViolationException("bulk write failed"));
+
+        //when
+        try {
+            bootstrap(new ClassPathResource("seed/recipes.json"), 1).seed();
+            fail("expected the insert to fail");
+        } catch (DataIntegrityViolationException expected) {
+        }
+
+        //then recipes and reference data are removed, also the recipes of the failed batch
+        assertEquals(4, removedIds(Category.class).size());
+        assertEquals(8, removedIds(UnitOfMeasure.class).size());
+        assertEquals(recipeIds, removedIds(Recipe.class));
+        verify(mongoOperations, times(1)).remove(any(Query.class), eq(RecipeBootstrap.MARKER_COLLECTION));
+        verify(mongoOperations, never()).updateFirst(any(Query.class), any(Update.class), eq(RecipeBootstrap.MARKER_COLLECTION));
+    }
+
+    @Test
+    public void seedKeepsMarkerWhenRemovingInsertedDataFails() {
+        //given
+        String seed = "{\"unitsOfMeasure\": [\"Cup\"], \"recipes\": [{\"description\": \"Tea\","
+                + " \"ingredients\": [{\"description\": \"tea\", \"amount\": 1, \"unitOfMeasure\": \"Spoon\"}]}]}";
+        when(mongoOperations.remove(any(Query.class), eq(UnitOfMeasure.class)))
+                .thenThrow(new DataAccessResourceFailureException("connection lost"));
+
+        //when
+        try {
+            bootstrap(new ByteArrayResource(seed.getBytes(StandardCharsets.UTF_8)), 500).seed();
+            fail("expected the seed data to be rejected");
+        } catch (IllegalStateException expected) {
+            assertEquals(1, expected.getSuppressed().length);
+        }
+
+        //then the partly seeded database is neither seeded again nor taken as seeded
+        verify(mongoOperations, never()).remove(any(Query.class), eq(RecipeBootstrap.MARKER_COLLECTION));
+    }
+
+    private List<Object> removedIds(Class<?> type) {
+        ArgumentCaptor<Query> removed = ArgumentCaptor.forClass(Query.class);
+        verify(mongoOperations, atLeast(0)).remove(removed.capture(), eq(type));
+        List<Object> ids = new ArrayList<>();
+        for (Query query : removed.getAllValues()) {
+            ids.addAll((Collection<?>) ((Document) query.getQueryObject().get("_id")).get("$in"));
+        }
+        return ids;
+    }
+
+    private RecipeBootstrap bootstrap(org.springframework.core.io.Resource seedResource, int batchSize) {
+        return new RecipeBootstrap(mongoOperations, seedResource, batchSize, unitOfMeasureCache, categoryCache);
+    }
+}
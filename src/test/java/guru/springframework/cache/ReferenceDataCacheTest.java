@@ -0,0 +1,82 @@
+package guru.springframework.cache;
+
+import guru.springframework.domain.UnitOfMeasure;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class ReferenceDataCacheTest {
+
+    private final List<UnitOfMeasure> stored = new ArrayList<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final AtomicLong clock = new AtomicLong();
+
+    private ReferenceDataCache<UnitOfMeasure> cache;
+
+    @Before
+    public void setUp() {
+        stored.add(uom("1", "Teaspoon"));
+        stored.add(uom("2", "Cup"));
+
+        cache = new ReferenceDataCache<>("unitOfMeasure", () -> {
+            loads.incrementAndGet();
+            return new ArrayList<>(stored);
+        }, UnitOfMeasure::getId, UnitOfMeasure::getDescription, 60, clock::get);
+    }
+
+    @Test
+    public void lookupsShareOneSnapshot() {
+        assertEquals("Cup", cache.findById("2").get().getDescription());
+        assertEquals("1", cache.findByDescription("Teaspoon").get().getId());
+        assertEquals(2, cache.findAll().size());
+        assertFalse(cache.findById("3").isPresent());
+
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(3, cache.getHitCount());
+    }
+
+    @Test
+    public void invalidateReloadsOnNextRead() {
+        cache.findAll();
+        stored.add(uom("3", "Pinch"));
+
+        cache.invalidate();
+
+        assertEquals("Pinch", cache.findById("3").get().getDescription());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void expiredSnapshotIsReloaded() {
+        cache.findAll();
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(59));
+        cache.findAll();
+        assertEquals(1, loads.get());
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        cache.findAll();
+        assertEquals(2, loads.get());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void snapshotIsImmutable() {
+        cache.findAll().clear();
+    }
+
+    private static UnitOfMeasure uom(String id, String description) {
+        UnitOfMeasure uom = new UnitOfMeasure();
+        uom.setId(id);
+        uom.setDescription(description);
+        return uom;
+    }
+}
@@ -0,0 +1,92 @@
+package guru.springframework.cache;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.unit.DataSize;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RenderedPageCacheTest {
+
+    private static final String SHOW = "recipe/show";
+    private static final String INGREDIENTS = "recipe/ingredient/list";
+
+    private RenderedPageCache cache;
+
+    @Before
+    public void setUp() {
+        //room for three pages of 100 bytes
+        cache = new RenderedPageCache(DataSize.ofBytes(3 * (100 + RenderedPageCache.PAGE_OVERHEAD)));
+    }
+
+    @Test
+    public void pagesAreServedForTheirVersionOnly() {
+        cache.put(SHOW, "1", 3, page());
+
+        assertTrue(cache.get(SHOW, "1", 3).isPresent());
+        assertFalse(cache.get(SHOW, "1", 4).isPresent());
+        assertFalse(cache.get(INGREDIENTS, "1", 3).isPresent());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(1d / 3, cache.getHitRatio(), 0.0001);
+    }
+
+    @Test
+    public void newerVersionReplacesEveryPageOfTheRecipe() {
+        cache.put(SHOW, "1", 3, page());
+        cache.put(INGREDIENTS, "1", 3, page());
+
+        cache.put(SHOW, "1", 4, page());
+
+        assertEquals(1, cache.getPageCount());
+        assertEquals(100 + RenderedPageCache.PAGE_OVERHEAD, cache.getSize());
+        assertFalse(cache.get(INGREDIENTS, "1", 3).isPresent());
+    }
+
+    @Test
+    public void olderVersionIsNotCached() {
+        cache.put(SHOW, "1", 4, page());
+
+        cache.put(INGREDIENTS, "1", 3, page());
+
+        assertEquals(1, cache.getPageCount());
+    }
+
+    @Test
+    public void invalidateDropsEveryPageOfTheRecipe() {
+        cache.put(SHOW, "1", 3, page());
+        cache.put(INGREDIENTS, "1", 3, page());
+        cache.put(SHOW, "2", 1, page());
+
+        cache.invalidate("1");
+
+        assertEquals(1, cache.getPageCount());
+        assertEquals(100 + RenderedPageCache.PAGE_OVERHEAD, cache.getSize());
+    }
+
+    @Test
+    public void leastRecentlyUsedRecipeIsEvicted() {
+        cache.put(SHOW, "1", 1, page());
+        cache.put(SHOW, "2", 1, page());
+        cache.put(SHOW, "3", 1, page());
+        cache.get(SHOW, "1", 1);
+
+        cache.put(SHOW, "4", 1, page());
+
+        assertTrue(cache.get(SHOW, "1", 1).isPresent());
+        assertFalse(cache.get(SHOW, "2", 1).isPresent());
+        assertEquals(3, cache.getPageCount());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void disabledWithoutSize() {
+        assertFalse(new RenderedPageCache(DataSize.ofBytes(0)).isEnabled());
+    }
+
+    private static RenderedPage page() {
+        return new RenderedPage("text/html;charset=UTF-8", new byte[100]);
+    }
+}
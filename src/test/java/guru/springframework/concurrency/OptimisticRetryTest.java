@@ -0,0 +1,80 @@
+package guru.springframework.concurrency;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class OptimisticRetryTest {
+
+    private OptimisticRetry optimisticRetry;
+
+    @Before
+    public void setUp() {
+        optimisticRetry = new OptimisticRetry(3, 0);
+    }
+
+    @Test
+    public void executeRetriesUntilNoConflict() {
+        //given
+        AtomicInteger attempts = new AtomicInteger();
+
+        //when
+        String result = optimisticRetry.execute("op", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new OptimisticLockingFailureException("conflict");
+            }
+            return "done";
+        });
+
+        //then
+        assertEquals("done", result);
+        assertEquals(3, attempts.get());
+        assertEquals(Long.valueOf(2), optimisticRetry.getConflictCounts().get("op"));
+        assertEquals(Long.valueOf(2), optimisticRetry.getRetryCounts().get("op"));
+        assertNull(optimisticRetry.getExhaustedCounts().get("op"));
+    }
+
+    @Test
+    public void executeGivesUpAfterMaxAttempts() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        try {
+            optimisticRetry.execute("op", () -> {
+                attempts.incrementAndGet();
+                throw new OptimisticLockingFailureException("conflict");
+            });
+            fail("expected the conflict to be rethrown");
+        } catch (OptimisticLockingFailureException expected) {
+            //the caller sees the last conflict
+        }
+
+        assertEquals(3, attempts.get());
+        assertEquals(Long.valueOf(3), optimisticRetry.getConflictCounts().get("op"));
+        assertEquals(Long.valueOf(2), optimisticRetry.getRetryCounts().get("op"));
+        assertEquals(Long.valueOf(1), optimisticRetry.getExhaustedCounts().get("op"));
+    }
+
+    @Test
+    public void executeDoesNotRetryOtherFailures() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        try {
+            optimisticRetry.execute("op", () -> {
+                attempts.incrementAndGet();
+                throw new IllegalStateException("boom");
+            });
+            fail("expected the failure to be rethrown");
+        } catch (IllegalStateException expected) {
+            //not a conflict
+        }
+
+        assertEquals(1, attempts.get());
+        assertNull(optimisticRetry.getConflictCounts().get("op"));
+    }
+}
@@ -1,17 +1,31 @@
 package guru.springframework.controllers;
 
 import guru.springframework.commands.RecipeCommand;
+import guru.springframework.converters.StringToImageVariant;
+import guru.springframework.domain.ImageMetadata;
+import guru.springframework.images.ImageFileCache;
 import guru.springframework.services.ImageService;
 import guru.springframework.services.RecipeService;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.format.support.DefaultFormattingConversionService;
+import org.springframework.format.support.FormattingConversionService;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -20,12 +34,17 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 public class ImageControllerTest {
 
+    private static final String HASH = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
     @Mock
     RecipeService recipeService;
 
     @Mock
     ImageService imageService;
 
+    @Mock
+    ImageFileCache imageFileCache;
+
     private ImageController imageController;
 
     private MockMvc mockMvc;
@@ -33,9 +52,13 @@ public class ImageControllerTest {
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
-        imageController = new ImageController(recipeService, imageService);
+        imageController = new ImageController(recipeService, imageService, imageFileCache);
+        when(imageFileCache.lease(any())).thenReturn(true);
+        FormattingConversionService conversionService = new DefaultFormattingConversionService();
+        conversionService.addConverter(new StringToImageVariant());
         mockMvc = MockMvcBuilders.standaloneSetup(imageController)
                 .setControllerAdvice(new ControllerExceptionHandler())
+                .setConversionService(conversionService)
                 .build();
     }
 
@@ -65,24 +88,185 @@ public class ImageControllerTest {
 
     @Test
     public void renderImageFromDb() throws Exception {
-        RecipeCommand recipeCommand = new RecipeCommand();
-        recipeCommand.setId("1");
-
         String s = "fake image text";
-        Byte[] bytesBoxed = new Byte[s.getBytes().length];
-        int j = 0;
-        for (byte x : s.getBytes()) {
-            bytesBoxed[j++] = x;
-        }
-        recipeCommand.setImage(bytesBoxed);
+        ImageMetadata imageMetadata = new ImageMetadata("abc", "image/png", s.getBytes().length, new Date(), HASH);
 
-        when(recipeService.findCommandById(anyString())).thenReturn(recipeCommand);
+        when(imageService.findImageMetadata(anyString())).thenReturn(Optional.of(imageMetadata));
+        when(imageService.loadCachedImage(imageMetadata)).thenReturn(new ByteArrayResource(s.getBytes()));
 
         MockHttpServletResponse response = mockMvc.perform(get("/recipe/1/recipeImage"))
                 .andExpect(status().isOk())
+                .andExpect(content().contentType("image/png"))
+                .andExpect(header().string("ETag", "\"" + HASH + "\""))
+                .andExpect(header().exists("Last-Modified"))
+                .andExpect(header().string("Cache-Control", "no-cache, public"))
                 .andReturn().getResponse();
 
         byte[] responseBytes = response.getContentAsByteArray();
         assertEquals(s.getBytes().length, responseBytes.length);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void renderCachedImageWithSendfile() throws Exception {
+        //given
+        Path file = Files.createTempFile("image", ".png");
+        try {
+            Files.write(file, "fake image text".getBytes());
+            ImageMetadata imageMetadata = new ImageMetadata("abc", "image/png", 15, new Date(), HASH);
+            when(imageService.findImageMetadata(anyString())).thenReturn(Optional.of(imageMetadata));
+            when(imageService.loadCachedImage(imageMetadata)).thenReturn(new FileSystemResource(file));
+
+            //when
+            MockHttpServletResponse response = mockMvc.perform(get("/recipe/1/recipeImage")
+                    .requestAttr(ImageController.SENDFILE_SUPPORT, Boolean.TRUE))
+
+                    //then
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType("image/png"))
+                    .andExpect(header().longValue("Content-Length", 15))
+                    .andExpect(header().string("ETag", "\"" + HASH + "\""))
+                    .andExpect(request().attribute(ImageController.SENDFILE_FILENAME, file.toFile().getAbsolutePath()))
+                    .andExpect(request().attribute(ImageController.SENDFILE_END, 15L))
+                    .andReturn().getResponse();
+            assertEquals(0, response.getContentAsByteArray().length);
+            verify(imageFileCache, times(1)).lease(file.toFile());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void renderEvictedImageWithoutSendfile() throws Exception {
+        //given the file is no longer cached by the time it would be handed to Tomcat
+        Path file = Files.createTempFile("image", ".png");
+        try {
+            Files.write(file, "fake image text".getBytes());
+            ImageMetadata imageMetadata = new ImageMetadata("abc", "image/png", 15, new Date(), HASH);
+            when(imageService.findImageMetadata(anyString())).thenReturn(Optional.of(imageMetadata));
+            when(imageService.loadCachedImage(imageMetadata)).thenReturn(new FileSystemResource(file));
+            when(imageFileCache.lease(any())).thenReturn(false);
+
+            //when
+            mockMvc.perform(get("/recipe/1/recipeImage")
+                    .requestAttr(ImageController.SENDFILE_SUPPORT, Boolean.TRUE))
+
+                    //then
+                    .andExpect(status().isOk())
+                    .andExpect(request().attribute(ImageController.SENDFILE_FILENAME, nullValue()))
+                    .andExpect(content().string("fake image text"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void renderCachedImageRangeWithoutSendfile() throws Exception {
+        Path file = Files.createTempFile("image", ".png");
+        try {
+            Files.write(file, "fake image text".getBytes());
+            ImageMetadata imageMetadata = new ImageMetadata("abc", "image/png", 15, new Date(), HASH);
+            when(imageService.findImageMetadata(anyString())).thenReturn(Optional.of(imageMetadata));
+            when(imageService.loadCachedImage(imageMetadata)).thenReturn(new FileSystemResource(file));
+
+            mockMvc.perform(get("/recipe/1/recipeImage").header("Range", "bytes=0-3")
+                    .requestAttr(ImageController.SENDFILE_SUPPORT, Boolean.TRUE))
+                    .andExpect(status().isPartialContent())
+                    .andExpect(request().attribute(ImageController.SENDFILE_FILENAME, nullValue()))
+                    .andExpect(content().string("fake"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void renderVersionedImageFromDb() throws Exception {
+        ImageMetadata imageMetadata = new ImageMetadata("abc", "image/jpeg", 3, new Date(), HASH);
+
+        when(imageService.findImageMetadata(anyString())).thenReturn(Optional.of(imageMetadata));
+        when(imageService.loadCachedImage(imageMetadata)).thenReturn(new ByteArrayResource(new byte[3]));
+
+        mockMvc.perform(get("/recipe/1/recipeImage").param("v", HASH))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "max-age=31536000, public"));
+    }
+
+    @Test
+    public void renderImageVariantFromDb() throws Exception {
+        ImageMetadata original = new ImageMetadata("abc", "image/png", 10, new Date(), HASH);
+        ImageMetadata thumb = new ImageMetadata("def", "image/jpeg", 3, new Date(), "thumbhash");
+        original.getVariants().put("thumb", thumb);
+
+        when(imageService.findImageMetadata(anyString())).thenReturn(Optional.of(original));
+        when(imageService.loadCachedImage(thumb)).thenReturn(new ByteArrayResource(new byte[3]));
+
+        mockMvc.perform(get("/recipe/1/recipeImage").param("size", "thumb").param("v", HASH))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("image/jpeg"))
+                .andExpect(header().string("ETag", "\"thumbhash\""))
+                .andExpect(header().string("Cache-Control", "max-age=31536000, public"));
+    }
+
+    @Test
+    public void renderMissingImageVariantFallsBackToOriginal() throws Exception {
+        ImageMetadata original = new ImageMetadata("abc", "image/png", 10, new Date(), HASH);
+
+        when(imageService.findImageMetadata(anyString())).thenReturn(Optional.of(original));
+        when(imageService.loadCachedImage(original)).thenReturn(new ByteArrayResource(new byte[10]));
+
+        mockMvc.perform(get("/recipe/1/recipeImage").param("size", "medium").param("v", HASH))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("image/png"))
+                .andExpect(header().string("ETag", "\"" + HASH + "\""))
+                .andExpect(header().string("Cache-Control", "no-cache, public"));
+    }
+
+    @Test
+    public void renderUnknownImageVariant() throws Exception {
+        mockMvc.perform(get("/recipe/1/recipeImage").param("size", "huge"))
+                .andExpect(status().isBadRequest());
+
+        verify(imageService, never()).findImageMetadata(anyString());
+    }
+
+    @Test
+    public void renderImageFromDbNotModified() throws Exception {
+        ImageMetadata imageMetadata = new ImageMetadata("abc", "image/jpeg", 3, new Date(), HASH);
+        Resource resource = mock(Resource.class);
+
+        when(imageService.findImageMetadata(anyString())).thenReturn(Optional.of(imageMetadata));
+        when(imageService.loadCachedImage(imageMetadata)).thenReturn(resource);
+
+        MockHttpServletResponse response = mockMvc.perform(get("/recipe/1/recipeImage")
+                .header("If-None-Match", "\"" + HASH + "\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"" + HASH + "\""))
+                .andReturn().getResponse();
+
+        assertEquals(0, response.getContentAsByteArray().length);
+        verify(resource, never()).getInputStream();
+    }
+
+    @Test
+    public void renderImageFromDbRange() throws Exception {
+        String s = "fake image text";
+        ImageMetadata imageMetadata = new ImageMetadata("abc", "image/jpeg", s.getBytes().length, new Date(), HASH);
+
+        when(imageService.findImageMetadata(anyString())).thenReturn(Optional.of(imageMetadata));
+        when(imageService.loadCachedImage(imageMetadata)).thenReturn(new ByteArrayResource(s.getBytes()));
+
+        mockMvc.perform(get("/recipe/1/recipeImage").header("Range", "bytes=0-3"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 0-3/" + s.getBytes().length))
+                .andExpect(content().string("fake"));
+    }
+
+    @Test
+    public void renderImageFromDbWithoutImage() throws Exception {
+        when(imageService.findImageMetadata(anyString())).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/recipe/1/recipeImage"))
+                .andExpect(status().isNotFound());
+
+        verify(imageService, never()).loadImage(any());
+    }
+}
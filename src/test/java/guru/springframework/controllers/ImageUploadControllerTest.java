@@ -0,0 +1,164 @@
+package guru.springframework.controllers;
+
+import guru.springframework.domain.ImageUpload;
+import guru.springframework.exceptions.BadRequestException;
+import guru.springframework.exceptions.ConflictException;
+import guru.springframework.exceptions.PayloadTooLargeException;
+import guru.springframework.services.ImageUploadService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.MediaType;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.StreamUtils;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class ImageUploadControllerTest {
+
+    @Mock
+    ImageUploadService imageUploadService;
+
+    private MockMvc mockMvc;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mockMvc = MockMvcBuilders.standaloneSetup(new ImageUploadController(imageUploadService))
+                .setControllerAdvice(new ApiExceptionHandler(), new ControllerExceptionHandler())
+                .build();
+    }
+
+    @Test
+    public void startUpload() throws Exception {
+        //given
+        when(imageUploadService.startUpload("1", "cake.jpg", 100)).thenReturn(new ImageUpload("abc", "1", "cake.jpg", 100));
+
+        //when
+        mockMvc.perform(post("/api/recipes/1/image/uploads").param("length", "100").param("filename", "cake.jpg"))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Location", "/api/recipes/1/image/uploads/abc"))
+                .andExpect(jsonPath("$.state").value("UPLOADING"))
+                .andExpect(jsonPath("$.missing[0].end").value(100));
+    }
+
+    @Test
+    public void writeChunk() throws Exception {
+        //given
+        ImageUpload upload = new ImageUpload("abc", "1", null, 100);
+        StringBuilder body = new StringBuilder();
+        when(imageUploadService.writeChunk(eq("1"), eq("abc"), eq(40L), any())).thenAnswer(invocation -> {
+            body.append(StreamUtils.copyToString(invocation.<InputStream>getArgument(3), StandardCharsets.US_ASCII));
+            upload.receive(40, 40 + body.length());
+            return upload;
+        });
+
+        //when
+        mockMvc.perform(put("/api/recipes/1/image/uploads/abc").param("offset", "40")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM).content("chunk".getBytes()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.receivedBytes").value(5))
+                .andExpect(jsonPath("$.received[0].start").value(40));
+
+        //then
+        assertEquals("chunk", body.toString());
+    }
+
+    @Test
+    public void getUnknownUpload() throws Exception {
+        when(imageUploadService.findUpload("1", "abc")).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/recipes/1/image/uploads/abc"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void completeUpload() throws Exception {
+        //given
+        ImageUpload upload = new ImageUpload("abc", "1", null, 100);
+        upload.receive(0, 100);
+        upload.complete();
+        when(imageUploadService.completeUpload("1", "abc")).thenReturn(upload);
+
+        //when
+        mockMvc.perform(post("/api/recipes/1/image/uploads/abc/complete"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state").value("COMPLETED"));
+    }
+
+    @Test
+    public void cancelUpload() throws Exception {
+        mockMvc.perform(delete("/api/recipes/1/image/uploads/abc"))
+                .andExpect(status().isNoContent());
+
+        verify(imageUploadService, times(1)).cancelUpload("1", "abc");
+    }
+
+    @Test
+    public void cancelUploadReceivingChunk() throws Exception {
+        //given
+        doThrow(new ConflictException("Image upload abc is still receiving a chunk or being stored"))
+                .when(imageUploadService).cancelUpload("1", "abc");
+
+        //when
+        mockMvc.perform(delete("/api/recipes/1/image/uploads/abc"))
+                .andExpect(status().isConflict())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.status").value(409))
+                .andExpect(jsonPath("$.message").value("Image upload abc is still receiving a chunk or being stored"));
+    }
+
+    @Test
+    public void completeUploadStoredConcurrently() throws Exception {
+        //given
+        when(imageUploadService.completeUpload("1", "abc")).thenThrow(new OptimisticLockingFailureException("changed"));
+
+        //when
+        mockMvc.perform(post("/api/recipes/1/image/uploads/abc/complete"))
+                .andExpect(status().isConflict())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.error").value("Conflict"));
+    }
+
+    @Test
+    public void startUploadTooLarge() throws Exception {
+        //given
+        when(imageUploadService.startUpload("1", null, 100)).thenThrow(new PayloadTooLargeException("Image is larger than 10 bytes"));
+
+        //when
+        mockMvc.perform(post("/api/recipes/1/image/uploads").param("length", "100"))
+                .andExpect(status().isPayloadTooLarge())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.message").value("Image is larger than 10 bytes"));
+    }
+
+    @Test
+    public void completeUploadMissingBytes() throws Exception {
+        //given
+        when(imageUploadService.completeUpload("1", "abc")).thenThrow(new BadRequestException("Image upload abc is UPLOADING"));
+
+        //when
+        mockMvc.perform(post("/api/recipes/1/image/uploads/abc/complete"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.status").value(400));
+    }
+}
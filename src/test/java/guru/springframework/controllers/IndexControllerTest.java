@@ -1,23 +1,30 @@
 package guru.springframework.controllers;
 
-import guru.springframework.domain.Recipe;
+import guru.springframework.domain.RecipePage;
+import guru.springframework.domain.RecipeSort;
+import guru.springframework.domain.RecipeSummary;
 import guru.springframework.services.RecipeService;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.ui.Model;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
 
@@ -32,6 +39,9 @@ public class IndexControllerTest {
     @Mock
     Model model;
 
+    @Captor
+    ArgumentCaptor<List<RecipeSummary>> argumentCaptor;
+
     private MockMvc mockMvc;
 
     @Before
@@ -42,31 +52,44 @@ public class IndexControllerTest {
 
     @Test
     public void testMockMVC() throws Exception {
+        when(recipeService.listRecipes(any(), any(), any(), anyInt()))
+                .thenReturn(new RecipePage(Collections.emptyList(), RecipeSort.DESCRIPTION, null, null));
+
         mockMvc = MockMvcBuilders.standaloneSetup(indexController).build();
         mockMvc.perform(get("/"))
                 .andExpect(status().isOk())
-                .andExpect(view().name("index"));
+                .andExpect(view().name("index"))
+                .andExpect(model().attributeExists("page"));
+
+        verify(recipeService, times(1)).listRecipes(RecipeSort.DESCRIPTION, null, null, IndexController.DEFAULT_PAGE_SIZE);
     }
 
     @Test
-    public void getIndexPage() {
+    public void testMockMVCNextPage() throws Exception {
+        when(recipeService.listRecipes(any(), any(), any(), anyInt()))
+                .thenReturn(new RecipePage(Collections.emptyList(), RecipeSort.NEWEST, null, null));
+
+        mockMvc = MockMvcBuilders.standaloneSetup(indexController).build();
+        mockMvc.perform(get("/").param("sort", "NEWEST").param("after", "abc").param("size", "1000"))
+                .andExpect(status().isOk());
+
+        verify(recipeService, times(1)).listRecipes(RecipeSort.NEWEST, "abc", null, IndexController.MAX_PAGE_SIZE);
+    }
 
-        Set<Recipe> recipes = new HashSet<>();
-        Recipe recipe1 = new Recipe();
-        recipes.add(recipe1);
-        Recipe recipe2 = new Recipe();
-        recipe2.setId("4");
-        recipes.add(recipe2);
+    @Test
+    public void getIndexPage() {
 
-        when(recipeService.getRecipes()).thenReturn(recipes);
+        List<RecipeSummary> recipes = Arrays.asList(new RecipeSummary("1", "Tacos"), new RecipeSummary("4", "Guacamole"));
+        RecipePage page = new RecipePage(recipes, RecipeSort.DESCRIPTION, null, "next");
 
-        ArgumentCaptor<Set<Recipe>> argumentCaptor = ArgumentCaptor.forClass(Set.class);
+        when(recipeService.listRecipes(eq(RecipeSort.DESCRIPTION), isNull(), isNull(), anyInt())).thenReturn(page);
 
-        String viewPage = indexController.getIndexPage(model);
+        String viewPage = indexController.getIndexPage(RecipeSort.DESCRIPTION, null, null, 20, model);
         assertEquals("index", viewPage);
-        verify(recipeService, times(1)).getRecipes();
+        verify(recipeService, never()).getRecipes();
+        verify(model, times(1)).addAttribute("page", page);
         verify(model, times(1)).addAttribute(eq("recipes"), argumentCaptor.capture());
-        Set<Recipe> setInController = argumentCaptor.getValue();
-        assertEquals(2, setInController.size());
+        List<RecipeSummary> listInController = argumentCaptor.getValue();
+        assertEquals(2, listInController.size());
     }
-}
\ No newline at end of file
+}
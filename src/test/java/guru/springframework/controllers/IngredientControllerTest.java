@@ -1,5 +1,6 @@
 package guru.springframework.controllers;
 
+import guru.springframework.cache.RenderedPageCache;
 import guru.springframework.commands.IngredientCommand;
 import guru.springframework.commands.RecipeCommand;
 import guru.springframework.services.IngredientService;
@@ -12,6 +13,8 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.ViewResolver;
 
 import java.util.HashSet;
 
@@ -35,15 +38,19 @@ public class IngredientControllerTest {
     @Mock
     UnitOfMeasureService unitOfMeasureService;
 
+    @Mock
+    ViewResolver viewResolver;
+
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
-        controller = new IngredientController(recipeService, ingredientService, unitOfMeasureService);
+        RenderedPages renderedPages = new RenderedPages(new RenderedPageCache(DataSize.ofMegabytes(1)), recipeService, viewResolver);
+        controller = new IngredientController(recipeService, ingredientService, unitOfMeasureService, renderedPages);
         mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
     }
 
     @Test
-    public void listIngredients() throws Exception {
+    public void listIngredientsOfUnversionedRecipe() throws Exception {
         //given
         RecipeCommand recipeCommand = new RecipeCommand();
         recipeCommand.setId("1");
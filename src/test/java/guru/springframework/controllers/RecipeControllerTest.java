@@ -1,5 +1,6 @@
 package guru.springframework.controllers;
 
+import guru.springframework.cache.RenderedPageCache;
 import guru.springframework.commands.RecipeCommand;
 import guru.springframework.domain.Recipe;
 import guru.springframework.exceptions.NotFoundException;
@@ -8,11 +9,16 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.View;
+import org.springframework.web.servlet.ViewResolver;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -23,16 +29,26 @@ public class RecipeControllerTest {
     @Mock
     RecipeService recipeService;
 
+    @Mock
+    ViewResolver viewResolver;
+
     private RecipeController recipeController;
 
     private MockMvc mockMvc;
 
     @Before
-    public void setUp() {
+    public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
-        recipeController = new RecipeController(recipeService);
+        View showView = (model, request, response) -> {
+            response.setContentType("text/html;charset=UTF-8");
+            response.getWriter().write("<h1>" + ((Recipe) model.get("recipe")).getDescription() + "</h1>");
+        };
+        when(viewResolver.resolveViewName(eq("recipe/show"), any())).thenReturn(showView);
+
+        RenderedPages renderedPages = new RenderedPages(new RenderedPageCache(DataSize.ofMegabytes(1)), recipeService, viewResolver);
+        recipeController = new RecipeController(recipeService, renderedPages);
         mockMvc = MockMvcBuilders.standaloneSetup(recipeController)
-                .setControllerAdvice(new ControllerExceptionHandler())
+                .setControllerAdvice(new ApiExceptionHandler(), new ControllerExceptionHandler())
                 .build();
     }
 
@@ -40,17 +56,64 @@ public class RecipeControllerTest {
     public void showById() throws Exception {
         Recipe recipe = new Recipe();
         recipe.setId("1");
+        recipe.setVersion(3L);
+        recipe.setDescription("Tacos");
 
+        when(recipeService.findVersionById("1")).thenReturn(3L);
         when(recipeService.findById(anyString())).thenReturn(recipe);
         mockMvc.perform(get("/recipe/1/show"))
                 .andExpect(status().isOk())
-                .andExpect(view().name("recipe/show"))
-                .andExpect(model().attributeExists("recipe"));
+                .andExpect(model().attributeExists("recipe"))
+                .andExpect(content().string("<h1>Tacos</h1>"));
+    }
+
+    @Test
+    public void showByIdFromCache() throws Exception {
+        //given
+        Recipe recipe = new Recipe();
+        recipe.setId("1");
+        recipe.setVersion(3L);
+        recipe.setDescription("Tacos");
+        when(recipeService.findVersionById("1")).thenReturn(3L);
+        when(recipeService.findById(anyString())).thenReturn(recipe);
+        mockMvc.perform(get("/recipe/1/show"));
+
+        //when
+        mockMvc.perform(get("/recipe/1/show"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/html;charset=UTF-8"))
+                .andExpect(content().string("<h1>Tacos</h1>"));
+
+        //then
+        verify(recipeService, times(1)).findById("1");
+    }
+
+    @Test
+    public void showByIdRendersChangedRecipe() throws Exception {
+        //given
+        Recipe recipe = new Recipe();
+        recipe.setId("1");
+        recipe.setVersion(3L);
+        recipe.setDescription("Tacos");
+        when(recipeService.findVersionById("1")).thenReturn(3L);
+        when(recipeService.findById(anyString())).thenReturn(recipe);
+        mockMvc.perform(get("/recipe/1/show"));
+
+        Recipe changed = new Recipe();
+        changed.setId("1");
+        changed.setVersion(4L);
+        changed.setDescription("Fish Tacos");
+        when(recipeService.findVersionById("1")).thenReturn(4L);
+        when(recipeService.findById(anyString())).thenReturn(changed);
+
+        //when
+        mockMvc.perform(get("/recipe/1/show"))
+                .andExpect(content().string("<h1>Fish Tacos</h1>"));
     }
 
     @Test()
     public void recipeNotFound() throws Exception {
-        when(recipeService.findById(anyString())).thenThrow(NotFoundException.class);
+        when(recipeService.findVersionById(anyString())).thenThrow(NotFoundException.class);
         mockMvc.perform(get("/recipe/1/show"))
                 .andExpect(status().isNotFound())
                 .andExpect(view().name("404error"));
@@ -115,4 +178,16 @@ public class RecipeControllerTest {
                 .andExpect(view().name("recipe/recipeForm"));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void saveOrUpdateConflictShowsErrorPage() throws Exception {
+        when(recipeService.saveRecipeCommand(any())).thenThrow(new OptimisticLockingFailureException("changed"));
+
+        mockMvc.perform(post("/recipe")
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .param("id", "2")
+                .param("description", "some string")
+                .param("directions", "some string"))
+                .andExpect(status().isConflict())
+                .andExpect(view().name("409error"));
+    }
+}
@@ -0,0 +1,106 @@
+package guru.springframework.controllers;
+
+import guru.springframework.domain.RecipeExportFilter;
+import guru.springframework.exceptions.NotFoundException;
+import guru.springframework.services.RecipeExportService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class RecipeExportControllerTest {
+
+    private static final String NDJSON = "{\"id\":\"1\"}\n{\"id\":\"2\"}\n";
+
+    @Mock
+    RecipeExportService recipeExportService;
+
+    private MockMvc mockMvc;
+    private final RecipeExportFilter filter = new RecipeExportFilter("c1", null);
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        mockMvc = MockMvcBuilders.standaloneSetup(new RecipeExportController(recipeExportService)).build();
+        when(recipeExportService.exportRecipes(eq(filter), any())).thenAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(1).write(NDJSON.getBytes(StandardCharsets.UTF_8));
+            return 2L;
+        });
+    }
+
+    @Test
+    public void exportRecipes() throws Exception {
+        //given
+        when(recipeExportService.filter(eq("Mexican"), any(Date.class))).thenReturn(filter);
+
+        //when
+        MvcResult result = mockMvc.perform(get("/api/recipes/export").param("category", "Mexican")
+                .param("modifiedSince", "2019-08-01T00:00:00.000Z"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        //then
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/x-ndjson"))
+                .andExpect(content().string(NDJSON));
+        verify(recipeExportService, times(1)).filter("Mexican", new Date(1564617600000L));
+    }
+
+    @Test
+    public void exportRecipesGzipped() throws Exception {
+        //given
+        when(recipeExportService.filter(null, null)).thenReturn(filter);
+
+        //when
+        MvcResult result = mockMvc.perform(get("/api/recipes/export").header("Accept-Encoding", "gzip, deflate"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"));
+
+        //then
+        GZIPInputStream unzipped = new GZIPInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()));
+        assertEquals(NDJSON, new String(readAll(unzipped), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void exportRecipesUnknownCategory() throws Exception {
+        when(recipeExportService.filter("Thai", null)).thenThrow(new NotFoundException("Category Not Found: Thai"));
+
+        mockMvc.perform(get("/api/recipes/export").param("category", "Thai"))
+                .andExpect(status().isNotFound());
+    }
+
+    private static byte[] readAll(GZIPInputStream inputStream) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+}
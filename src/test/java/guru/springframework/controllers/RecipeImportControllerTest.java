@@ -0,0 +1,115 @@
+package guru.springframework.controllers;
+
+import guru.springframework.domain.RecipeImport;
+import guru.springframework.exceptions.BadRequestException;
+import guru.springframework.imports.RecipeImportFormat;
+import guru.springframework.services.RecipeImportService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.BufferedReader;
+import java.io.Reader;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class RecipeImportControllerTest {
+
+    @Mock
+    RecipeImportService recipeImportService;
+
+    private MockMvc mockMvc;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mockMvc = MockMvcBuilders.standaloneSetup(new RecipeImportController(recipeImportService))
+                .setControllerAdvice(new ControllerExceptionHandler())
+                .build();
+    }
+
+    @Test
+    public void importRecipes() throws Exception {
+        //given
+        RecipeImport recipeImport = new RecipeImport("abc", RecipeImportFormat.CSV, 10);
+        recipeImport.recordRead();
+        recipeImport.imported(1);
+        recipeImport.complete();
+        StringBuilder body = new StringBuilder();
+        when(recipeImportService.importRecipes(eq(RecipeImportFormat.CSV), any())).thenAnswer(invocation -> {
+            body.append(new BufferedReader(invocation.<Reader>getArgument(1)).lines().collect(Collectors.joining("\n")));
+            return recipeImport;
+        });
+
+        //when
+        mockMvc.perform(post("/api/recipes/imports").contentType("text/csv;charset=ISO-8859-1")
+                .content("description\nCrème brûlée".getBytes("ISO-8859-1")))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Location", "/api/recipes/imports/abc"))
+                .andExpect(jsonPath("$.state").value("COMPLETED"))
+                .andExpect(jsonPath("$.recordsImported").value(1));
+
+        //then
+        assertEquals("description\nCrème brûlée", body.toString());
+    }
+
+    @Test
+    public void importRejectsOtherContentTypes() throws Exception {
+        mockMvc.perform(post("/api/recipes/imports").contentType("application/json").content("{}"))
+                .andExpect(status().isUnsupportedMediaType());
+
+        verifyZeroInteractions(recipeImportService);
+    }
+
+    @Test
+    public void importBadRequestIsAnsweredAsJson() throws Exception {
+        //given
+        when(recipeImportService.importRecipes(eq(RecipeImportFormat.NDJSON), any()))
+                .thenThrow(new BadRequestException("Import is not readable"));
+
+        //when
+        mockMvc.perform(post("/api/recipes/imports").contentType(RecipeImportFormat.NDJSON_VALUE).content("{}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.status").value(400))
+                .andExpect(jsonPath("$.message").value("Import is not readable"));
+    }
+
+    @Test
+    public void getImport() throws Exception {
+        //given
+        RecipeImport recipeImport = new RecipeImport("abc", RecipeImportFormat.NDJSON, 10);
+        recipeImport.reject(3, "Unknown category: Thai");
+        when(recipeImportService.findImport("abc")).thenReturn(Optional.of(recipeImport));
+
+        //then
+        mockMvc.perform(get("/api/recipes/imports/abc"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state").value("RUNNING"))
+                .andExpect(jsonPath("$.errors[0].record").value(3))
+                .andExpect(jsonPath("$.errors[0].message").value("Unknown category: Thai"));
+    }
+
+    @Test
+    public void getImportNotFound() throws Exception {
+        when(recipeImportService.findImport(any())).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/recipes/imports/missing"))
+                .andExpect(status().isNotFound());
+    }
+}
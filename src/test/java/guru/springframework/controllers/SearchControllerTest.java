@@ -0,0 +1,59 @@
+package guru.springframework.controllers;
+
+import guru.springframework.domain.RecipeSummary;
+import guru.springframework.domain.SearchPage;
+import guru.springframework.services.RecipeSearchService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Collections;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
+
+public class SearchControllerTest {
+
+    @Mock
+    RecipeSearchService recipeSearchService;
+
+    private MockMvc mockMvc;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mockMvc = MockMvcBuilders.standaloneSetup(new SearchController(recipeSearchService)).build();
+    }
+
+    @Test
+    public void search() throws Exception {
+        when(recipeSearchService.search(anyString(), anyInt(), anyInt())).thenReturn(new SearchPage("tacos",
+                Collections.singletonList(new RecipeSummary("1", "Tacos")), 0, 1, true, null, null));
+
+        mockMvc.perform(get("/recipe/search").param("q", "tacos"))
+                .andExpect(status().isOk())
+                .andExpect(view().name("recipe/search"))
+                .andExpect(model().attributeExists("page"));
+
+        verify(recipeSearchService, times(1)).search("tacos", 0, IndexController.DEFAULT_PAGE_SIZE);
+    }
+
+    @Test
+    public void searchClampsPaging() throws Exception {
+        when(recipeSearchService.search(anyString(), anyInt(), anyInt()))
+                .thenReturn(new SearchPage("", Collections.emptyList(), 0, 0, true, null, null));
+
+        mockMvc.perform(get("/recipe/search").param("page", "-3").param("size", "1000"))
+                .andExpect(status().isOk());
+
+        verify(recipeSearchService, times(1)).search("", 0, IndexController.MAX_PAGE_SIZE);
+    }
+}
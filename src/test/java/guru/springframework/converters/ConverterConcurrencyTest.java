@@ -0,0 +1,141 @@
+package guru.springframework.converters;
+
+import guru.springframework.commands.IngredientCommand;
+import guru.springframework.commands.RecipeCommand;
+import guru.springframework.domain.Category;
+import guru.springframework.domain.Ingredient;
+import guru.springframework.domain.Notes;
+import guru.springframework.domain.Recipe;
+import guru.springframework.domain.UnitOfMeasure;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Hammers one shared instance of each converter from many threads and checks every result against its source.
+ */
+public class ConverterConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int ITERATIONS = 2_000;
+    private static final int INGREDIENTS = 10;
+
+    private RecipeToRecipeCommand recipeToRecipeCommand;
+    private RecipeCommandToRecipe recipeCommandToRecipe;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        recipeToRecipeCommand = new RecipeToRecipeCommand(new CategoryToCategoryCommand(),
+                new IngredientToIngredientCommand(new UnitOfMeasureToUnitOfMeasureCommand()), new NotesToNotesCommand());
+        recipeCommandToRecipe = new RecipeCommandToRecipe(new CategoryCommandToCategory(),
+                new IngredientCommandToIngredient(new UnitOfMeasureCommandToUnitOfMeasure()), new NotesCommandToNotes());
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void convertConcurrently() throws Exception {
+        //given
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            results.add(executor.submit(() -> {
+                start.await();
+                int checked = 0;
+                for (int i = 0; i < ITERATIONS; i++) {
+                    String id = thread + "-" + i;
+                    Recipe source = recipe(id);
+
+                    RecipeCommand command = recipeToRecipeCommand.convert(source);
+                    assertRecipe(id, command);
+
+                    Recipe roundTrip = recipeCommandToRecipe.convert(command);
+                    assertEquals(id, roundTrip.getId());
+                    assertEquals(INGREDIENTS, roundTrip.getIngredients().size());
+                    assertEquals(2, roundTrip.getCategories().size());
+                    checked++;
+                }
+                return checked;
+            }));
+        }
+
+        //when
+        start.countDown();
+
+        //then
+        int checked = 0;
+        for (Future<Integer> result : results) {
+            checked += result.get(60, TimeUnit.SECONDS);
+        }
+        assertEquals(THREADS * ITERATIONS, checked);
+    }
+
+    @Test
+    public void convertAllKeepsOrderAndNulls() {
+        List<Recipe> sources = Arrays.asList(recipe("1"), null, recipe("2"));
+
+        List<RecipeCommand> commands = recipeToRecipeCommand.convertAll(sources);
+
+        assertEquals(3, commands.size());
+        assertRecipe("1", commands.get(0));
+        assertNull(commands.get(1));
+        assertRecipe("2", commands.get(2));
+        assertEquals(0, recipeToRecipeCommand.convertAll(null).size());
+    }
+
+    private static void assertRecipe(String id, RecipeCommand command) {
+        assertEquals(id, command.getId());
+        assertEquals("Recipe " + id, command.getDescription());
+        assertEquals("notes " + id, command.getNotes().getRecipeNotes());
+        assertEquals(2, command.getCategories().size());
+        assertEquals(INGREDIENTS, command.getIngredients().size());
+        for (IngredientCommand ingredient : command.getIngredients()) {
+            assertEquals(ingredient.getDescription(), id + "/" + ingredient.getAmount().intValue());
+            assertEquals("uom " + id, ingredient.getUom().getDescription());
+        }
+    }
+
+    private static Recipe recipe(String id) {
+        Recipe recipe = new Recipe();
+        recipe.setId(id);
+        recipe.setDescription("Recipe " + id);
+
+        Notes notes = new Notes();
+        notes.setRecipeNotes("notes " + id);
+        recipe.setNotes(notes);
+
+        UnitOfMeasure uom = new UnitOfMeasure();
+        uom.setId(id);
+        uom.setDescription("uom " + id);
+        for (int i = 0; i < INGREDIENTS; i++) {
+            recipe.getIngredients().add(new Ingredient(id + "/" + i, BigDecimal.valueOf(i), uom));
+        }
+
+        for (String name : Arrays.asList("a", "b")) {
+            Category category = new Category();
+            category.setId(id + name);
+            category.setDescription(name);
+            recipe.getCategories().add(category);
+        }
+        return recipe;
+    }
+}
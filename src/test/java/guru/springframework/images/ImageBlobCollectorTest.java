@@ -0,0 +1,111 @@
+package guru.springframework.images;
+
+import guru.springframework.domain.ImageBlob;
+import guru.springframework.domain.ImageMetadata;
+import guru.springframework.repositories.ImageBlobRepository;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.gridfs.GridFsOperations;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ImageBlobCollectorTest {
+
+    @Mock
+    ImageBlobRepository imageBlobRepository;
+
+    @Mock
+    GridFsOperations gridFsOperations;
+
+    @Captor
+    ArgumentCaptor<Query> deleted;
+
+    private ImageBlobCollector imageBlobCollector;
+    private final Date cutoff = new Date();
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        imageBlobCollector = new ImageBlobCollector(imageBlobRepository, gridFsOperations, Duration.ofHours(1), 2, 0);
+    }
+
+    @Test
+    public void collectDeletesImageAndVariants() throws Exception {
+        //given
+        ImageBlob blob = blob("a");
+        blob.getVariants().put("thumbnail", new ImageMetadata(new ObjectId().toHexString(), "image/jpeg", 8, new Date(), "thumb"));
+        when(imageBlobRepository.findUnreferenced(cutoff, 2)).thenReturn(Collections.singletonList(blob));
+        when(imageBlobRepository.removeUnreferenced("a", cutoff)).thenReturn(Optional.of(blob));
+
+        //when
+        long collected = imageBlobCollector.collect(cutoff);
+
+        //then
+        assertEquals(1, collected);
+        verify(gridFsOperations, times(1)).delete(deleted.capture());
+        Collection<?> fileIds = (Collection<?>) ((Document) deleted.getValue().getQueryObject().get("_id")).get("$in");
+        assertEquals(2, fileIds.size());
+        assertTrue(fileIds.contains(new ObjectId(blob.getFileId())));
+    }
+
+    @Test
+    public void collectKeepsImageReferencedAgain() throws Exception {
+        //given an upload referred to the image after the batch was read
+        when(imageBlobRepository.findUnreferenced(cutoff, 2)).thenReturn(Collections.singletonList(blob("a")));
+        when(imageBlobRepository.removeUnreferenced("a", cutoff)).thenReturn(Optional.empty());
+
+        //when
+        long collected = imageBlobCollector.collect(cutoff);
+
+        //then
+        assertEquals(0, collected);
+        verifyZeroInteractions(gridFsOperations);
+    }
+
+    @Test
+    public void collectWorksThroughBatches() throws Exception {
+        //given
+        ImageBlob a = blob("a");
+        ImageBlob b = blob("b");
+        ImageBlob c = blob("c");
+        when(imageBlobRepository.findUnreferenced(cutoff, 2)).thenReturn(Arrays.asList(a, b))
+                .thenReturn(Collections.singletonList(c));
+        when(imageBlobRepository.removeUnreferenced(anyString(), eq(cutoff)))
+                .thenReturn(Optional.of(a))
+                .thenReturn(Optional.of(b))
+                .thenReturn(Optional.of(c));
+
+        //when
+        long collected = imageBlobCollector.collect(cutoff);
+
+        //then a short batch is the last one
+        assertEquals(3, collected);
+        verify(imageBlobRepository, times(2)).findUnreferenced(cutoff, 2);
+        verify(gridFsOperations, times(3)).delete(any(Query.class));
+    }
+
+    private static ImageBlob blob(String contentHash) {
+        ImageBlob blob = new ImageBlob();
+        blob.setContentHash(contentHash);
+        blob.setFileId(new ObjectId().toHexString());
+        return blob;
+    }
+}
@@ -0,0 +1,159 @@
+package guru.springframework.images;
+
+import guru.springframework.domain.ImageMetadata;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class ImageFileCacheTest {
+
+    private static final byte[] IMAGE = "fake image text".getBytes();
+    private static final String HASH = ContentHash.of(IMAGE);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ImageFileCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        cache = new ImageFileCache(folder.getRoot().toString(), DataSize.ofBytes(3 * IMAGE.length));
+    }
+
+    @Test
+    public void firstReadFillsTheCache() throws Exception {
+        //given
+        Resource source = spy(new ByteArrayResource(IMAGE));
+        Resource resource = cache.resource(metadata(HASH), source);
+
+        //when
+        assertTrue(resource.isFile());
+
+        //then
+        assertArrayEquals(IMAGE, Files.readAllBytes(resource.getFile().toPath()));
+        assertArrayEquals(IMAGE, read(cache.resource(metadata(HASH), source)));
+        verify(source, times(1)).getInputStream();
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(IMAGE.length, cache.getSize());
+    }
+
+    @Test
+    public void metadataIsAnsweredWithoutReading() throws Exception {
+        Resource source = mock(Resource.class);
+
+        Resource resource = cache.resource(metadata(HASH), source);
+
+        assertEquals(IMAGE.length, resource.contentLength());
+        verifyZeroInteractions(source);
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void contentNotMatchingItsHashIsServedUncached() throws Exception {
+        String otherHash = ContentHash.of("other".getBytes());
+
+        Resource resource = cache.resource(metadata(otherHash), new ByteArrayResource(IMAGE));
+
+        assertFalse(resource.isFile());
+        assertArrayEquals(IMAGE, read(resource));
+        assertEquals(0, cache.getFileCount());
+        assertEquals(0, Files.list(folder.getRoot().toPath()).count());
+    }
+
+    @Test
+    public void imagesWithoutHashAreNotCached() {
+        Resource source = new ByteArrayResource(IMAGE);
+
+        assertSame(source, cache.resource(metadata(null), source));
+    }
+
+    @Test
+    public void leastRecentlyUsedImageIsEvicted() throws Exception {
+        Path first = cache.fill(HASH, new ByteArrayResource(IMAGE));
+        byte[] second = "fake image tex2".getBytes();
+        byte[] third = "fake image tex3".getBytes();
+        cache.fill(ContentHash.of(second), new ByteArrayResource(second));
+        cache.fill(ContentHash.of(third), new ByteArrayResource(third));
+        cache.find(HASH);
+
+        byte[] fourth = "fake image tex4".getBytes();
+        cache.fill(ContentHash.of(fourth), new ByteArrayResource(fourth));
+
+        assertTrue(Files.exists(first));
+        assertFalse(cache.find(ContentHash.of(second)).isPresent());
+        assertEquals(3, cache.getFileCount());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void leasedFileIsNotEvicted() throws Exception {
+        //given the oldest file is being handed to Tomcat for sendfile
+        Path first = cache.fill(HASH, new ByteArrayResource(IMAGE));
+        byte[] second = "fake image tex2".getBytes();
+        byte[] third = "fake image tex3".getBytes();
+        cache.fill(ContentHash.of(second), new ByteArrayResource(second));
+        cache.fill(ContentHash.of(third), new ByteArrayResource(third));
+        assertTrue(cache.lease(first.toFile()));
+
+        //when
+        byte[] fourth = "fake image tex4".getBytes();
+        cache.fill(ContentHash.of(fourth), new ByteArrayResource(fourth));
+
+        //then the next one goes instead
+        assertTrue(Files.exists(first));
+        assertFalse(cache.find(ContentHash.of(second)).isPresent());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void fileNotCachedCannotBeLeased() throws Exception {
+        Path file = Files.write(folder.newFile().toPath(), IMAGE);
+
+        assertFalse(cache.lease(file.toFile()));
+        assertFalse(cache.lease(folder.getRoot().toPath().resolve(HASH).toFile()));
+    }
+
+    @Test
+    public void restartKeepsCompleteFilesAndRemovesUnfinishedOnes() throws Exception {
+        //given
+        cache.fill(HASH, new ByteArrayResource(IMAGE));
+        Path unfinished = Files.write(folder.getRoot().toPath().resolve(HASH + "123.tmp"), new byte[3]);
+
+        //when
+        ImageFileCache restarted = new ImageFileCache(folder.getRoot().toString(), DataSize.ofBytes(3 * IMAGE.length));
+
+        //then
+        assertTrue(restarted.find(HASH).isPresent());
+        assertEquals(IMAGE.length, restarted.getSize());
+        assertFalse(Files.exists(unfinished));
+    }
+
+    private static ImageMetadata metadata(String hash) {
+        return new ImageMetadata("abc", "image/png", IMAGE.length, new Date(), hash);
+    }
+
+    private static byte[] read(Resource resource) throws IOException {
+        try (InputStream inputStream = resource.getInputStream()) {
+            return StreamUtils.copyToByteArray(inputStream);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package guru.springframework.images;
+
+import org.junit.Test;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ImageUploadStreamTest {
+
+    private static final byte[] PNG = png(100);
+
+    @Test
+    public void passesContentThroughWhileHashing() throws Exception {
+        //when
+        ImageUploadStream upload = ImageUploadStream.open(new ByteArrayInputStream(PNG), PNG.length);
+        byte[] read = StreamUtils.copyToByteArray(upload);
+
+        //then the header read to detect the format is not lost
+        assertArrayEquals(PNG, read);
+        assertEquals(ImageFormat.PNG, upload.getFormat());
+        assertEquals(PNG.length, upload.getLength());
+        assertEquals(ContentHash.of(PNG), upload.getContentHash());
+    }
+
+    @Test(expected = ImageUploadStream.UnsupportedImageException.class)
+    public void rejectsContentThatIsNoImage() throws Exception {
+        ImageUploadStream.open(new ByteArrayInputStream("<html>not an image</html>".getBytes()), 1000);
+    }
+
+    @Test(expected = ImageUploadStream.UnsupportedImageException.class)
+    public void rejectsContentShorterThanAnyHeader() throws Exception {
+        ImageUploadStream.open(new ByteArrayInputStream(new byte[]{(byte) 0xFF}), 1000);
+    }
+
+    @Test
+    public void failsOnceTheLimitIsExceeded() throws Exception {
+        //given
+        InputStream source = new ByteArrayInputStream(png(10_000));
+        ImageUploadStream upload = ImageUploadStream.open(source, 1000);
+
+        //when
+        try {
+            StreamUtils.drain(upload);
+            fail("expected the limit to be enforced");
+        } catch (ImageUploadStream.ImageTooLargeException expected) {
+        }
+
+        //then the rest is never read
+        assertTrue(source.available() > 0);
+    }
+
+    private static byte[] png(int length) {
+        byte[] png = Arrays.copyOf(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'}, length);
+        Arrays.fill(png, 8, length, (byte) 7);
+        return png;
+    }
+}
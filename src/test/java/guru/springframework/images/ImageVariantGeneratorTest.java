@@ -0,0 +1,138 @@
+package guru.springframework.images;
+
+import guru.springframework.domain.ImageMetadata;
+import guru.springframework.repositories.ImageBlobRepository;
+import guru.springframework.repositories.RecipeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.gridfs.GridFsOperations;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ImageVariantGeneratorTest {
+
+    @Mock
+    GridFsOperations gridFsOperations;
+
+    @Mock
+    RecipeRepository recipeRepository;
+
+    @Mock
+    ImageBlobRepository imageBlobRepository;
+
+    private ImageVariantGenerator imageVariantGenerator;
+    private SimpleMeterRegistry meterRegistry;
+
+    private final List<BufferedImage> storedImages = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        imageVariantGenerator = new ImageVariantGenerator(gridFsOperations, recipeRepository, imageBlobRepository, meterRegistry, 1, 1, 0.8f);
+
+        when(gridFsOperations.store(any(InputStream.class), any(), anyString(), any(Document.class)))
+                .thenAnswer(invocation -> {
+                    storedImages.add(ImageIO.read((InputStream) invocation.getArgument(0)));
+                    return new ObjectId();
+                });
+    }
+
+    @After
+    public void tearDown() {
+        imageVariantGenerator.destroy();
+    }
+
+    @Test
+    public void generateStoresDownscaledVariants() throws Exception {
+        //given
+        ImageMetadata original = new ImageMetadata("abc", "image/png", 10, new Date(), "hash");
+        when(imageBlobRepository.addVariant(anyString(), anyString(), anyString(), any())).thenReturn(true);
+
+        //when
+        imageVariantGenerator.generate("1", original, png(2000, 1000));
+
+        //then
+        assertEquals(2, storedImages.size());
+        assertEquals(ImageVariant.THUMB.getMaxDimension(), storedImages.get(0).getWidth());
+        assertEquals(ImageVariant.THUMB.getMaxDimension() / 2, storedImages.get(0).getHeight());
+        assertEquals(ImageVariant.MEDIUM.getMaxDimension(), storedImages.get(1).getWidth());
+        assertEquals(ImageVariant.MEDIUM.getMaxDimension() / 2, storedImages.get(1).getHeight());
+        verify(imageBlobRepository, times(1)).addVariant(eq("hash"), eq("abc"), eq("thumb"), any());
+        verify(recipeRepository, times(1)).addImageVariant(eq("hash"), eq("thumb"), any());
+        verify(recipeRepository, times(1)).addImageVariant(eq("hash"), eq("medium"), any());
+        verify(gridFsOperations, never()).delete(any(Query.class));
+        assertEquals(1, meterRegistry.get("recipe.image.size").tag("variant", "thumb").summary().count());
+    }
+
+    @Test
+    public void generateReusesSmallOriginal() throws Exception {
+        //given
+        ImageMetadata original = new ImageMetadata("abc", "image/png", 10, new Date(), "hash");
+        when(imageBlobRepository.addVariant(anyString(), anyString(), anyString(), any())).thenReturn(true);
+        ArgumentCaptor<ImageMetadata> mediumCaptor = ArgumentCaptor.forClass(ImageMetadata.class);
+
+        //when
+        imageVariantGenerator.generate("1", original, png(400, 300));
+
+        //then
+        assertEquals(1, storedImages.size());
+        verify(recipeRepository, times(1)).addImageVariant(eq("hash"), eq("medium"), mediumCaptor.capture());
+        assertEquals("abc", mediumCaptor.getValue().getFileId());
+    }
+
+    @Test
+    public void generateDiscardsVariantsOfCollectedImage() throws Exception {
+        ImageMetadata original = new ImageMetadata("abc", "image/png", 10, new Date(), "hash");
+        when(imageBlobRepository.addVariant(anyString(), anyString(), anyString(), any())).thenReturn(false);
+
+        imageVariantGenerator.generate("1", original, png(2000, 1000));
+
+        verify(gridFsOperations, times(2)).delete(any(Query.class));
+        verifyZeroInteractions(recipeRepository);
+    }
+
+    @Test
+    public void generateIgnoresUnreadableImages() {
+        ImageMetadata original = new ImageMetadata("abc", "text/plain", 10, new Date(), "hash");
+
+        imageVariantGenerator.generate("1", original, new ByteArrayResource("not an image".getBytes()));
+
+        verifyZeroInteractions(gridFsOperations, recipeRepository, imageBlobRepository);
+    }
+
+    @Test
+    public void scaleKeepsAspectRatio() {
+        BufferedImage scaled = ImageVariantGenerator.scale(new BufferedImage(300, 900, BufferedImage.TYPE_INT_ARGB), 160);
+
+        assertEquals(53, scaled.getWidth());
+        assertEquals(160, scaled.getHeight());
+        assertEquals(BufferedImage.TYPE_INT_RGB, scaled.getType());
+    }
+
+    private static ByteArrayResource png(int width, int height) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", outputStream);
+        return new ByteArrayResource(outputStream.toByteArray());
+    }
+}
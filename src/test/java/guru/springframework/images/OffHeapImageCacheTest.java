@@ -0,0 +1,201 @@
+package guru.springframework.images;
+
+import guru.springframework.domain.ImageMetadata;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class OffHeapImageCacheTest {
+
+    private static final int BLOCK_SIZE = 16;
+    //two blocks per segment, one image each
+    private static final byte[] IMAGE_A = image('a');
+    private static final byte[] IMAGE_B = image('b');
+
+    private OffHeapImageCache cache;
+    private String hashA;
+    private String hashB;
+
+    @Before
+    public void setUp() {
+        cache = new OffHeapImageCache(DataSize.ofBytes(2 * BLOCK_SIZE * OffHeapImageCache.SEGMENTS),
+                DataSize.ofBytes(BLOCK_SIZE), DataSize.ofBytes(2 * BLOCK_SIZE));
+
+        //two images competing for the same segment
+        hashA = "hash-0";
+        int suffix = 1;
+        while (OffHeapImageCache.segmentIndex("hash-" + suffix) != OffHeapImageCache.segmentIndex(hashA)) {
+            suffix++;
+        }
+        hashB = "hash-" + suffix;
+    }
+
+    @Test
+    public void secondReadIsServedFromMemory() throws Exception {
+        //given
+        Resource source = spy(new ByteArrayResource(IMAGE_A));
+
+        //when
+        assertArrayEquals(IMAGE_A, read(cache.resource(metadata(hashA, IMAGE_A), source)));
+        assertArrayEquals(IMAGE_A, read(cache.resource(metadata(hashA, IMAGE_A), source)));
+
+        //then
+        verify(source, times(1)).readableChannel();
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getEntryCount());
+        assertEquals(2 * BLOCK_SIZE, cache.getUsedBytes());
+    }
+
+    @Test
+    public void cachedImageIsNotServedAsFile() throws Exception {
+        //given
+        Resource source = mock(Resource.class);
+        when(source.readableChannel()).thenAnswer(invocation -> new ByteArrayResource(IMAGE_A).readableChannel());
+        when(source.isFile()).thenReturn(true);
+
+        //when
+        Resource resource = cache.resource(metadata(hashA, IMAGE_A), source);
+
+        //then
+        assertFalse(resource.isFile());
+        assertArrayEquals(IMAGE_A, read(resource));
+        assertEquals(IMAGE_A.length, resource.contentLength());
+    }
+
+    @Test
+    public void rarelyRequestedImageDoesNotDisplacePopularOne() throws Exception {
+        //given
+        read(cache.resource(metadata(hashA, IMAGE_A), new ByteArrayResource(IMAGE_A)));
+        read(cache.resource(metadata(hashA, IMAGE_A), new ByteArrayResource(IMAGE_A)));
+
+        //when
+        assertArrayEquals(IMAGE_B, read(cache.resource(metadata(hashB, IMAGE_B), new ByteArrayResource(IMAGE_B))));
+
+        //then
+        assertEquals(1, cache.getRejectionCount());
+        assertTrue(cache.contains(hashA));
+        assertFalse(cache.contains(hashB));
+
+        //once it is requested more often it takes the place
+        read(cache.resource(metadata(hashB, IMAGE_B), new ByteArrayResource(IMAGE_B)));
+        assertArrayEquals(IMAGE_B, read(cache.resource(metadata(hashB, IMAGE_B), new ByteArrayResource(IMAGE_B))));
+        assertTrue(cache.contains(hashB));
+        assertFalse(cache.contains(hashA));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(2 * BLOCK_SIZE, cache.getUsedBytes());
+    }
+
+    @Test
+    public void imageBeingReadIsNotEvicted() throws Exception {
+        //given
+        read(cache.resource(metadata(hashA, IMAGE_A), new ByteArrayResource(IMAGE_A)));
+        InputStream reading = cache.resource(metadata(hashA, IMAGE_A), new ByteArrayResource(IMAGE_A)).getInputStream();
+        for (int i = 0; i < 3; i++) {
+            cache.recordAccess(hashB);
+        }
+
+        //when
+        assertArrayEquals(IMAGE_B, read(cache.resource(metadata(hashB, IMAGE_B), new ByteArrayResource(IMAGE_B))));
+
+        //then the budget holds, the new image has to wait for the blocks
+        assertTrue(cache.contains(hashA));
+        assertFalse(cache.contains(hashB));
+        assertEquals(0, cache.getEvictionCount());
+        assertEquals(2 * BLOCK_SIZE, cache.getUsedBytes());
+        try (InputStream inputStream = reading) {
+            assertArrayEquals(IMAGE_A, StreamUtils.copyToByteArray(inputStream));
+        }
+
+        read(cache.resource(metadata(hashB, IMAGE_B), new ByteArrayResource(IMAGE_B)));
+        assertTrue(cache.contains(hashB));
+        assertFalse(cache.contains(hashA));
+    }
+
+    @Test
+    public void rejectedImageEvictsNothing() throws Exception {
+        //given two small images in the segment, the more recently used one popular
+        String hashC = hashB + "-c";
+        int suffix = 0;
+        while (OffHeapImageCache.segmentIndex(hashC) != OffHeapImageCache.segmentIndex(hashA)) {
+            hashC = hashB + "-c" + suffix++;
+        }
+        byte[] small = Arrays.copyOf(IMAGE_A, BLOCK_SIZE);
+        read(cache.resource(metadata(hashA, small), new ByteArrayResource(small)));
+        for (int i = 0; i < 5; i++) {
+            read(cache.resource(metadata(hashC, small), new ByteArrayResource(small)));
+        }
+        for (int i = 0; i < 2; i++) {
+            cache.recordAccess(hashB);
+        }
+
+        //when an image needing both blocks beats the first but not the second
+        read(cache.resource(metadata(hashB, IMAGE_B), new ByteArrayResource(IMAGE_B)));
+
+        //then
+        assertEquals(1, cache.getRejectionCount());
+        assertEquals(0, cache.getEvictionCount());
+        assertTrue(cache.contains(hashA));
+        assertTrue(cache.contains(hashC));
+        assertFalse(cache.contains(hashB));
+    }
+
+    @Test
+    public void truncatedSourceIsNotCached() throws Exception {
+        //given
+        Resource source = new ByteArrayResource(Arrays.copyOf(IMAGE_A, BLOCK_SIZE));
+
+        //when
+        read(cache.resource(metadata(hashA, IMAGE_A), source));
+
+        //then
+        assertFalse(cache.contains(hashA));
+        assertEquals(0, cache.getUsedBytes());
+    }
+
+    @Test
+    public void disabledCacheReturnsSource() {
+        //given
+        OffHeapImageCache disabled = new OffHeapImageCache(DataSize.ofBytes(0), DataSize.ofBytes(BLOCK_SIZE),
+                DataSize.ofBytes(2 * BLOCK_SIZE));
+        Resource source = new ByteArrayResource(IMAGE_A);
+
+        //when
+        Resource resource = disabled.resource(metadata(hashA, IMAGE_A), source);
+
+        //then
+        assertSame(source, resource);
+        assertFalse(disabled.isEnabled());
+    }
+
+    private static byte[] read(Resource resource) throws IOException {
+        try (InputStream inputStream = Channels.newInputStream(resource.readableChannel())) {
+            return StreamUtils.copyToByteArray(inputStream);
+        }
+    }
+
+    private static byte[] image(char fill) {
+        byte[] image = new byte[2 * BLOCK_SIZE - 3];
+        Arrays.fill(image, (byte) fill);
+        return image;
+    }
+
+    private static ImageMetadata metadata(String hash, byte[] image) {
+        return new ImageMetadata("file", "image/jpeg", image.length, new Date(), hash);
+    }
+}
@@ -0,0 +1,83 @@
+package guru.springframework.imports;
+
+import guru.springframework.commands.IngredientCommand;
+import guru.springframework.commands.RecipeCommand;
+import guru.springframework.domain.Difficulty;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CsvRecipeRecordReaderTest {
+
+    @Test
+    public void readsRecordsByHeader() throws Exception {
+        //given
+        RecipeRecordReader reader = RecipeImportFormat.CSV.reader(new StringReader(
+                "\uFEFFDescription,servings,difficulty,directions,categories,ingredients\r\n"
+                        + "Tacos,4,easy,\"Fry, then \"\"serve\"\"\nwarm\",Mexican|American,1.5;Pound;chicken|2;;limes\r\n"
+                        + "\r\n"
+                        + "Guacamole,,,Mash,,\r\n"), 1000);
+
+        //when
+        RecipeCommand tacos = reader.next().getCommand();
+        RecipeRecord guacamole = reader.next();
+
+        //then
+        assertEquals("Tacos", tacos.getDescription());
+        assertEquals(Integer.valueOf(4), tacos.getServings());
+        assertEquals(Difficulty.EASY, tacos.getDifficulty());
+        assertEquals("Fry, then \"serve\"\nwarm", tacos.getDirections());
+        assertEquals(2, tacos.getCategories().size());
+        assertEquals("American", tacos.getCategories().get(1).getDescription());
+        IngredientCommand chicken = tacos.getIngredients().get(0);
+        assertEquals(new BigDecimal("1.5"), chicken.getAmount());
+        assertEquals("Pound", chicken.getUom().getDescription());
+        assertEquals("chicken", chicken.getDescription());
+        assertNull(tacos.getIngredients().get(1).getUom());
+
+        assertEquals(2, guacamole.getNumber());
+        assertNull(guacamole.getCommand().getServings());
+        assertTrue(guacamole.getCommand().getCategories().isEmpty());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void rejectsRecordsThatDoNotParse() throws Exception {
+        //given
+        RecipeRecordReader reader = RecipeImportFormat.CSV.reader(new StringReader(
+                "description,servings,difficulty,ingredients\n"
+                        + "Tacos,four,,\n"
+                        + "Tacos,4,extreme,\n"
+                        + "Tacos,4,,1 chicken\n"
+                        + "Tacos,4,,\"1;Pound;chicken\n"), 1000);
+
+        //then
+        assertEquals("servings is not a whole number: four", reader.next().getError());
+        assertTrue(reader.next().getError().startsWith("difficulty is not one of"));
+        assertTrue(reader.next().getError().startsWith("ingredient is not"));
+        assertEquals("Quoted field is not terminated", reader.next().getError());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void rejectsRecordsOverTheMaximumLength() throws Exception {
+        //given
+        RecipeRecordReader reader = RecipeImportFormat.CSV.reader(new StringReader(
+                "description\n" + new String(new char[100]).replace('\0', 'x') + "\nTacos\n"), 50);
+
+        //then
+        assertEquals("Record is longer than 50 characters", reader.next().getError());
+        assertEquals("Tacos", reader.next().getCommand().getDescription());
+    }
+
+    @Test(expected = IOException.class)
+    public void unknownColumn() throws Exception {
+        RecipeImportFormat.CSV.reader(new StringReader("description,calories\nTacos,300\n"), 1000).next();
+    }
+}
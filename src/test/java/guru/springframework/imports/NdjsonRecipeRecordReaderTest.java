@@ -0,0 +1,69 @@
+package guru.springframework.imports;
+
+import guru.springframework.domain.Difficulty;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class NdjsonRecipeRecordReaderTest {
+
+    @Test
+    public void readsOneRecipePerLine() throws Exception {
+        //given
+        RecipeRecordReader reader = RecipeImportFormat.NDJSON.reader(new StringReader(
+                "{\"description\":\"Tacos\",\"servings\":4,\"difficulty\":\"EASY\",\"directions\":\"Fry\","
+                        + "\"categories\":[{\"description\":\"Mexican\"}],"
+                        + "\"ingredients\":[{\"description\":\"chicken\",\"amount\":1.5,\"uom\":{\"description\":\"Pound\"}}]}\n"
+                        + "\n"
+                        + "{\"description\":\"Guacamole\",\"directions\":\"Mash\"}"), 1000);
+
+        //when
+        RecipeRecord first = reader.next();
+        RecipeRecord second = reader.next();
+
+        //then
+        assertEquals(1, first.getNumber());
+        assertEquals("Tacos", first.getCommand().getDescription());
+        assertEquals(Integer.valueOf(4), first.getCommand().getServings());
+        assertEquals(Difficulty.EASY, first.getCommand().getDifficulty());
+        assertEquals("Mexican", first.getCommand().getCategories().get(0).getDescription());
+        assertEquals(new BigDecimal("1.5"), first.getCommand().getIngredients().get(0).getAmount());
+        assertEquals("Pound", first.getCommand().getIngredients().get(0).getUom().getDescription());
+        assertEquals(2, second.getNumber());
+        assertEquals("Guacamole", second.getCommand().getDescription());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void rejectsMalformedLinesOnly() throws Exception {
+        //given
+        RecipeRecordReader reader = RecipeImportFormat.NDJSON.reader(new StringReader(
+                "{\"description\":\"Tacos\"\n{\"unknown\":1}\n{\"description\":\"Guacamole\"}\n"), 1000);
+
+        //then
+        assertTrue(reader.next().getError().startsWith("Malformed JSON"));
+        assertTrue(reader.next().isRejected());
+        assertFalse(reader.next().isRejected());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void rejectsRecordsOverTheMaximumLength() throws Exception {
+        //given
+        RecipeRecordReader reader = RecipeImportFormat.NDJSON.reader(new StringReader(
+                "{\"description\":\"" + new String(new char[100]).replace('\0', 'x') + "\"}\n{\"description\":\"Tacos\"}"), 50);
+
+        //when
+        RecipeRecord tooLong = reader.next();
+
+        //then
+        assertEquals("Record is longer than 50 characters", tooLong.getError());
+        assertEquals("Tacos", reader.next().getCommand().getDescription());
+    }
+}
@@ -0,0 +1,74 @@
+package guru.springframework.jfr;
+
+import guru.springframework.converters.CategoryToCategoryCommand;
+import guru.springframework.converters.IngredientToIngredientCommand;
+import guru.springframework.converters.NotesToNotesCommand;
+import guru.springframework.converters.RecipeToRecipeCommand;
+import guru.springframework.converters.UnitOfMeasureToUnitOfMeasureCommand;
+import guru.springframework.domain.ImageMetadata;
+import guru.springframework.domain.Ingredient;
+import guru.springframework.domain.Notes;
+import guru.springframework.domain.Recipe;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class RecipeEventsTest {
+
+    @Test
+    public void conversionEventCarriesRecipeSizes() throws Exception {
+        //given
+        Recipe recipe = new Recipe();
+        recipe.setId("1");
+        recipe.setDescription("Guacamole");
+        recipe.setDirections("Mash");
+        Notes notes = new Notes();
+        notes.setRecipeNotes("Ripe");
+        recipe.setNotes(notes);
+        recipe.addIngredient(new Ingredient("avocado", BigDecimal.ONE, null));
+        recipe.setImageMetadata(new ImageMetadata("abc", "image/jpeg", 2048, new Date(), "hash"));
+        RecipeToRecipeCommand converter = new RecipeToRecipeCommand(new CategoryToCategoryCommand(),
+                new IngredientToIngredientCommand(new UnitOfMeasureToUnitOfMeasureCommand()), new NotesToNotesCommand());
+
+        //when
+        List<RecordedEvent> events;
+        Path file = Files.createTempFile("recipe-events", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(RecipeConversionEvent.class);
+            recording.start();
+            converter.convert(recipe);
+            recording.stop();
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+        } finally {
+            Files.delete(file);
+        }
+
+        //then
+        assertEquals(1, events.size());
+        RecordedEvent event = events.get(0);
+        assertEquals("RecipeToRecipeCommand", event.getString("converter"));
+        assertEquals("1", event.getString("recipeId"));
+        assertEquals(RecipeEvents.size(recipe), event.getLong("recipeSize"));
+        assertEquals(1, event.getInt("ingredientCount"));
+        assertEquals(2048, event.getLong("imageBytes"));
+    }
+
+    @Test
+    public void sizeCountsFreeText() {
+        Recipe recipe = new Recipe();
+        recipe.setDescription("Tacos");
+        recipe.addIngredient(new Ingredient("salt", BigDecimal.ONE, null));
+
+        assertEquals(9, RecipeEvents.size(recipe));
+    }
+}
@@ -0,0 +1,112 @@
+package guru.springframework.metrics;
+
+import guru.springframework.domain.Category;
+import guru.springframework.repositories.CategoryRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+
+public class InvocationMetricsPostProcessorTest {
+
+    @Mock
+    ObjectProvider<MeterRegistry> meterRegistryProvider;
+
+    @Mock
+    CategoryRepository categoryRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private InvocationMetricsPostProcessor postProcessor;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        when(meterRegistryProvider.getIfAvailable()).thenReturn(meterRegistry);
+        postProcessor = new InvocationMetricsPostProcessor(meterRegistryProvider);
+    }
+
+    @Test
+    public void timesServiceCalls() {
+        //given
+        GreetingService service = (GreetingService) postProcessor.postProcessAfterInitialization(new GreetingServiceImpl(), "greetingService");
+
+        //when
+        service.greet("world");
+
+        //then
+        assertEquals(1, meterRegistry.get("service.calls")
+                .tags("service", "GreetingServiceImpl", "method", "greet", "exception", "none")
+                .timer().count());
+    }
+
+    @Test
+    public void tagsServiceCallsWithTheirException() {
+        //given
+        GreetingService service = (GreetingService) postProcessor.postProcessAfterInitialization(new GreetingServiceImpl(), "greetingService");
+
+        //when
+        try {
+            service.greet(null);
+            fail("expected the exception to reach the caller");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        //then
+        assertEquals(1, meterRegistry.get("service.calls").tag("exception", "IllegalArgumentException").timer().count());
+    }
+
+    @Test
+    public void timesRepositoryCallsByInterface() {
+        //given
+        when(categoryRepository.findByDescription("Mexican")).thenReturn(Optional.of(new Category()));
+        ProxyFactory proxyFactory = new ProxyFactory(categoryRepository);
+        proxyFactory.addInterface(CategoryRepository.class);
+        Object proxy = proxyFactory.getProxy();
+
+        //when
+        CategoryRepository repository = (CategoryRepository) postProcessor.postProcessAfterInitialization(proxy, "categoryRepository");
+        repository.findByDescription("Mexican");
+
+        //then
+        assertSame(proxy, repository);
+        assertEquals(1, meterRegistry.get("repository.calls")
+                .tags("repository", "CategoryRepository", "method", "findByDescription")
+                .timer().count());
+    }
+
+    @Test
+    public void leavesOtherBeansAlone() {
+        Object bean = new Object();
+
+        assertSame(bean, postProcessor.postProcessAfterInitialization(bean, "bean"));
+        verifyZeroInteractions(meterRegistryProvider);
+    }
+
+    public interface GreetingService {
+
+        String greet(String name);
+    }
+
+    public static class GreetingServiceImpl implements GreetingService {
+
+        @Override
+        public String greet(String name) {
+            if (name == null) {
+                throw new IllegalArgumentException("name is required");
+            }
+            return "Hello " + name;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package guru.springframework.metrics;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class MongoCommandMetricsTest {
+
+    private static final ConnectionDescription CONNECTION = new ConnectionDescription(new ServerId(new ClusterId(), new ServerAddress()));
+
+    private SimpleMeterRegistry meterRegistry;
+    private MongoCommandMetrics commandMetrics;
+
+    @Before
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        commandMetrics = new MongoCommandMetrics(meterRegistry);
+    }
+
+    @Test
+    public void timesCommandsByCollection() {
+        //given
+        BsonDocument find = new BsonDocument("find", new BsonString("recipe")).append("filter", new BsonDocument());
+
+        //when
+        commandMetrics.commandStarted(new CommandStartedEvent(1, CONNECTION, "test", "find", find));
+        commandMetrics.commandSucceeded(new CommandSucceededEvent(1, CONNECTION, "find", new BsonDocument(), TimeUnit.MILLISECONDS.toNanos(5)));
+
+        //then
+        assertEquals(5, meterRegistry.get("mongodb.driver.commands")
+                .tags("command", "find", "collection", "recipe", "status", "success")
+                .timer().totalTime(TimeUnit.MILLISECONDS), 0.001);
+    }
+
+    @Test
+    public void tagsFailedCommands() {
+        BsonDocument insert = new BsonDocument("insert", new BsonString("recipe"));
+
+        commandMetrics.commandStarted(new CommandStartedEvent(2, CONNECTION, "test", "insert", insert));
+        commandMetrics.commandFailed(new CommandFailedEvent(2, CONNECTION, "insert", 1000, new RuntimeException("failed")));
+
+        assertEquals(1, meterRegistry.get("mongodb.driver.commands").tag("status", "failure").timer().count());
+    }
+
+    @Test
+    public void collection() {
+        assertEquals("recipe", MongoCommandMetrics.collection("getMore",
+                new BsonDocument("getMore", new BsonInt64(42)).append("collection", new BsonString("recipe"))));
+        assertEquals("none", MongoCommandMetrics.collection("ping", new BsonDocument("ping", new BsonInt64(1))));
+    }
+}
@@ -0,0 +1,48 @@
+package guru.springframework.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.ModelAndView;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ViewRenderMetricsInterceptorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ViewRenderMetricsInterceptor interceptor;
+
+    @Before
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        interceptor = new ViewRenderMetricsInterceptor(meterRegistry);
+    }
+
+    @Test
+    public void timesRenderingByViewName() {
+        //given
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        //when
+        interceptor.postHandle(request, response, null, new ModelAndView("recipe/show"));
+        interceptor.afterCompletion(request, response, null, null);
+
+        //then
+        assertEquals(1, meterRegistry.get("view.render").tags("view", "recipe/show", "exception", "none").timer().count());
+    }
+
+    @Test
+    public void skipsRedirects() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        interceptor.postHandle(request, response, null, new ModelAndView("redirect:/recipe/1/show"));
+        interceptor.afterCompletion(request, response, null, null);
+
+        assertNull(meterRegistry.find("view.render").timer());
+    }
+}
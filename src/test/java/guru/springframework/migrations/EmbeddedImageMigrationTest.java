@@ -0,0 +1,97 @@
+package guru.springframework.migrations;
+
+import com.mongodb.client.result.UpdateResult;
+import guru.springframework.domain.Recipe;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.gridfs.GridFsOperations;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class EmbeddedImageMigrationTest {
+
+    @Mock
+    MongoOperations mongoOperations;
+
+    @Mock
+    GridFsOperations gridFsOperations;
+
+    private EmbeddedImageMigration migration;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        migration = new EmbeddedImageMigration(mongoOperations, gridFsOperations, 2, 0);
+
+        when(mongoOperations.getCollectionName(Recipe.class)).thenReturn("recipe");
+        when(gridFsOperations.store(any(InputStream.class), any(), anyString(), any(Document.class)))
+                .thenReturn(new ObjectId());
+    }
+
+    @Test
+    public void migrateMovesEveryBatchToGridFs() {
+        //given
+        Document first = new Document("_id", "1").append("image", Arrays.asList(1, 2, 3));
+        Document second = new Document("_id", "2").append("image", new Binary(new byte[]{4, 5}));
+        Document third = new Document("_id", "3").append("image", null);
+
+        when(mongoOperations.find(any(Query.class), eq(Document.class), eq("recipe")))
+                .thenReturn(Arrays.asList(first, second))
+                .thenReturn(Collections.singletonList(third))
+                .thenReturn(Collections.emptyList());
+        when(mongoOperations.updateFirst(any(Query.class), any(Update.class), eq(Recipe.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        //when
+        long migrated = migration.migrate();
+
+        //then
+        assertEquals(3, migrated);
+        verify(mongoOperations, times(3)).find(any(Query.class), eq(Document.class), eq("recipe"));
+        verify(gridFsOperations, times(2)).store(any(InputStream.class), any(), anyString(), any(Document.class));
+        verify(gridFsOperations, never()).delete(any(Query.class));
+    }
+
+    @Test
+    public void migrateDiscardsFileWhenDocumentChanged() {
+        //given
+        Document changed = new Document("_id", "1").append("image", Arrays.asList(1, 2, 3));
+
+        when(mongoOperations.find(any(Query.class), eq(Document.class), eq("recipe")))
+                .thenReturn(Collections.singletonList(changed))
+                .thenReturn(Collections.emptyList());
+        when(mongoOperations.updateFirst(any(Query.class), any(Update.class), eq(Recipe.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        //when
+        long migrated = migration.migrate();
+
+        //then
+        assertEquals(0, migrated);
+        verify(gridFsOperations, times(1)).delete(any(Query.class));
+    }
+
+    @Test
+    public void toBytes() {
+        assertArrayEquals(new byte[]{0, -128, 127, 65}, EmbeddedImageMigration.toBytes(Arrays.asList(0, -128, 127, 65)));
+        assertArrayEquals(new byte[]{1, 2}, EmbeddedImageMigration.toBytes(new Binary(new byte[]{1, 2})));
+        assertNull(EmbeddedImageMigration.toBytes(null));
+    }
+}
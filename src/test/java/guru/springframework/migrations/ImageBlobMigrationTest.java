@@ -0,0 +1,113 @@
+package guru.springframework.migrations;
+
+import com.mongodb.client.result.UpdateResult;
+import guru.springframework.domain.ImageBlob;
+import guru.springframework.domain.ImageMetadata;
+import guru.springframework.domain.Recipe;
+import guru.springframework.repositories.ImageBlobRepository;
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.gridfs.GridFsOperations;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ImageBlobMigrationTest {
+
+    @Mock
+    MongoOperations mongoOperations;
+
+    @Mock
+    GridFsOperations gridFsOperations;
+
+    @Mock
+    ImageBlobRepository imageBlobRepository;
+
+    private ImageBlobMigration migration;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        migration = new ImageBlobMigration(mongoOperations, gridFsOperations, imageBlobRepository, 2, 0);
+    }
+
+    @Test
+    public void migrateRegistersEveryImageAndDropsDuplicates() {
+        //given the first two recipes show the same image
+        Recipe first = recipe("1", image("hash"));
+        Recipe second = recipe("2", image("hash"));
+        Recipe third = recipe("3", image("other"));
+        ImageBlob shared = blob(first.getImageMetadata());
+
+        when(mongoOperations.find(any(Query.class), eq(Recipe.class)))
+                .thenReturn(Arrays.asList(first, second))
+                .thenReturn(Collections.singletonList(third))
+                .thenReturn(Collections.emptyList());
+        when(imageBlobRepository.acquire(any(), anyString())).thenReturn(shared);
+        when(imageBlobRepository.acquire(third.getImageMetadata(), "3")).thenReturn(blob(third.getImageMetadata()));
+        when(mongoOperations.updateFirst(any(Query.class), any(Update.class), eq(Recipe.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        //when
+        long deduplicated = migration.migrate();
+
+        //then only the second recipe is repointed
+        assertEquals(1, deduplicated);
+        verify(imageBlobRepository, times(3)).acquire(any(), anyString());
+        verify(mongoOperations, times(1)).updateFirst(any(Query.class), any(Update.class), eq(Recipe.class));
+        verify(gridFsOperations, times(1)).delete(any(Query.class));
+    }
+
+    @Test
+    public void migrateKeepsImageReplacedMeanwhile() {
+        //given
+        Recipe recipe = recipe("2", image("hash"));
+        Recipe replaced = recipe("2", image("new"));
+
+        when(mongoOperations.find(any(Query.class), eq(Recipe.class)))
+                .thenReturn(Collections.singletonList(recipe))
+                .thenReturn(Collections.emptyList());
+        when(imageBlobRepository.acquire(any(), anyString())).thenReturn(blob(image("hash")));
+        when(mongoOperations.updateFirst(any(Query.class), any(Update.class), eq(Recipe.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+        when(mongoOperations.findOne(any(Query.class), eq(Recipe.class))).thenReturn(replaced);
+
+        //when
+        long deduplicated = migration.migrate();
+
+        //then the stale reference is dropped again and nothing is deleted
+        assertEquals(0, deduplicated);
+        verify(imageBlobRepository, times(1)).release("hash", "2");
+        verifyZeroInteractions(gridFsOperations);
+    }
+
+    private static Recipe recipe(String id, ImageMetadata imageMetadata) {
+        Recipe recipe = new Recipe();
+        recipe.setId(id);
+        recipe.setImageMetadata(imageMetadata);
+        return recipe;
+    }
+
+    private static ImageMetadata image(String contentHash) {
+        return new ImageMetadata(new ObjectId().toHexString(), "image/jpeg", 3, new Date(), contentHash);
+    }
+
+    private static ImageBlob blob(ImageMetadata imageMetadata) {
+        ImageBlob blob = new ImageBlob();
+        blob.setContentHash(imageMetadata.getContentHash());
+        blob.setFileId(imageMetadata.getFileId());
+        return blob;
+    }
+}
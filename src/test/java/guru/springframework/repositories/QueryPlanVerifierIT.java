@@ -0,0 +1,44 @@
+package guru.springframework.repositories;
+
+import guru.springframework.domain.Category;
+import guru.springframework.domain.Recipe;
+import guru.springframework.domain.UnitOfMeasure;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@DataMongoTest
+public class QueryPlanVerifierIT {
+
+    @Autowired
+    MongoOperations mongoOperations;
+
+    @Autowired
+    ApplicationContext applicationContext;
+
+    @Test
+    public void indexesAreCreated() {
+        assertTrue(hasIndexOn(mongoOperations.indexOps(Recipe.class).getIndexInfo(), "description"));
+        assertTrue(hasIndexOn(mongoOperations.indexOps(Category.class).getIndexInfo(), "description"));
+        assertTrue(hasIndexOn(mongoOperations.indexOps(UnitOfMeasure.class).getIndexInfo(), "description"));
+    }
+
+    @Test
+    public void repositoryQueriesUseIndexes() {
+        new QueryPlanVerifier(mongoOperations, applicationContext, false).verify();
+    }
+
+    private static boolean hasIndexOn(List<IndexInfo> indexes, String field) {
+        return indexes.stream().anyMatch(index -> index.getIndexFields().get(0).getKey().equals(field));
+    }
+}
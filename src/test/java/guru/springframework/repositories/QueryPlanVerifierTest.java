@@ -0,0 +1,90 @@
+package guru.springframework.repositories;
+
+import guru.springframework.domain.Category;
+import guru.springframework.domain.Recipe;
+import org.bson.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class QueryPlanVerifierTest {
+
+    @Mock
+    MongoOperations mongoOperations;
+
+    private QueryPlanVerifier queryPlanVerifier;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext());
+        converter.afterPropertiesSet();
+        when(mongoOperations.getConverter()).thenReturn(converter);
+        when(mongoOperations.getCollectionName(Recipe.class)).thenReturn("recipe");
+
+        queryPlanVerifier = new QueryPlanVerifier(mongoOperations, new DefaultListableBeanFactory(), true);
+    }
+
+    @Test
+    public void plannedQueryOfDerivedMethod() throws Exception {
+        Query query = QueryPlanVerifier.plannedQuery(CategoryRepository.class.getMethod("findByDescription", String.class),
+                Category.class);
+
+        assertEquals(new Document("description", QueryPlanVerifier.SAMPLE), query.getQueryObject());
+    }
+
+    @Test
+    public void plannedQueryOfAnnotatedMethod() throws Exception {
+        Query query = QueryPlanVerifier.plannedQuery(RecipeRepository.class.getMethod("findVersionById", String.class),
+                Recipe.class);
+
+        assertEquals(new Document("_id", QueryPlanVerifier.SAMPLE), query.getQueryObject());
+    }
+
+    @Test
+    public void scansCollectionFindsNestedStage() {
+        Document plan = new Document("stage", "SORT").append("inputStage", new Document("stage", "OR")
+                .append("inputStages", Arrays.asList(new Document("stage", "IXSCAN"), new Document("stage", "COLLSCAN"))));
+
+        assertTrue(QueryPlanVerifier.scansCollection(plan));
+        assertFalse(QueryPlanVerifier.scansCollection(new Document("stage", "FETCH")
+                .append("inputStage", new Document("stage", "IXSCAN"))));
+    }
+
+    @Test
+    public void verifyPassesIndexedPlans() {
+        when(mongoOperations.executeCommand(any(Document.class))).thenReturn(explained("IXSCAN"));
+
+        queryPlanVerifier.verify();
+
+        //one listing query per sort, the filtered exports, image variants and unreferenced images
+        verify(mongoOperations, times(6)).executeCommand(any(Document.class));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void verifyFailsCollectionScan() {
+        when(mongoOperations.executeCommand(any(Document.class))).thenReturn(explained("COLLSCAN"));
+
+        queryPlanVerifier.verify();
+    }
+
+    private static Document explained(String stage) {
+        return new Document("queryPlanner", new Document("winningPlan", new Document("stage", "LIMIT")
+                .append("inputStage", new Document("stage", stage))));
+    }
+}
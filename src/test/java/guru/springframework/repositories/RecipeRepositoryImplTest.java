@@ -0,0 +1,353 @@
+package guru.springframework.repositories;
+
+import com.mongodb.DBRef;
+import com.mongodb.client.result.UpdateResult;
+import guru.springframework.cache.ReferenceDataCache;
+import guru.springframework.domain.Category;
+import guru.springframework.domain.ImageMetadata;
+import guru.springframework.domain.Ingredient;
+import guru.springframework.domain.Recipe;
+import guru.springframework.domain.RecipeSummary;
+import guru.springframework.domain.UnitOfMeasure;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoExceptionTranslator;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.convert.DefaultDbRefResolver;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Checks the Mongo round trips and updates issued for recipes and their references. The mapping converter is real;
+ * its reference resolver fails the test if it ever tries to load a single reference on its own.
+ */
+public class RecipeRepositoryImplTest {
+
+    private static final int RECIPES = 10;
+    private static final int INGREDIENTS = 20;
+
+    @Mock
+    MongoOperations mongoOperations;
+
+    @Mock
+    MongoDbFactory mongoDbFactory;
+
+    @Mock
+    CloseableIterator<Document> cursor;
+
+    private final List<UnitOfMeasure> uoms = new ArrayList<>();
+    private final List<Category> categories = new ArrayList<>();
+    private int uomLoads;
+    private int categoryLoads;
+
+    private RecipeRepositoryImpl recipeRepository;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(mongoDbFactory.getExceptionTranslator()).thenReturn(new MongoExceptionTranslator());
+        when(mongoDbFactory.getDb()).thenThrow(new AssertionError("unexpected round trip for a single reference"));
+
+        MappingMongoConverter converter = new MappingMongoConverter(new DefaultDbRefResolver(mongoDbFactory), new MongoMappingContext());
+        converter.afterPropertiesSet();
+        when(mongoOperations.getConverter()).thenReturn(converter);
+        when(mongoOperations.getCollectionName(Recipe.class)).thenReturn("recipe");
+
+        for (int i = 0; i < 4; i++) {
+            UnitOfMeasure uom = new UnitOfMeasure();
+            uom.setId(new ObjectId().toHexString());
+            uom.setDescription("uom " + i);
+            uoms.add(uom);
+        }
+        for (int i = 0; i < 3; i++) {
+            Category category = new Category();
+            category.setId(new ObjectId().toHexString());
+            category.setDescription("category " + i);
+            categories.add(category);
+        }
+
+        recipeRepository = new RecipeRepositoryImpl(mongoOperations,
+                new ReferenceDataCache<>("unitOfMeasure", () -> {
+                    uomLoads++;
+                    return uoms;
+                }, UnitOfMeasure::getId, UnitOfMeasure::getDescription, 300),
+                new ReferenceDataCache<>("category", () -> {
+                    categoryLoads++;
+                    return categories;
+                }, Category::getId, Category::getDescription, 300));
+    }
+
+    @Test
+    public void findAllWithReferencesUsesOneQueryForThePage() {
+        //given
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < RECIPES; i++) {
+            documents.add(recipeDocument(i));
+        }
+        when(mongoOperations.find(any(Query.class), eq(Document.class), eq("recipe"))).thenReturn(documents);
+
+        //when
+        List<Recipe> recipes = recipeRepository.findAllWithReferences();
+
+        //then
+        assertEquals(RECIPES, recipes.size());
+        for (Recipe recipe : recipes) {
+            assertEquals(categories.size(), recipe.getCategories().size());
+            assertEquals(INGREDIENTS, recipe.getIngredients().size());
+            for (Ingredient ingredient : recipe.getIngredients()) {
+                assertEquals(UnitOfMeasure.class, ingredient.getUom().getClass());
+            }
+        }
+        verify(mongoOperations, times(1)).find(any(Query.class), eq(Document.class), eq("recipe"));
+        verify(mongoOperations, never()).find(any(Query.class), eq(UnitOfMeasure.class));
+        verify(mongoOperations, never()).find(any(Query.class), eq(Category.class));
+        assertEquals(1, uomLoads);
+        assertEquals(1, categoryLoads);
+    }
+
+    @Test
+    public void findByIdWithReferencesQueriesReferencesMissingFromCache() {
+        //given
+        Document document = recipeDocument(0);
+        UnitOfMeasure added = new UnitOfMeasure();
+        added.setId(new ObjectId().toHexString());
+        added.setDescription("new uom");
+        List<Object> ingredients = new ArrayList<>((Collection<?>) document.get("ingredients"));
+        ingredients.add(new Document("_id", "extra")
+                .append("uom", new DBRef("unitOfMeasure", new ObjectId(added.getId()))));
+        document.put("ingredients", ingredients);
+
+        when(mongoOperations.find(any(Query.class), eq(Document.class), eq("recipe"))).thenReturn(Collections.singletonList(document));
+        when(mongoOperations.find(any(Query.class), eq(UnitOfMeasure.class))).thenReturn(Collections.singletonList(added));
+
+        //when
+        Recipe recipe = recipeRepository.findByIdWithReferences("1").get();
+
+        //then
+        assertEquals(INGREDIENTS + 1, recipe.getIngredients().size());
+        assertEquals(1, recipe.getIngredients().stream().filter(ingredient -> ingredient.getUom() == added).count());
+        verify(mongoOperations, times(1)).find(any(Query.class), eq(UnitOfMeasure.class));
+        verify(mongoOperations, never()).find(any(Query.class), eq(Category.class));
+    }
+
+    @Test
+    public void findByIdWithReferencesNotFound() {
+        when(mongoOperations.find(any(Query.class), eq(Document.class), eq("recipe"))).thenReturn(Collections.emptyList());
+
+        assertFalse(recipeRepository.findByIdWithReferences("1").isPresent());
+        assertEquals(0, uomLoads + categoryLoads);
+    }
+
+    @Test
+    public void updateIngredientSetsMatchedElementOnly() {
+        //given
+        Ingredient ingredient = new Ingredient("salt", BigDecimal.ONE, uoms.get(0));
+        Recipe updated = mongoOperations.getConverter().read(Recipe.class, new Document("_id", new ObjectId())
+                .append("ingredients", Collections.singletonList(new Document("_id", ingredient.getId())
+                        .append("description", "salt")
+                        .append("uom", new DBRef("unitOfMeasure", new ObjectId(uoms.get(0).getId()))))));
+        when(mongoOperations.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Recipe.class)))
+                .thenReturn(updated);
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updateCaptor = ArgumentCaptor.forClass(Update.class);
+
+        //when
+        Ingredient saved = recipeRepository.updateIngredient("1", 2L, ingredient).get();
+
+        //then
+        assertEquals(ingredient.getId(), saved.getId());
+        assertSame(uoms.get(0), saved.getUom());
+        verify(mongoOperations, times(1)).findAndModify(queryCaptor.capture(), updateCaptor.capture(),
+                any(FindAndModifyOptions.class), eq(Recipe.class));
+        assertEquals(ingredient.getId(), queryCaptor.getValue().getQueryObject().get("ingredients.id"));
+        assertEquals(2L, queryCaptor.getValue().getQueryObject().get("version"));
+        assertEquals(1, ((Document) updateCaptor.getValue().getUpdateObject().get("$inc")).get("version"));
+        assertTrue(((Document) updateCaptor.getValue().getUpdateObject().get("$currentDate")).containsKey("lastModified"));
+        assertTrue(queryCaptor.getValue().getFieldsObject().containsKey("ingredients"));
+        assertSame(ingredient, ((Document) updateCaptor.getValue().getUpdateObject().get("$set")).get("ingredients.$"));
+        verify(mongoOperations, never()).save(any());
+    }
+
+    @Test
+    public void removeIngredientPullsElement() {
+        when(mongoOperations.updateFirst(any(Query.class), any(Update.class), eq(Recipe.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        ArgumentCaptor<Update> updateCaptor = ArgumentCaptor.forClass(Update.class);
+
+        assertTrue(recipeRepository.removeIngredient("1", 2L, "3"));
+
+        verify(mongoOperations, times(1)).updateFirst(any(Query.class), updateCaptor.capture(), eq(Recipe.class));
+        assertTrue(updateCaptor.getValue().getUpdateObject().containsKey("$pull"));
+    }
+
+    @Test(expected = OptimisticLockingFailureException.class)
+    public void removeIngredientFromChangedRecipe() {
+        when(mongoOperations.updateFirst(any(Query.class), any(Update.class), eq(Recipe.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+        when(mongoOperations.exists(any(Query.class), eq(Recipe.class))).thenReturn(true);
+
+        recipeRepository.removeIngredient("1", 2L, "3");
+    }
+
+    @Test
+    public void removeMissingIngredient() {
+        when(mongoOperations.updateFirst(any(Query.class), any(Update.class), eq(Recipe.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        assertFalse(recipeRepository.removeIngredient("1", 2L, "3"));
+    }
+
+    @Test
+    public void findAndDeleteByIdReturnsOnlyImageReference() {
+        Recipe deleted = new Recipe();
+        when(mongoOperations.findAndRemove(any(Query.class), eq(Recipe.class))).thenReturn(deleted);
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+
+        assertSame(deleted, recipeRepository.findAndDeleteById("1").get());
+
+        verify(mongoOperations, times(1)).findAndRemove(queryCaptor.capture(), eq(Recipe.class));
+        assertEquals(new Document("imageMetadata", 1), queryCaptor.getValue().getFieldsObject());
+    }
+
+    @Test
+    public void addImageVariantMovesRecipesToNewVersion() {
+        when(mongoOperations.updateMulti(any(Query.class), any(Update.class), eq(Recipe.class)))
+                .thenReturn(UpdateResult.acknowledged(2, 2L, null));
+        ArgumentCaptor<Update> updateCaptor = ArgumentCaptor.forClass(Update.class);
+
+        assertEquals(2, recipeRepository.addImageVariant("hash", "thumb", new ImageMetadata("abc", "image/jpeg", 3, new Date(), "thumbhash")));
+
+        verify(mongoOperations, times(1)).updateMulti(any(Query.class), updateCaptor.capture(), eq(Recipe.class));
+        Document update = updateCaptor.getValue().getUpdateObject();
+        assertTrue(((Document) update.get("$set")).containsKey("imageMetadata.variants.thumb"));
+        assertEquals(1, ((Document) update.get("$inc")).get("version"));
+    }
+
+    @Test
+    public void findSummariesByIdsKeepsRequestedOrder() {
+        //given the database returns them in its own order, one of them deleted meanwhile
+        when(mongoOperations.find(any(Query.class), eq(RecipeSummary.class), eq("recipe")))
+                .thenReturn(Arrays.asList(new RecipeSummary("1", "a"), new RecipeSummary("3", "c")));
+
+        //when
+        List<RecipeSummary> summaries = recipeRepository.findSummariesByIds(Arrays.asList("3", "2", "1"));
+
+        //then
+        assertEquals(2, summaries.size());
+        assertEquals("3", summaries.get(0).getId());
+        assertEquals("1", summaries.get(1).getId());
+    }
+
+    @Test
+    public void streamWithReferencesResolvesReferencesPerBatch() {
+        //given
+        Iterator<Document> documents = Arrays.asList(recipeDocument(0), recipeDocument(1), recipeDocument(2)).iterator();
+        when(cursor.hasNext()).thenAnswer(invocation -> documents.hasNext());
+        when(cursor.next()).thenAnswer(invocation -> documents.next());
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        when(mongoOperations.stream(queryCaptor.capture(), eq(Document.class), eq("recipe"))).thenReturn(cursor);
+
+        //when
+        List<Recipe> recipes;
+        try (Stream<Recipe> stream = recipeRepository.streamWithReferences(null, null, 2)) {
+            recipes = stream.collect(Collectors.toList());
+        }
+
+        //then
+        assertEquals(3, recipes.size());
+        assertEquals(categories.size(), recipes.get(2).getCategories().size());
+        assertEquals(UnitOfMeasure.class, recipes.get(2).getIngredients().iterator().next().getUom().getClass());
+        assertEquals(Integer.valueOf(2), queryCaptor.getValue().getMeta().getCursorBatchSize());
+        assertTrue(queryCaptor.getValue().getQueryObject().isEmpty());
+        assertEquals(1, uomLoads);
+        verify(cursor, times(1)).close();
+    }
+
+    @Test
+    public void exportQueryFilters() {
+        //given
+        String categoryId = categories.get(0).getId();
+        Date modifiedSince = new Date(1_500_000_000_000L);
+
+        //when
+        Document query = RecipeRepositoryImpl.exportQuery(categoryId, modifiedSince).getQueryObject();
+
+        //then
+        assertEquals(new ObjectId(categoryId), query.get("categories.$id"));
+        List<?> or = (List<?>) query.get("$or");
+        assertEquals(modifiedSince, ((Document) ((Document) or.get(0)).get("lastModified")).get("$gte"));
+        ObjectId createdSince = (ObjectId) ((Document) ((Document) or.get(1)).get("id")).get("$gte");
+        assertEquals(modifiedSince, createdSince.getDate());
+    }
+
+    @Test
+    public void exportQueryClampsDatesOutsideObjectIdRange() {
+        //given
+        Date before1970 = new Date(-1_000_000_000_000L);
+        Date after2106 = new Date(5_000_000_000_000L);
+
+        //when
+        Document earlyQuery = RecipeRepositoryImpl.exportQuery(null, before1970).getQueryObject();
+        Document lateQuery = RecipeRepositoryImpl.exportQuery(null, after2106).getQueryObject();
+
+        //then
+        assertEquals(new ObjectId("000000000000000000000000"), createdSince(earlyQuery));
+        assertEquals(new ObjectId("ffffffff0000000000000000"), createdSince(lateQuery));
+        assertEquals(after2106, ((Document) ((Document) ((List<?>) lateQuery.get("$or")).get(0)).get("lastModified")).get("$gte"));
+    }
+
+    private static ObjectId createdSince(Document query) {
+        List<?> or = (List<?>) query.get("$or");
+        return (ObjectId) ((Document) ((Document) or.get(1)).get("id")).get("$gte");
+    }
+
+    private Document recipeDocument(int number) {
+        List<Document> ingredients = new ArrayList<>();
+        for (int i = 0; i < INGREDIENTS; i++) {
+            UnitOfMeasure uom = uoms.get(i % uoms.size());
+            ingredients.add(new Document("_id", number + "-" + i)
+                    .append("description", "ingredient " + i)
+                    .append("uom", new DBRef("unitOfMeasure", new ObjectId(uom.getId()))));
+        }
+
+        List<DBRef> categoryRefs = new ArrayList<>();
+        for (Category category : categories) {
+            categoryRefs.add(new DBRef("category", new ObjectId(category.getId())));
+        }
+
+        return new Document("_id", new ObjectId())
+                .append("description", "recipe " + number)
+                .append("ingredients", ingredients)
+                .append("categories", categoryRefs);
+    }
+}
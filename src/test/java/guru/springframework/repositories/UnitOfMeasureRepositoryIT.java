@@ -1,17 +1,22 @@
 package guru.springframework.repositories;
 
 import guru.springframework.bootstrap.RecipeBootstrap;
+import guru.springframework.cache.ReferenceDataCache;
+import guru.springframework.domain.Category;
 import guru.springframework.domain.UnitOfMeasure;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.mongodb.core.MongoOperations;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.util.Optional;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 @RunWith(SpringRunner.class)
 @DataMongoTest
@@ -26,15 +31,21 @@ public class UnitOfMeasureRepositoryIT {
     @Autowired
     RecipeRepository recipeRepository;
 
+    @Autowired
+    MongoOperations mongoOperations;
+
     @Before
     public void setUp() throws Exception {
         recipeRepository.deleteAll();
         unitOfMeasureRepository.deleteAll();
         categoryRepository.deleteAll();
+        mongoOperations.dropCollection("seedVersion");
 
-        RecipeBootstrap recipeBootstrap = new RecipeBootstrap(categoryRepository, recipeRepository, unitOfMeasureRepository);
+        RecipeBootstrap recipeBootstrap = new RecipeBootstrap(mongoOperations, new ClassPathResource("seed/recipes.json"), 500,
+                new ReferenceDataCache<>("unitOfMeasure", unitOfMeasureRepository::findAll, UnitOfMeasure::getId, UnitOfMeasure::getDescription, 300),
+                new ReferenceDataCache<>("category", categoryRepository::findAll, Category::getId, Category::getDescription, 300));
 
-        recipeBootstrap.onApplicationEvent(null);
+        recipeBootstrap.seed();
     }
 
     @Test
@@ -49,4 +60,14 @@ public class UnitOfMeasureRepositoryIT {
         Optional<UnitOfMeasure> unitOfMeasure = unitOfMeasureRepository.findByDescription("Cup");
         assertEquals("Cup", unitOfMeasure.get().getDescription());
     }
+
+    @Test
+    public void seedRunsOnce() throws Exception {
+        RecipeBootstrap recipeBootstrap = new RecipeBootstrap(mongoOperations, new ClassPathResource("seed/recipes.json"), 500,
+                null, null);
+
+        assertFalse(recipeBootstrap.seed());
+        assertEquals(2, recipeRepository.count());
+        assertEquals(8, unitOfMeasureRepository.count());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,202 @@
+package guru.springframework.search;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RecipeSearchIndexTest {
+
+    private RecipeSearchIndex index;
+
+    @Before
+    public void setUp() {
+        index = new RecipeSearchIndex();
+        index.update("1", 0L, SearchTokenizer.tokenize("Perfect Guacamole", "Cut the avocado, mash the avocado"));
+        index.update("2", 0L, SearchTokenizer.tokenize("Spicy Grilled Chicken Tacos", "Serve with guacamole"));
+        index.update("3", 0L, SearchTokenizer.tokenize("Pancakes", "Flour, milk and eggs"));
+    }
+
+    @Test
+    public void tokenizeLowerCasesWords() {
+        assertEquals(Arrays.asList("spicy", "chicken", "2", "tacos"), SearchTokenizer.tokenize("Spicy  chicken-2 Tacos!"));
+    }
+
+    @Test
+    public void searchRanksByRelevance() {
+        //when
+        SearchResult result = index.search(terms("guacamole avocado"), 0, 10);
+
+        //then
+        assertEquals(2, result.getTotalHits());
+        assertTrue(result.isTotalHitsExact());
+        assertEquals("1", result.getHits().get(0).getRecipeId());
+        assertEquals("2", result.getHits().get(1).getRecipeId());
+        assertTrue(result.getHits().get(0).getScore() > result.getHits().get(1).getScore());
+    }
+
+    @Test
+    public void searchPages() {
+        SearchResult result = index.search(terms("guacamole avocado"), 1, 10);
+
+        assertEquals(2, result.getTotalHits());
+        assertEquals(1, result.getHits().size());
+        assertEquals("2", result.getHits().get(0).getRecipeId());
+    }
+
+    @Test
+    public void searchUnknownTerm() {
+        SearchResult result = index.search(terms("lasagne"), 0, 10);
+
+        assertEquals(0, result.getTotalHits());
+        assertTrue(result.getHits().isEmpty());
+    }
+
+    @Test
+    public void updateReplacesText() {
+        //when
+        assertTrue(index.update("3", 1L, SearchTokenizer.tokenize("Guacamole pancakes")));
+
+        //then
+        assertEquals(3, index.size());
+        assertEquals(3, index.search(terms("guacamole"), 0, 10).getTotalHits());
+        assertEquals(0, index.search(terms("flour"), 0, 10).getTotalHits());
+    }
+
+    @Test
+    public void staleUpdateIsIgnored() {
+        index.update("3", 2L, SearchTokenizer.tokenize("Pancakes"));
+
+        assertFalse(index.update("3", 1L, SearchTokenizer.tokenize("Waffles")));
+        assertEquals(0, index.search(terms("waffles"), 0, 10).getTotalHits());
+    }
+
+    @Test
+    public void removeDropsRecipe() {
+        index.remove("1");
+
+        assertEquals(2, index.size());
+        assertEquals(0, index.search(terms("avocado"), 0, 10).getTotalHits());
+    }
+
+    @Test
+    public void updateAfterRemoveIsIgnored() {
+        //given an indexing call that read the recipe before it was deleted
+        index.remove("1");
+
+        //when
+        boolean updated = index.update("1", 5L, SearchTokenizer.tokenize("Perfect Guacamole"));
+
+        //then
+        assertFalse(updated);
+        assertEquals(2, index.size());
+        assertEquals(0, index.search(terms("avocado guacamole"), 0, 10).getHits().stream()
+                .filter(hit -> hit.getRecipeId().equals("1")).count());
+    }
+
+    @Test
+    public void removeBeforeFirstUpdateKeepsRecipeOut() {
+        index.remove("4");
+
+        assertFalse(index.update("4", 0L, SearchTokenizer.tokenize("Waffles")));
+        assertEquals(0, index.search(terms("waffles"), 0, 10).getTotalHits());
+    }
+
+    @Test
+    public void concurrentRemoveAndStaleUpdatesLeaveNothingBehind() throws Exception {
+        //given
+        int recipes = 2000;
+        for (int i = 0; i < recipes; i++) {
+            index.update("r" + i, 1L, SearchTokenizer.tokenize("Waffles " + i));
+        }
+        CountDownLatch start = new CountDownLatch(1);
+        Thread remover = new Thread(() -> {
+            await(start);
+            for (int i = 0; i < recipes; i++) {
+                index.remove("r" + i);
+            }
+        });
+        Thread indexer = new Thread(() -> {
+            await(start);
+            //saves or imports that read the recipes before they were deleted
+            for (int i = 0; i < recipes; i++) {
+                index.update("r" + i, 1L, SearchTokenizer.tokenize("Waffles " + i));
+            }
+        });
+        remover.start();
+        indexer.start();
+
+        //when
+        start.countDown();
+        remover.join();
+        indexer.join();
+
+        //then
+        assertEquals(3, index.size());
+        assertEquals(0, index.search(terms("waffles"), 0, 10).getTotalHits());
+    }
+
+    @Test
+    public void compactionKeepsResults() {
+        //given enough churn to trigger compaction several times
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 1000; i++) {
+                index.update("bulk-" + i, (long) round, SearchTokenizer.tokenize("bulk recipe " + (i % 10)));
+            }
+        }
+
+        //when
+        SearchResult result = index.search(terms("avocado 7"), 0, 200);
+
+        //then
+        assertEquals(1003, index.size());
+        assertEquals(101, result.getTotalHits());
+        assertEquals("1", result.getHits().get(0).getRecipeId());
+    }
+
+    @Test
+    public void commonTermsOnlyRescoreMatchedRecipes() {
+        //given salt in every recipe, tomatoes in some
+        for (int i = 0; i < 5000; i++) {
+            String text = i % 3 == 0 ? "tomato soup with salt" : "salted water with salt";
+            index.update("bulk-" + i, 0L, SearchTokenizer.tokenize(text));
+        }
+        index.update("best", 0L, SearchTokenizer.tokenize("tomato tomato salt"));
+
+        //when
+        SearchResult result = index.search(terms("salt tomato"), 0, 10);
+
+        //then salt cannot lift a recipe without tomatoes into the first page, those recipes are not counted
+        assertEquals("best", result.getHits().get(0).getRecipeId());
+        assertEquals(10, result.getHits().size());
+        assertFalse(result.isTotalHitsExact());
+        assertTrue(result.getTotalHits() >= RecipeSearchIndex.EXACT_TOTAL_HITS);
+        assertTrue(result.getTotalHits() < 5001);
+    }
+
+    @Test
+    public void encodeNormRoundsLongDocumentsDown() {
+        assertEquals(100, RecipeSearchIndex.encodeNorm(100) & 0xFF);
+        assertEquals(127, RecipeSearchIndex.encodeNorm(127) & 0xFF);
+        assertEquals(128, RecipeSearchIndex.encodeNorm(134) & 0xFF);
+        assertEquals(254, RecipeSearchIndex.encodeNorm(Integer.MAX_VALUE) & 0xFF);
+    }
+
+    private static List<String> terms(String query) {
+        return SearchTokenizer.tokenize(query);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,31 +1,84 @@
 package guru.springframework.services;
 
+import com.mongodb.MongoGridFSException;
+import guru.springframework.cache.RenderedPageCache;
+import guru.springframework.domain.ImageBlob;
+import guru.springframework.domain.ImageMetadata;
 import guru.springframework.domain.Recipe;
+import guru.springframework.exceptions.BadRequestException;
+import guru.springframework.exceptions.NotFoundException;
+import guru.springframework.exceptions.PayloadTooLargeException;
+import guru.springframework.images.ContentHash;
+import guru.springframework.images.ImageFileCache;
+import guru.springframework.images.ImageVariantGenerator;
+import guru.springframework.images.OffHeapImageCache;
+import guru.springframework.repositories.ImageBlobRepository;
 import guru.springframework.repositories.RecipeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.gridfs.GridFsOperations;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.Optional;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 public class ImageServiceImplTest {
 
+    private static final byte[] JPEG = jpeg(32);
+    private static final int MAX_UPLOAD_SIZE = 64;
+
     @Mock
     RecipeRepository recipeRepository;
 
+    @Mock
+    ImageBlobRepository imageBlobRepository;
+
+    @Mock
+    GridFsOperations gridFsOperations;
+
+    @Mock
+    ImageVariantGenerator imageVariantGenerator;
+
+    @Mock
+    RenderedPageCache renderedPageCache;
+
+    @Mock
+    ImageFileCache imageFileCache;
+
+    @Mock
+    OffHeapImageCache offHeapImageCache;
+
     private ImageService imageService;
+    private SimpleMeterRegistry meterRegistry;
 
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
-        imageService = new ImageServiceImpl(recipeRepository);
+        meterRegistry = new SimpleMeterRegistry();
+        //images are new unless a test says otherwise
+        when(imageBlobRepository.acquire(any(), anyString())).thenAnswer(invocation -> blob(invocation.getArgument(0)));
+        imageService = new ImageServiceImpl(recipeRepository, imageBlobRepository, gridFsOperations, imageVariantGenerator, meterRegistry, renderedPageCache,
+                imageFileCache, offHeapImageCache, DataSize.ofBytes(MAX_UPLOAD_SIZE));
     }
 
     @Test
@@ -33,31 +86,229 @@ public class ImageServiceImplTest {
 
         //given
         String id = "1";
-        Recipe recipe = new Recipe();
-        recipe.setId(id);
-
-        Optional<Recipe> optionalRecipe = Optional.of(recipe);
+        ObjectId fileId = new ObjectId();
 
+        //the declared content type is not trusted
         MultipartFile file = new MockMultipartFile("imagefile",
-                "testing.txt", "text/plain", "Spring Framework Guru".getBytes());
+                "testing.txt", "text/plain", JPEG);
 
-        when(recipeRepository.findById(anyString())).thenReturn(optionalRecipe);
+        when(recipeRepository.existsById(anyString())).thenReturn(true);
+        when(gridFsOperations.store(any(InputStream.class), anyString(), eq("image/jpeg"), any(Document.class)))
+                .thenAnswer(invocation -> {
+                    //GridFS consumes the whole stream
+                    StreamUtils.drain(invocation.getArgument(0));
+                    return fileId;
+                });
+        when(recipeRepository.replaceImageMetadata(anyString(), any())).thenReturn(Optional.of(new Recipe()));
 
-        ArgumentCaptor<Recipe> argumentCaptor = ArgumentCaptor.forClass(Recipe.class);
+        ArgumentCaptor<ImageMetadata> argumentCaptor = ArgumentCaptor.forClass(ImageMetadata.class);
 
         //when
         imageService.saveImageFile(id, file);
 
         //then
-        verify(recipeRepository, times(1)).save(argumentCaptor.capture());
-        Recipe savedRecipe = argumentCaptor.getValue();
-        assertEquals(file.getBytes().length, savedRecipe.getImage().length);
+        verify(recipeRepository, times(1)).replaceImageMetadata(eq(id), argumentCaptor.capture());
+        ImageMetadata imageMetadata = argumentCaptor.getValue();
+        assertEquals(fileId.toHexString(), imageMetadata.getFileId());
+        assertEquals(file.getBytes().length, imageMetadata.getLength());
+        assertEquals(ContentHash.of(file.getBytes()), imageMetadata.getContentHash());
+        verify(gridFsOperations, never()).delete(any(Query.class));
+        verify(imageVariantGenerator, times(1)).submit(eq(id), eq(imageMetadata), any());
+        verify(imageBlobRepository, times(1)).acquire(imageMetadata, id);
+        verify(renderedPageCache, times(1)).invalidate(id);
+        assertEquals(file.getSize(), meterRegistry.get("recipe.image.size").tag("variant", "original").summary().totalAmount(), 0);
+        assertEquals(1, meterRegistry.get("recipe.image.uploads").tag("result", "stored").counter().count(), 0);
+    }
+
+    @Test
+    public void saveImageFileSharesDuplicateImage() throws Exception {
+        //given
+        ObjectId uploadedFileId = new ObjectId();
+        ImageBlob stored = blob(new ImageMetadata(new ObjectId().toHexString(), "image/jpeg", JPEG.length, new Date(),
+                ContentHash.of(JPEG)));
+        stored.getVariants().put("thumbnail", new ImageMetadata(new ObjectId().toHexString(), "image/jpeg", 8, new Date(), "thumb"));
+        stored.getRecipeIds().add("2");
+
+        when(recipeRepository.existsById(anyString())).thenReturn(true);
+        when(gridFsOperations.store(any(InputStream.class), anyString(), anyString(), any(Document.class))).thenReturn(uploadedFileId);
+        when(imageBlobRepository.acquire(any(), eq("1"))).thenReturn(stored);
+        when(recipeRepository.replaceImageMetadata(anyString(), any())).thenReturn(Optional.of(new Recipe()));
+
+        ArgumentCaptor<ImageMetadata> argumentCaptor = ArgumentCaptor.forClass(ImageMetadata.class);
+        ArgumentCaptor<Query> deleted = ArgumentCaptor.forClass(Query.class);
+
+        //when
+        imageService.saveImageFile("1", new MockMultipartFile("imagefile", "testing.jpg", "image/jpeg", JPEG));
+
+        //then the recipe refers to the earlier copy, variants included, and the new one is dropped
+        verify(recipeRepository, times(1)).replaceImageMetadata(eq("1"), argumentCaptor.capture());
+        assertEquals(stored.getFileId(), argumentCaptor.getValue().getFileId());
+        assertEquals(1, argumentCaptor.getValue().getVariants().size());
+        verify(gridFsOperations, times(1)).delete(deleted.capture());
+        assertEquals(uploadedFileId, deleted.getValue().getQueryObject().get("_id"));
+        verifyZeroInteractions(imageVariantGenerator);
+        assertEquals(1, meterRegistry.get("recipe.image.uploads").tag("result", "duplicate").counter().count(), 0);
+    }
+
+    @Test
+    public void saveImageFileReleasesPreviousImage() throws Exception {
+        //given
+        Recipe previous = new Recipe();
+        previous.setImageMetadata(new ImageMetadata(new ObjectId().toHexString(), "image/jpeg", 10, new Date(), "previous"));
+
+        when(recipeRepository.existsById(anyString())).thenReturn(true);
+        when(gridFsOperations.store(any(InputStream.class), anyString(), anyString(), any(Document.class))).thenReturn(new ObjectId());
+        when(recipeRepository.replaceImageMetadata(anyString(), any())).thenReturn(Optional.of(previous));
+        when(imageBlobRepository.release("previous", "1")).thenReturn(true);
+
+        //when
+        imageService.saveImageFile("1", new MockMultipartFile("imagefile", "testing.jpg", "image/jpeg", JPEG));
+
+        //then the image may be shared, it is left to the collector
+        verify(imageBlobRepository, times(1)).release("previous", "1");
+        verify(gridFsOperations, never()).delete(any(Query.class));
+    }
+
+    @Test
+    public void saveImageFileReleasesImageOfDeletedRecipe() throws Exception {
+        //given
+        when(recipeRepository.existsById(anyString())).thenReturn(true);
+        when(gridFsOperations.store(any(InputStream.class), anyString(), anyString(), any(Document.class))).thenReturn(new ObjectId());
+        when(recipeRepository.replaceImageMetadata(anyString(), any())).thenReturn(Optional.empty());
+
+        //when
+        try {
+            imageService.saveImageFile("1", new MockMultipartFile("imagefile", "testing.jpg", "image/jpeg", JPEG));
+            fail("expected the recipe to be missing");
+        } catch (NotFoundException expected) {
+        }
+
+        //then
+        verify(imageBlobRepository, times(1)).release(anyString(), eq("1"));
+        verifyZeroInteractions(imageVariantGenerator);
+    }
 
-//        by using when(recipeRepository.findById(anyString())).thenReturn(recipeOptional); it is
-//        assured that recipeRepository.save() is called with the value wrapped inside of the Optional.
-//        So why not simply do this(?):
-//        verify(recipeRepositoryMock, times(1)).save(same(recipe));
-//        In this use case using a match and asserting the object is the same would achieve similar functionality.
+    @Test
+    public void saveImageFileDeletesUnsharedPreviousImage() throws Exception {
+        //given
+        Recipe previous = new Recipe();
+        previous.setImageMetadata(new ImageMetadata(new ObjectId().toHexString(), "image/jpeg", 10, new Date(), null));
+
+        MultipartFile file = new MockMultipartFile("imagefile",
+                "testing.jpg", "image/jpeg", JPEG);
+
+        when(recipeRepository.existsById(anyString())).thenReturn(true);
+        when(gridFsOperations.store(any(InputStream.class), anyString(), anyString(), any(Document.class))).thenReturn(new ObjectId());
+        when(recipeRepository.replaceImageMetadata(anyString(), any())).thenReturn(Optional.of(previous));
+
+        //when
+        imageService.saveImageFile("1", file);
+
+        //then stored before images were shared, no other recipe refers to it
+        verify(gridFsOperations, times(1)).delete(any(Query.class));
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void saveImageFileRecipeNotFound() {
+        when(recipeRepository.existsById(anyString())).thenReturn(false);
+
+        imageService.saveImageFile("1", new MockMultipartFile("imagefile", new byte[0]));
+    }
+
+    @Test
+    public void saveImageFileRejectsNonImage() {
+        //given
+        when(recipeRepository.existsById(anyString())).thenReturn(true);
+
+        //when
+        try {
+            imageService.saveImageFile("1", new MockMultipartFile("imagefile", "testing.jpg", "image/jpeg",
+                    "Spring Framework Guru".getBytes()));
+            fail("expected a bad request");
+        } catch (BadRequestException expected) {
+        }
+
+        //then
+        verifyZeroInteractions(gridFsOperations);
+    }
+
+    @Test(expected = PayloadTooLargeException.class)
+    public void saveImageFileRejectsDeclaredSizeBeforeReading() throws Exception {
+        //given
+        MultipartFile file = mock(MultipartFile.class);
+        when(file.getSize()).thenReturn(MAX_UPLOAD_SIZE + 1L);
+        when(recipeRepository.existsById(anyString())).thenReturn(true);
+
+        //when
+        try {
+            imageService.saveImageFile("1", file);
+        } finally {
+            //then
+            verify(file, never()).getInputStream();
+        }
+    }
+
+    @Test
+    public void saveImageFileStopsReadingAtSizeLimit() throws Exception {
+        //given the part claims to be small
+        MultipartFile file = mock(MultipartFile.class);
+        when(file.getSize()).thenReturn((long) JPEG.length);
+        when(file.getInputStream()).thenReturn(new ByteArrayInputStream(jpeg(MAX_UPLOAD_SIZE * 4)));
+        when(recipeRepository.existsById(anyString())).thenReturn(true);
+        when(gridFsOperations.store(any(InputStream.class), any(), anyString(), any(Document.class)))
+                .thenAnswer(invocation -> {
+                    //like GridFS, which removes the chunks written so far
+                    try {
+                        StreamUtils.drain(invocation.getArgument(0));
+                    } catch (IOException e) {
+                        throw new MongoGridFSException("IOException when reading from the InputStream", e);
+                    }
+                    return new ObjectId();
+                });
+
+        //when
+        try {
+            imageService.saveImageFile("1", file);
+            fail("expected the upload to be rejected");
+        } catch (PayloadTooLargeException expected) {
+        }
+
+        //then
+        verify(recipeRepository, never()).replaceImageMetadata(anyString(), any());
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void saveImageFileReportsReadFailure() throws Exception {
+        //given
+        MultipartFile file = mock(MultipartFile.class);
+        when(file.getSize()).thenReturn((long) JPEG.length);
+        when(file.getInputStream()).thenThrow(new IOException("part deleted"));
+        when(recipeRepository.existsById(anyString())).thenReturn(true);
+
+        //when
+        imageService.saveImageFile("1", file);
+    }
+
+    @Test
+    public void findImageMetadataWithoutImage() {
+        when(recipeRepository.findImageMetadataById(anyString())).thenReturn(Optional.of(new Recipe()));
+
+        assertFalse(imageService.findImageMetadata("1").isPresent());
+    }
+
+    private static ImageBlob blob(ImageMetadata imageMetadata) {
+        ImageBlob blob = new ImageBlob();
+        blob.setContentHash(imageMetadata.getContentHash());
+        blob.setFileId(imageMetadata.getFileId());
+        blob.setContentType(imageMetadata.getContentType());
+        blob.setLength(imageMetadata.getLength());
+        blob.setUploadDate(imageMetadata.getUploadDate());
+        return blob;
+    }
 
+    private static byte[] jpeg(int length) {
+        byte[] jpeg = Arrays.copyOf(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0}, length);
+        Arrays.fill(jpeg, 4, length, (byte) 'x');
+        return jpeg;
     }
-}
\ No newline at end of file
+}
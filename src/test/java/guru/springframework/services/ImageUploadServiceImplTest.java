@@ -0,0 +1,321 @@
+package guru.springframework.services;
+
+import guru.springframework.domain.ImageUpload;
+import guru.springframework.exceptions.BadRequestException;
+import guru.springframework.exceptions.ConflictException;
+import guru.springframework.exceptions.NotFoundException;
+import guru.springframework.exceptions.PayloadTooLargeException;
+import guru.springframework.exceptions.TooManyRequestsException;
+import guru.springframework.repositories.RecipeRepository;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+
+public class ImageUploadServiceImplTest {
+
+    private static final byte[] IMAGE = image(100);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock
+    RecipeRepository recipeRepository;
+
+    @Mock
+    ImageService imageService;
+
+    private ImageUploadServiceImpl imageUploadService;
+
+    @Before
+    public void setUp() throws IOException {
+        MockitoAnnotations.initMocks(this);
+        when(recipeRepository.existsById("1")).thenReturn(true);
+        imageUploadService = new ImageUploadServiceImpl(recipeRepository, imageService, folder.getRoot().toString(),
+                DataSize.ofBytes(1000), 2, Duration.ofHours(1));
+    }
+
+    @Test
+    public void chunksInAnyOrderAreStoredAsOneImage() throws Exception {
+        //given
+        ImageUpload upload = imageUploadService.startUpload("1", "cake.jpg", IMAGE.length);
+        ByteArrayOutputStream stored = new ByteArrayOutputStream();
+        doAnswer(invocation -> {
+            try (InputStream inputStream = invocation.<InputStreamSource>getArgument(3).getInputStream()) {
+                StreamUtils.copy(inputStream, stored);
+            }
+            return null;
+        }).when(imageService).saveImage(eq("1"), eq("cake.jpg"), eq((long) IMAGE.length), any());
+
+        //when
+        imageUploadService.writeChunk("1", upload.getId(), 60, chunk(60, 100));
+        imageUploadService.writeChunk("1", upload.getId(), 0, chunk(0, 30));
+        imageUploadService.writeChunk("1", upload.getId(), 30, chunk(30, 60));
+        ImageUpload completed = imageUploadService.completeUpload("1", upload.getId());
+
+        //then
+        assertArrayEquals(IMAGE, stored.toByteArray());
+        assertEquals(ImageUpload.State.COMPLETED, completed.getState());
+        assertFalse(Files.exists(staged(upload)));
+    }
+
+    @Test
+    public void interruptedChunkKeepsWhatArrived() throws Exception {
+        //given
+        ImageUpload upload = imageUploadService.startUpload("1", null, IMAGE.length);
+        InputStream dropped = new InputStream() {
+            private final InputStream arrived = chunk(0, 40);
+
+            @Override
+            public int read() throws IOException {
+                int b = arrived.read();
+                if (b == -1) {
+                    throw new IOException("connection reset");
+                }
+                return b;
+            }
+        };
+
+        //when
+        try {
+            imageUploadService.writeChunk("1", upload.getId(), 0, dropped);
+            fail("expected the failure to be reported");
+        } catch (UncheckedIOException expected) {
+        }
+
+        //then only the rest is missing
+        assertEquals(40, upload.getReceivedBytes());
+        assertEquals(1, upload.getMissing().size());
+        assertEquals(40, upload.getMissing().get(0).getStart());
+        assertEquals(IMAGE.length, upload.getMissing().get(0).getEnd());
+    }
+
+    @Test
+    public void chunkPastTheEndIsRejected() throws Exception {
+        //given
+        ImageUpload upload = imageUploadService.startUpload("1", null, 50);
+
+        //when
+        try {
+            imageUploadService.writeChunk("1", upload.getId(), 0, chunk(0, 100));
+            fail("expected a bad request");
+        } catch (BadRequestException expected) {
+        }
+
+        //then
+        assertEquals(50, upload.getReceivedBytes());
+    }
+
+    @Test
+    public void incompleteUploadCannotComplete() {
+        //given
+        ImageUpload upload = imageUploadService.startUpload("1", null, IMAGE.length);
+        imageUploadService.writeChunk("1", upload.getId(), 0, chunk(0, 99));
+
+        //when
+        try {
+            imageUploadService.completeUpload("1", upload.getId());
+            fail("expected a bad request");
+        } catch (BadRequestException expected) {
+        }
+
+        //then
+        verifyZeroInteractions(imageService);
+        assertEquals(ImageUpload.State.UPLOADING, upload.getState());
+    }
+
+    @Test
+    public void chunkBeingWrittenHoldsOffCompleteCancelAndSweep() throws Exception {
+        //given every byte arrived and the last chunk is sent again
+        ImageUpload upload = imageUploadService.startUpload("1", null, IMAGE.length);
+        imageUploadService.writeChunk("1", upload.getId(), 0, chunk(0, 100));
+        List<Class<?>> refused = new ArrayList<>();
+        InputStream resent = new InputStream() {
+            private final InputStream content = chunk(50, 100);
+            private boolean started;
+
+            @Override
+            public int read() throws IOException {
+                if (!started) {
+                    started = true;
+                    //the other requests arrive while the chunk is written
+                    refused.add(refusal(() -> imageUploadService.completeUpload("1", upload.getId())));
+                    refused.add(refusal(() -> imageUploadService.cancelUpload("1", upload.getId())));
+                    assertEquals(0, imageUploadService.removeStaleUploads(System.currentTimeMillis() + Duration.ofHours(2).toMillis()));
+                }
+                return content.read();
+            }
+        };
+
+        //when
+        imageUploadService.writeChunk("1", upload.getId(), 50, resent);
+
+        //then
+        assertEquals(Arrays.asList(ConflictException.class, ConflictException.class), refused);
+        assertEquals(ImageUpload.State.UPLOADING, upload.getState());
+        assertTrue(Files.exists(staged(upload)));
+        verifyZeroInteractions(imageService);
+
+        imageUploadService.completeUpload("1", upload.getId());
+        assertEquals(ImageUpload.State.COMPLETED, upload.getState());
+    }
+
+    @Test
+    public void cancelledUploadIsGone() {
+        //given
+        ImageUpload upload = imageUploadService.startUpload("1", null, IMAGE.length);
+
+        //when
+        imageUploadService.cancelUpload("1", upload.getId());
+
+        //then
+        assertEquals(ImageUpload.State.CANCELLED, upload.getState());
+        assertFalse(upload.beginWrite());
+        assertFalse(imageUploadService.findUpload("1", upload.getId()).isPresent());
+        assertFalse(Files.exists(staged(upload)));
+    }
+
+    @Test
+    public void chunkForDeletedStagedFileIsNotFound() throws Exception {
+        //given
+        ImageUpload upload = imageUploadService.startUpload("1", null, IMAGE.length);
+        Files.delete(staged(upload));
+
+        //when
+        try {
+            imageUploadService.writeChunk("1", upload.getId(), 0, chunk(0, 50));
+            fail("expected not found");
+        } catch (NotFoundException expected) {
+        }
+
+        //then the upload cannot be resumed
+        assertEquals(ImageUpload.State.FAILED, upload.getState());
+        assertFalse(upload.isWriting());
+        assertFalse(imageUploadService.findUpload("1", upload.getId()).isPresent());
+    }
+
+    @Test
+    public void completeWithDeletedStagedFileIsNotFound() throws Exception {
+        //given
+        ImageUpload upload = imageUploadService.startUpload("1", null, IMAGE.length);
+        imageUploadService.writeChunk("1", upload.getId(), 0, chunk(0, 100));
+        doThrow(new UncheckedIOException(new NoSuchFileException(staged(upload).toString())))
+                .when(imageService).saveImage(any(), any(), anyLong(), any());
+
+        //when
+        try {
+            imageUploadService.completeUpload("1", upload.getId());
+            fail("expected not found");
+        } catch (NotFoundException expected) {
+        }
+
+        //then
+        assertEquals(ImageUpload.State.FAILED, upload.getState());
+        assertFalse(imageUploadService.findUpload("1", upload.getId()).isPresent());
+    }
+
+    @Test
+    public void invalidImageFailsTheUpload() throws Exception {
+        //given
+        ImageUpload upload = imageUploadService.startUpload("1", null, IMAGE.length);
+        imageUploadService.writeChunk("1", upload.getId(), 0, chunk(0, 100));
+        doThrow(new BadRequestException("Not a JPEG, PNG or GIF image")).when(imageService).saveImage(any(), any(), anyLong(), any());
+
+        //when
+        try {
+            imageUploadService.completeUpload("1", upload.getId());
+            fail("expected a bad request");
+        } catch (BadRequestException expected) {
+        }
+
+        //then
+        assertEquals(ImageUpload.State.FAILED, upload.getState());
+        assertFalse(Files.exists(staged(upload)));
+    }
+
+    @Test(expected = PayloadTooLargeException.class)
+    public void startRejectsOversizedImage() {
+        imageUploadService.startUpload("1", null, 1001);
+    }
+
+    @Test(expected = TooManyRequestsException.class)
+    public void startLimitsPendingUploads() {
+        imageUploadService.startUpload("1", null, 10);
+        imageUploadService.startUpload("1", null, 10);
+        imageUploadService.startUpload("1", null, 10);
+    }
+
+    @Test
+    public void staleUploadsAreRemoved() {
+        //given
+        ImageUpload stale = imageUploadService.startUpload("1", null, IMAGE.length);
+        long later = System.currentTimeMillis() + Duration.ofHours(2).toMillis();
+
+        //when
+        int removed = imageUploadService.removeStaleUploads(later);
+
+        //then
+        assertEquals(1, removed);
+        assertFalse(imageUploadService.findUpload("1", stale.getId()).isPresent());
+        assertFalse(Files.exists(staged(stale)));
+        assertEquals(0, imageUploadService.removeStaleUploads(System.currentTimeMillis()));
+    }
+
+    @Test
+    public void uploadIsOnlyFoundForItsRecipe() {
+        ImageUpload upload = imageUploadService.startUpload("1", null, IMAGE.length);
+
+        assertTrue(imageUploadService.findUpload("1", upload.getId()).isPresent());
+        assertFalse(imageUploadService.findUpload("2", upload.getId()).isPresent());
+    }
+
+    private static Class<?> refusal(Runnable request) {
+        try {
+            request.run();
+            return null;
+        } catch (RuntimeException e) {
+            return e.getClass();
+        }
+    }
+
+    private Path staged(ImageUpload upload) {
+        return folder.getRoot().toPath().resolve(upload.getId() + ".part");
+    }
+
+    private static InputStream chunk(int from, int to) {
+        return new ByteArrayInputStream(Arrays.copyOfRange(IMAGE, from, to));
+    }
+
+    private static byte[] image(int length) {
+        byte[] image = new byte[length];
+        for (int i = 0; i < length; i++) {
+            image[i] = (byte) i;
+        }
+        return image;
+    }
+}
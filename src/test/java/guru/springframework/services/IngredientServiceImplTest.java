@@ -1,22 +1,30 @@
 package guru.springframework.services;
 
+import guru.springframework.cache.ReferenceDataCache;
+import guru.springframework.cache.RenderedPageCache;
 import guru.springframework.commands.IngredientCommand;
+import guru.springframework.commands.UnitOfMeasureCommand;
+import guru.springframework.concurrency.OptimisticRetry;
 import guru.springframework.converters.IngredientCommandToIngredient;
 import guru.springframework.converters.IngredientToIngredientCommand;
 import guru.springframework.converters.UnitOfMeasureCommandToUnitOfMeasure;
 import guru.springframework.converters.UnitOfMeasureToUnitOfMeasureCommand;
 import guru.springframework.domain.Ingredient;
 import guru.springframework.domain.Recipe;
+import guru.springframework.domain.UnitOfMeasure;
+import guru.springframework.exceptions.NotFoundException;
 import guru.springframework.repositories.RecipeRepository;
-import guru.springframework.repositories.UnitOfMeasureRepository;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.OptimisticLockingFailureException;
 
 import java.util.Optional;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 public class IngredientServiceImplTest {
@@ -24,12 +32,19 @@ public class IngredientServiceImplTest {
     private final IngredientToIngredientCommand ingredientToIngredientCommand;
     private final IngredientCommandToIngredient ingredientCommandToIngredient;
     private IngredientService ingredientService;
+    private OptimisticRetry optimisticRetry;
 
     @Mock
     RecipeRepository recipeRepository;
 
     @Mock
-    UnitOfMeasureRepository unitOfMeasureRepository;
+    ReferenceDataCache<UnitOfMeasure> unitOfMeasureCache;
+
+    @Mock
+    RecipeSearchService recipeSearchService;
+
+    @Mock
+    RenderedPageCache renderedPageCache;
 
     //init converters
     public IngredientServiceImplTest() {
@@ -40,7 +55,13 @@ public class IngredientServiceImplTest {
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
-        ingredientService = new IngredientServiceImpl(recipeRepository, ingredientToIngredientCommand, ingredientCommandToIngredient, unitOfMeasureRepository);
+        optimisticRetry = new OptimisticRetry(3, 0);
+        ingredientService = new IngredientServiceImpl(recipeRepository, ingredientToIngredientCommand, ingredientCommandToIngredient,
+                unitOfMeasureCache, optimisticRetry, recipeSearchService, renderedPageCache);
+
+        Recipe versioned = new Recipe();
+        versioned.setVersion(5L);
+        when(recipeRepository.findVersionById(anyString())).thenReturn(Optional.of(versioned));
     }
 
     @Test
@@ -63,7 +84,7 @@ public class IngredientServiceImplTest {
         recipe.addIngredient(ingredient3);
         Optional<Recipe> recipeOptional = Optional.of(recipe);
 
-        when(recipeRepository.findById(anyString())).thenReturn(recipeOptional);
+        when(recipeRepository.findByIdWithReferences(anyString())).thenReturn(recipeOptional);
 
         //then
         IngredientCommand ingredientCommand = ingredientService.findByRecipeIdAndIngredientId("1", "3");
@@ -71,36 +92,124 @@ public class IngredientServiceImplTest {
         //when
         assertEquals("3", ingredientCommand.getId());
         assertEquals("1", ingredientCommand.getRecipeId());
-        verify(recipeRepository, times(1)).findById(anyString());
+        verify(recipeRepository, times(1)).findByIdWithReferences(anyString());
 
     }
 
     @Test
     public void saveIngredientCommand() {
-
-        // this test is for saving new ingredient not for updating it(todo)
-
-        String ingredientToBeSavedId = "4";
+        //given
         String recipeToBeSavedId = "3";
 
         IngredientCommand ingredientCommand = new IngredientCommand();
-        ingredientCommand.setId(ingredientToBeSavedId);
         ingredientCommand.setRecipeId(recipeToBeSavedId);
+        ingredientCommand.setDescription("salt");
+
+        when(recipeRepository.addIngredient(anyString(), anyLong(), any(Ingredient.class)))
+                .thenAnswer(invocation -> Optional.of(invocation.getArgument(2)));
+
+        //when
+        IngredientCommand savedCommand = ingredientService.saveIngredientCommand(ingredientCommand);
+
+        //then
+        assertNotNull(savedCommand.getId());
+        assertEquals(recipeToBeSavedId, savedCommand.getRecipeId());
+        verify(recipeRepository, times(1)).addIngredient(eq(recipeToBeSavedId), eq(5L), any(Ingredient.class));
+        verify(recipeRepository, never()).updateIngredient(anyString(), any(), any());
+        verify(recipeRepository, never()).findById(anyString());
+        verify(recipeRepository, never()).save(any(Recipe.class));
+    }
+
+    @Test
+    public void saveIngredientCommandUpdatesInPlace() {
+        //given
+        UnitOfMeasure uom = new UnitOfMeasure();
+        uom.setId("7");
+        UnitOfMeasureCommand uomCommand = new UnitOfMeasureCommand();
+        uomCommand.setId("7");
+
+        IngredientCommand ingredientCommand = new IngredientCommand();
+        ingredientCommand.setId("4");
+        ingredientCommand.setRecipeId("3");
+        ingredientCommand.setUom(uomCommand);
+
+        when(unitOfMeasureCache.findById("7")).thenReturn(Optional.of(uom));
+        when(recipeRepository.updateIngredient(anyString(), anyLong(), any(Ingredient.class)))
+                .thenAnswer(invocation -> Optional.of(invocation.getArgument(2)));
+
+        //when
+        IngredientCommand savedCommand = ingredientService.saveIngredientCommand(ingredientCommand);
 
-        Optional<Recipe> optionalRecipe = Optional.of(new Recipe());
+        //then
+        assertEquals("4", savedCommand.getId());
+        assertEquals("7", savedCommand.getUom().getId());
+        verify(recipeRepository, times(1)).updateIngredient(eq("3"), eq(5L), any(Ingredient.class));
+        verify(recipeRepository, never()).addIngredient(anyString(), any(), any());
+    }
+
+    @Test
+    public void saveIngredientCommandDoesNotAddBackRemovedIngredient() {
+        //given an ingredient removed after its form was loaded
+        IngredientCommand ingredientCommand = new IngredientCommand();
+        ingredientCommand.setId("4");
+        ingredientCommand.setRecipeId("3");
+
+        when(recipeRepository.updateIngredient(anyString(), anyLong(), any(Ingredient.class))).thenReturn(Optional.empty());
+
+        //when
+        try {
+            ingredientService.saveIngredientCommand(ingredientCommand);
+            fail("expected OptimisticLockingFailureException");
+        } catch (OptimisticLockingFailureException e) {
+            //then
+            assertEquals("Ingredient 4 of recipe 3 was removed meanwhile", e.getMessage());
+        }
+        verify(recipeRepository, times(1)).updateIngredient(eq("3"), eq(5L), any(Ingredient.class));
+        verify(recipeRepository, never()).addIngredient(anyString(), any(), any());
+        verify(recipeSearchService, never()).reindex(anyString());
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void saveIngredientCommandRecipeNotFound() {
+        IngredientCommand ingredientCommand = new IngredientCommand();
+        ingredientCommand.setId("4");
+        ingredientCommand.setRecipeId("3");
+
+        when(recipeRepository.findVersionById(anyString())).thenReturn(Optional.empty());
 
-        Recipe savedRecipe = new Recipe();
-        savedRecipe.setId(recipeToBeSavedId);
-        savedRecipe.addIngredient(new Ingredient());
-        savedRecipe.getIngredients().iterator().next().setId(ingredientToBeSavedId);
+        ingredientService.saveIngredientCommand(ingredientCommand);
+    }
+
+    @Test
+    public void deleteById() {
+        when(recipeRepository.removeIngredient(anyString(), anyLong(), anyString())).thenReturn(true);
+
+        ingredientService.deleteById("1", "3");
+
+        verify(recipeRepository, times(1)).removeIngredient("1", 5L, "3");
+        verify(recipeRepository, never()).save(any(Recipe.class));
+        verify(recipeSearchService, times(1)).reindex("1");
+        verify(renderedPageCache, times(1)).invalidate("1");
+    }
 
-        when(recipeRepository.findById(anyString())).thenReturn(optionalRecipe);
-        when(recipeRepository.save(any())).thenReturn(savedRecipe);
+    @Test
+    public void saveIngredientCommandRetriesConflict() {
+        //given
+        IngredientCommand ingredientCommand = new IngredientCommand();
+        ingredientCommand.setId("4");
+        ingredientCommand.setRecipeId("3");
 
+        when(recipeRepository.updateIngredient(anyString(), anyLong(), any(Ingredient.class)))
+                .thenThrow(new OptimisticLockingFailureException("recipe changed"))
+                .thenAnswer(invocation -> Optional.of(invocation.getArgument(2)));
+
+        //when
         IngredientCommand savedCommand = ingredientService.saveIngredientCommand(ingredientCommand);
 
-        assertEquals(ingredientToBeSavedId, savedCommand.getId());
-        verify(recipeRepository, times(1)).findById(anyString());
-        verify(recipeRepository, times(1)).save(any(Recipe.class));
+        //then
+        assertEquals("4", savedCommand.getId());
+        verify(recipeRepository, times(2)).findVersionById("3");
+        assertEquals(Long.valueOf(1), optimisticRetry.getConflictCounts().get("ingredient.save"));
+        assertEquals(Long.valueOf(1), optimisticRetry.getRetryCounts().get("ingredient.save"));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,112 @@
+package guru.springframework.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springframework.cache.ReferenceDataCache;
+import guru.springframework.commands.RecipeCommand;
+import guru.springframework.converters.CategoryToCategoryCommand;
+import guru.springframework.converters.IngredientToIngredientCommand;
+import guru.springframework.converters.NotesToNotesCommand;
+import guru.springframework.converters.RecipeToRecipeCommand;
+import guru.springframework.converters.UnitOfMeasureToUnitOfMeasureCommand;
+import guru.springframework.domain.Category;
+import guru.springframework.domain.Recipe;
+import guru.springframework.domain.RecipeExportFilter;
+import guru.springframework.exceptions.NotFoundException;
+import guru.springframework.repositories.RecipeRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class RecipeExportServiceImplTest {
+
+    @Mock
+    RecipeRepository recipeRepository;
+
+    private RecipeExportServiceImpl recipeExportService;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        Category mexican = new Category();
+        mexican.setId("c1");
+        mexican.setDescription("Mexican");
+
+        recipeExportService = new RecipeExportServiceImpl(recipeRepository,
+                new RecipeToRecipeCommand(new CategoryToCategoryCommand(),
+                        new IngredientToIngredientCommand(new UnitOfMeasureToUnitOfMeasureCommand()), new NotesToNotesCommand()),
+                new ReferenceDataCache<>("category", () -> Collections.singletonList(mexican),
+                        Category::getId, Category::getDescription, 300), 100);
+    }
+
+    @Test
+    public void filterResolvesCategory() {
+        Date modifiedSince = new Date();
+
+        RecipeExportFilter filter = recipeExportService.filter("Mexican", modifiedSince);
+
+        assertEquals("c1", filter.getCategoryId());
+        assertEquals(modifiedSince, filter.getModifiedSince());
+        assertNull(recipeExportService.filter(null, null).getCategoryId());
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void filterUnknownCategory() {
+        recipeExportService.filter("Thai", null);
+    }
+
+    @Test
+    public void exportRecipesWritesOneCommandPerLine() throws Exception {
+        //given
+        AtomicBoolean closed = new AtomicBoolean();
+        when(recipeRepository.streamWithReferences("c1", null, 100))
+                .thenReturn(Stream.of(recipe("1", "Tacos"), recipe("2", "Nachos")).onClose(() -> closed.set(true)));
+        AtomicBoolean outputClosed = new AtomicBoolean();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream output = new OutputStream() {
+            @Override
+            public void write(int b) {
+                bytes.write(b);
+            }
+
+            @Override
+            public void close() {
+                outputClosed.set(true);
+            }
+        };
+
+        //when
+        long exported = recipeExportService.exportRecipes(new RecipeExportFilter("c1", null), output);
+
+        //then
+        assertEquals(2, exported);
+        String[] lines = new String(bytes.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        RecipeCommand nachos = new ObjectMapper().readValue(lines[1], RecipeCommand.class);
+        assertEquals("2", nachos.getId());
+        assertEquals("Nachos", nachos.getDescription());
+        assertTrue(closed.get());
+        assertFalse(outputClosed.get());
+    }
+
+    private static Recipe recipe(String id, String description) {
+        Recipe recipe = new Recipe();
+        recipe.setId(id);
+        recipe.setDescription(description);
+        return recipe;
+    }
+}
@@ -0,0 +1,191 @@
+package guru.springframework.services;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import guru.springframework.cache.ReferenceDataCache;
+import guru.springframework.converters.CategoryCommandToCategory;
+import guru.springframework.converters.IngredientCommandToIngredient;
+import guru.springframework.converters.NotesCommandToNotes;
+import guru.springframework.converters.RecipeCommandToRecipe;
+import guru.springframework.converters.UnitOfMeasureCommandToUnitOfMeasure;
+import guru.springframework.domain.Category;
+import guru.springframework.domain.Ingredient;
+import guru.springframework.domain.Recipe;
+import guru.springframework.domain.RecipeImport;
+import guru.springframework.domain.UnitOfMeasure;
+import guru.springframework.exceptions.TooManyRequestsException;
+import guru.springframework.imports.RecipeImportFormat;
+import org.bson.BsonDocument;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoOperations;
+
+import javax.validation.Validation;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class RecipeImportServiceImplTest {
+
+    private static final String HEADER = "description,directions,categories,ingredients\n";
+
+    @Mock
+    MongoOperations mongoOperations;
+
+    @Mock
+    BulkOperations bulkOperations;
+
+    @Mock
+    RecipeSearchService recipeSearchService;
+
+    private final List<List<Recipe>> batches = new ArrayList<>();
+    private RecipeImportServiceImpl recipeImportService;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(mongoOperations.bulkOps(any(BulkOperations.BulkMode.class), any(Class.class))).thenReturn(bulkOperations);
+        when(bulkOperations.insert(anyList())).thenAnswer(invocation -> {
+            batches.add(new ArrayList<>(invocation.getArgument(0)));
+            return bulkOperations;
+        });
+
+        Category mexican = new Category();
+        mexican.setId("c1");
+        mexican.setDescription("Mexican");
+        UnitOfMeasure pound = new UnitOfMeasure();
+        pound.setId("u1");
+        pound.setDescription("Pound");
+
+        recipeImportService = new RecipeImportServiceImpl(mongoOperations,
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                new RecipeCommandToRecipe(new CategoryCommandToCategory(),
+                        new IngredientCommandToIngredient(new UnitOfMeasureCommandToUnitOfMeasure()), new NotesCommandToNotes()),
+                new ReferenceDataCache<>("unitOfMeasure", () -> Collections.singletonList(pound),
+                        UnitOfMeasure::getId, UnitOfMeasure::getDescription, 300),
+                new ReferenceDataCache<>("category", () -> Collections.singletonList(mexican),
+                        Category::getId, Category::getDescription, 300),
+                recipeSearchService, 2, 10, 1000, 1);
+    }
+
+    @Test
+    public void importsValidRecordsInBatches() {
+        //when
+        RecipeImport recipeImport = importCsv(HEADER
+                + "Tacos,Fry,Mexican,1;Pound;chicken\n"
+                + "Burritos,Roll,,\n"
+                + "Nachos,Bake,Mexican,\n");
+
+        //then
+        assertEquals(RecipeImport.State.COMPLETED, recipeImport.getState());
+        assertEquals(3, recipeImport.getRecordsRead());
+        assertEquals(3, recipeImport.getRecordsImported());
+        assertEquals(2, batches.size());
+        assertEquals(1, batches.get(1).size());
+
+        Recipe tacos = batches.get(0).get(0);
+        assertNotNull(tacos.getId());
+        assertEquals(Long.valueOf(0), tacos.getVersion());
+        assertEquals("c1", tacos.getCategories().iterator().next().getId());
+        Ingredient chicken = tacos.getIngredients().iterator().next();
+        assertNotNull(chicken.getId());
+        assertEquals("u1", chicken.getUom().getId());
+        verify(recipeSearchService, times(3)).index(any(Recipe.class));
+    }
+
+    @Test
+    public void rejectsInvalidRecordsAndImportsTheRest() {
+        //when
+        RecipeImport recipeImport = importCsv(HEADER
+                + "Ta,Fry,,\n"
+                + "Tacos,Fry,Thai,\n"
+                + "Tacos,Fry,,1;Cup;rice\n"
+                + "Tacos,Fry,,\n");
+
+        //then
+        assertEquals(4, recipeImport.getRecordsRead());
+        assertEquals(1, recipeImport.getRecordsImported());
+        assertEquals(3, recipeImport.getRecordsRejected());
+        assertEquals(1, recipeImport.getErrors().get(0).getRecord());
+        assertTrue(recipeImport.getErrors().get(0).getMessage().startsWith("description "));
+        assertEquals("Unknown category: Thai", recipeImport.getErrors().get(1).getMessage());
+        assertEquals("Unknown unit of measure: Cup", recipeImport.getErrors().get(2).getMessage());
+        assertFalse(recipeImport.isErrorsTruncated());
+    }
+
+    @Test
+    public void reportsRecipesTheBulkInsertRejected() {
+        //given
+        when(bulkOperations.execute()).thenThrow(new DuplicateKeyException("insert failed",
+                new MongoBulkWriteException(BulkWriteResult.acknowledged(1, 0, 0, 0, Collections.emptyList()),
+                        Collections.singletonList(new BulkWriteError(11000, "duplicate key", new BsonDocument(), 1)),
+                        null, new ServerAddress())));
+
+        //when
+        RecipeImport recipeImport = importCsv(HEADER + "Tacos,Fry,,\nNachos,Bake,,\n");
+
+        //then
+        assertEquals(1, recipeImport.getRecordsImported());
+        assertEquals(2, recipeImport.getErrors().get(0).getRecord());
+        verify(recipeSearchService, times(1)).index(batches.get(0).get(0));
+        verify(recipeSearchService, never()).index(batches.get(0).get(1));
+    }
+
+    @Test
+    public void failsOnUnreadableInput() {
+        //when
+        RecipeImport recipeImport = importCsv("description,calories\nTacos,300\n");
+
+        //then
+        assertEquals(RecipeImport.State.FAILED, recipeImport.getState());
+        assertNotNull(recipeImport.getFinished());
+        assertEquals(Collections.singletonList(recipeImport), recipeImportService.getImports());
+        verifyZeroInteractions(mongoOperations);
+    }
+
+    @Test
+    public void limitsConcurrentImports() {
+        //given
+        Reader blocking = new StringReader(HEADER) {
+            @Override
+            public int read() {
+                //a second import while this one reads
+                try {
+                    importCsv(HEADER);
+                    fail("expected the second import to be refused");
+                } catch (TooManyRequestsException expected) {
+                    //only one permit
+                }
+                return -1;
+            }
+        };
+
+        //when
+        RecipeImport recipeImport = recipeImportService.importRecipes(RecipeImportFormat.CSV, blocking);
+
+        //then
+        assertEquals(RecipeImport.State.COMPLETED, recipeImport.getState());
+        assertEquals(1, recipeImportService.getImports().size());
+    }
+
+    private RecipeImport importCsv(String csv) {
+        return recipeImportService.importRecipes(RecipeImportFormat.CSV, new StringReader(csv));
+    }
+}
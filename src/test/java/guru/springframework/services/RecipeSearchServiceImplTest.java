@@ -0,0 +1,141 @@
+package guru.springframework.services;
+
+import guru.springframework.domain.Ingredient;
+import guru.springframework.domain.Notes;
+import guru.springframework.domain.Recipe;
+import guru.springframework.domain.RecipeSummary;
+import guru.springframework.domain.SearchPage;
+import guru.springframework.repositories.RecipeRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class RecipeSearchServiceImplTest {
+
+    @Mock
+    RecipeRepository recipeRepository;
+
+    private RecipeSearchServiceImpl recipeSearchService;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        recipeSearchService = new RecipeSearchServiceImpl(recipeRepository);
+    }
+
+    @Test
+    public void buildIndexesStoredRecipes() {
+        //given
+        when(recipeRepository.streamSearchableFields()).thenReturn(Stream.of(recipe("1", "Perfect Guacamole", "avocado"),
+                recipe("2", "Tacos", "tortillas")));
+        when(recipeRepository.findSummariesByIds(Collections.singletonList("1")))
+                .thenReturn(Collections.singletonList(new RecipeSummary("1", "Perfect Guacamole")));
+
+        //when
+        recipeSearchService.build();
+        SearchPage page = recipeSearchService.search("Avocado", 0, 10);
+
+        //then
+        assertEquals(1, page.getTotalHits());
+        assertEquals("1", page.getRecipes().get(0).getId());
+        assertNull(page.getPreviousPage());
+        assertNull(page.getNextPage());
+    }
+
+    @Test
+    public void indexCoversNotesAndIngredients() {
+        recipeSearchService.index(recipe("1", "Perfect Guacamole", "avocado"));
+
+        assertEquals(1, recipeSearchService.findHits("ripe", 0, 10).getTotalHits());
+        assertEquals(1, recipeSearchService.findHits("avocado", 0, 10).getTotalHits());
+    }
+
+    @Test
+    public void reindexReadsStoredText() {
+        //given
+        recipeSearchService.index(recipe("1", "Perfect Guacamole", "avocado"));
+        when(recipeRepository.findSearchableFieldsById("1")).thenReturn(Optional.of(recipe("1", "Perfect Guacamole", "lime")));
+
+        //when
+        recipeSearchService.reindex("1");
+
+        //then
+        assertEquals(0, recipeSearchService.findHits("avocado", 0, 10).getTotalHits());
+        assertEquals(1, recipeSearchService.findHits("lime", 0, 10).getTotalHits());
+    }
+
+    @Test
+    public void removedRecipeIsNotFound() {
+        recipeSearchService.index(recipe("1", "Perfect Guacamole", "avocado"));
+
+        recipeSearchService.remove("1");
+
+        assertEquals(0, recipeSearchService.findHits("guacamole", 0, 10).getTotalHits());
+    }
+
+    @Test
+    public void buildDoesNotAddBackRecipeRemovedMeanwhile() {
+        //given the recipe is deleted after the build read it
+        Recipe read = recipe("1", "Perfect Guacamole", "avocado");
+        when(recipeRepository.streamSearchableFields()).thenReturn(Stream.of(read).peek(recipe -> recipeSearchService.remove("1")));
+
+        //when
+        recipeSearchService.build();
+
+        //then
+        assertEquals(0, recipeSearchService.findHits("guacamole", 0, 10).getTotalHits());
+    }
+
+    @Test
+    public void searchBlankQueryReadsNothing() {
+        SearchPage page = recipeSearchService.search("  ", 0, 10);
+
+        assertEquals(0, page.getTotalHits());
+        assertTrue(page.getRecipes().isEmpty());
+        verify(recipeRepository, never()).findSummariesByIds(anyList());
+    }
+
+    @Test
+    public void searchStopsAtMaxResults() {
+        //given
+        for (int i = 0; i < RecipeSearchServiceImpl.MAX_RESULTS + 10; i++) {
+            recipeSearchService.index(recipe(String.valueOf(i), "Tacos", "tortillas"));
+        }
+        when(recipeRepository.findSummariesByIds(anyList())).thenReturn(Arrays.asList(new RecipeSummary("1", "Tacos")));
+
+        //when
+        SearchPage last = recipeSearchService.search("tacos", RecipeSearchServiceImpl.MAX_RESULTS / 10 - 1, 10);
+        SearchPage beyond = recipeSearchService.search("tacos", RecipeSearchServiceImpl.MAX_RESULTS / 10, 10);
+
+        //then
+        assertNotNull(last.getPreviousPage());
+        assertNull(last.getNextPage());
+        assertTrue(beyond.getRecipes().isEmpty());
+    }
+
+    private static Recipe recipe(String id, String description, String ingredient) {
+        Recipe recipe = new Recipe();
+        recipe.setId(id);
+        recipe.setVersion(0L);
+        recipe.setDescription(description);
+        Notes notes = new Notes();
+        notes.setRecipeNotes("Use ripe ones");
+        recipe.setNotes(notes);
+        Ingredient ingredientEntity = new Ingredient();
+        ingredientEntity.setDescription(ingredient);
+        recipe.addIngredient(ingredientEntity);
+        return recipe;
+    }
+}
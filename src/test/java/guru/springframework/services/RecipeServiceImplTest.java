@@ -1,27 +1,40 @@
 package guru.springframework.services;
 
+import guru.springframework.cache.RenderedPageCache;
 import guru.springframework.commands.RecipeCommand;
+import guru.springframework.concurrency.OptimisticRetry;
 import guru.springframework.converters.RecipeCommandToRecipe;
 import guru.springframework.converters.RecipeToRecipeCommand;
+import guru.springframework.domain.ImageMetadata;
 import guru.springframework.domain.Recipe;
+import guru.springframework.domain.RecipePage;
+import guru.springframework.domain.RecipeSort;
+import guru.springframework.domain.RecipeSummary;
+import guru.springframework.exceptions.BadRequestException;
 import guru.springframework.exceptions.NotFoundException;
 import guru.springframework.repositories.RecipeRepository;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.OptimisticLockingFailureException;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Optional;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 public class RecipeServiceImplTest {
 
     private RecipeServiceImpl recipeService;
+    private OptimisticRetry optimisticRetry;
 
     @Mock
     RecipeRepository recipeRepository;
@@ -32,23 +45,32 @@ public class RecipeServiceImplTest {
     @Mock
     RecipeCommandToRecipe recipeCommandToRecipe;
 
+    @Mock
+    RecipeSearchService recipeSearchService;
+
+    @Mock
+    RenderedPageCache renderedPageCache;
+
+    @Mock
+    ImageService imageService;
+
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
-        recipeService = new RecipeServiceImpl(recipeRepository, recipeCommandToRecipe, recipeToRecipeCommand);
+        optimisticRetry = new OptimisticRetry(3, 0);
+        recipeService = new RecipeServiceImpl(recipeRepository, recipeCommandToRecipe, recipeToRecipeCommand, optimisticRetry, recipeSearchService,
+                renderedPageCache, imageService);
     }
 
     @Test
     public void getRecipes() {
         Recipe recipe = new Recipe();
-        HashSet recipeSet = new HashSet();
-        recipeSet.add(recipe);
-        when(recipeRepository.findAll()).thenReturn(recipeSet);
+        when(recipeRepository.findAllWithReferences()).thenReturn(Collections.singletonList(recipe));
 
         Set<Recipe> recipes = recipeService.getRecipes();
 
         assertEquals(recipes.size(), 1);
-        verify(recipeRepository, times(1)).findAll();
+        verify(recipeRepository, times(1)).findAllWithReferences();
 
     }
 
@@ -58,17 +80,17 @@ public class RecipeServiceImplTest {
         recipe.setId("1");
         Optional<Recipe> recipeOptional = Optional.of(recipe);
 
-        when(recipeRepository.findById(anyString())).thenReturn(recipeOptional);
+        when(recipeRepository.findByIdWithReferences(anyString())).thenReturn(recipeOptional);
         Recipe recipeReturned = recipeService.findById("1");
         assertNotNull("Null Recipe returned", recipeReturned);
 
-        verify(recipeRepository, times(1)).findById(anyString());
+        verify(recipeRepository, times(1)).findByIdWithReferences(anyString());
         verify(recipeRepository, never()).findAll();
     }
 
     @Test(expected = NotFoundException.class)
     public void findByIdRecipeNotFound() {
-        when(recipeRepository.findById(anyString())).thenReturn(Optional.empty());
+        when(recipeRepository.findByIdWithReferences(anyString())).thenReturn(Optional.empty());
         recipeService.findById("1");
         //should go boom
     }
@@ -79,7 +101,7 @@ public class RecipeServiceImplTest {
         Recipe recipe = new Recipe();
         recipe.setId("4");
         Optional<Recipe> recipeOptional = Optional.of(recipe);
-        when(recipeRepository.findById(anyString())).thenReturn(recipeOptional);
+        when(recipeRepository.findByIdWithReferences(anyString())).thenReturn(recipeOptional);
 
         RecipeCommand recipeCommand = new RecipeCommand();
         recipeCommand.setId("4");
@@ -88,7 +110,7 @@ public class RecipeServiceImplTest {
         RecipeCommand findCommand = recipeService.findCommandById("4");
 
         assertNotNull("Null Recipe returned", findCommand);
-        verify(recipeRepository, times(1)).findById(anyString());
+        verify(recipeRepository, times(1)).findByIdWithReferences(anyString());
         assertEquals(recipe.getId(), findCommand.getId());
     }
 
@@ -103,6 +125,162 @@ public class RecipeServiceImplTest {
         //no 'when', since method has void return type
 
         //then
-        verify(recipeRepository, times(1)).deleteById(anyString());
+        verify(recipeRepository, times(1)).findAndDeleteById(idToDelete);
+        verify(recipeSearchService, times(1)).remove(idToDelete);
+        verify(renderedPageCache, times(1)).invalidate(idToDelete);
+        verifyZeroInteractions(imageService);
+    }
+
+    @Test
+    public void deleteByIdReleasesImage() {
+        //given
+        ImageMetadata imageMetadata = new ImageMetadata("5d5f1e3a8f1b2c0001a1b2c3", "image/jpeg", 3, null, "hash");
+        Recipe recipe = new Recipe();
+        recipe.setImageMetadata(imageMetadata);
+        when(recipeRepository.findAndDeleteById("2")).thenReturn(Optional.of(recipe));
+
+        //when
+        recipeService.deleteById("2");
+
+        //then the image the deleted document held is released
+        verify(recipeRepository, never()).findImageMetadataById(anyString());
+        verify(imageService, times(1)).releaseImage("2", imageMetadata);
+    }
+
+    @Test
+    public void listRecipesFirstPage() {
+        //given
+        when(recipeRepository.findSummaries(RecipeSort.DESCRIPTION, null, false, 3)).thenReturn(new ArrayList<>(Arrays.asList(
+                new RecipeSummary("1", "a"), new RecipeSummary("2", "b"), new RecipeSummary("3", "c"))));
+
+        //when
+        RecipePage page = recipeService.listRecipes(RecipeSort.DESCRIPTION, null, null, 2);
+
+        //then
+        assertEquals(2, page.getRecipes().size());
+        assertNull(page.getPreviousCursor());
+        RecipeSummary next = RecipeServiceImpl.decodeCursor(page.getNextCursor());
+        assertEquals("2", next.getId());
+        assertEquals("b", next.getDescription());
+    }
+
+    @Test
+    public void listRecipesLastPage() {
+        //given
+        String after = RecipeServiceImpl.encodeCursor(new RecipeSummary("2", "b"));
+        when(recipeRepository.findSummaries(eq(RecipeSort.DESCRIPTION), any(), eq(false), eq(3)))
+                .thenReturn(new ArrayList<>(Arrays.asList(new RecipeSummary("3", "c"))));
+
+        //when
+        RecipePage page = recipeService.listRecipes(RecipeSort.DESCRIPTION, after, null, 2);
+
+        //then
+        assertEquals(1, page.getRecipes().size());
+        assertNull(page.getNextCursor());
+        assertEquals("3", RecipeServiceImpl.decodeCursor(page.getPreviousCursor()).getId());
+    }
+
+    @Test
+    public void listRecipesBackwards() {
+        //given
+        String before = RecipeServiceImpl.encodeCursor(new RecipeSummary("4", "d"));
+        when(recipeRepository.findSummaries(eq(RecipeSort.NEWEST), any(), eq(true), eq(3))).thenReturn(new ArrayList<>(Arrays.asList(
+                new RecipeSummary("1", "a"), new RecipeSummary("2", "b"), new RecipeSummary("3", "c"))));
+
+        //when
+        RecipePage page = recipeService.listRecipes(RecipeSort.NEWEST, null, before, 2);
+
+        //then
+        assertEquals("2", page.getRecipes().get(0).getId());
+        assertEquals("2", RecipeServiceImpl.decodeCursor(page.getPreviousCursor()).getId());
+        assertEquals("3", RecipeServiceImpl.decodeCursor(page.getNextCursor()).getId());
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void listRecipesInvalidCursor() {
+        recipeService.listRecipes(RecipeSort.DESCRIPTION, "not a cursor!", null, 2);
+    }
+
+    @Test
+    public void saveRecipeCommandKeepsStoredImage() {
+        //given
+        RecipeCommand command = new RecipeCommand();
+        command.setId("1");
+        Recipe detached = new Recipe();
+        detached.setId("1");
+        detached.setVersion(4L);
+        Recipe stored = new Recipe();
+        stored.setVersion(4L);
+        stored.setImageMetadata(new ImageMetadata("5d5f1e3a8f1b2c0001a1b2c3", "image/jpeg", 3, null, "hash"));
+
+        when(recipeCommandToRecipe.convert(command)).thenReturn(detached);
+        when(recipeRepository.findImageMetadataById("1")).thenReturn(Optional.of(stored));
+        when(recipeRepository.save(detached)).thenReturn(detached);
+
+        //when
+        recipeService.saveRecipeCommand(command);
+
+        //then
+        assertEquals(stored.getImageMetadata(), detached.getImageMetadata());
+        verify(recipeSearchService, times(1)).index(detached);
+        verify(renderedPageCache, times(1)).invalidate("1");
+    }
+
+    @Test
+    public void saveRecipeCommandRejectsUnversionedForm() {
+        //given
+        RecipeCommand command = new RecipeCommand();
+        command.setId("1");
+        Recipe detached = new Recipe();
+        detached.setId("1");
+        Recipe stored = new Recipe();
+        stored.setVersion(4L);
+
+        when(recipeCommandToRecipe.convert(command)).thenReturn(detached);
+        when(recipeRepository.findImageMetadataById("1")).thenReturn(Optional.of(stored));
+
+        //when
+        try {
+            recipeService.saveRecipeCommand(command);
+            fail("expected a form without version to be rejected");
+        } catch (OptimisticLockingFailureException expected) {
+            //a stale form must not overwrite the stored recipe
+        }
+
+        //then
+        verify(recipeRepository, never()).save(any());
+        assertEquals(Long.valueOf(1), optimisticRetry.getConflictCounts().get("recipe.save"));
+    }
+
+    @Test
+    public void saveRecipeCommandConflict() {
+        //given
+        RecipeCommand command = new RecipeCommand();
+        Recipe detached = new Recipe();
+        detached.setId("");
+
+        when(recipeCommandToRecipe.convert(command)).thenReturn(detached);
+        when(recipeRepository.save(detached)).thenThrow(new OptimisticLockingFailureException("recipe changed"));
+
+        //when
+        try {
+            recipeService.saveRecipeCommand(command);
+            fail("expected the conflict to reach the caller");
+        } catch (OptimisticLockingFailureException expected) {
+            //whole form saves are not retried
+        }
+
+        //then
+        assertNull(detached.getId());
+        verify(recipeRepository, times(1)).save(detached);
+        assertEquals(Long.valueOf(1), optimisticRetry.getConflictCounts().get("recipe.save"));
+        verifyZeroInteractions(recipeSearchService, renderedPageCache);
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void findVersionByIdRecipeNotFound() {
+        when(recipeRepository.findVersionById(anyString())).thenReturn(Optional.empty());
+
+        recipeService.findVersionById("1");
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,6 @@
 package guru.springframework.services;
 
+import guru.springframework.cache.ReferenceDataCache;
 import guru.springframework.commands.UnitOfMeasureCommand;
 import guru.springframework.converters.UnitOfMeasureToUnitOfMeasureCommand;
 import guru.springframework.domain.UnitOfMeasure;
@@ -31,7 +32,10 @@ public class UnitOfMeasureServiceImplTest {
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
-        unitOfMeasureService = new UnitOfMeasureServiceImpl(unitOfMeasureRepository, unitOfMeasureToUnitOfMeasureCommand);
+        unitOfMeasureService = new UnitOfMeasureServiceImpl(
+                new ReferenceDataCache<>("unitOfMeasure", unitOfMeasureRepository::findAll, UnitOfMeasure::getId,
+                        UnitOfMeasure::getDescription, 300),
+                unitOfMeasureToUnitOfMeasureCommand);
     }
 
     @Test
@@ -48,6 +52,7 @@ public class UnitOfMeasureServiceImplTest {
 
         Set<UnitOfMeasureCommand> commands = unitOfMeasureService.listAllUoms();
         assertEquals(2, commands.size());
+        assertEquals(2, unitOfMeasureService.listAllUoms().size());
         verify(unitOfMeasureRepository, times(1)).findAll();
     }
 }
\ No newline at end of file